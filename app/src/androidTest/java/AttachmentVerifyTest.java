@@ -0,0 +1,122 @@
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Pair;
+import me.tagavari.airmessage.data.DatabaseManager;
+import me.tagavari.airmessage.helper.AttachmentStorageHelper;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@SmallTest
+public class AttachmentVerifyTest {
+	//A message ID that is never assigned, so test attachments don't show up in the app
+	private static final long testMessageID = -100;
+	private static final String testDirectory = "test-verify";
+	
+	private Context context;
+	
+	@Before
+	public void getContext() {
+		context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+	}
+	
+	@After
+	public void deleteAttachments() {
+		DatabaseManager.getInstance().getWritableDatabase().delete("attachments", "message = ?", new String[]{Long.toString(testMessageID)});
+		
+		File directory = new File(AttachmentStorageHelper.getAttachmentDirectoryUnchecked(context), testDirectory);
+		File[] files = directory.listFiles();
+		if(files != null) for(File file : files) file.delete();
+		directory.delete();
+	}
+	
+	@Test
+	public void testMissingFileInvalidated() throws Exception {
+		//Adding an attachment whose file exists, and one whose file is missing
+		File directory = new File(AttachmentStorageHelper.getAttachmentDirectoryUnchecked(context), testDirectory);
+		assertThat(directory.mkdirs() || directory.isDirectory()).isTrue();
+		assertThat(new File(directory, "present.txt").createNewFile()).isTrue();
+		
+		long presentID = addAttachment(testDirectory + "/present.txt");
+		long missingID = addAttachment(testDirectory + "/missing.txt");
+		
+		//Checking only the test attachments
+		List<Pair<Long, Long>> missingAttachments = new ArrayList<>();
+		long lastID = DatabaseManager.getInstance().verifyAttachmentFiles(context, presentID - 1, 2, missingAttachments);
+		
+		assertThat(lastID).isEqualTo(missingID);
+		assertThat(missingAttachments).containsExactly(new Pair<>(testMessageID, missingID));
+		assertThat(getFileState(presentID)).isEqualTo(new Pair<>(testDirectory + "/present.txt", true));
+		assertThat(getFileState(missingID)).isEqualTo(new Pair<>(null, false));
+	}
+	
+	@Test
+	public void testReplacedFileKept() throws Exception {
+		//Adding an attachment, and giving it a new file after it was found to be missing
+		long attachmentID = addAttachment(testDirectory + "/old.txt");
+		ContentValues contentValues = new ContentValues();
+		contentValues.put("path", testDirectory + "/new.txt");
+		DatabaseManager.getInstance().getWritableDatabase().update("attachments", contentValues, "_id = ?", new String[]{Long.toString(attachmentID)});
+		
+		//Invalidating the attachment with the path it was checked with
+		List<Pair<Long, Long>> missingAttachments = new ArrayList<>();
+		DatabaseManager.getInstance().invalidateAttachmentFiles(Collections.singletonList(new Pair<>(testMessageID, attachmentID)), Collections.singletonList(testDirectory + "/old.txt"), missingAttachments);
+		
+		//Checking that the new file was left alone
+		assertThat(missingAttachments).isEmpty();
+		assertThat(getFileState(attachmentID)).isEqualTo(new Pair<>(testDirectory + "/new.txt", true));
+	}
+	
+	@Test
+	public void testMigrationBackfill() {
+		SQLiteDatabase database = SQLiteDatabase.create(null);
+		try {
+			//Creating the attachments table as it was before the file presence flag was added
+			database.execSQL("CREATE TABLE attachments (_id INTEGER PRIMARY KEY UNIQUE, message INTEGER NOT NULL, path TEXT);");
+			database.execSQL("INSERT INTO attachments (_id, message, path) VALUES (1, 1, 'file.txt'), (2, 1, NULL);");
+			
+			//Running the migration
+			DatabaseManager.getInstance().onUpgrade(database, 19, 20);
+			
+			//Checking that only attachments with a file are marked as present
+			try(Cursor cursor = database.rawQuery("SELECT _id, file_present FROM attachments ORDER BY _id", null)) {
+				assertThat(cursor.moveToNext()).isTrue();
+				assertThat(cursor.getInt(1)).isEqualTo(1);
+				assertThat(cursor.moveToNext()).isTrue();
+				assertThat(cursor.getInt(1)).isEqualTo(0);
+			}
+		} finally {
+			database.close();
+		}
+	}
+	
+	private static long addAttachment(String path) {
+		ContentValues contentValues = new ContentValues();
+		contentValues.put("message", testMessageID);
+		contentValues.put("type", "text/plain");
+		contentValues.put("path", path);
+		contentValues.put("file_present", true);
+		return DatabaseManager.getInstance().getWritableDatabase().insert("attachments", null, contentValues);
+	}
+	
+	private static Pair<String, Boolean> getFileState(long attachmentID) {
+		try(Cursor cursor = DatabaseManager.getInstance().getReadableDatabase().rawQuery("SELECT path, file_present FROM attachments WHERE _id = ?", new String[]{Long.toString(attachmentID)})) {
+			cursor.moveToNext();
+			return new Pair<>(cursor.getString(0), cursor.getInt(1) != 0);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+import android.content.Context;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.observers.TestObserver;
+import kotlin.Unit;
+import me.tagavari.airmessage.data.ContactBatchResolver;
+import me.tagavari.airmessage.data.UserCacheHelper;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@SmallTest
+public class ContactBatchResolverTest {
+	private static final long timeoutSeconds = 10;
+	private static final String testAddress = "alex@example.com";
+	private static final UserCacheHelper.UserInfo testUser = new UserCacheHelper.UserInfo(1, "lookup1", "Alex", 0);
+	
+	private Context context;
+	
+	@Before
+	public void getContext() {
+		context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+	}
+	
+	@Test
+	public void testConcurrentLookupsShared() throws Exception {
+		final int threadCount = 8;
+		
+		//Holding the query open until every thread has requested the address
+		CountDownLatch requestedLatch = new CountDownLatch(threadCount);
+		List<List<String>> queries = new CopyOnWriteArrayList<>();
+		ContactBatchResolver resolver = new ContactBatchResolver((context, addresses) -> {
+			queries.add(addresses);
+			try {
+				requestedLatch.await(timeoutSeconds, TimeUnit.SECONDS);
+			} catch(InterruptedException exception) {
+				throw new RuntimeException(exception);
+			}
+			return Collections.singletonMap(testAddress, testUser);
+		}, (address, userInfo) -> Unit.INSTANCE);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			//Requesting the same address from several threads at once
+			List<Future<Single<Optional<UserCacheHelper.UserInfo>>>> futures = new ArrayList<>();
+			for(int i = 0; i < threadCount; i++) {
+				futures.add(executor.submit(() -> {
+					Single<Optional<UserCacheHelper.UserInfo>> single = resolver.resolve(context, testAddress);
+					requestedLatch.countDown();
+					return single;
+				}));
+			}
+			
+			//Checking that every request shares the same lookup, which runs a single query
+			Single<Optional<UserCacheHelper.UserInfo>> firstSingle = futures.get(0).get(timeoutSeconds, TimeUnit.SECONDS);
+			for(Future<Single<Optional<UserCacheHelper.UserInfo>>> future : futures) {
+				assertThat(future.get(timeoutSeconds, TimeUnit.SECONDS)).isSameInstanceAs(firstSingle);
+			}
+			assertThat(firstSingle.timeout(timeoutSeconds, TimeUnit.SECONDS).blockingGet().get()).isEqualTo(testUser);
+			assertThat(queries).containsExactly(Collections.singletonList(testAddress));
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		//Checking that a request after the lookup finished starts a new one
+		resolver.resolve(context, testAddress).timeout(timeoutSeconds, TimeUnit.SECONDS).blockingGet();
+		assertThat(queries).hasSize(2);
+	}
+	
+	@Test
+	public void testLargeLookupChunked() {
+		final int addressCount = ContactBatchResolver.maxBatchSize * 2 + 50;
+		
+		List<Integer> querySizes = new CopyOnWriteArrayList<>();
+		AtomicInteger resultCount = new AtomicInteger();
+		ContactBatchResolver resolver = new ContactBatchResolver((context, addresses) -> {
+			querySizes.add(addresses.size());
+			return Collections.<String, UserCacheHelper.UserInfo>emptyMap();
+		}, (address, userInfo) -> {
+			resultCount.incrementAndGet();
+			return Unit.INSTANCE;
+		});
+		
+		//Requesting many addresses at once
+		List<Single<Optional<UserCacheHelper.UserInfo>>> singles = new ArrayList<>();
+		for(int i = 0; i < addressCount; i++) singles.add(resolver.resolve(context, "+1555000" + i));
+		for(Single<Optional<UserCacheHelper.UserInfo>> single : singles) {
+			assertThat(single.timeout(timeoutSeconds, TimeUnit.SECONDS).blockingGet().isPresent()).isFalse();
+		}
+		
+		//Checking that the addresses were split into queries that stay under SQLite's argument limit
+		assertThat(querySizes.size()).isAtLeast(3);
+		for(int size : querySizes) assertThat(size).isAtMost(ContactBatchResolver.maxBatchSize);
+		assertThat(querySizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(addressCount);
+		assertThat(resultCount.get()).isEqualTo(addressCount);
+	}
+	
+	@Test
+	public void testFailedLookup() {
+		AtomicInteger queryCount = new AtomicInteger();
+		AtomicInteger resultCount = new AtomicInteger();
+		ContactBatchResolver resolver = new ContactBatchResolver((context, addresses) -> {
+			//Failing the first query
+			if(queryCount.getAndIncrement() == 0) throw new IllegalStateException("Query failed");
+			return Collections.singletonMap(testAddress, testUser);
+		}, (address, userInfo) -> {
+			resultCount.incrementAndGet();
+			return Unit.INSTANCE;
+		});
+		
+		//Checking that every subscriber waiting on the lookup receives the error
+		Single<Optional<UserCacheHelper.UserInfo>> single = resolver.resolve(context, testAddress);
+		TestObserver<Optional<UserCacheHelper.UserInfo>> observer1 = single.test();
+		TestObserver<Optional<UserCacheHelper.UserInfo>> observer2 = resolver.resolve(context, testAddress).test();
+		observer1.awaitDone(timeoutSeconds, TimeUnit.SECONDS).assertError(IllegalStateException.class);
+		observer2.awaitDone(timeoutSeconds, TimeUnit.SECONDS).assertError(IllegalStateException.class);
+		assertThat(resultCount.get()).isEqualTo(0);
+		
+		//Checking that the failure isn't cached, and the next request runs a new query
+		Single<Optional<UserCacheHelper.UserInfo>> retrySingle = resolver.resolve(context, testAddress);
+		assertThat(retrySingle).isNotSameInstanceAs(single);
+		assertThat(retrySingle.timeout(timeoutSeconds, TimeUnit.SECONDS).blockingGet().get()).isEqualTo(testUser);
+		assertThat(queryCount.get()).isEqualTo(2);
+		assertThat(resultCount.get()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,102 @@
+import android.provider.ContactsContract;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import me.tagavari.airmessage.data.ContactIndex;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@SmallTest
+public class ContactIndexTest {
+	private static final int contactCount = 5000;
+	
+	@Test
+	public void testSnapshotRoundTrip() throws IOException {
+		//Creating a snapshot with an email address and a phone number for each contact
+		List<ContactIndex.Entry> entries = new ArrayList<>();
+		for(int i = 0; i < contactCount; i++) {
+			entries.add(new ContactIndex.Entry(i, "lookup" + i, i % 10 == 0 ? null : "Contact " + i, 1000 + i, ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE, "contact" + i + "@example.com", null, ContactsContract.CommonDataKinds.Email.TYPE_HOME, null));
+			entries.add(new ContactIndex.Entry(i, "lookup" + i, i % 10 == 0 ? null : "Contact " + i, 1000 + i, ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE, "(555) 000-" + i, "+1555000" + i, null, "Custom"));
+		}
+		ContactIndex.Snapshot snapshot = new ContactIndex.Snapshot(1000, entries);
+		
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try(DataOutputStream dataOutputStream = new DataOutputStream(outputStream)) {
+			snapshot.write(dataOutputStream);
+		}
+		
+		//Reading the snapshot back, as is done when the app starts
+		ContactIndex.Snapshot readSnapshot;
+		try(DataInputStream dataInputStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+			readSnapshot = ContactIndex.Snapshot.read(dataInputStream);
+		}
+		
+		assertThat(readSnapshot).isNotNull();
+		assertThat(readSnapshot.getSyncTime()).isEqualTo(1000L);
+		assertThat(readSnapshot.getEntries()).isEqualTo(entries);
+		
+		//Finding contacts by address
+		assertThat(readSnapshot.findAddress("contact42@example.com").getContactID()).isEqualTo(42L);
+		assertThat(readSnapshot.findAddress("+155500042").getContactID()).isEqualTo(42L);
+		assertThat(readSnapshot.findAddress("unknown@example.com")).isNull();
+	}
+	
+	@Test
+	public void testApplyChanges() {
+		ContactIndex.Snapshot snapshot = new ContactIndex.Snapshot(1000, Arrays.asList(
+				createEntry(1, "Alex", "alex@example.com"),
+				createEntry(2, "Sam", "sam@example.com"),
+				createEntry(3, "Taylor", "taylor@example.com")
+		));
+		
+		//Updating one contact, deleting another, and adding a new one
+		ContactIndex.Snapshot updatedSnapshot = snapshot.applyChanges(2000, Arrays.asList(1L, 4L), Collections.singletonList(2L), Arrays.asList(
+				createEntry(1, "Alex", "alex@example.org"),
+				createEntry(4, "Blake", "blake@example.com")
+		));
+		
+		//Checking that only the changed contacts were replaced, and that the entries are still sorted by name
+		assertThat(updatedSnapshot.getSyncTime()).isEqualTo(2000L);
+		assertThat(updatedSnapshot.getEntries()).containsExactly(
+				createEntry(1, "Alex", "alex@example.org"),
+				createEntry(4, "Blake", "blake@example.com"),
+				createEntry(3, "Taylor", "taylor@example.com")
+		).inOrder();
+		assertThat(updatedSnapshot.findAddress("alex@example.com")).isNull();
+		assertThat(updatedSnapshot.findAddress("sam@example.com")).isNull();
+	}
+	
+	@Test
+	public void testSyncAction() {
+		List<ContactIndex.Entry> entries = Collections.singletonList(createEntry(1, "Alex", "alex@example.com"));
+		ContactIndex.Snapshot savedSnapshot = new ContactIndex.Snapshot(1000, entries);
+		
+		//Notifying listeners when the first sync after loading from disk finds changes
+		ContactIndex.Snapshot changedSnapshot = new ContactIndex.Snapshot(2000, Collections.singletonList(createEntry(1, "Alex", "alex@example.org")));
+		assertThat(ContactIndex.getSyncAction(savedSnapshot, changedSnapshot, 1000)).isEqualTo(ContactIndex.syncActionNotify);
+		
+		//Not saving or notifying for an unchanged snapshot
+		ContactIndex.Snapshot unchangedSnapshot = new ContactIndex.Snapshot(2000, entries);
+		assertThat(ContactIndex.getSyncAction(savedSnapshot, unchangedSnapshot, 1000)).isEqualTo(ContactIndex.syncActionNone);
+		
+		//Saving an unchanged snapshot once the saved sync time is old enough
+		ContactIndex.Snapshot laterSnapshot = new ContactIndex.Snapshot(1000 + ContactIndex.syncTimeSaveInterval, entries);
+		assertThat(ContactIndex.getSyncAction(savedSnapshot, laterSnapshot, 1000)).isEqualTo(ContactIndex.syncActionSave);
+	}
+	
+	private static ContactIndex.Entry createEntry(long contactID, String contactName, String address) {
+		return new ContactIndex.Entry(contactID, "lookup" + contactID, contactName, 1000, ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE, address, null, ContactsContract.CommonDataKinds.Email.TYPE_HOME, null);
+	}
+}
@@ -0,0 +1,141 @@
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import me.tagavari.airmessage.activity.Messaging;
+import me.tagavari.airmessage.data.DatabaseManager;
+import me.tagavari.airmessage.enums.ConversationItemType;
+import me.tagavari.airmessage.enums.ConversationState;
+import me.tagavari.airmessage.enums.ServiceHandler;
+import me.tagavari.airmessage.messaging.ConversationItem;
+import me.tagavari.airmessage.messaging.MessageInfo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@SmallTest
+public class ConversationLazyLoaderTest {
+	private static final int messageCount = 100;
+	
+	private SQLiteDatabase database;
+	private int queryCount = 0;
+	private long conversationID;
+	private final long[] messageIDs = new long[messageCount];
+	
+	@Before
+	public void createDatabase() {
+		//Creating a database that counts the queries run against it
+		database = SQLiteDatabase.create((db, masterQuery, editTable, query) -> {
+			queryCount++;
+			return new SQLiteCursor(masterQuery, editTable, query);
+		});
+		DatabaseManager.getInstance().onCreate(database);
+		
+		//Adding a conversation
+		ContentValues contentValues = new ContentValues();
+		contentValues.put("state", ConversationState.ready);
+		contentValues.put("service_handler", ServiceHandler.appleBridge);
+		conversationID = database.insert("conversations", null, contentValues);
+		
+		//Adding messages, each with an attachment and a tapback on that attachment
+		for(int i = 0; i < messageCount; i++) {
+			contentValues.clear();
+			contentValues.put("chat", conversationID);
+			contentValues.put("item_type", ConversationItemType.message);
+			contentValues.put("date", i);
+			contentValues.put("message_text", "Message " + i);
+			contentValues.put("sort_id_linked", i);
+			contentValues.put("sort_id_linked_offset", 0);
+			long messageID = database.insert("messages", null, contentValues);
+			messageIDs[i] = messageID;
+			
+			contentValues.clear();
+			contentValues.put("message", messageID);
+			contentValues.put("type", "image/png");
+			contentValues.put("name", "image" + i + ".png");
+			contentValues.put("sort", 0);
+			database.insert("attachments", null, contentValues);
+			
+			contentValues.clear();
+			contentValues.put("message", messageID);
+			contentValues.put("message_index", 1);
+			contentValues.put("code", 0);
+			database.insert("tapback", null, contentValues);
+		}
+	}
+	
+	@After
+	public void closeDatabase() {
+		database.close();
+	}
+	
+	@Test
+	public void testChunkQueryCount() {
+		Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+		DatabaseManager.ConversationLazyLoader lazyLoader = new DatabaseManager.ConversationLazyLoader(DatabaseManager.getInstance(), database, conversationID, ServiceHandler.appleBridge);
+		
+		for(int chunk = 0; chunk < messageCount / Messaging.messageChunkSize; chunk++) {
+			queryCount = 0;
+			List<ConversationItem> items = lazyLoader.loadNextChunk(context);
+			
+			//The page itself, then attachments, stickers and tapbacks should each be loaded with a single query for the whole chunk
+			assertThat(queryCount).isAtMost(4);
+			assertThat(items).hasSize(Messaging.messageChunkSize);
+			
+			for(ConversationItem item : items) {
+				MessageInfo messageInfo = (MessageInfo) item;
+				assertThat(messageInfo.getAttachments()).hasSize(1);
+				assertThat(messageInfo.getComponentAt(1).getTapbacks()).hasSize(1);
+			}
+		}
+		
+		//Checking that the conversation is exhausted
+		assertThat(lazyLoader.loadNextChunk(context)).isEmpty();
+	}
+	
+	@Test
+	public void testPagingOrder() {
+		Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+		DatabaseManager.ConversationLazyLoader lazyLoader = new DatabaseManager.ConversationLazyLoader(DatabaseManager.getInstance(), database, conversationID, ServiceHandler.appleBridge);
+		
+		//Each page should directly precede the previous one
+		int nextIndex = messageCount;
+		List<ConversationItem> items;
+		while(!(items = lazyLoader.loadNextChunk(context)).isEmpty()) {
+			for(int i = items.size() - 1; i >= 0; i--) {
+				assertThat(items.get(i).getLocalID()).isEqualTo(messageIDs[--nextIndex]);
+			}
+		}
+		assertThat(nextIndex).isEqualTo(0);
+	}
+	
+	@Test
+	public void testLoadAroundAnchor() {
+		Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+		DatabaseManager.ConversationLazyLoader lazyLoader = new DatabaseManager.ConversationLazyLoader(DatabaseManager.getInstance(), database, conversationID, ServiceHandler.appleBridge);
+		
+		//Loading around the middle of the conversation
+		int anchorIndex = messageCount / 2;
+		List<ConversationItem> items = lazyLoader.loadChunkAround(context, messageIDs[anchorIndex]);
+		int firstIndex = anchorIndex - Messaging.messageChunkSize + 1;
+		for(int i = 0; i < items.size(); i++) {
+			assertThat(items.get(i).getLocalID()).isEqualTo(messageIDs[firstIndex + i]);
+		}
+		int lastIndex = firstIndex + items.size() - 1;
+		
+		//Loading in both directions from the anchor
+		List<ConversationItem> olderItems = lazyLoader.loadNextChunk(context);
+		assertThat(olderItems.get(olderItems.size() - 1).getLocalID()).isEqualTo(messageIDs[firstIndex - 1]);
+		List<ConversationItem> newerItems = lazyLoader.loadNewerChunk(context);
+		assertThat(newerItems.get(0).getLocalID()).isEqualTo(messageIDs[lastIndex + 1]);
+	}
+}
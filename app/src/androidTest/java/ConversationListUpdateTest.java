@@ -0,0 +1,200 @@
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import kotlin.Pair;
+import me.tagavari.airmessage.enums.ConversationState;
+import me.tagavari.airmessage.enums.ServiceHandler;
+import me.tagavari.airmessage.enums.ServiceType;
+import me.tagavari.airmessage.helper.ConversationHelper;
+import me.tagavari.airmessage.messaging.ChatCreateAction;
+import me.tagavari.airmessage.messaging.ConversationInfo;
+import me.tagavari.airmessage.messaging.ConversationPreview;
+import me.tagavari.airmessage.util.ConversationListUpdater;
+import me.tagavari.airmessage.util.ReplaceInsertResult;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@SmallTest
+public class ConversationListUpdateTest {
+	private static final int conversationCount = 2000;
+	private static final int activeConversationCount = 50;
+	private static final int messageCount = 200;
+	
+	private List<ConversationInfo> conversationList;
+	private final List<String> notifications = new ArrayList<>();
+	private ConversationListUpdater updater;
+	
+	@Before
+	public void createList() {
+		//Creating a list of conversations, sorted from newest to oldest
+		conversationList = new ArrayList<>();
+		for(int i = 0; i < conversationCount; i++) {
+			conversationList.add(createConversation(i, conversationCount - i));
+		}
+		
+		//Recording the notifications sent to the adapter
+		RecyclerView.Adapter<RecyclerView.ViewHolder> adapter = new ListAdapter(conversationList);
+		adapter.registerAdapterDataObserver(new RecordingObserver(notifications));
+		updater = new ConversationListUpdater(conversationList, adapter);
+	}
+	
+	@Test
+	public void testIncomingMessageReorder() {
+		//Replaying incoming messages across the active conversations
+		Random random = new Random(0);
+		for(int i = 0; i < messageCount; i++) {
+			long conversationID = (long) random.nextInt(activeConversationCount) * (conversationCount / activeConversationCount);
+			int conversationIndex = indexOfID(conversationID);
+			
+			notifications.clear();
+			updater.applyMessageUpdate(createMessageUpdate(conversationList.get(conversationIndex), conversationCount + i + 1));
+			
+			//Checking that the conversation moved to the top, and that only its row was updated
+			assertThat(conversationList.get(0).getLocalID()).isEqualTo(conversationID);
+			if(conversationIndex == 0) {
+				assertThat(notifications).containsExactly("change 0 1 " + ConversationListUpdater.payloadPreview);
+			} else {
+				assertThat(notifications).containsExactly("move " + conversationIndex + " 0", "change 0 1 " + ConversationListUpdater.payloadPreview).inOrder();
+			}
+		}
+		
+		//Checking that moving individual conversations kept the list sorted
+		List<ConversationInfo> sortedList = new ArrayList<>(conversationList);
+		sortedList.sort(ConversationHelper.conversationComparator);
+		assertThat(conversationList).containsExactlyElementsIn(sortedList).inOrder();
+	}
+	
+	@Test
+	public void testMessageUpdateMatchesByID() {
+		//Sending an update with a copy of a conversation, as is emitted after the conversation is loaded from the database
+		ConversationInfo conversationCopy = conversationList.get(10).clone();
+		updater.applyMessageUpdate(createMessageUpdate(conversationCopy, conversationCount + 1));
+		
+		//Checking that the listed conversation was updated
+		assertThat(conversationList.get(0).getLocalID()).isEqualTo(10L);
+		assertThat(conversationList.get(0).getMessagePreview().getDate()).isEqualTo(conversationCount + 1L);
+		assertThat(notifications).containsExactly("move 10 0", "change 0 1 " + ConversationListUpdater.payloadPreview).inOrder();
+	}
+	
+	@Test
+	public void testMessageUpdateIgnored() {
+		//Ignoring conversations that aren't in the list
+		updater.applyMessageUpdate(createMessageUpdate(createConversation(conversationCount, 0), conversationCount + 1));
+		
+		//Ignoring messages older than the conversation's preview
+		updater.applyMessageUpdate(createMessageUpdate(conversationList.get(10), 1));
+		
+		assertThat(notifications).isEmpty();
+		assertThat(conversationList.get(10).getLocalID()).isEqualTo(10L);
+	}
+	
+	@Test
+	public void testResortWithoutMove() {
+		//Updating the newest conversation's preview, which keeps it at the top
+		ConversationInfo conversationInfo = conversationList.get(0);
+		conversationInfo.setMessagePreview(new ConversationPreview.ChatCreation(conversationCount + 1));
+		
+		assertThat(updater.resortConversation(conversationInfo, 0)).isEqualTo(0);
+		assertThat(notifications).isEmpty();
+	}
+	
+	@Test
+	public void testTimeUpdate() {
+		updater.notifyTimeChanged();
+		
+		//Checking that only the time payload is sent, so rows don't rebind their titles and icons
+		assertThat(notifications).containsExactly("change 0 " + conversationCount + " " + ConversationListUpdater.payloadTime);
+	}
+	
+	private int indexOfID(long localID) {
+		for(int i = 0; i < conversationList.size(); i++) {
+			if(conversationList.get(i).getLocalID() == localID) return i;
+		}
+		return -1;
+	}
+	
+	private static ConversationInfo createConversation(long localID, long previewDate) {
+		ConversationInfo conversationInfo = new ConversationInfo(localID, "guid" + localID, -1, ConversationState.ready, ServiceHandler.appleBridge, ServiceType.appleMessage, new ArrayList<>(), null);
+		conversationInfo.setMessagePreview(new ConversationPreview.ChatCreation(previewDate));
+		return conversationInfo;
+	}
+	
+	private static List<Pair<ConversationInfo, List<ReplaceInsertResult>>> createMessageUpdate(ConversationInfo conversationInfo, long date) {
+		return Collections.singletonList(new Pair<>(conversationInfo, Collections.singletonList(ReplaceInsertResult.createAddition(new ChatCreateAction(-1, date)))));
+	}
+	
+	/**
+	 * An adapter that only reports the size of its list
+	 */
+	private static class ListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+		private final List<?> list;
+		
+		ListAdapter(List<?> list) {
+			this.list = list;
+		}
+		
+		@NonNull
+		@Override
+		public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public int getItemCount() {
+			return list.size();
+		}
+	}
+	
+	/**
+	 * Records each notification as a string
+	 */
+	private static class RecordingObserver extends RecyclerView.AdapterDataObserver {
+		private final List<String> notifications;
+		
+		RecordingObserver(List<String> notifications) {
+			this.notifications = notifications;
+		}
+		
+		@Override
+		public void onChanged() {
+			notifications.add("changed");
+		}
+		
+		@Override
+		public void onItemRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+			notifications.add("change " + positionStart + " " + itemCount + " " + payload);
+		}
+		
+		@Override
+		public void onItemRangeInserted(int positionStart, int itemCount) {
+			notifications.add("insert " + positionStart + " " + itemCount);
+		}
+		
+		@Override
+		public void onItemRangeRemoved(int positionStart, int itemCount) {
+			notifications.add("remove " + positionStart + " " + itemCount);
+		}
+		
+		@Override
+		public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+			notifications.add("move " + fromPosition + " " + toPosition);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+import android.provider.ContactsContract;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import me.tagavari.airmessage.data.ContactIndex;
+import me.tagavari.airmessage.util.ConversationSearchIndex;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@SmallTest
+public class ConversationSearchIndexTest {
+	private static final int conversationCount = 2000;
+	
+	@Test
+	public void testSearchRanking() {
+		List<ConversationSearchIndex.Source> sources = Arrays.asList(
+				new ConversationSearchIndex.Source(0, null, Collections.singletonList("alexander@example.com")),
+				new ConversationSearchIndex.Source(1, "Weekend plans", Collections.singletonList("+15550001")),
+				new ConversationSearchIndex.Source(2, "Café Alex", Collections.singletonList("+15550002")),
+				new ConversationSearchIndex.Source(3, null, Collections.singletonList("+15550003")),
+				new ConversationSearchIndex.Source(4, "Plans with alex", Collections.singletonList("+15550004"))
+		);
+		ContactIndex.Snapshot contacts = new ContactIndex.Snapshot(0, Collections.singletonList(
+				new ContactIndex.Entry(3, "lookup3", "Alex Smith", 0, ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE, "(555) 000-3", "+15550003", null, null)
+		));
+		
+		ConversationSearchIndex searchIndex = new ConversationSearchIndex();
+		
+		//Matching titles first, then contact names, then addresses
+		assertThat(searchIndex.search(sources, "alex", contacts)).containsExactly(2, 4, 3, 0).inOrder();
+		
+		//Matching regardless of case and accents
+		assertThat(searchIndex.search(sources, "CAFE", contacts)).containsExactly(2);
+		
+		//Preferring matches at the start of a word
+		assertThat(searchIndex.search(sources, "lan", contacts)).containsExactly(1, 4).inOrder();
+		assertThat(searchIndex.search(sources, "plan", contacts)).containsExactly(1, 4).inOrder();
+		
+		//Skipping contact names when contacts aren't available
+		assertThat(searchIndex.search(sources, "smith", null)).isEmpty();
+		assertThat(searchIndex.search(sources, "smith", contacts)).containsExactly(3);
+	}
+	
+	@Test
+	public void testSearchUpdates() {
+		ConversationSearchIndex searchIndex = new ConversationSearchIndex();
+		
+		//Creating a large set of conversations
+		List<ConversationSearchIndex.Source> sources = new ArrayList<>();
+		for(int i = 0; i < conversationCount; i++) {
+			sources.add(new ConversationSearchIndex.Source(i, "Conversation " + i, Collections.singletonList("+1555000" + i)));
+		}
+		assertThat(searchIndex.search(sources, "conversation 1999", null)).containsExactly(1999);
+		
+		//Renaming a conversation
+		sources.set(1999, new ConversationSearchIndex.Source(1999, "Renamed", Collections.singletonList("+15550001999")));
+		assertThat(searchIndex.search(sources, "conversation 1999", null)).isEmpty();
+		assertThat(searchIndex.search(sources, "renamed", null)).containsExactly(1999);
+		
+		//Removing a conversation
+		sources.remove(1999);
+		assertThat(searchIndex.search(sources, "renamed", null)).isEmpty();
+	}
+}
@@ -0,0 +1,61 @@
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.tagavari.airmessage.data.DatabaseManager;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+@SmallTest
+public class DatabaseIndexTest {
+	//Frequently run statements that should be served by an index
+	private static final String[] indexedQueries = new String[]{
+			"SELECT * FROM messages WHERE chat = ? ORDER BY messages.sort_id_linked DESC, messages.sort_id_linked_offset DESC LIMIT 24",
+			"SELECT * FROM messages WHERE chat = ? ORDER BY messages.sort_id_linked ASC, messages.sort_id_linked_offset ASC",
+			"SELECT _id FROM messages WHERE guid = ?",
+			"SELECT sort_id_linked, sort_id_linked_offset FROM messages WHERE sort_id_linked = (SELECT MAX(sort_id_linked) FROM messages) ORDER BY sort_id_linked_offset DESC LIMIT 1",
+			"SELECT * FROM attachments WHERE message = ? ORDER BY sort ASC",
+			"SELECT _id FROM attachments WHERE guid = ?",
+			"SELECT * FROM sticker WHERE message = ?",
+			"SELECT * FROM tapback WHERE message = ?",
+			"SELECT _id FROM tapback WHERE message = ? AND message_index = ? AND sender = ?",
+			"SELECT * FROM users WHERE chat = ?",
+			"SELECT * FROM draft_files WHERE chat = ?",
+			"SELECT * FROM conversation_preview WHERE chat = ?",
+			"UPDATE conversation_preview SET attachment_count = 0 WHERE message = ?"
+	};
+	
+	private SQLiteDatabase database;
+	
+	@Before
+	public void createDatabase() {
+		database = SQLiteDatabase.create(null);
+		DatabaseManager.getInstance().onCreate(database);
+	}
+	
+	@After
+	public void closeDatabase() {
+		database.close();
+	}
+	
+	@Test
+	public void testQueriesUseIndices() {
+		for(String query : indexedQueries) {
+			String[] args = new String[(int) query.chars().filter(c -> c == '?').count()];
+			for(int i = 0; i < args.length; i++) args[i] = "1";
+			
+			try(Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + query, args)) {
+				int indexDetail = cursor.getColumnIndexOrThrow("detail");
+				while(cursor.moveToNext()) {
+					String detail = cursor.getString(indexDetail);
+					assertWithMessage(query).that(detail.startsWith("SCAN") && !detail.contains("USING")).isFalse();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.filters.MediumTest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import me.tagavari.airmessage.data.DatabaseManager;
+import me.tagavari.airmessage.enums.ConversationItemType;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@MediumTest
+public class DatabaseWriteTest {
+	private static final long testChatID = -100; //A conversation ID that is never assigned, so test messages don't show up in the app
+	private static final int batchSize = 500;
+	private static final int batchCount = 20;
+	private static final int readerCount = 4;
+	
+	@After
+	public void deleteMessages() {
+		DatabaseManager.getInstance().getWritableDatabase().delete("messages", "chat = ?", new String[]{Long.toString(testChatID)});
+	}
+	
+	@Test
+	public void testReadsDuringOpenWrite() throws Exception {
+		CountDownLatch insertedLatch = new CountDownLatch(1);
+		CountDownLatch releaseLatch = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(readerCount + 1);
+		
+		try {
+			//Inserting a batch of messages on the write thread, and holding the transaction open
+			Future<?> writeFuture = executor.submit(() -> DatabaseManager.getInstance().runWrite(() -> {
+				insertMessages(batchSize);
+				insertedLatch.countDown();
+				return releaseLatch.await(30, TimeUnit.SECONDS);
+			}));
+			assertThat(insertedLatch.await(10, TimeUnit.SECONDS)).isTrue();
+			
+			//Checking that readers aren't blocked by the open transaction, and don't see its uncommitted messages
+			List<Future<Long>> readFutures = new ArrayList<>();
+			for(int i = 0; i < readerCount; i++) readFutures.add(executor.submit(this::countMessages));
+			for(Future<Long> future : readFutures) assertThat(future.get(10, TimeUnit.SECONDS)).isEqualTo(0L);
+			
+			//Committing the transaction
+			releaseLatch.countDown();
+			writeFuture.get(10, TimeUnit.SECONDS);
+			assertThat(countMessages()).isEqualTo((long) batchSize);
+		} finally {
+			releaseLatch.countDown();
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testReadsDuringBulkIngest() throws Exception {
+		AtomicBoolean ingestRunning = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(readerCount);
+		
+		try {
+			//Reading continuously while messages are written
+			List<Future<Integer>> readFutures = new ArrayList<>();
+			for(int i = 0; i < readerCount; i++) {
+				readFutures.add(executor.submit(() -> {
+					int readCount = 0;
+					long lastCount = 0;
+					while(ingestRunning.get()) {
+						//Checking that each batch is committed all at once, and that counts never go backwards
+						long count = countMessages();
+						assertThat(count % batchSize).isEqualTo(0L);
+						assertThat(count).isAtLeast(lastCount);
+						lastCount = count;
+						readCount++;
+					}
+					return readCount;
+				}));
+			}
+			
+			//Writing the messages in batches
+			try {
+				for(int i = 0; i < batchCount; i++) {
+					DatabaseManager.getInstance().runWrite(() -> {
+						insertMessages(batchSize);
+						return null;
+					});
+				}
+			} finally {
+				ingestRunning.set(false);
+			}
+			
+			//Checking that every reader made progress while the messages were written
+			for(Future<Integer> future : readFutures) assertThat(future.get(10, TimeUnit.SECONDS)).isGreaterThan(0);
+			assertThat(countMessages()).isEqualTo((long) batchSize * batchCount);
+		} finally {
+			ingestRunning.set(false);
+			executor.shutdownNow();
+		}
+	}
+	
+	private void insertMessages(int count) {
+		SQLiteDatabase database = DatabaseManager.getInstance().getWritableDatabase();
+		for(int i = 0; i < count; i++) {
+			ContentValues contentValues = new ContentValues();
+			contentValues.put("chat", testChatID);
+			contentValues.put("item_type", ConversationItemType.message);
+			contentValues.put("date", System.currentTimeMillis());
+			contentValues.put("message_text", "Message " + i);
+			database.insert("messages", null, contentValues);
+		}
+	}
+	
+	private long countMessages() {
+		return DatabaseUtils.queryNumEntries(DatabaseManager.getInstance().getReadableDatabase(), "messages", "chat = ?", new String[]{Long.toString(testChatID)});
+	}
+}
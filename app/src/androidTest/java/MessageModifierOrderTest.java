@@ -0,0 +1,62 @@
+import android.content.Context;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import me.tagavari.airmessage.common.Blocks;
+import me.tagavari.airmessage.connection.task.MessageUpdateTask;
+import me.tagavari.airmessage.connection.task.ModifierUpdateTask;
+import me.tagavari.airmessage.data.DatabaseManager;
+import me.tagavari.airmessage.enums.MessageSendErrorCode;
+import me.tagavari.airmessage.enums.MessageState;
+import me.tagavari.airmessage.enums.ServiceHandler;
+import me.tagavari.airmessage.enums.TapbackType;
+import me.tagavari.airmessage.messaging.ConversationInfo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@SmallTest
+public class MessageModifierOrderTest {
+	private final String chatGUID = "test-chat-" + UUID.randomUUID();
+	private Context context;
+	
+	@Before
+	public void getContext() {
+		context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+	}
+	
+	@After
+	public void deleteConversation() {
+		ConversationInfo conversationInfo = DatabaseManager.getInstance().fetchConversationInfo(context, chatGUID, ServiceHandler.appleBridge);
+		if(conversationInfo != null) DatabaseManager.getInstance().deleteConversation(context, conversationInfo.getLocalID());
+	}
+	
+	@Test
+	public void testModifierAfterMessageInSameBurst() {
+		String messageGUID = "test-message-" + UUID.randomUUID();
+		long date = System.currentTimeMillis();
+		Blocks.MessageInfo messageInfo = new Blocks.MessageInfo(-1, messageGUID, chatGUID, date, "Hello", null, "+15550001", Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), null, MessageState.sent, MessageSendErrorCode.none, -1);
+		
+		//Queuing the message write without waiting for it, as ConnectionManager does when a burst is flushed
+		MessageUpdateTask.create(context, Collections.emptyList(), Collections.singletonList(messageInfo), false).subscribe();
+		
+		//Queuing modifiers for the message straight away
+		ModifierUpdateTask.Response response = ModifierUpdateTask.create(context, Arrays.asList(
+				new Blocks.TapbackModifierInfo(messageGUID, 0, "+15550002", true, TapbackType.heart),
+				new Blocks.ActivityStatusModifierInfo(messageGUID, MessageState.read, date)
+		)).blockingGet();
+		
+		//Checking that the modifiers found the message
+		assertThat(response.getTapbackModifiers()).hasSize(1);
+		assertThat(response.getActivityStatusUpdates()).hasSize(1);
+		assertThat(response.getActivityStatusUpdates().get(0).getMessageID()).isEqualTo(DatabaseManager.getInstance().messageGUIDToLocalID(messageGUID));
+	}
+}
@@ -0,0 +1,228 @@
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import me.tagavari.airmessage.data.DatabaseManager;
+import me.tagavari.airmessage.enums.ConversationItemType;
+import me.tagavari.airmessage.messaging.MessageSearchResult;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@SmallTest
+public class MessageSearchTest {
+	private static final long testChatID = -100; //A conversation ID that is never assigned, so test messages don't show up in the app
+	
+	private SQLiteDatabase database;
+	private boolean backfillChanged = false;
+	private Long savedBackfillID = null;
+	
+	@Before
+	public void createDatabase() {
+		database = SQLiteDatabase.create(null);
+		DatabaseManager.getInstance().onCreate(database);
+	}
+	
+	@After
+	public void closeDatabase() {
+		database.close();
+		
+		//Removing test messages from the app's database
+		SQLiteDatabase appDatabase = DatabaseManager.getInstance().getWritableDatabase();
+		appDatabase.delete("messages", "chat = ?", new String[]{Long.toString(testChatID)});
+		
+		//Restoring the app's backfill position
+		if(backfillChanged) {
+			if(savedBackfillID == null) appDatabase.delete("message_search_backfill", null, null);
+			else setBackfillID(appDatabase, savedBackfillID);
+		}
+	}
+	
+	@Test
+	public void testIndexFollowsMessages() {
+		long messageID = addMessage("Are we still on for dinner?");
+		addMessage("See you tomorrow");
+		assertThat(search("dinner")).containsExactly(messageID);
+		assertThat(search("din*")).containsExactly(messageID);
+		
+		//Editing the message
+		ContentValues contentValues = new ContentValues();
+		contentValues.put("message_text", "Are we still on for lunch?");
+		database.update("messages", contentValues, "_id = ?", new String[]{Long.toString(messageID)});
+		assertThat(search("dinner")).isEmpty();
+		assertThat(search("lunch")).containsExactly(messageID);
+		
+		//Deleting the message
+		database.delete("messages", "_id = ?", new String[]{Long.toString(messageID)});
+		assertThat(search("lunch")).isEmpty();
+	}
+	
+	@Test
+	public void testMatchQuery() {
+		//Quoting each word, and matching the last word as a prefix
+		assertThat(DatabaseManager.getMessageSearchMatchQuery("dinner plans")).isEqualTo("\"dinner\" \"plans*\"");
+		assertThat(DatabaseManager.getMessageSearchMatchQuery("  dinner  ")).isEqualTo("\"dinner*\"");
+		
+		//Treating quotes and query operators as plain text
+		assertThat(DatabaseManager.getMessageSearchMatchQuery("\"see you\" soon")).isEqualTo("\"see\" \"you\" \"soon*\"");
+		assertThat(DatabaseManager.getMessageSearchMatchQuery("cats OR dogs")).isEqualTo("\"cats\" \"OR\" \"dogs*\"");
+		assertThat(DatabaseManager.getMessageSearchMatchQuery("pie -apple")).isEqualTo("\"pie\" \"-apple*\"");
+		
+		//Ignoring queries without any words
+		assertThat(DatabaseManager.getMessageSearchMatchQuery("")).isNull();
+		assertThat(DatabaseManager.getMessageSearchMatchQuery(" \" - ")).isNull();
+	}
+	
+	@Test
+	public void testSearchMessages() {
+		SQLiteDatabase appDatabase = DatabaseManager.getInstance().getWritableDatabase();
+		String token = createToken();
+		long date = System.currentTimeMillis();
+		long applePieID = addMessage(appDatabase, testChatID, date, token + " apple pie");
+		long appleID = addMessage(appDatabase, testChatID, date, token + " apple");
+		addMessage(appDatabase, testChatID, date, token + " banana");
+		
+		//Matching every word, with the last word as a prefix
+		assertThat(searchMessageIDs(token + " app", null, 10)).containsExactly(appleID, applePieID).inOrder();
+		assertThat(searchMessageIDs(token + " pie", null, 10)).containsExactly(applePieID);
+		assertThat(searchMessageIDs(token + " cherry", null, 10)).isEmpty();
+		
+		//Returning the conversation and a snippet of each message
+		MessageSearchResult result = DatabaseManager.getInstance().searchMessages(token + " pie", null, 10).get(0);
+		assertThat(result.getConversationID()).isEqualTo(testChatID);
+		assertThat(result.getDate()).isEqualTo(date);
+		assertThat(result.getSnippet()).contains("apple pie");
+		
+		//Handling quotes and operators in the search text
+		assertThat(searchMessageIDs("\"" + token + " apple", null, 10)).containsExactly(appleID, applePieID).inOrder();
+		assertThat(searchMessageIDs(token + " OR banana", null, 10)).isEmpty();
+		assertThat(searchMessageIDs("\" -", null, 10)).isEmpty();
+	}
+	
+	@Test
+	public void testSearchPaging() {
+		SQLiteDatabase appDatabase = DatabaseManager.getInstance().getWritableDatabase();
+		String token = createToken();
+		long date = System.currentTimeMillis();
+		
+		//Adding messages, including several with the same date
+		long id0 = addMessage(appDatabase, testChatID, date, token);
+		long id1 = addMessage(appDatabase, testChatID, date, token);
+		long id2 = addMessage(appDatabase, testChatID, date - 2, token);
+		long id3 = addMessage(appDatabase, testChatID, date, token);
+		long id4 = addMessage(appDatabase, testChatID, date - 1, token);
+		
+		//Loading the results a page at a time
+		List<Long> results = new ArrayList<>();
+		MessageSearchResult after = null;
+		while(true) {
+			List<MessageSearchResult> page = DatabaseManager.getInstance().searchMessages(token, after, 2);
+			if(page.isEmpty()) break;
+			assertThat(page.size()).isAtMost(2);
+			
+			for(MessageSearchResult result : page) results.add(result.getMessageID());
+			after = page.get(page.size() - 1);
+		}
+		
+		//Checking that every message was loaded once, newest first
+		assertThat(results).containsExactly(id3, id1, id0, id4, id2).inOrder();
+	}
+	
+	@Test
+	public void testBackfillResumes() throws Exception {
+		DatabaseManager databaseManager = DatabaseManager.getInstance();
+		SQLiteDatabase appDatabase = databaseManager.getWritableDatabase();
+		String token = createToken();
+		long date = System.currentTimeMillis();
+		
+		//Adding messages, and removing them from the index as if they were added before it existed
+		List<Long> messageIDs = new ArrayList<>();
+		for(int i = 0; i < 5; i++) messageIDs.add(addMessage(appDatabase, testChatID, date, token + " " + i));
+		long firstID = messageIDs.get(0);
+		appDatabase.delete("message_search", "docid >= ? AND docid <= ?", new String[]{Long.toString(firstID), Long.toString(messageIDs.get(4))});
+		assertThat(searchMessageIDs(token, null, 10)).isEmpty();
+		
+		//Starting the backfill from before the messages, keeping any backfill that is already in progress
+		savedBackfillID = getBackfillID(appDatabase);
+		backfillChanged = true;
+		setBackfillID(appDatabase, firstID - 1);
+		assertThat(databaseManager.isMessageSearchBackfillPending()).isTrue();
+		
+		//Indexing the first batch
+		assertThat(databaseManager.runWrite(() -> databaseManager.backfillMessageSearchIndex(2))).isEqualTo(2);
+		assertThat(searchMessageIDs(token, null, 10)).containsExactly(messageIDs.get(1), messageIDs.get(0)).inOrder();
+		assertThat(databaseManager.getMessageSearchBackfillRemaining()).isEqualTo(3L);
+		
+		//Resuming from the saved position until the backfill is complete
+		finishBackfill(databaseManager);
+		assertThat(databaseManager.isMessageSearchBackfillPending()).isFalse();
+		assertThat(searchMessageIDs(token, null, 10)).containsExactly(messageIDs.get(4), messageIDs.get(3), messageIDs.get(2), messageIDs.get(1), messageIDs.get(0)).inOrder();
+		
+		//Checking that running the backfill again doesn't index messages twice
+		setBackfillID(appDatabase, firstID - 1);
+		finishBackfill(databaseManager);
+		assertThat(searchMessageIDs(token, null, 10)).hasSize(5);
+	}
+	
+	private long addMessage(String text) {
+		return addMessage(database, 1, System.currentTimeMillis(), text);
+	}
+	
+	private static long addMessage(SQLiteDatabase database, long chatID, long date, String text) {
+		ContentValues contentValues = new ContentValues();
+		contentValues.put("chat", chatID);
+		contentValues.put("item_type", ConversationItemType.message);
+		contentValues.put("date", date);
+		contentValues.put("message_text", text);
+		return database.insert("messages", null, contentValues);
+	}
+	
+	/**
+	 * Creates a word that won't match any other messages
+	 */
+	private static String createToken() {
+		return "test" + UUID.randomUUID().toString().replace("-", "");
+	}
+	
+	private static List<Long> searchMessageIDs(String query, MessageSearchResult after, int limit) {
+		return DatabaseManager.getInstance().searchMessages(query, after, limit).stream().map(MessageSearchResult::getMessageID).collect(Collectors.toList());
+	}
+	
+	private static void finishBackfill(DatabaseManager databaseManager) throws Exception {
+		int batchCount;
+		do {
+			batchCount = databaseManager.runWrite(() -> databaseManager.backfillMessageSearchIndex(2));
+		} while(batchCount > 0);
+	}
+	
+	private static Long getBackfillID(SQLiteDatabase database) {
+		try(Cursor cursor = database.rawQuery("SELECT last_id FROM message_search_backfill", null)) {
+			return cursor.moveToNext() ? cursor.getLong(0) : null;
+		}
+	}
+	
+	private static void setBackfillID(SQLiteDatabase database, long lastID) {
+		database.delete("message_search_backfill", null, null);
+		ContentValues contentValues = new ContentValues();
+		contentValues.put("last_id", lastID);
+		database.insert("message_search_backfill", null, contentValues);
+	}
+	
+	private List<Long> search(String matchQuery) {
+		List<Long> results = new ArrayList<>();
+		try(Cursor cursor = database.rawQuery("SELECT docid FROM message_search WHERE message_search MATCH ?", new String[]{matchQuery})) {
+			while(cursor.moveToNext()) results.add(cursor.getLong(0));
+		}
+		return results;
+	}
+}
@@ -0,0 +1,84 @@
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import me.tagavari.airmessage.data.DatabaseManager;
+import me.tagavari.airmessage.enums.MessageSendErrorCode;
+import me.tagavari.airmessage.enums.MessageState;
+import me.tagavari.airmessage.messaging.MessageInfo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@SmallTest
+public class MessageSortIDTest {
+	//Conversation IDs that are never assigned, so test messages don't show up in the app
+	private static final long testChatID = -100;
+	private static final long otherTestChatID = -101;
+	
+	private Context context;
+	
+	@Before
+	public void getContext() {
+		context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+	}
+	
+	@After
+	public void deleteMessages() {
+		DatabaseManager.getInstance().deleteConversation(context, testChatID);
+		DatabaseManager.getInstance().deleteConversation(context, otherTestChatID);
+	}
+	
+	@Test
+	public void testAllocateAfterDelete() throws Exception {
+		//Adding a linked message newer than any other, followed by unlinked messages
+		long serverID = (1L << 50) + System.currentTimeMillis();
+		addMessage(testChatID, serverID);
+		long unlinkedID1 = addMessage(testChatID, -1);
+		long unlinkedID2 = addMessage(testChatID, -1);
+		
+		//Checking that the unlinked messages are placed after the linked message, in order
+		assertThat(getSortID(unlinkedID1)).isEqualTo(new long[]{serverID, 1});
+		assertThat(getSortID(unlinkedID2)).isEqualTo(new long[]{serverID, 2});
+		
+		//Deleting the messages
+		DatabaseManager.getInstance().deleteConversation(context, testChatID);
+		
+		//Checking that the next unlinked message is placed after the latest remaining message, as if the sort ID were loaded from the database
+		long[] expectedSortID = getLatestSortID();
+		long unlinkedID3 = addMessage(otherTestChatID, -1);
+		assertThat(getSortID(unlinkedID3)).isEqualTo(new long[]{expectedSortID[0], expectedSortID[1] + 1});
+	}
+	
+	private static long addMessage(long chatID, long serverID) throws Exception {
+		MessageInfo messageInfo = new MessageInfo(-1, serverID, null, System.currentTimeMillis(), null, "Message", null, new ArrayList<>(), null, false, -1, MessageState.sent, MessageSendErrorCode.none, false, null);
+		return DatabaseManager.getInstance().runWrite(() -> DatabaseManager.getInstance().addConversationItem(chatID, messageInfo, true));
+	}
+	
+	private static long[] getSortID(long messageID) {
+		SQLiteDatabase database = DatabaseManager.getInstance().getReadableDatabase();
+		try(Cursor cursor = database.rawQuery("SELECT sort_id_linked, sort_id_linked_offset FROM messages WHERE _id = ?", new String[]{Long.toString(messageID)})) {
+			cursor.moveToNext();
+			return new long[]{cursor.getLong(0), cursor.getLong(1)};
+		}
+	}
+	
+	/**
+	 * Gets the sort ID of the latest message in the database, or -1, -1 if there are no messages
+	 */
+	private static long[] getLatestSortID() {
+		SQLiteDatabase database = DatabaseManager.getInstance().getReadableDatabase();
+		try(Cursor cursor = database.rawQuery("SELECT sort_id_linked, sort_id_linked_offset FROM messages ORDER BY sort_id_linked DESC, sort_id_linked_offset DESC LIMIT 1", null)) {
+			if(!cursor.moveToNext()) return new long[]{-1, -1};
+			return new long[]{cursor.getLong(0), cursor.getLong(1)};
+		}
+	}
+}
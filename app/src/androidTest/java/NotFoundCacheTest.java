@@ -0,0 +1,34 @@
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+
+import me.tagavari.airmessage.data.NotFoundCache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@SmallTest
+public class NotFoundCacheTest {
+	private static final long ttlMillis = 1000;
+	
+	@Test
+	public void testExpiry() {
+		long[] time = {0};
+		NotFoundCache cache = new NotFoundCache(10, ttlMillis, () -> time[0]);
+		
+		cache.put("alex@example.com");
+		assertThat(cache.contains("alex@example.com")).isTrue();
+		assertThat(cache.contains("sam@example.com")).isFalse();
+		
+		//Checking that the address is remembered until the TTL passes
+		time[0] = ttlMillis - 1;
+		assertThat(cache.contains("alex@example.com")).isTrue();
+		time[0] = ttlMillis;
+		assertThat(cache.contains("alex@example.com")).isFalse();
+		
+		//Checking that the address can be remembered again
+		cache.put("alex@example.com");
+		assertThat(cache.contains("alex@example.com")).isTrue();
+		cache.clear();
+		assertThat(cache.contains("alex@example.com")).isFalse();
+	}
+}
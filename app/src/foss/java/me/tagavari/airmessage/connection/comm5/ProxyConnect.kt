@@ -9,7 +9,10 @@ class ProxyConnect: DataProxy<EncryptedPacket>() {
 	
 	override fun stop(code: Int) = Unit
 	
-	override fun send(packet: EncryptedPacket) = false
+	override fun send(packet: EncryptedPacket): Boolean {
+		packet.release()
+		return false
+	}
 	
 	override fun isUsingFallback() = false
 	
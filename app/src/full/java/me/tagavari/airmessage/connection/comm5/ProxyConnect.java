@@ -106,7 +106,7 @@ class ProxyConnect extends DataProxy<EncryptedPacket> {
 		}
 		
 		if(password != null) {
-			encryptionManager = new EncryptionAES(password);
+			encryptionManager = new EncryptionAES(password, true);
 		}
 		
 		//Checking if the user is logged in
@@ -224,26 +224,31 @@ class ProxyConnect extends DataProxy<EncryptedPacket> {
 	
 	@Override
 	public boolean send(EncryptedPacket packet) {
-		if(!client.isOpen()) return false;
+		//Releasing the packet if the connection is closed
+		if(!client.isOpen()) {
+			packet.release();
+			return false;
+		}
 		
 		//Check for encryption support
 		boolean serverSupportsEncryption = isServerRequestsEncryption();
 		boolean clientSupportsEncryption = encryptionManager != null;
 		if(serverSupportsEncryption && !clientSupportsEncryption) {
 			Log.e(TAG, "The server requests encryption, but no password is set");
+			packet.release();
 			return false;
 		}
 		
 		//Encrypting the content if requested and a password is set
-		byte[] packetData = packet.getData();
 		boolean packetWantsEncryption = packet.getEncrypt();
 		boolean isEncrypted = packetWantsEncryption && serverSupportsEncryption;
 		
 		Single.fromCallable(() -> {
 			if(isEncrypted) {
-				return encryptionManager.encrypt(packetData);
+				ByteBuffer packetData = packet.getDataBuffer();
+				return encryptionManager.encrypt(packetData.array(), packetData.arrayOffset() + packetData.position(), packetData.remaining());
 			} else {
-				return packetData;
+				return packet.getData();
 			}
 		})
 			.subscribeOn(encryptionScheduler)
@@ -260,8 +265,10 @@ class ProxyConnect extends DataProxy<EncryptedPacket> {
 				
 				//Sending the data
 				client.send(byteBuffer.array());
+				packet.notifyWritten();
 			})
 			.doOnError(Throwable::printStackTrace)
+			.doFinally(packet::release)
 			.onErrorComplete()
 			.subscribe();
 		
@@ -7,7 +7,6 @@ import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.database.ContentObserver;
 import android.os.Build;
-import android.os.Handler;
 import android.os.Process;
 import android.provider.ContactsContract;
 import android.webkit.WebView;
@@ -19,6 +18,7 @@ import androidx.work.OneTimeWorkRequest;
 import androidx.work.OutOfQuotaPolicy;
 import androidx.work.WorkManager;
 
+import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import java.io.PrintWriter;
@@ -28,6 +28,8 @@ import java.security.Security;
 
 import me.tagavari.airmessage.activity.CrashReport;
 import me.tagavari.airmessage.activity.Preferences;
+import me.tagavari.airmessage.data.ContactIconCache;
+import me.tagavari.airmessage.data.ContactIndex;
 import me.tagavari.airmessage.data.DatabaseManager;
 import me.tagavari.airmessage.data.SharedPreferencesManager;
 import me.tagavari.airmessage.data.UserCacheHelper;
@@ -39,6 +41,8 @@ import me.tagavari.airmessage.redux.ReduxEmitterNetwork;
 import me.tagavari.airmessage.redux.ReduxReceiverFaceTime;
 import me.tagavari.airmessage.redux.ReduxReceiverNotification;
 import me.tagavari.airmessage.redux.ReduxReceiverShortcut;
+import me.tagavari.airmessage.worker.AttachmentVerifyWorker;
+import me.tagavari.airmessage.worker.MessageSearchIndexWorker;
 import me.tagavari.airmessage.worker.SystemMessageCleanupWorker;
 
 public class MainApplication extends Application {
@@ -49,10 +53,9 @@ public class MainApplication extends Application {
 		@Override
 		public void onChange(boolean selfChange) {
 			super.onChange(selfChange);
-			new Handler(getMainLooper()).post(() -> {
-				userCacheHelper.clearCache();
-				LocalBroadcastManager.getInstance(MainApplication.this).sendBroadcast(new Intent(localBCContactUpdate));
-			});
+			
+			//Reading the changes into the contact index (listeners are notified once it has been updated)
+			contactIndex.requestSync();
 		}
 		
 		@Override
@@ -62,7 +65,9 @@ public class MainApplication extends Application {
 	};
 	
 	//Creating the cache helpers
+	private ContactIndex contactIndex;
 	private UserCacheHelper userCacheHelper;
+	private ContactIconCache contactIconCache;
 	
 	//Creating the references
 	private static WeakReference<MainApplication> instanceReference = null;
@@ -108,7 +113,15 @@ public class MainApplication extends Application {
 		}
 		
 		//Creating the cache helpers
-		userCacheHelper = new UserCacheHelper();
+		contactIndex = new ContactIndex(this);
+		userCacheHelper = new UserCacheHelper(contactIndex);
+		contactIconCache = new ContactIconCache(this);
+		
+		//Refreshing contact information when the user's contacts change
+		contactIndex.getUpdates().observeOn(AndroidSchedulers.mainThread()).subscribe(snapshot -> {
+			userCacheHelper.clearCache();
+			LocalBroadcastManager.getInstance(this).sendBroadcast(new Intent(localBCContactUpdate));
+		});
 		
 		//Creating the database manager
 		DatabaseManager.createInstance(this);
@@ -155,6 +168,12 @@ public class MainApplication extends Application {
 			}
 		}
 		
+		//Indexing any messages from before the search index was added (this finishes immediately if there is nothing left to index)
+		WorkManager.getInstance(this).enqueueUniqueWork(MessageSearchIndexWorker.workName, ExistingWorkPolicy.KEEP, OneTimeWorkRequest.from(MessageSearchIndexWorker.class));
+		
+		//Checking in the background that the attachment files that are marked as present still exist
+		WorkManager.getInstance(this).enqueueUniqueWork(AttachmentVerifyWorker.workName, ExistingWorkPolicy.KEEP, OneTimeWorkRequest.from(AttachmentVerifyWorker.class));
+		
 		//Registering BouncyCastle as a security provider on older versions
 		//Otherwise, Android provides everything we need by default, so we'll just stick with that
 		if(Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
@@ -175,12 +194,23 @@ public class MainApplication extends Application {
 		return instanceReference == null ? null : instanceReference.get();
 	}
 	
+	public ContactIndex getContactIndex() {
+		return contactIndex;
+	}
+	
 	public UserCacheHelper getUserCacheHelper() {
 		return userCacheHelper;
 	}
 	
+	public ContactIconCache getContactIconCache() {
+		return contactIconCache;
+	}
+	
 	public void registerContactsListener() {
 		getContentResolver().registerContentObserver(ContactsContract.Contacts.CONTENT_URI, true, contentObserver);
+		
+		//Loading the contact index, and reading any changes made while the app wasn't running
+		contactIndex.requestSync();
 	}
 	
 	public static boolean canUseContacts(Context context) {
@@ -195,6 +225,7 @@ public class MainApplication extends Application {
 		if(level >= TRIM_MEMORY_BACKGROUND) {
 			//Clearing the caches
 			userCacheHelper.clearCache();
+			contactIconCache.clearMemory();
 		}
 	}
 }
\ No newline at end of file
@@ -38,12 +38,13 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.progressindicator.LinearProgressIndicator;
 import com.google.android.material.snackbar.Snackbar;
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
-import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.core.SingleEmitter;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
 import io.reactivex.rxjava3.disposables.Disposable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subjects.PublishSubject;
 import kotlin.Pair;
 import me.tagavari.airmessage.BuildConfig;
 import me.tagavari.airmessage.MainApplication;
@@ -54,12 +55,14 @@ import me.tagavari.airmessage.connection.ConnectionManager;
 import me.tagavari.airmessage.constants.ColorConstants;
 import me.tagavari.airmessage.constants.ExternalLinkConstants;
 import me.tagavari.airmessage.constants.VersionConstants;
+import me.tagavari.airmessage.data.ContactIndex;
 import me.tagavari.airmessage.data.DatabaseManager;
 import me.tagavari.airmessage.data.SharedPreferencesManager;
 import me.tagavari.airmessage.enums.ConnectionErrorCode;
 import me.tagavari.airmessage.enums.ConnectionState;
 import me.tagavari.airmessage.enums.ProxyType;
 import me.tagavari.airmessage.enums.ServiceHandler;
+import me.tagavari.airmessage.flavor.CrashlyticsBridge;
 import me.tagavari.airmessage.flavor.PlaySecurityBridge;
 import me.tagavari.airmessage.fragment.FragmentSync;
 import me.tagavari.airmessage.helper.*;
@@ -68,6 +71,8 @@ import me.tagavari.airmessage.messaging.viewbinder.VBConversation;
 import me.tagavari.airmessage.messaging.viewholder.VHConversationDetailed;
 import me.tagavari.airmessage.redux.*;
 import me.tagavari.airmessage.task.ConversationActionTask;
+import me.tagavari.airmessage.util.ConversationListUpdater;
+import me.tagavari.airmessage.util.ConversationSearchIndex;
 import me.tagavari.airmessage.util.DisposableViewHolder;
 import me.tagavari.airmessage.util.ReplaceInsertResult;
 import me.tagavari.airmessage.util.ServerUpdateData;
@@ -75,8 +80,8 @@ import me.tagavari.airmessage.util.TransferredConversation;
 
 import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.ObjIntConsumer;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -92,12 +97,13 @@ public class Conversations extends AppCompatCompositeActivity {
 	
 	private static final int activityResultPlayServices = 0;
 	
-	private static final int conversationPayloadPreview = 0;
-	private static final int conversationPayloadTitle = 1;
-	private static final int conversationPayloadMember = 2;
-	private static final int conversationPayloadMuted = 3;
-	private static final int conversationPayloadUnread = 4;
-	private static final int conversationPayloadSelection = 5;
+	private static final int conversationPayloadPreview = ConversationListUpdater.payloadPreview;
+	private static final int conversationPayloadTitle = ConversationListUpdater.payloadTitle;
+	private static final int conversationPayloadMember = ConversationListUpdater.payloadMember;
+	private static final int conversationPayloadMuted = ConversationListUpdater.payloadMuted;
+	private static final int conversationPayloadUnread = ConversationListUpdater.payloadUnread;
+	private static final int conversationPayloadSelection = ConversationListUpdater.payloadSelection;
+	private static final int conversationPayloadTime = ConversationListUpdater.payloadTime;
 	
 	private static final long timeUpdateHandlerDelay = 60 * 1000; //1 minute
 	
@@ -139,6 +145,7 @@ public class Conversations extends AppCompatCompositeActivity {
 	private ViewGroup viewGroupError;
 	
 	private ConversationRecyclerAdapter conversationRecyclerAdapter = null;
+	private ConversationListUpdater conversationListUpdater = null;
 	private SearchRecyclerAdapter searchRecyclerAdapter = null;
 	
 	private ActionMode actionMode = null;
@@ -171,7 +178,7 @@ public class Conversations extends AppCompatCompositeActivity {
 		@Override
 		public void run() {
 			if(viewModel.stateLD.getValue() == ActivityViewModel.stateReady && conversationRecyclerAdapter != null) {
-				conversationRecyclerAdapter.notifyItemRangeChanged(0, viewModel.conversationList.size(), conversationPayloadPreview);
+				conversationListUpdater.notifyTimeChanged();
 			}
 			
 			//Running again
@@ -499,7 +506,8 @@ public class Conversations extends AppCompatCompositeActivity {
 				
 				//Updating the display
 				if(viewModel.stateLD.getValue() == ActivityViewModel.stateReady) {
-					conversationRecyclerAdapter.notifyDataSetChanged();
+					conversationRecyclerAdapter.notifyItemRangeChanged(0, viewModel.conversationList.size(), conversationPayloadTitle);
+					conversationRecyclerAdapter.notifyItemRangeChanged(0, viewModel.conversationList.size(), conversationPayloadMember);
 				}
 				
 				//Starting the update listener
@@ -668,6 +676,7 @@ public class Conversations extends AppCompatCompositeActivity {
 		if(state == ActivityViewModel.stateReady) {
 			//Setting the list adapters
 			viewMainList.setAdapter(conversationRecyclerAdapter = new ConversationRecyclerAdapter(viewModel.conversationList));
+			conversationListUpdater = new ConversationListUpdater(viewModel.conversationList, conversationRecyclerAdapter);
 			viewSearchList.setAdapter(searchRecyclerAdapter = new SearchRecyclerAdapter(viewModel.conversationList));
 			
 			//Restoring the action mode
@@ -873,7 +882,7 @@ public class Conversations extends AppCompatCompositeActivity {
 		if(viewModel.stateLD.getValue() != ActivityViewModel.stateReady || conversationRecyclerAdapter == null) return;
 		
 		if(event instanceof ReduxEventMessaging.Message) {
-			updateMessageListMessageUpdate((ReduxEventMessaging.Message) event);
+			conversationListUpdater.applyMessageUpdate(((ReduxEventMessaging.Message) event).getConversationItems());
 		} else if(event instanceof ReduxEventMessaging.ConversationUpdate) {
 			updateMessageListConversationUpdate((ReduxEventMessaging.ConversationUpdate) event);
 		} else if(event instanceof ReduxEventMessaging.ConversationUnread) {
@@ -976,13 +985,7 @@ public class Conversations extends AppCompatCompositeActivity {
 				conversationRecyclerAdapter.notifyItemChanged(i, conversationPayloadPreview);
 				
 				//Re-sorting the conversation
-				int conversationIndex = viewModel.conversationList.indexOf(conversation);
-				int insertionIndex = ConversationHelper.findReinsertionIndex(conversation, viewModel.conversationList);
-				if(conversationIndex != insertionIndex) {
-					viewModel.conversationList.remove(conversation);
-					viewModel.conversationList.add(insertionIndex, conversation);
-					conversationRecyclerAdapter.notifyItemMoved(conversationIndex, insertionIndex);
-				}
+				conversationListUpdater.resortConversation(conversation, i);
 			});
 		} else if(event instanceof ReduxEventMessaging.ConversationDraftFileUpdate) {
 			ReduxEventMessaging.ConversationDraftFileUpdate draftFileEvent = (ReduxEventMessaging.ConversationDraftFileUpdate) event;
@@ -995,13 +998,7 @@ public class Conversations extends AppCompatCompositeActivity {
 				conversationRecyclerAdapter.notifyItemChanged(i, conversationPayloadPreview);
 				
 				//Re-sorting the conversation
-				int conversationIndex = viewModel.conversationList.indexOf(conversation);
-				int insertionIndex = ConversationHelper.findReinsertionIndex(conversation, viewModel.conversationList);
-				if(conversationIndex != insertionIndex) {
-					viewModel.conversationList.remove(conversation);
-					viewModel.conversationList.add(insertionIndex, conversation);
-					conversationRecyclerAdapter.notifyItemMoved(conversationIndex, insertionIndex);
-				}
+				conversationListUpdater.resortConversation(conversation, i);
 			});
 		} else if(event instanceof ReduxEventMessaging.ConversationDraftFileClear) {
 			ReduxEventMessaging.ConversationDraftFileClear draftClearEvent = (ReduxEventMessaging.ConversationDraftFileClear) event;
@@ -1013,13 +1010,7 @@ public class Conversations extends AppCompatCompositeActivity {
 				conversationRecyclerAdapter.notifyItemChanged(i, conversationPayloadPreview);
 				
 				//Re-sorting the conversation
-				int conversationIndex = viewModel.conversationList.indexOf(conversation);
-				int insertionIndex = ConversationHelper.findReinsertionIndex(conversation, viewModel.conversationList);
-				if(conversationIndex != insertionIndex) {
-					viewModel.conversationList.remove(conversation);
-					viewModel.conversationList.add(insertionIndex, conversation);
-					conversationRecyclerAdapter.notifyItemMoved(conversationIndex, insertionIndex);
-				}
+				conversationListUpdater.resortConversation(conversation, i);
 			});
 		}
 		
@@ -1040,51 +1031,6 @@ public class Conversations extends AppCompatCompositeActivity {
 				.ifPresent(i -> consumer.accept(viewModel.conversationList.get(i), i));
 	}
 	
-	/**
-	 * Updates a conversation's preview, position in the list, title, and members based on a collection of new items
-	 * @param conversation The conversation to update
-	 * @param newMessages The collection of new messages under this conversation
-	 */
-	private void updateConversationDetails(ConversationInfo conversation, Collection<ConversationItem> newMessages) {
-		//Getting the conversation preview
-		ConversationPreview conversationPreview = ConversationPreviewHelper.latestItemToPreview(newMessages);
-		if(conversationPreview == null) return;
-		
-		//Checking if this new preview can replace the old one
-		if((conversation.getMessagePreview() == null || conversation.getMessagePreview().getDate() < conversationPreview.getDate())) {
-			//Updating the message preview
-			conversation.setMessagePreview(conversationPreview);
-			
-			//Re-sorting the conversation
-			int conversationIndex = viewModel.conversationList.indexOf(conversation);
-			int insertionIndex = ConversationHelper.findReinsertionIndex(conversation, viewModel.conversationList);
-			if(conversationIndex != insertionIndex) {
-				viewModel.conversationList.remove(conversation);
-				viewModel.conversationList.add(insertionIndex, conversation);
-				conversationRecyclerAdapter.notifyItemMoved(conversationIndex, insertionIndex);
-			}
-			
-			//Updating the conversation preview
-			conversationRecyclerAdapter.notifyItemChanged(insertionIndex, conversationPayloadPreview);
-		}
-	}
-	
-	/**
-	 * Updates the message list in response to a message update
-	 */
-	private void updateMessageListMessageUpdate(ReduxEventMessaging.Message event) {
-		List<ConversationInfo> conversationList = viewModel.conversationList;
-		
-		for(Pair<ConversationInfo, List<ReplaceInsertResult>> entry : event.getConversationItems()) {
-			//Finding the existing conversation index
-			ConversationInfo conversationInfo = conversationList.stream().filter(conversation -> entry.getFirst().getLocalID() == conversation.getLocalID()).findAny().orElse(null);
-			if(conversationInfo == null) continue;
-			
-			//Updating the conversation's preview
-			updateConversationDetails(conversationInfo, entry.getSecond().stream().map(ReplaceInsertResult::getTargetItem).collect(Collectors.toList()));
-		}
-	}
-	
 	/**
 	 * Updates the message list in response to a conversation update
 	 */
@@ -1111,7 +1057,7 @@ public class Conversations extends AppCompatCompositeActivity {
 			}
 			
 			//Updating the conversation's preview
-			updateConversationDetails(conversationInfo, conversationItems);
+			conversationListUpdater.updateConversationPreview(conversationInfo, conversationItems);
 		}
 		
 		//Hiding the blank state view
@@ -1540,6 +1486,9 @@ public class Conversations extends AppCompatCompositeActivity {
 						case conversationPayloadSelection:
 							VBConversation.bindSelectionIndicator(holder.itemView, holder.getIconGroup(), holder.getSelectionIndicator(), holder.getSelectionHighlight(), viewModel.actionModeSelections.contains(conversationInfo.getLocalID()), true);
 							break;
+						case conversationPayloadTime:
+							VBConversation.bindPreviewStatus(Conversations.this, holder.getLabelStatus(), conversationInfo.getDynamicPreview());
+							break;
 					}
 				}
 			}
@@ -1580,17 +1529,45 @@ public class Conversations extends AppCompatCompositeActivity {
 		private static final int itemTypeConversation = 0;
 		private static final int itemTypeMessage = 1;
 		
+		private static final long searchDelayMillis = 150; //The amount of time to wait for the user to stop typing before searching
+		
 		//Creating the list values
 		private final List<ConversationInfo> conversationSourceList;
 		
 		private final List<ConversationInfo> conversationFilterList = new ArrayList<>();
 		private final List<MessageInfo> messageFilterList = new ArrayList<>();
 		
-		private Disposable searchTask = null;
+		private final ConversationSearchIndex searchIndex = new ConversationSearchIndex();
+		private final PublishSubject<String> filterTextSubject = PublishSubject.create();
 		
 		SearchRecyclerAdapter(List<ConversationInfo> conversationList) {
 			//Setting the list
 			conversationSourceList = conversationList;
+			
+			//Searching once the user stops typing, keeping the current results until then
+			filterTextSubject.debounce(searchDelayMillis, TimeUnit.MILLISECONDS, AndroidSchedulers.mainThread())
+					.<Pair<List<ConversationInfo>, List<Integer>>>switchMapMaybe(text -> {
+						//Ignoring empty searches, which are cleared immediately
+						if(text.isEmpty()) return Maybe.empty();
+						
+						//Capturing the conversations to search, since the source list may change while the search is running
+						List<ConversationInfo> captureList = new ArrayList<>(conversationSourceList);
+						List<ConversationSearchIndex.Source> searchSources = ConversationSearchIndex.capture(captureList);
+						
+						//Searching in the background
+						return Maybe.fromCallable(() -> new Pair<>(captureList, searchIndex.search(searchSources, text, loadContactSnapshot())))
+								.subscribeOn(Schedulers.computation());
+					})
+					.observeOn(AndroidSchedulers.mainThread())
+					.subscribe((result) -> {
+						//Updating the filter lists
+						conversationFilterList.clear();
+						messageFilterList.clear();
+						for(int index : result.getSecond()) conversationFilterList.add(result.getFirst().get(index));
+						
+						//Updating the list
+						notifyDataSetChanged();
+					}, CrashlyticsBridge::recordException);
 		}
 		
 		private class SubheaderViewHolder extends RecyclerView.ViewHolder {
@@ -1608,71 +1585,34 @@ public class Conversations extends AppCompatCompositeActivity {
 		
 		private String lastFilterText = "";
 		void updateFilterText(String text) {
-			//Cancelling the current subscription
-			if(searchTask != null && !searchTask.isDisposed()) searchTask.dispose();
-			
 			//Setting the last filter text
 			lastFilterText = text;
 			
-			//Clearing the filter lists
-			conversationFilterList.clear();
-			messageFilterList.clear();
-			
-			//Returning if there is no filter text
+			//Clearing the filter lists if there is no filter text
 			if(text.isEmpty()) {
+				conversationFilterList.clear();
+				messageFilterList.clear();
 				notifyDataSetChanged();
-				return;
-			}
-			
-			//Iterating over the conversations
-			List<ConversationInfo> asyncSearchList = new ArrayList<>();
-			conversationLoop:
-			for(ConversationInfo conversationInfo : conversationSourceList) {
-				//Filtering the conversation based on its static name
-				if(conversationInfo.getTitle() != null && searchString(conversationInfo.getTitle(), text)) {
-					conversationFilterList.add(conversationInfo);
-					continue conversationLoop;
-				}
-				
-				//Filtering the conversation based on its members
-				for(MemberInfo member : conversationInfo.getMembers()) {
-					if(searchString(AddressHelper.normalizeAddress(member.getAddress()), text)) {
-						conversationFilterList.add(conversationInfo);
-						continue conversationLoop;
-					}
-					asyncSearchList.add(conversationInfo);
-				}
 			}
 			
-			//Updating the list
-			notifyDataSetChanged();
-			
-			if(!asyncSearchList.isEmpty()) {
-				//Starting a search for member names
-				searchTask = Observable.fromIterable(asyncSearchList).flatMapMaybe(conversation ->
-						Observable.fromIterable(conversation.getMembers())
-								//Map each member to their user info
-								.flatMapSingle(member -> MainApplication.getInstance().getUserCacheHelper().getUserInfo(Conversations.this, member.getAddress()))
-								//Ignore errors
-								.onErrorResumeNext(error -> Observable.empty())
-								//Try to match any member to the search query
-								.any(user -> searchString(user.getContactName(), lastFilterText))
-								//Filter out non-matches
-								.filter(isMatch -> isMatch)
-								//Map back to return the conversation
-								.map(isMatch -> conversation)
-				).subscribe((conversation) -> {
-					//Adding the conversation
-					conversationFilterList.add(conversation);
-					
-					//Updating the list
-					notifyItemInserted(conversationFilterList.size() - 1);
-				});
-			}
+			//Queuing the search (this also cancels any search that is still waiting or running)
+			filterTextSubject.onNext(text);
 		}
 		
-		private boolean searchString(String target, String query) {
-			return Pattern.compile(Pattern.quote(query), Pattern.CASE_INSENSITIVE).matcher(target).find();
+		/**
+		 * Gets the user's contacts to search by name, or NULL if they aren't available
+		 * Should be called on a background thread
+		 */
+		@Nullable
+		private ContactIndex.Snapshot loadContactSnapshot() {
+			if(!MainApplication.canUseContacts(Conversations.this)) return null;
+			
+			try {
+				return MainApplication.getInstance().getContactIndex().getSnapshot().blockingGet();
+			} catch(RuntimeException exception) {
+				CrashlyticsBridge.recordException(exception);
+				return null;
+			}
 		}
 		
 		@NonNull
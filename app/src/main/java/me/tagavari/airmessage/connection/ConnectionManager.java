@@ -91,6 +91,7 @@ import me.tagavari.airmessage.util.ActivityStatusUpdate;
 import me.tagavari.airmessage.util.CompoundErrorDetails;
 import me.tagavari.airmessage.util.ConnectionParams;
 import me.tagavari.airmessage.util.ConversationTarget;
+import me.tagavari.airmessage.util.DataChunk;
 import me.tagavari.airmessage.util.ModifierMetadata;
 import me.tagavari.airmessage.util.RequestSubject;
 import me.tagavari.airmessage.util.ServerUpdateData;
@@ -110,6 +111,9 @@ public class ConnectionManager {
 	
 	private static final long requestTimeoutSeconds = 24;
 	
+	private static final long messageUpdateCoalesceMillis = 150; //The maximum delay added to an incoming message update
+	private static final int messageUpdateCoalesceMaxItems = 500; //The number of items at which a batch of message updates is written immediately
+	
 	private static final String intentActionPing = "me.tagavari.airmessage.connection.ConnectionManager-Ping";
 	private static final String intentActionBackgroundReconnect = "me.tagavari.airmessage.connection.ConnectionManager-BackgroundReconnect";
 	
@@ -119,6 +123,12 @@ public class ConnectionManager {
 	//Handler
 	private final Handler handler = new Handler(Looper.getMainLooper());
 	
+	//Coalescer for message updates that arrive in bursts, such as when the server sends a backlog after reconnecting
+	private final UpdateCoalescer<Blocks.ConversationItem> messageUpdateCoalescer = new UpdateCoalescer<>(handler, messageUpdateCoalesceMillis, messageUpdateCoalesceMaxItems, this::processMessageUpdate);
+	
+	//Coalescer for modifier updates, such as a burst of read receipts in a busy group chat
+	private final UpdateCoalescer<Blocks.ModifierInfo> modifierUpdateCoalescer = new UpdateCoalescer<>(handler, messageUpdateCoalesceMillis, messageUpdateCoalesceMaxItems, this::processModifierUpdate);
+	
 	//Random
 	private final Random random = new Random();
 	
@@ -205,6 +215,10 @@ public class ConnectionManager {
 	 * Cleans up this connection manager
 	 */
 	public void close(Context context) {
+		//Writing any pending message and modifier updates
+		messageUpdateCoalescer.flush();
+		modifierUpdateCoalescer.flush();
+		
 		//Clearing all subscriptions
 		compositeDisposable.clear();
 		
@@ -226,6 +240,46 @@ public class ConnectionManager {
 		return MainApplication.getInstance();
 	}
 	
+	/**
+	 * Writes a batch of incoming conversation items to the database, and emits the resulting events
+	 */
+	private void processMessageUpdate(List<Blocks.ConversationItem> data) {
+		//Loading the foreground conversations (batches are flushed on the main thread)
+		List<Long> foregroundConversations = Messaging.getForegroundConversations();
+		
+		//Writing the items to disk, queuing the write immediately so that it runs before any modifiers received after these items
+		MessageUpdateTask.create(getContext(), foregroundConversations, data, false)
+				.doOnSuccess(response -> {
+					//Emitting any generated events
+					for(ReduxEventMessaging event : response.getEvents()) {
+						ReduxEmitterNetwork.getMessageUpdateSubject().onNext(event);
+					}
+					
+					//Fetching pending conversations
+					addPendingConversations(response.getIncompleteServerConversations());
+				}).subscribe();
+	}
+	
+	/**
+	 * Writes a batch of modifier updates to disk, and emits their updates
+	 */
+	private void processModifierUpdate(List<Blocks.ModifierInfo> data) {
+		//Queuing pending message updates first, so that the messages these modifiers target are written before them
+		//(writes run in the order they are queued on the database's write thread)
+		messageUpdateCoalescer.flush();
+		
+		//Writing modifiers to disk
+		ModifierUpdateTask.create(getContext(), data).doOnSuccess(result -> {
+			//Pushing emitter updates
+			for(ActivityStatusUpdate statusUpdate : result.getActivityStatusUpdates()) {
+				ReduxEmitterNetwork.getMessageUpdateSubject().onNext(new ReduxEventMessaging.MessageState(statusUpdate.getMessageID(), statusUpdate.getMessageState(), statusUpdate.getDateRead()));
+			}
+			for(Pair<StickerInfo, ModifierMetadata> sticker : result.getStickerModifiers()) ReduxEmitterNetwork.getMessageUpdateSubject().onNext(new ReduxEventMessaging.StickerAdd(sticker.getFirst(), sticker.getSecond()));
+			for(Pair<TapbackInfo, ModifierMetadata> tapback : result.getTapbackModifiers()) ReduxEmitterNetwork.getMessageUpdateSubject().onNext(new ReduxEventMessaging.TapbackUpdate(tapback.getFirst(), tapback.getSecond(), true));
+			for(Pair<TapbackInfo, ModifierMetadata> tapback : result.getTapbackRemovals()) ReduxEmitterNetwork.getMessageUpdateSubject().onNext(new ReduxEventMessaging.TapbackUpdate(tapback.getFirst(), tapback.getSecond(), false));
+		}).subscribe();
+	}
+	
 	//Listener values
 	private final CommunicationsManagerListener communicationsManagerListener = new CommunicationsManagerListener() {
 		@Override
@@ -400,22 +454,9 @@ public class ConnectionManager {
 			} else {
 				filteredData = data;
 			}
-			if(filteredData.isEmpty()) return;
 			
-			//Loading the foreground conversations (needs to be done on the main thread)
-			Single.fromCallable(Messaging::getForegroundConversations)
-					.subscribeOn(AndroidSchedulers.mainThread())
-					.flatMap(foregroundConversations -> MessageUpdateTask.create(getContext(), foregroundConversations, filteredData, false))
-					.observeOn(AndroidSchedulers.mainThread())
-					.doOnSuccess(response -> {
-						//Emitting any generated events
-						for(ReduxEventMessaging event : response.getEvents()) {
-							ReduxEmitterNetwork.getMessageUpdateSubject().onNext(event);
-						}
-						
-						//Fetching pending conversations
-						addPendingConversations(response.getIncompleteServerConversations());
-					}).subscribe();
+			//Adding the data to the current batch
+			messageUpdateCoalescer.add(filteredData);
 		}
 		
 		@Override
@@ -571,10 +612,13 @@ public class ConnectionManager {
 		}
 		
 		@Override
-		public void onMassRetrievalFileProgress(short requestID, int responseIndex, String fileGUID, byte[] fileData) {
+		public void onMassRetrievalFileProgress(short requestID, int responseIndex, String fileGUID, DataChunk fileData) {
 			//Getting the request
 			RequestSubject.Publish<ReduxEventMassRetrieval, MassRetrievalRequest> subject = (RequestSubject.Publish<ReduxEventMassRetrieval, MassRetrievalRequest>) idRequestSubjectMap.get(requestID);
-			if(subject == null) return;
+			if(subject == null) {
+				fileData.release();
+				return;
+			}
 			
 			//Writing the data
 			MassRetrievalRequest massRetrievalRequest = subject.getRequestData();
@@ -686,18 +730,9 @@ public class ConnectionManager {
 			} else {
 				filteredData = data;
 			}
-			if(filteredData.isEmpty()) return;
 			
-			//Writing modifiers to disk
-			ModifierUpdateTask.create(getContext(), filteredData).doOnSuccess(result -> {
-				//Pushing emitter updates
-				for(ActivityStatusUpdate statusUpdate : result.getActivityStatusUpdates()) {
-					ReduxEmitterNetwork.getMessageUpdateSubject().onNext(new ReduxEventMessaging.MessageState(statusUpdate.getMessageID(), statusUpdate.getMessageState(), statusUpdate.getDateRead()));
-				}
-				for(Pair<StickerInfo, ModifierMetadata> sticker : result.getStickerModifiers()) ReduxEmitterNetwork.getMessageUpdateSubject().onNext(new ReduxEventMessaging.StickerAdd(sticker.getFirst(), sticker.getSecond()));
-				for(Pair<TapbackInfo, ModifierMetadata> tapback : result.getTapbackModifiers()) ReduxEmitterNetwork.getMessageUpdateSubject().onNext(new ReduxEventMessaging.TapbackUpdate(tapback.getFirst(), tapback.getSecond(), true));
-				for(Pair<TapbackInfo, ModifierMetadata> tapback : result.getTapbackRemovals()) ReduxEmitterNetwork.getMessageUpdateSubject().onNext(new ReduxEventMessaging.TapbackUpdate(tapback.getFirst(), tapback.getSecond(), false));
-			}).subscribe();
+			//Adding the data to the current batch
+			modifierUpdateCoalescer.add(filteredData);
 		}
 		
 		@Override
@@ -721,10 +756,13 @@ public class ConnectionManager {
 		}
 		
 		@Override
-		public void onFileRequestData(short requestID, int responseIndex, byte[] data) {
+		public void onFileRequestData(short requestID, int responseIndex, DataChunk data) {
 			//Getting the request
 			RequestSubject.Publish<ReduxEventAttachmentDownload, FileFetchRequest> subject = (RequestSubject.Publish<ReduxEventAttachmentDownload, FileFetchRequest>) idRequestSubjectMap.get(requestID);
-			if(subject == null) return;
+			if(subject == null) {
+				data.release();
+				return;
+			}
 			
 			//Writing the data
 			FileFetchRequest fileFetchRequest = subject.getRequestData();
@@ -27,6 +27,10 @@ public abstract class DataProxy<Packet> {
 	
 	/**
 	 * Send a packet to the server
+	 * The proxy takes ownership of the packet, and must release it once it is done with it, including when this method returns FALSE.
+	 * Proxies that send {@link me.tagavari.airmessage.connection.comm5.EncryptedPacket}s must also call
+	 * {@link me.tagavari.airmessage.connection.comm5.EncryptedPacket#notifyWritten()} once the packet has been written,
+	 * as callers waiting on their uploads treat packets released without it as failed.
 	 * @param packet The packet to send
 	 * @return TRUE if the packet was successfully queued
 	 */
@@ -0,0 +1,71 @@
+package me.tagavari.airmessage.connection;
+
+import android.os.Handler;
+import androidx.annotation.NonNull;
+import androidx.core.util.Consumer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Collects items that arrive in quick succession, and passes them on in a single batch
+ *
+ * A batch is flushed once the first item in it has waited for the window duration, or once the batch reaches its maximum size,
+ * so no item is delayed by more than the window duration.
+ * This class is not thread-safe, and should only be used from the thread of the handler it is created with.
+ * @param <T> The type of item to collect
+ */
+public class UpdateCoalescer<T> {
+	private final Handler handler;
+	private final long windowMillis;
+	private final int maxItems;
+	private final Consumer<List<T>> flushListener;
+	
+	private final List<T> pendingItems = new ArrayList<>();
+	private final Runnable flushRunnable = this::flush;
+	
+	/**
+	 * Creates a new update coalescer
+	 * @param handler The handler to schedule flushes on
+	 * @param windowMillis The maximum amount of time to hold an item for
+	 * @param maxItems The number of items at which a batch is flushed immediately
+	 * @param flushListener The listener to pass batches to
+	 */
+	public UpdateCoalescer(@NonNull Handler handler, long windowMillis, int maxItems, @NonNull Consumer<List<T>> flushListener) {
+		this.handler = handler;
+		this.windowMillis = windowMillis;
+		this.maxItems = maxItems;
+		this.flushListener = flushListener;
+	}
+	
+	/**
+	 * Adds items to the current batch
+	 */
+	public void add(@NonNull Collection<? extends T> items) {
+		if(items.isEmpty()) return;
+		
+		boolean startBatch = pendingItems.isEmpty();
+		pendingItems.addAll(items);
+		
+		if(pendingItems.size() >= maxItems) {
+			//Flushing the batch immediately if it's full
+			flush();
+		} else if(startBatch) {
+			//Starting the timer for a new batch
+			handler.postDelayed(flushRunnable, windowMillis);
+		}
+	}
+	
+	/**
+	 * Passes on all pending items immediately
+	 */
+	public void flush() {
+		handler.removeCallbacks(flushRunnable);
+		if(pendingItems.isEmpty()) return;
+		
+		List<T> items = new ArrayList<>(pendingItems);
+		pendingItems.clear();
+		flushListener.accept(items);
+	}
+}
@@ -3,38 +3,78 @@ package me.tagavari.airmessage.connection.comm5;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 
+/**
+ * Packs data into a buffer that grows as needed
+ *
+ * Packers returned by {@link #get()} lease their buffer from a shared pool, and return it when closed
+ * or when the buffer is handed off with {@link #toPacket(boolean)}, so each thread can safely use its own packer
+ */
 public class AirPacker implements AutoCloseable {
-	//4 MiB
-	private static final int bufferSize = 4 * 1024 * 1024;
-	//Shared instance for write operations
-	private static AirPacker instance = new AirPacker(ByteBuffer.allocate(bufferSize));
-	
+	//16 KiB
+	private static final int initialBufferSize = 16 * 1024;
+	//Buffers larger than this are not returned to the pool (2 MiB, enough for an attachment chunk)
+	private static final int poolRetainSize = 2 * 1024 * 1024;
+	//50 MB, matching the largest packet we will accept
+	private static final int maxBufferSize = 50 * 1024 * 1024;
+	private static final int poolCapacity = 8;
+	
+	//Pool of buffers for leased packers
+	private static final Deque<ByteBuffer> bufferPool = new ArrayDeque<>(poolCapacity);
+	
+	/**
+	 * Gets a packer with a buffer leased from the shared pool
+	 * Callers should close the packer when they are done with it, so the buffer can be reused
+	 */
 	public static AirPacker get() {
-		return instance;
+		ByteBuffer byteBuffer;
+		synchronized(bufferPool) {
+			byteBuffer = bufferPool.pollFirst();
+		}
+		if(byteBuffer == null) byteBuffer = ByteBuffer.allocate(initialBufferSize);
+		
+		return new AirPacker(byteBuffer, true);
+	}
+	
+	/**
+	 * Returns a buffer to the shared pool
+	 */
+	private static void recycleBuffer(ByteBuffer byteBuffer) {
+		if(byteBuffer.capacity() > poolRetainSize) return;
+		
+		byteBuffer.clear();
+		synchronized(bufferPool) {
+			if(bufferPool.size() < poolCapacity) bufferPool.offerFirst(byteBuffer);
+		}
 	}
 	
-	private final ByteBuffer byteBuffer;
+	private ByteBuffer byteBuffer;
+	private final boolean pooled;
 	
-	private AirPacker(ByteBuffer byteBuffer) {
+	private AirPacker(ByteBuffer byteBuffer, boolean pooled) {
 		this.byteBuffer = byteBuffer;
-		byteBuffer.mark();
+		this.pooled = pooled;
 	}
 	
 	public AirPacker(int capacity) {
-		this(ByteBuffer.allocate(capacity));
+		this(ByteBuffer.allocate(capacity), false);
 	}
 	
 	public void packBoolean(boolean value) throws BufferOverflowException {
+		ensureCapacity(1);
 		byteBuffer.put((byte) (value ? 1 : 0));
 	}
 	
 	public void packShort(short value) throws BufferOverflowException {
+		ensureCapacity(Short.BYTES);
 		byteBuffer.putShort(value);
 	}
 	
 	public void packInt(int value) throws BufferOverflowException {
+		ensureCapacity(Integer.BYTES);
 		byteBuffer.putInt(value);
 	}
 	
@@ -43,10 +83,12 @@ public class AirPacker implements AutoCloseable {
 	}
 	
 	public void packLong(long value) throws BufferOverflowException {
+		ensureCapacity(Long.BYTES);
 		byteBuffer.putLong(value);
 	}
 	
 	public void packDouble(double value) throws BufferOverflowException {
+		ensureCapacity(Double.BYTES);
 		byteBuffer.putDouble(value);
 	}
 	
@@ -69,6 +111,7 @@ public class AirPacker implements AutoCloseable {
 	
 	public void packPayload(byte[] bytes, int length) throws BufferOverflowException {
 		packInt(length);
+		ensureCapacity(length);
 		byteBuffer.put(bytes, 0, length);
 	}
 	
@@ -81,16 +124,62 @@ public class AirPacker implements AutoCloseable {
 		}
 	}
 	
+	/**
+	 * Grows the buffer if there isn't enough space to write the specified number of bytes
+	 * @throws BufferOverflowException If the buffer would exceed the maximum buffer size
+	 */
+	private void ensureCapacity(int length) throws BufferOverflowException {
+		checkOpen();
+		if(byteBuffer.remaining() >= length) return;
+		
+		long requiredSize = (long) byteBuffer.position() + length;
+		if(requiredSize > maxBufferSize) throw new BufferOverflowException();
+		
+		int newSize = (int) Math.min(Math.max((long) byteBuffer.capacity() * 2, requiredSize), maxBufferSize);
+		ByteBuffer newBuffer = ByteBuffer.allocate(newSize);
+		byteBuffer.flip();
+		newBuffer.put(byteBuffer);
+		byteBuffer = newBuffer;
+	}
+	
+	private void checkOpen() {
+		if(byteBuffer == null) throw new IllegalStateException("Packer has already handed off its buffer");
+	}
+	
+	/**
+	 * Copies the packed data to a new array
+	 */
 	public byte[] toByteArray() {
+		checkOpen();
 		return Arrays.copyOfRange(byteBuffer.array(), 0, byteBuffer.position());
 	}
 	
+	/**
+	 * Creates a packet from the packed data without copying it
+	 * The packer hands off its buffer to the packet, and can't be used afterwards
+	 * @param encrypt Whether the packet should be encrypted during transit
+	 */
+	public EncryptedPacket toPacket(boolean encrypt) {
+		checkOpen();
+		ByteBuffer data = byteBuffer;
+		byteBuffer = null;
+		
+		data.flip();
+		return new EncryptedPacket(data, encrypt, pooled ? () -> recycleBuffer(data) : null);
+	}
+	
 	public void reset() {
-		byteBuffer.reset();
+		if(byteBuffer != null) byteBuffer.clear();
 	}
 	
 	@Override
 	public void close() {
-		reset();
+		//Returning the buffer to the pool
+		if(pooled && byteBuffer != null) {
+			recycleBuffer(byteBuffer);
+			byteBuffer = null;
+		} else {
+			reset();
+		}
 	}
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package me.tagavari.airmessage.connection.comm5;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import me.tagavari.airmessage.connection.exception.LargeAllocationException;
 
 import java.nio.BufferUnderflowException;
@@ -12,9 +13,21 @@ public class AirUnpacker {
 	
 	@NonNull
 	private final ByteBuffer byteBuffer;
+	@Nullable
+	private final StringInterner stringInterner;
 	
 	public AirUnpacker(@NonNull ByteBuffer byteBuffer) {
+		this(byteBuffer, null);
+	}
+	
+	/**
+	 * Creates an unpacker that reads repeated strings through a cache
+	 * @param byteBuffer The data to read
+	 * @param stringInterner The cache to use for {@link #unpackInternedString()}, or NULL to decode every string
+	 */
+	public AirUnpacker(@NonNull ByteBuffer byteBuffer, @Nullable StringInterner stringInterner) {
 		this.byteBuffer = byteBuffer;
+		this.stringInterner = stringInterner;
 	}
 	
 	public AirUnpacker(@NonNull byte[] byteArray) {
@@ -58,6 +71,37 @@ public class AirUnpacker {
 		}
 	}
 	
+	/**
+	 * Unpacks a string that is likely to repeat across messages, such as a GUID, address or MIME type
+	 * If this unpacker has a string interner, identical values share a single instance and are only decoded once
+	 */
+	@NonNull
+	public String unpackInternedString() throws BufferUnderflowException, LargeAllocationException {
+		if(stringInterner == null || !byteBuffer.hasArray()) {
+			return unpackString();
+		}
+		
+		int length = unpackInt();
+		if(length >= maxPacketAllocation) {
+			throw new LargeAllocationException(length, maxPacketAllocation);
+		}
+		if(length < 0 || length > byteBuffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		
+		String value = stringInterner.intern(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), length);
+		byteBuffer.position(byteBuffer.position() + length);
+		return value;
+	}
+	
+	public String unpackNullableInternedString() throws BufferUnderflowException, LargeAllocationException {
+		if(unpackBoolean()) {
+			return unpackInternedString();
+		} else {
+			return null;
+		}
+	}
+	
 	@NonNull
 	public byte[] unpackPayload() throws BufferUnderflowException, LargeAllocationException {
 		int length = unpackInt();
@@ -69,6 +113,26 @@ public class AirUnpacker {
 		return data;
 	}
 	
+	/**
+	 * Unpacks a payload as a view into this unpacker's data, without copying it
+	 * The returned buffer is only valid for as long as the data this unpacker reads from
+	 */
+	@NonNull
+	public ByteBuffer unpackPayloadBuffer() throws BufferUnderflowException, LargeAllocationException {
+		int length = unpackInt();
+		if(length >= maxPacketAllocation) {
+			throw new LargeAllocationException(length, maxPacketAllocation);
+		}
+		if(length < 0 || length > byteBuffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		
+		ByteBuffer data = byteBuffer.slice();
+		data.limit(length);
+		byteBuffer.position(byteBuffer.position() + length);
+		return data;
+	}
+	
 	public byte[] unpackNullablePayload() throws BufferUnderflowException, LargeAllocationException {
 		if(unpackBoolean()) {
 			return unpackPayload();
@@ -23,6 +23,7 @@ import me.tagavari.airmessage.util.ConversationTarget;
 import java.io.File;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.Collection;
@@ -121,14 +122,14 @@ public class ClientComm5 extends CommunicationsManager<EncryptedPacket> {
 		runListener(CommunicationsManagerListener::onPacket);
 		
 		//Processing the data
-		if(protocolManager != null) protocolManager.processData(packet.getData(), packet.getEncrypt());
-		else processFloatingData(packet.getData());
+		if(protocolManager != null) protocolManager.processData(packet);
+		else processFloatingData(packet.getDataBuffer());
 	}
 	
 	/**
 	 * Processes any data before a protocol manager is selected, usually to handle version processing
 	 */
-	private void processFloatingData(byte[] data) {
+	private void processFloatingData(ByteBuffer data) {
 		//Unpacking the data
 		AirUnpacker unpacker = new AirUnpacker(data);
 		
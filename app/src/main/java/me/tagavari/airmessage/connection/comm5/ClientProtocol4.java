@@ -22,6 +22,7 @@ import me.tagavari.airmessage.helper.StringHelper;
 import me.tagavari.airmessage.redux.ReduxEventAttachmentUpload;
 import me.tagavari.airmessage.util.CompoundErrorDetails;
 import me.tagavari.airmessage.util.ConversationTarget;
+import me.tagavari.airmessage.util.DataChunk;
 
 import java.io.*;
 import java.nio.BufferOverflowException;
@@ -103,7 +104,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 		try(AirPacker packer = AirPacker.get()) {
 			packer.packInt(header);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), shouldEncrypt));
+			dataProxy.send(packer.toPacket(shouldEncrypt));
 			
 			return true;
 		} catch(BufferOverflowException exception) {
@@ -114,9 +115,10 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 	}
 	
 	@Override
-	void processData(byte[] data, boolean wasEncrypted) {
+	void processData(EncryptedPacket packet) {
 		//Wrapping the data in an unpacker
-		AirUnpacker unpacker = new AirUnpacker(data);
+		AirUnpacker unpacker = new AirUnpacker(packet.getDataBuffer());
+		boolean wasEncrypted = packet.getEncrypt();
 		try {
 			//Reading the message type
 			int messageType = unpacker.unpackInt();
@@ -300,7 +302,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 		//Processing the data
 		communicationsManager.runListener(listener -> {
 			if(requestIndex == 0) listener.onMassRetrievalFileStart(requestID, fileGUID, fileName, downloadFileName, downloadFileType, InflaterOutputStream::new);
-			listener.onMassRetrievalFileProgress(requestID, requestIndex, fileGUID, fileData);
+			listener.onMassRetrievalFileProgress(requestID, requestIndex, fileGUID, DataChunk.wrap(fileData));
 			if(isLast) listener.onMassRetrievalFileComplete(requestID, fileGUID);
 		});
 	}
@@ -346,7 +348,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 		//Forwarding the data to the listeners
 		communicationsManager.runListener(listener -> {
 			if(requestIndex == 0) listener.onFileRequestStart(requestID, downloadFileName, downloadFileType, fileLength, InflaterOutputStream::new);
-			listener.onFileRequestData(requestID, requestIndex, fileData);
+			listener.onFileRequestData(requestID, requestIndex, DataChunk.wrap(fileData));
 			if(isLast) listener.onFileRequestComplete(requestID);
 		});
 	}
@@ -416,7 +418,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 			for(String item : chatMembers) packer.packString(item);
 			packer.packString(service);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -452,7 +454,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 				packer.packBoolean(params.attachmentFilterDLOutside); //Whether or not to download "other" items
 			}
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -510,7 +512,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 				
 				packer.packPayload(secureData);
 				
-				dataProxy.send(new EncryptedPacket(packer.toByteArray(), false));
+				dataProxy.send(packer.toPacket(false));
 				return true;
 			} catch(BufferOverflowException | GeneralSecurityException exception) {
 				exception.printStackTrace();
@@ -528,7 +530,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 				packer.packString(clientName); //Client name
 				packer.packString(platformID); //Platform ID
 				
-				dataProxy.send(new EncryptedPacket(packer.toByteArray(), false));
+				dataProxy.send(packer.toPacket(false));
 				return true;
 			} catch(BufferOverflowException exception) {
 				exception.printStackTrace();
@@ -564,7 +566,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 			
 			packer.packString(message); //Message
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -618,7 +620,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 								}
 							}
 							
-							dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+							dataProxy.send(packer.toPacket(true));
 						}
 						
 						//Incrementing the index
@@ -656,7 +658,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 			packer.packInt(attachmentChunkSize); //Chunk size
 			packer.packString(attachmentGUID); //File GUID
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -676,7 +678,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 			packer.packArrayHeader(conversations.size());
 			for(String item : conversations) packer.packString(item);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -696,7 +698,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 			packer.packLong(timeLower);
 			packer.packLong(timeUpper);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -717,7 +719,7 @@ public class ClientProtocol4 extends ProtocolManager<EncryptedPacket> {
 			packer.packLong(timeLower);
 			packer.packLong(timeUpper);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
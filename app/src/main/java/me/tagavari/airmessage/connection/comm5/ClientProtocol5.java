@@ -18,10 +18,13 @@ import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.zip.DeflaterInputStream;
 import java.util.zip.InflaterOutputStream;
 
 import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
 import me.tagavari.airmessage.MainApplication;
 import me.tagavari.airmessage.common.Blocks;
 import me.tagavari.airmessage.connection.DataProxy;
@@ -47,6 +50,7 @@ import me.tagavari.airmessage.helper.StandardCompressionHelper;
 import me.tagavari.airmessage.helper.StringHelper;
 import me.tagavari.airmessage.redux.ReduxEventAttachmentUpload;
 import me.tagavari.airmessage.util.CompoundErrorDetails;
+import me.tagavari.airmessage.util.DataChunk;
 import me.tagavari.airmessage.util.ConversationTarget;
 import me.tagavari.airmessage.util.ServerUpdateData;
 
@@ -55,6 +59,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 	private static final String platformID = "android";
 
 	private static final int attachmentChunkSize = 1024 * 1024; //1 MB
+	private static final int attachmentChunkWindow = 4; //The maximum number of chunks waiting to be written
 
 	//Top-level net header type values
 	private static final int nhtClose = 0;
@@ -132,6 +137,9 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 
 	private short lastMassRetrievalRequestID = -1;
 
+	//Cache of repeated strings (chat GUIDs, addresses, MIME types) received over this connection
+	private final StringInterner stringInterner = new StringInterner();
+	
 	ClientProtocol5(ClientComm5 communicationsManager, DataProxy<EncryptedPacket> dataProxy) {
 		super(communicationsManager, dataProxy);
 	}
@@ -140,7 +148,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 		try(AirPacker packer = AirPacker.get()) {
 			packer.packInt(header);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), shouldEncrypt));
+			dataProxy.send(packer.toPacket(shouldEncrypt));
 			
 			return true;
 		} catch(BufferOverflowException exception) {
@@ -151,9 +159,10 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 	}
 	
 	@Override
-	void processData(byte[] data, boolean wasEncrypted) {
+	void processData(EncryptedPacket packet) {
 		//Wrapping the data in an unpacker
-		AirUnpacker unpacker = new AirUnpacker(data);
+		AirUnpacker unpacker = new AirUnpacker(packet.getDataBuffer(), stringInterner);
+		boolean wasEncrypted = packet.getEncrypt();
 		try {
 			//Reading the message type
 			int messageType = unpacker.unpackInt();
@@ -163,7 +172,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 				processDataInsecure(messageType, unpacker);
 			} else {
 				//This data is always encrypted
-				processDataSecure(messageType, unpacker);
+				processDataSecure(messageType, unpacker, packet);
 			}
 		} catch(BufferUnderflowException | LargeAllocationException | IllegalArgumentException exception) {
 			exception.printStackTrace();
@@ -207,9 +216,10 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 	 * This method also invokes {@link #processDataInsecure(int, AirUnpacker)} method
 	 * @param messageType The message header
 	 * @param unpacker The message data
+	 * @param packet The packet that contains the message data
 	 * @return TRUE if this message was consumed
 	 */
-	private boolean processDataSecure(int messageType, AirUnpacker unpacker) {
+	private boolean processDataSecure(int messageType, AirUnpacker unpacker, EncryptedPacket packet) {
 		if(processDataInsecure(messageType, unpacker)) return true;
 		
 		switch(messageType) {
@@ -225,7 +235,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 				handleMessageMassRetrievalFinish(unpacker);
 				break;
 			case nhtMassRetrievalFile:
-				handleMessageMassRetrievalFile(unpacker);
+				handleMessageMassRetrievalFile(unpacker, packet);
 				break;
 			case nhtConversationUpdate:
 				handleMessageConversationUpdate(unpacker);
@@ -234,7 +244,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 				handleMessageModifierUpdate(unpacker);
 				break;
 			case nhtAttachmentReq:
-				handleMessageAttachmentRequest(unpacker);
+				handleMessageAttachmentRequest(unpacker, packet);
 				break;
 			case nhtAttachmentReqConfirm:
 				handleMessageAttachmentRequestConfirm(unpacker);
@@ -343,7 +353,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 		communicationsManager.runListener(listener -> listener.onMassRetrievalComplete(lastMassRetrievalRequestID));
 	}
 	
-	private void handleMessageMassRetrievalFile(AirUnpacker unpacker) {
+	private void handleMessageMassRetrievalFile(AirUnpacker unpacker, EncryptedPacket packet) {
 		//Reading the data
 		short requestID = unpacker.unpackShort();
 		int requestIndex = unpacker.unpackInt();
@@ -358,7 +368,10 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 		boolean isLast = unpacker.unpackBoolean();
 		
 		String fileGUID = unpacker.unpackString();
-		byte[] fileData = unpacker.unpackPayload();
+		
+		//Keeping the packet's buffer around until the file data has been written
+		DataChunk fileData = new DataChunk(unpacker.unpackPayloadBuffer(), packet::release);
+		packet.retain();
 		
 		//Processing the data
 		communicationsManager.runListener(listener -> {
@@ -384,7 +397,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 		communicationsManager.runListener(listener -> listener.onModifierUpdate(modifiers));
 	}
 	
-	private void handleMessageAttachmentRequest(AirUnpacker unpacker) {
+	private void handleMessageAttachmentRequest(AirUnpacker unpacker, EncryptedPacket packet) {
 		//Reading the data
 		short requestID = unpacker.unpackShort();
 		int requestIndex = unpacker.unpackInt();
@@ -404,7 +417,9 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 		
 		boolean isLast = unpacker.unpackBoolean();
 		
-		byte[] fileData = unpacker.unpackPayload();
+		//Keeping the packet's buffer around until the file data has been written
+		DataChunk fileData = new DataChunk(unpacker.unpackPayloadBuffer(), packet::release);
+		packet.retain();
 		
 		//Forwarding the data to the listeners
 		communicationsManager.runListener(listener -> {
@@ -603,7 +618,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 			for(String item : chatMembers) packer.packString(item);
 			packer.packString(service);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -639,7 +654,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 				packer.packBoolean(params.attachmentFilterDLOutside); //Whether or not to download "other" items
 			}
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -697,7 +712,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 				
 				packer.packPayload(secureData);
 				
-				dataProxy.send(new EncryptedPacket(packer.toByteArray(), false));
+				dataProxy.send(packer.toPacket(false));
 				return true;
 			} catch(BufferOverflowException | GeneralSecurityException exception) {
 				exception.printStackTrace();
@@ -715,7 +730,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 				packer.packString(clientName); //Client name
 				packer.packString(platformID); //Platform ID
 				
-				dataProxy.send(new EncryptedPacket(packer.toByteArray(), false));
+				dataProxy.send(packer.toPacket(false));
 				return true;
 			} catch(BufferOverflowException exception) {
 				exception.printStackTrace();
@@ -751,7 +766,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 			
 			packer.packString(message); //Message
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -763,20 +778,25 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 	@Override
 	public Observable<ReduxEventAttachmentUpload> sendFile(short requestID, ConversationTarget conversation, File file) {
 		return Observable.create((emitter) -> {
+			//Progress updates are emitted from the writer's thread
+			ObservableEmitter<ReduxEventAttachmentUpload> serialEmitter = emitter.serialize();
+			
+			//Limiting the amount of chunks that can be waiting to be written at once
+			PacketWindow window = new PacketWindow(attachmentChunkWindow);
+			BooleanSupplier isAlive = () -> !emitter.isDisposed() && communicationsManager.isConnectionOpened();
+			
 			try {
 				MessageDigest messageDigest = MessageDigest.getInstance(hashAlgorithm);
 				try(InputStream inputStream = new DeflaterInputStream(new DigestInputStream(new BufferedInputStream(new FileInputStream(file)), messageDigest))) {
 					long totalLength = inputStream.available();
-					long totalBytesRead = 0;
+					AtomicLong totalBytesSent = new AtomicLong();
 					int requestIndex = 0;
 					
 					for(LookAheadStreamIterator iterator = new LookAheadStreamIterator(attachmentChunkSize, inputStream); iterator.hasNext();) {
 						LookAheadStreamIterator.ForwardsStreamData data = iterator.next();
 						
-						//Adding to the total bytes read
-						totalBytesRead += data.getLength();
-						
 						//Uploading the file part
+						EncryptedPacket packet;
 						try(AirPacker packer = AirPacker.get()) {
 							//Message type
 							if(conversation instanceof ConversationTarget.AppleLinked) {
@@ -803,21 +823,32 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 								}
 							}
 							
-							dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+							packet = packer.toPacket(true);
+						}
+						
+						//Waiting for space in the window, and updating the progress once the data has been written
+						int chunkLength = data.getLength();
+						packet = window.acquire(packet, () -> {
+							serialEmitter.onNext(new ReduxEventAttachmentUpload.Progress(totalBytesSent.addAndGet(chunkLength), totalLength));
+						}, isAlive);
+						if(packet == null || !dataProxy.send(packet)) {
+							throw new AMRequestException(MessageSendErrorCode.localNetwork);
 						}
 						
 						//Incrementing the index
 						requestIndex++;
-						
-						//Updating the progress
-						emitter.onNext(new ReduxEventAttachmentUpload.Progress(totalBytesRead, totalLength));
 					}
 				}
 				
+				//Waiting for the remaining chunks to be written
+				if(!window.awaitDrain(isAlive)) {
+					throw new AMRequestException(MessageSendErrorCode.localNetwork);
+				}
+				
 				//Finishing
 				byte[] checksum = messageDigest.digest();
-				emitter.onNext(new ReduxEventAttachmentUpload.Complete(checksum));
-				emitter.onComplete();
+				serialEmitter.onNext(new ReduxEventAttachmentUpload.Complete(checksum));
+				serialEmitter.onComplete();
 			} catch(IOException exception) {
 				exception.printStackTrace();
 				throw new AMRequestException(MessageSendErrorCode.localIO, exception);
@@ -841,7 +872,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 			packer.packInt(attachmentChunkSize); //Chunk size
 			packer.packString(attachmentGUID); //File GUID
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -861,7 +892,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 			packer.packArrayHeader(conversations.size());
 			for(String item : conversations) packer.packString(item);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -881,7 +912,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 			packer.packLong(timeLower);
 			packer.packLong(timeUpper);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -902,7 +933,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 			packer.packLong(timeLower);
 			packer.packLong(timeUpper);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -920,7 +951,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 			packer.packInt(nhtSoftwareUpdateInstall);
 			packer.packInt(updateID);
 
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -937,7 +968,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 		try(AirPacker packer = AirPacker.get()) {
 			packer.packInt(nhtFaceTimeCreateLink);
 
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -958,7 +989,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 				packer.packString(address);
 			}
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -977,7 +1008,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 			packer.packString(caller);
 			packer.packBoolean(accept);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -994,7 +1025,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 		try(AirPacker packer = AirPacker.get()) {
 			packer.packInt(nhtFaceTimeDisconnect);
 			
-			dataProxy.send(new EncryptedPacket(packer.toByteArray(), true));
+			dataProxy.send(packer.toPacket(true));
 			return true;
 		} catch(BufferOverflowException exception) {
 			exception.printStackTrace();
@@ -1178,12 +1209,12 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 			String guid = unpacker.unpackString();
 			boolean available = unpacker.unpackBoolean();
 			if(available) {
-				String service = unpacker.unpackString();
+				String service = unpacker.unpackInternedString();
 				String name = unpacker.unpackNullableString();
 				int memberCount = unpacker.unpackArrayHeader();
 				String[] members = new String[memberCount];
 				if(memberCount > 8192) throw new LargeAllocationException(memberCount, 8192);
-				for(int m = 0; m < members.length; m++) members[m] = unpacker.unpackString();
+				for(int m = 0; m < members.length; m++) members[m] = unpacker.unpackInternedString();
 				list.add(new Blocks.ConversationInfo(guid, service, name, members));
 			} else {
 				list.add(new Blocks.ConversationInfo(guid));
@@ -1211,7 +1242,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 			
 			long serverID = unpacker.unpackLong();
 			String guid = unpacker.unpackString();
-			String chatGuid = unpacker.unpackString();
+			String chatGuid = unpacker.unpackInternedString();
 			long date = unpacker.unpackLong();
 			
 			switch(type) {
@@ -1220,11 +1251,11 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 				case nstItemMessage: {
 					String text = StringHelper.nullifyEmptyString(unpacker.unpackNullableString());
 					String subject = StringHelper.nullifyEmptyString(unpacker.unpackNullableString());
-					String sender = StringHelper.nullifyEmptyString(unpacker.unpackNullableString());
+					String sender = StringHelper.nullifyEmptyString(unpacker.unpackNullableInternedString());
 					List<Blocks.AttachmentInfo> attachments = unpackAttachments(unpacker);
 					List<Blocks.StickerModifierInfo> stickers = (List<Blocks.StickerModifierInfo>) (List<?>) unpackModifiers(unpacker);
 					List<Blocks.TapbackModifierInfo> tapbacks = (List<Blocks.TapbackModifierInfo>) (List<?>) unpackModifiers(unpacker);
-					String sendEffect = StringHelper.nullifyEmptyString(unpacker.unpackNullableString());
+					String sendEffect = StringHelper.nullifyEmptyString(unpacker.unpackNullableInternedString());
 					@MessageState int stateCode = mapNSTMessageState(unpacker.unpackInt());
 					@MessageSendErrorCode int errorCode = mapNRCAppleErrorCode(unpacker.unpackInt());
 					long dateRead = unpacker.unpackLong();
@@ -1233,15 +1264,15 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 					break;
 				}
 				case nstItemGroupAction: {
-					String agent = unpacker.unpackNullableString();
-					String other = unpacker.unpackNullableString();
+					String agent = unpacker.unpackNullableInternedString();
+					String other = unpacker.unpackNullableInternedString();
 					int groupActionType = mapNSTGroupAction(unpacker.unpackInt());
 					
 					list.add(new Blocks.GroupActionInfo(serverID, guid, chatGuid, date, agent, other, groupActionType));
 					break;
 				}
 				case nstItemChatRename: {
-					String agent = unpacker.unpackNullableString();
+					String agent = unpacker.unpackNullableInternedString();
 					String newChatName = StringHelper.nullifyEmptyString(unpacker.unpackNullableString());
 					
 					list.add(new Blocks.ChatRenameActionInfo(serverID, guid, chatGuid, date, agent, newChatName));
@@ -1269,7 +1300,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 		for(int i = 0; i < count; i++) {
 			String guid = unpacker.unpackString();
 			String name = unpacker.unpackString();
-			String type = StringHelper.defaultEmptyString(unpacker.unpackNullableString(), MIMEConstants.defaultMIMEType);
+			String type = StringHelper.defaultEmptyString(unpacker.unpackNullableInternedString(), MIMEConstants.defaultMIMEType);
 			long size = unpacker.unpackLong();
 			byte[] checksum = unpacker.unpackNullablePayload();
 			long sort = unpacker.unpackLong();
@@ -1311,10 +1342,10 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 				case nstModifierSticker: {
 					int messageIndex = unpacker.unpackInt();
 					String fileGuid = unpacker.unpackString();
-					String sender = unpacker.unpackNullableString();
+					String sender = unpacker.unpackNullableInternedString();
 					long date = unpacker.unpackLong();
 					byte[] data = unpacker.unpackPayload();
-					String fileType = unpacker.unpackString();
+					String fileType = unpacker.unpackInternedString();
 					
 					byte[] decompressedData;
 					try {
@@ -1330,7 +1361,7 @@ public class ClientProtocol5 extends ProtocolManager<EncryptedPacket> {
 				}
 				case nstModifierTapback: {
 					int messageIndex = unpacker.unpackInt();
-					String sender = unpacker.unpackNullableString();
+					String sender = unpacker.unpackNullableInternedString();
 					boolean isAddition = unpacker.unpackBoolean();
 					int tapbackType = unpacker.unpackInt();
 					
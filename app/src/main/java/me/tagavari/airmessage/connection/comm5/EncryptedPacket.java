@@ -1,23 +1,94 @@
 package me.tagavari.airmessage.connection.comm5;
 
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * A packet sent or received from a {@link me.tagavari.airmessage.connection.DataProxy}
  * Has an extra 'encrypt' flag that determines if this packet is encrypted during transit
+ *
+ * Packets may be backed by a pooled buffer, which is returned to the pool once the packet is released.
+ * Received packets are released by their proxy once they have been processed,
+ * so consumers that need to hold onto a packet's data for longer should {@link #retain()} it.
+ * Sent packets are released by their proxy whether or not they were written,
+ * and proxies must call {@link #notifyWritten()} once a packet's data has actually been written.
+ * Packets released without being notified are treated as failed sends (see {@link me.tagavari.airmessage.connection.DataProxy#send(Object)}).
  */
 public class EncryptedPacket {
-	private byte[] data;
-	private boolean encrypt;
+	private final ByteBuffer data;
+	private final boolean encrypt;
+	@Nullable private final Runnable releaseCallback;
+	@Nullable private final Runnable writeCallback;
+	private final AtomicInteger referenceCount = new AtomicInteger(1);
 	
 	public EncryptedPacket(byte[] data, boolean encrypt) {
+		this(ByteBuffer.wrap(data), encrypt);
+	}
+	
+	public EncryptedPacket(ByteBuffer data, boolean encrypt) {
+		this(data, encrypt, null);
+	}
+	
+	public EncryptedPacket(ByteBuffer data, boolean encrypt, @Nullable Runnable releaseCallback) {
+		this(data, encrypt, releaseCallback, null);
+	}
+	
+	public EncryptedPacket(ByteBuffer data, boolean encrypt, @Nullable Runnable releaseCallback, @Nullable Runnable writeCallback) {
 		this.data = data;
 		this.encrypt = encrypt;
+		this.releaseCallback = releaseCallback;
+		this.writeCallback = writeCallback;
 	}
 	
+	/**
+	 * Gets this packet's data as an array
+	 * This avoids a copy if this packet wraps an entire array
+	 */
 	public byte[] getData() {
-		return data;
+		if(data.hasArray() && data.arrayOffset() == 0 && data.position() == 0 && data.remaining() == data.array().length) {
+			return data.array();
+		} else {
+			byte[] array = new byte[data.remaining()];
+			data.duplicate().get(array);
+			return array;
+		}
+	}
+	
+	/**
+	 * Gets a view of this packet's data, without copying it
+	 */
+	public ByteBuffer getDataBuffer() {
+		return data.duplicate();
 	}
 	
 	public boolean getEncrypt() {
 		return encrypt;
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Keeps this packet's data valid until a matching call to {@link #release()}
+	 */
+	public void retain() {
+		referenceCount.incrementAndGet();
+	}
+	
+	/**
+	 * Releases this packet's data once it is no longer needed
+	 * The packet's data must not be accessed after its last reference is released
+	 */
+	public void release() {
+		if(referenceCount.decrementAndGet() == 0 && releaseCallback != null) {
+			releaseCallback.run();
+		}
+	}
+	
+	/**
+	 * Notifies this packet that its data has been written
+	 * Called by the sending proxy before the packet is released, and never for packets that failed to send
+	 */
+	public void notifyWritten() {
+		if(writeCallback != null) writeCallback.run();
+	}
+}
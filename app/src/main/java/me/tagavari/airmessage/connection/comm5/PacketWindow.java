@@ -0,0 +1,78 @@
+package me.tagavari.airmessage.connection.comm5;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounds the number of packets a producer can have queued for sending at once,
+ * so that the producer blocks until earlier packets have been written or discarded
+ */
+class PacketWindow {
+	//Creating the constants
+	private static final long pollInterval = 1000; //1 second
+	
+	//Creating the state values
+	private final int size;
+	private final Semaphore semaphore;
+	private volatile boolean packetDiscarded = false;
+	
+	/**
+	 * Creates a new packet window
+	 * @param size The maximum number of packets that can be in flight at once
+	 */
+	PacketWindow(int size) {
+		this.size = size;
+		this.semaphore = new Semaphore(size);
+	}
+	
+	/**
+	 * Waits for a free slot in the window, and then wraps a packet so that its slot is freed once the packet is released
+	 * @param packet The packet to send
+	 * @param onSent A callback invoked from the writer's thread once the packet has been written, or NULL to ignore.
+	 *               This isn't invoked for packets that are released without being written.
+	 * @param isAlive Checked periodically while waiting, return FALSE to abort the wait
+	 * @return The packet to send, or NULL if the wait was aborted
+	 */
+	@Nullable
+	EncryptedPacket acquire(EncryptedPacket packet, @Nullable Runnable onSent, BooleanSupplier isAlive) throws InterruptedException {
+		//Waiting for a free slot
+		if(!waitForPermits(1, isAlive)) {
+			packet.release();
+			return null;
+		}
+		
+		AtomicBoolean written = new AtomicBoolean(false);
+		return new EncryptedPacket(packet.getDataBuffer(), packet.getEncrypt(), () -> {
+			//Freeing the slot, whether or not the packet was written
+			if(!written.get()) packetDiscarded = true;
+			packet.release();
+			semaphore.release();
+		}, () -> {
+			written.set(true);
+			if(onSent != null) onSent.run();
+		});
+	}
+	
+	/**
+	 * Waits until all packets in this window have been released
+	 * @param isAlive Checked periodically while waiting, return FALSE to abort the wait
+	 * @return TRUE if all packets were written, or FALSE if the wait was aborted or any packet was released without being written
+	 */
+	boolean awaitDrain(BooleanSupplier isAlive) throws InterruptedException {
+		if(!waitForPermits(size, isAlive)) return false;
+		semaphore.release(size);
+		return !packetDiscarded;
+	}
+	
+	private boolean waitForPermits(int permits, BooleanSupplier isAlive) throws InterruptedException {
+		while(!semaphore.tryAcquire(permits, pollInterval, TimeUnit.MILLISECONDS)) {
+			if(!isAlive.getAsBoolean()) return false;
+		}
+		
+		return true;
+	}
+}
@@ -31,10 +31,9 @@ abstract class ProtocolManager<Packet> {
 	/**
 	 * Handles incoming data received from the server
 	 *
-	 * @param data The data received from the network
-	 * @param wasEncrypted True if this data was encrypted
+	 * @param packet The packet received from the network, which must be retained if its data is used after this call
 	 */
-	abstract void processData(byte[] data, boolean wasEncrypted);
+	abstract void processData(EncryptedPacket packet);
 	
 	/**
 	 * Sends a ping packet to the server
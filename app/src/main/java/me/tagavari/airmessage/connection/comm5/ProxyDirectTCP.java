@@ -14,8 +14,8 @@ import me.tagavari.airmessage.enums.ConnectionErrorCode;
 import me.tagavari.airmessage.flavor.CrashlyticsBridge;
 import me.tagavari.airmessage.util.ConnectionParams;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
 
 /**
@@ -33,9 +33,9 @@ class ProxyDirectTCP extends DataProxy<EncryptedPacket> {
 	//Creating the listeners
 	private final ProxyDirectTCPReader.Listener readerThreadListener = new ProxyDirectTCPReader.Listener() {
 		@Override
-		public void onOpen(EncryptionManager encryptionManager, DataOutputStream outputStream) {
+		public void onOpen(EncryptionManager encryptionManager, SocketChannel socketChannel) {
 			//Starting the writer thread
-			writerThread = new ProxyDirectTCPWriter(ProxyDirectTCP.this::stopAsync, encryptionManager, outputStream);
+			writerThread = new ProxyDirectTCPWriter(ProxyDirectTCP.this::stopAsync, encryptionManager, socketChannel);
 			writerThread.start();
 			
 			notifyOpen();
@@ -47,8 +47,8 @@ class ProxyDirectTCP extends DataProxy<EncryptedPacket> {
 		}
 		
 		@Override
-		public void onMessage(byte[] data, boolean wasEncrypted) {
-			notifyMessage(new EncryptedPacket(data, wasEncrypted));
+		public void onMessage(EncryptedPacket packet) {
+			notifyMessage(packet);
 		}
 	};
 	
@@ -109,7 +109,7 @@ class ProxyDirectTCP extends DataProxy<EncryptedPacket> {
 		}
 		
 		//Handling the password
-		encryptionManager = new EncryptionAES(connectionParams.getPassword());
+		encryptionManager = new EncryptionAES(connectionParams.getPassword(), true);
 		
 		//Starting the connection thread
 		readerThread = new ProxyDirectTCPReader(readerThreadListener, hostname, port, hostnameFallback, portFallback, encryptionManager);
@@ -146,8 +146,13 @@ class ProxyDirectTCP extends DataProxy<EncryptedPacket> {
 	
 	@Override
 	public boolean send(EncryptedPacket packet) {
+		//Releasing the packet if there is no writer to send it
+		if(writerThread == null) {
+			packet.release();
+			return false;
+		}
+		
 		//Queuing the packet
-		if(writerThread == null) return false;
 		writerThread.queuePacket(packet);
 		return true;
 	}
@@ -4,12 +4,14 @@ import android.util.Log;
 import me.tagavari.airmessage.connection.encryption.EncryptionManager;
 import me.tagavari.airmessage.enums.ConnectionErrorCode;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 
 /**
  * A thread that handles connecting to and reading from the server
@@ -20,6 +22,10 @@ class ProxyDirectTCPReader extends Thread {
 	
 	//Creating the constants
 	private static final int socketTimeout = 1000 * 10; //10 seconds
+	private static final int headerLength = 5; //Content length (int) + encryption flag (boolean)
+	private static final int frameBufferInitialSize = 64 * 1024; //64 KiB
+	private static final int frameBufferRetainSize = 4 * 1024 * 1024; //4 MiB
+	private static final int frameBufferPoolCapacity = 4;
 	
 	//Creating the parameter values
 	private final Listener listener;
@@ -32,6 +38,9 @@ class ProxyDirectTCPReader extends Thread {
 	
 	private boolean usingFallback;
 	
+	//Creating the read buffers, reused across frames once their packets are released
+	private final Deque<ByteBuffer> frameBufferPool = new ArrayDeque<>(frameBufferPoolCapacity);
+	
 	ProxyDirectTCPReader(Listener listener, String hostname, int port, String hostnameFallback, int portFallback, EncryptionManager encryptionManager) {
 		this.listener = listener;
 		this.hostname = hostname;
@@ -43,9 +52,7 @@ class ProxyDirectTCPReader extends Thread {
 	
 	@Override
 	public void run() {
-		Socket socket;
-		DataInputStream inputStream;
-		DataOutputStream outputStream;
+		SocketChannel socketChannel;
 		
 		try {
 			//Returning if the thread is interrupted
@@ -54,39 +61,32 @@ class ProxyDirectTCPReader extends Thread {
 			if(hostnameFallback != null) {
 				try {
 					//Connecting to the primary server
-					socket = new Socket();
-					socket.connect(new InetSocketAddress(hostname, port), socketTimeout);
+					socketChannel = openChannel(hostname, port);
 					usingFallback = false;
 				} catch(IOException exception) {
 					//Printing the stack trace
 					exception.printStackTrace();
 					
 					//Connecting to the fallback server
-					socket = new Socket();
-					socket.connect(new InetSocketAddress(hostnameFallback, portFallback), socketTimeout);
+					socketChannel = openChannel(hostnameFallback, portFallback);
 					usingFallback = true;
 				}
 			} else {
 				//Connecting to the primary server
-				socket = new Socket();
-				socket.connect(new InetSocketAddress(hostname, port), socketTimeout);
+				socketChannel = openChannel(hostname, port);
 				usingFallback = false;
 			}
 			
 			//Returning if the thread is interrupted
 			if(isInterrupted()) {
 				try {
-					socket.close();
+					socketChannel.close();
 				} catch(IOException exception) {
 					exception.printStackTrace();
 				}
 				
 				return;
 			}
-			
-			//Getting the streams
-			inputStream = new DataInputStream(socket.getInputStream());
-			outputStream = new DataOutputStream(socket.getOutputStream());
 		} catch(IOException exception) {
 			//Printing the stack trace
 			exception.printStackTrace();
@@ -99,18 +99,24 @@ class ProxyDirectTCPReader extends Thread {
 		}
 		
 		//Notifying the listener
-		listener.onOpen(encryptionManager, outputStream);
+		listener.onOpen(encryptionManager, socketChannel);
 		
-		//Reading from the input stream
-		readLoop:
+		//Reading from the channel
+		ByteBuffer headerBuffer = ByteBuffer.allocate(headerLength);
 		while(!isInterrupted()) {
 			try {
 				//Reading the header data
-				int contentLen = inputStream.readInt();
-				boolean isEncrypted = inputStream.readBoolean();
+				headerBuffer.clear();
+				if(!readFully(socketChannel, headerBuffer)) {
+					listener.onClose(ConnectionErrorCode.connection);
+					break;
+				}
+				headerBuffer.flip();
+				int contentLen = headerBuffer.getInt();
+				boolean isEncrypted = headerBuffer.get() != 0;
 				
-				//Checking if the content length is greater than the maximum packet allocation
-				if(contentLen > maxPacketAllocation) {
+				//Checking if the content length is invalid or greater than the maximum packet allocation
+				if(contentLen < 0 || contentLen > maxPacketAllocation) {
 					//Logging the error
 					Log.w(TAG, "Rejecting large packet (size: " + contentLen + ")");
 					
@@ -120,28 +126,26 @@ class ProxyDirectTCPReader extends Thread {
 				}
 				
 				//Reading the content
-				byte[] content = new byte[contentLen];
-				if(contentLen > 0) {
-					int bytesRemaining = contentLen;
-					int offset = 0;
-					int readCount;
-					while(bytesRemaining > 0) {
-						readCount = inputStream.read(content, offset, bytesRemaining);
-						if(readCount == -1) { //No data read, stream is closed
-							listener.onClose(ConnectionErrorCode.connection);
-							break readLoop;
-						}
-						
-						offset += readCount;
-						bytesRemaining -= readCount;
-					}
+				ByteBuffer content = obtainFrameBuffer(contentLen);
+				if(!readFully(socketChannel, content)) {
+					listener.onClose(ConnectionErrorCode.connection);
+					break;
 				}
+				content.flip();
 				
-				//Decrypting the content
-				if(isEncrypted) content = encryptionManager.decrypt(content);
+				//Decrypting the content in place
+				if(isEncrypted) {
+					int decryptedLen = encryptionManager.decrypt(content.array(), content.arrayOffset(), contentLen);
+					content.limit(decryptedLen);
+				}
 				
 				//Processing the data
-				listener.onMessage(content, isEncrypted);
+				EncryptedPacket packet = new EncryptedPacket(content, isEncrypted, () -> recycleFrameBuffer(content));
+				try {
+					listener.onMessage(packet);
+				} finally {
+					packet.release();
+				}
 			} catch(IOException | RuntimeException | GeneralSecurityException exception) {
 				//Closing the connection
 				exception.printStackTrace();
@@ -154,12 +158,91 @@ class ProxyDirectTCPReader extends Thread {
 		
 		//Closing the socket
 		try {
-			socket.close();
+			socketChannel.close();
 		} catch(IOException exception) {
 			exception.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Opens a new blocking socket channel to the specified server
+	 */
+	private static SocketChannel openChannel(String hostname, int port) throws IOException {
+		SocketChannel socketChannel = SocketChannel.open();
+		try {
+			socketChannel.socket().connect(new InetSocketAddress(hostname, port), socketTimeout);
+		} catch(IOException exception) {
+			socketChannel.close();
+			throw exception;
+		}
+		
+		return socketChannel;
+	}
+	
+	/**
+	 * Reads from a channel until the buffer is full
+	 * @return TRUE if the buffer was filled, or FALSE if the channel reached the end of its stream
+	 */
+	private static boolean readFully(SocketChannel socketChannel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			if(socketChannel.read(buffer) == -1) return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Gets a buffer ready to receive a frame of the specified length
+	 * Buffers are taken from the pool if one is large enough, or otherwise allocated
+	 */
+	private ByteBuffer obtainFrameBuffer(int length) {
+		ByteBuffer buffer = null;
+		synchronized(frameBufferPool) {
+			for(Iterator<ByteBuffer> iterator = frameBufferPool.iterator(); iterator.hasNext();) {
+				ByteBuffer pooledBuffer = iterator.next();
+				if(pooledBuffer.capacity() >= length) {
+					iterator.remove();
+					buffer = pooledBuffer;
+					break;
+				}
+			}
+		}
+		
+		if(buffer == null) {
+			if(length <= frameBufferInitialSize) {
+				buffer = ByteBuffer.allocate(frameBufferInitialSize);
+			} else if(length <= frameBufferRetainSize) {
+				//Rounding up to the next power of two, so that similar frames can share buffers
+				buffer = ByteBuffer.allocate(Math.min(Integer.highestOneBit(length - 1) << 1, frameBufferRetainSize));
+			} else {
+				buffer = ByteBuffer.allocate(length);
+			}
+		}
+		
+		buffer.clear();
+		buffer.limit(length);
+		return buffer;
+	}
+	
+	/**
+	 * Returns a frame buffer to the pool once its packet has been released
+	 * This may be called from any thread
+	 */
+	private void recycleFrameBuffer(ByteBuffer buffer) {
+		//Not keeping oversized buffers around
+		if(buffer.capacity() > frameBufferRetainSize) return;
+		
+		synchronized(frameBufferPool) {
+			if(frameBufferPool.size() < frameBufferPoolCapacity) {
+				frameBufferPool.addFirst(buffer);
+			} else if(frameBufferPool.peekLast().capacity() < buffer.capacity()) {
+				//Replacing the oldest buffer with this larger one
+				frameBufferPool.pollLast();
+				frameBufferPool.addFirst(buffer);
+			}
+		}
+	}
+	
 	boolean isUsingFallback() {
 		return usingFallback;
 	}
@@ -169,8 +252,13 @@ class ProxyDirectTCPReader extends Thread {
 	 * Please note that these functions will be called from a worker thread
 	 */
 	interface Listener {
-		void onOpen(EncryptionManager encryptionManager, DataOutputStream outputStream);
+		void onOpen(EncryptionManager encryptionManager, SocketChannel socketChannel);
 		void onClose(@ConnectionErrorCode int reason);
-		void onMessage(byte[] data, boolean wasEncrypted);
+		
+		/**
+		 * Called when a message is received
+		 * @param packet The received packet, which is released after this method returns unless it is retained
+		 */
+		void onMessage(EncryptedPacket packet);
 	}
 }
\ No newline at end of file
@@ -4,67 +4,235 @@ import androidx.core.util.Consumer;
 import me.tagavari.airmessage.connection.encryption.EncryptionManager;
 import me.tagavari.airmessage.enums.ConnectionErrorCode;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * A thread that handles writing to the server
+ *
+ * Packets are encrypted in parallel on a small worker pool, and then written in the order they were queued.
+ * Packets that are ready at the same time are written together with a single gathering write.
+ */
 class ProxyDirectTCPWriter extends Thread {
-	//Creating the queue
-	final BlockingQueue<EncryptedPacket> uploadQueue = new LinkedBlockingQueue<>();
+	//Creating the constants
+	private static final int headerLength = 5; //Content length (int) + encryption flag (boolean)
+	private static final int maxGatherPackets = 16;
+	private static final int encryptionThreadCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 3));
+	private static final long encryptionShutdownTimeout = 1000; //1 second
+	
+	//Creating the queue, in the order that packets should be written
+	private final BlockingQueue<EncodeTask> uploadQueue = new LinkedBlockingQueue<>();
+	private boolean isStopped = false;
+	
+	//Creating the encryption pool
+	private final ExecutorService encryptionExecutor = Executors.newFixedThreadPool(encryptionThreadCount);
+	
+	//The task the writer is waiting on, which has already been taken from the queue
+	private EncodeTask currentTask = null;
 	
 	//Creating the parameter values
 	private final Consumer<Integer> errorListener;
 	private final EncryptionManager encryptionManager;
-	private final DataOutputStream outputStream;
+	private final SocketChannel socketChannel;
 	
-	public ProxyDirectTCPWriter(Consumer<Integer> errorListener, EncryptionManager encryptionManager, DataOutputStream outputStream) {
+	public ProxyDirectTCPWriter(Consumer<Integer> errorListener, EncryptionManager encryptionManager, SocketChannel socketChannel) {
 		this.errorListener = errorListener;
 		this.encryptionManager = encryptionManager;
-		this.outputStream = outputStream;
+		this.socketChannel = socketChannel;
 	}
 	
 	@Override
 	public void run() {
-		EncryptedPacket packet;
+		List<EncodedPacket> packetList = new ArrayList<>(maxGatherPackets);
+		ByteBuffer[] bufferArray = new ByteBuffer[maxGatherPackets * 2];
 		
 		try {
 			while(!isInterrupted()) {
 				try {
-					packet = uploadQueue.take();
-					sendDataSync(packet.getData(), packet.getEncrypt());
+					//Waiting for the next packet, keeping track of it until it is encoded
+					EncodeTask task = uploadQueue.take();
+					currentTask = task;
+					packetList.add(task.get());
+					currentTask = null;
 					
-					while((packet = uploadQueue.poll()) != null) {
-						sendDataSync(packet.getData(), packet.getEncrypt());
+					//Collecting any following packets that are already encoded
+					EncodeTask nextTask;
+					while(packetList.size() < maxGatherPackets && (nextTask = uploadQueue.peek()) != null && nextTask.isDone()) {
+						packetList.add(uploadQueue.poll().get());
 					}
 					
-					outputStream.flush();
-				} catch(IOException | GeneralSecurityException exception) {
+					//Writing the packets
+					int bufferCount = 0;
+					for(EncodedPacket encodedPacket : packetList) {
+						bufferArray[bufferCount++] = encodedPacket.header;
+						bufferArray[bufferCount++] = encodedPacket.body;
+					}
+					writeFully(bufferArray, bufferCount);
+					
+					//Notifying the written packets
+					for(EncodedPacket encodedPacket : packetList) encodedPacket.packet.notifyWritten();
+				} catch(IOException | ExecutionException exception) {
 					exception.printStackTrace();
 					
 					errorListener.accept(ConnectionErrorCode.connection);
+				} finally {
+					//Releasing the written packets
+					for(EncodedPacket encodedPacket : packetList) encodedPacket.packet.release();
+					packetList.clear();
 				}
 			}
 		} catch(InterruptedException exception) {
 			exception.printStackTrace();
+		} finally {
+			//Releasing the packets that will no longer be written
+			discardQueue();
 		}
 	}
 	
-	void queuePacket(EncryptedPacket packet) {
-		uploadQueue.add(packet);
+	/**
+	 * Stops the encryption pool, and releases every packet that hasn't been written
+	 */
+	private synchronized void discardQueue() {
+		//Rejecting new packets
+		isStopped = true;
+		
+		//Stopping the encryption pool, and waiting for packets that are already being encrypted
+		encryptionExecutor.shutdownNow();
+		try {
+			encryptionExecutor.awaitTermination(encryptionShutdownTimeout, TimeUnit.MILLISECONDS);
+		} catch(InterruptedException exception) {
+			exception.printStackTrace();
+		}
+		
+		if(currentTask != null) {
+			currentTask.discard();
+			currentTask = null;
+		}
+		
+		EncodeTask task;
+		while((task = uploadQueue.poll()) != null) task.discard();
 	}
 	
 	/**
-	 * Encrypts data if necessary, and then submits it to the stream
-	 * @param data The data to send
-	 * @param isEncrypted Whether to encrypt this data
+	 * Queues a packet to be written
+	 * Encrypted packets start encrypting immediately, but are always written in the order they were queued
 	 */
-	private synchronized void sendDataSync(byte[] data, boolean isEncrypted) throws IOException, GeneralSecurityException {
-		if(isEncrypted) data = encryptionManager.encrypt(data);
+	synchronized void queuePacket(EncryptedPacket packet) {
+		//Ignoring packets once the writer has stopped
+		if(isStopped) {
+			packet.release();
+			return;
+		}
+		
+		EncodeTask task = new EncodeTask(packet);
+		if(packet.getEncrypt()) {
+			//Encrypting the packet in the background
+			try {
+				encryptionExecutor.execute(task);
+			} catch(RuntimeException exception) {
+				//The writer has been stopped
+				packet.release();
+				return;
+			}
+		} else {
+			//Nothing to process
+			task.run();
+		}
 		
-		outputStream.writeInt(data.length);
-		outputStream.writeBoolean(isEncrypted);
-		outputStream.write(data);
+		uploadQueue.add(task);
+	}
+	
+	/**
+	 * Encrypts a packet's data if necessary, and prepares its header
+	 * @param packet The packet to encode
+	 * @return The encoded packet, ready to be written
+	 */
+	private EncodedPacket encodePacket(EncryptedPacket packet) throws GeneralSecurityException {
+		ByteBuffer body = packet.getDataBuffer();
+		boolean isEncrypted = packet.getEncrypt();
+		if(isEncrypted) {
+			try {
+				body = ByteBuffer.wrap(encryptionManager.encrypt(body.array(), body.arrayOffset() + body.position(), body.remaining()));
+			} catch(GeneralSecurityException exception) {
+				//This packet will never be written
+				packet.release();
+				throw exception;
+			}
+		}
+		
+		ByteBuffer header = ByteBuffer.allocate(headerLength);
+		header.putInt(body.remaining());
+		header.put((byte) (isEncrypted ? 1 : 0));
+		header.flip();
+		
+		return new EncodedPacket(packet, header, body);
+	}
+	
+	/**
+	 * Writes the provided buffers to the channel until they are exhausted
+	 */
+	private void writeFully(ByteBuffer[] buffers, int length) throws IOException {
+		long bytesRemaining = 0;
+		for(int i = 0; i < length; i++) bytesRemaining += buffers[i].remaining();
+		
+		while(bytesRemaining > 0) {
+			bytesRemaining -= socketChannel.write(buffers, 0, length);
+		}
+	}
+	
+	/**
+	 * A task that encodes a packet, and holds onto the packet so that it can be released if the task never completes
+	 */
+	private final class EncodeTask extends FutureTask<EncodedPacket> {
+		private final EncryptedPacket packet;
+		
+		EncodeTask(EncryptedPacket packet) {
+			super(() -> encodePacket(packet));
+			this.packet = packet;
+		}
+		
+		/**
+		 * Cancels this task if it hasn't run, and releases its packet
+		 */
+		void discard() {
+			if(cancel(false)) {
+				//The packet was never encoded
+				packet.release();
+				return;
+			}
+			
+			try {
+				get().packet.release();
+			} catch(ExecutionException | InterruptedException | CancellationException exception) {
+				//Packets that failed to encode are released by encodePacket()
+			}
+		}
+	}
+	
+	/**
+	 * A packet with its header and encrypted body, ready to be written
+	 */
+	private static final class EncodedPacket {
+		final EncryptedPacket packet;
+		final ByteBuffer header;
+		final ByteBuffer body;
+		
+		EncodedPacket(EncryptedPacket packet, ByteBuffer header, ByteBuffer body) {
+			this.packet = packet;
+			this.header = header;
+			this.body = body;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package me.tagavari.airmessage.connection.comm5;
+
+import androidx.annotation.NonNull;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A bounded cache that maps UTF-8 byte sequences to canonical strings,
+ * so that values that repeat often (such as chat GUIDs, addresses and MIME types) are only decoded once
+ *
+ * Entries are kept in an open-addressing table of a fixed size; when a probe sequence is full, its first entry is replaced.
+ * This class is not thread-safe, and should be confined to the thread that reads a connection's data.
+ */
+public class StringInterner {
+	private static final int defaultCapacity = 512;
+	private static final int maxProbeLength = 8;
+	private static final int maxEntryLength = 128; //Longer strings are unlikely to repeat, and are decoded normally
+	
+	private final int mask;
+	private final byte[][] keys;
+	private final int[] hashes;
+	private final String[] values;
+	
+	public StringInterner() {
+		this(defaultCapacity);
+	}
+	
+	/**
+	 * Creates a new string interner
+	 * @param capacity The maximum number of strings to hold, rounded up to a power of two
+	 */
+	public StringInterner(int capacity) {
+		int tableSize = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		
+		mask = tableSize - 1;
+		keys = new byte[tableSize][];
+		hashes = new int[tableSize];
+		values = new String[tableSize];
+	}
+	
+	/**
+	 * Gets the canonical string for a sequence of UTF-8 bytes, decoding and caching it if it isn't available
+	 * @param data The array to read from
+	 * @param offset The offset of the string's data in the array
+	 * @param length The length of the string's data
+	 * @return The decoded string
+	 */
+	@NonNull
+	public String intern(byte[] data, int offset, int length) {
+		if(length > maxEntryLength) {
+			return new String(data, offset, length, StandardCharsets.UTF_8);
+		}
+		
+		int hash = hash(data, offset, length);
+		int homeIndex = hash & mask;
+		
+		//Probing for a matching entry
+		int freeIndex = -1;
+		for(int probe = 0; probe < maxProbeLength; probe++) {
+			int index = (homeIndex + probe) & mask;
+			byte[] key = keys[index];
+			
+			//Entries are never removed, so an empty slot ends the probe sequence
+			if(key == null) {
+				freeIndex = index;
+				break;
+			}
+			
+			if(hashes[index] == hash && rangeEquals(key, data, offset, length)) {
+				return values[index];
+			}
+		}
+		
+		//Decoding the string and adding it to the table, replacing the head of the probe sequence if it's full
+		String value = new String(data, offset, length, StandardCharsets.UTF_8);
+		int index = freeIndex != -1 ? freeIndex : homeIndex;
+		
+		byte[] key = new byte[length];
+		System.arraycopy(data, offset, key, 0, length);
+		keys[index] = key;
+		hashes[index] = hash;
+		values[index] = value;
+		
+		return value;
+	}
+	
+	private static int hash(byte[] data, int offset, int length) {
+		int hash = 1;
+		for(int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + data[i];
+		}
+		
+		//Spreading the high bits, since the table is indexed by the low bits
+		return hash ^ (hash >>> 16);
+	}
+	
+	private static boolean rangeEquals(byte[] key, byte[] data, int offset, int length) {
+		if(key.length != length) return false;
+		for(int i = 0; i < length; i++) {
+			if(key[i] != data[offset + i]) return false;
+		}
+		return true;
+	}
+}
@@ -11,6 +11,8 @@ import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.security.spec.KeySpec;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class EncryptionAES implements EncryptionManager {
 	//Creating the constants
@@ -21,73 +23,221 @@ public class EncryptionAES implements EncryptionManager {
 	private static final String cipherTransformation = "AES/GCM/NoPadding";
 	private static final int keyIterationCount = 10000;
 	private static final int keyLength = 128; //128 bits
+	private static final int keyCacheSize = 16;
+	
+	//Creating the provider instances (these are expensive to look up, but not thread-safe)
+	private static final ThreadLocal<SecretKeyFactory> threadKeyFactory = new ThreadLocal<>();
+	private static final ThreadLocal<Cipher> threadCipher = new ThreadLocal<>();
 	
 	//Creating the secure random
-	private SecureRandom random;
+	private final SecureRandom random = new SecureRandom();
 	
 	//Creating the parameter values
 	private final String password;
+	private final boolean sessionSalt;
+	
+	//Creating the key values
+	private final Map<SaltKey, SecretKeySpec> keyCache = new LinkedHashMap<SaltKey, SecretKeySpec>(keyCacheSize, 0.75F, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<SaltKey, SecretKeySpec> eldest) {
+			return size() > keyCacheSize;
+		}
+	};
+	private byte[] encryptSalt = null;
+	private SecretKeySpec encryptKey = null;
 	
+	/**
+	 * Creates a new AES encryption manager that generates a new salt for every encrypted packet
+	 * @param password The password to derive keys from
+	 */
 	public EncryptionAES(String password) {
+		this(password, false);
+	}
+	
+	/**
+	 * Creates a new AES encryption manager
+	 * @param password The password to derive keys from
+	 * @param sessionSalt TRUE to reuse a single salt (and its derived key) for every packet encrypted by this instance,
+	 *                    which should only be used for an instance that lives as long as a single connection.
+	 *                    The wire format is unaffected, as the salt is still sent with every packet.
+	 */
+	public EncryptionAES(String password, boolean sessionSalt) {
 		this.password = password;
+		this.sessionSalt = sessionSalt;
 	}
 	
 	@Override
 	public byte[] encrypt(byte[] inData) throws GeneralSecurityException {
-		//Initializing the random
-		if(random == null) random = new SecureRandom();
-		
-		//Generating a salt
-		byte[] salt = new byte[saltLen];
-		random.nextBytes(salt);
-		
-		//Creating the key
-		SecretKeyFactory secretKeyFactory = SecretKeyFactory.getInstance(keyFactoryAlgorithm);
-		KeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, keyIterationCount, keyLength);
-		SecretKey secretKey = secretKeyFactory.generateSecret(keySpec);
-		SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getEncoded(), keyAlgorithm);
+		return encrypt(inData, 0, inData.length);
+	}
+	
+	@Override
+	public byte[] encrypt(byte[] inData, int offset, int length) throws GeneralSecurityException {
+		//Getting the salt and key
+		byte[] salt;
+		SecretKeySpec secretKeySpec;
+		if(sessionSalt) {
+			synchronized(this) {
+				if(encryptSalt == null) {
+					encryptSalt = new byte[saltLen];
+					random.nextBytes(encryptSalt);
+					encryptKey = deriveKey(encryptSalt);
+				}
+				
+				salt = encryptSalt;
+				secretKeySpec = encryptKey;
+			}
+		} else {
+			//Generating a salt
+			salt = new byte[saltLen];
+			random.nextBytes(salt);
+			
+			//Creating the key
+			secretKeySpec = deriveKey(salt);
+		}
 		
 		//Generating the IV
 		byte[] iv = new byte[ivLen];
 		random.nextBytes(iv);
 		GCMParameterSpec gcmSpec = new GCMParameterSpec(keyLength, iv);
 		
-		Cipher cipher = Cipher.getInstance(cipherTransformation);
+		Cipher cipher = getCipher();
 		cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, gcmSpec);
 		
-		//Encrypting the data
-		byte[] data = cipher.doFinal(inData);
-		
-		//Combining the salt, IV, and data
-		byte[] allByteArray = new byte[saltLen + ivLen + data.length];
+		//Encrypting the data directly after the salt and IV
+		byte[] allByteArray = new byte[saltLen + ivLen + cipher.getOutputSize(length)];
 		ByteBuffer byteBuffer = ByteBuffer.wrap(allByteArray);
 		byteBuffer.put(salt);
 		byteBuffer.put(iv);
-		byteBuffer.put(data);
-		return byteBuffer.array();
+		int dataLen = cipher.doFinal(inData, offset, length, allByteArray, saltLen + ivLen);
+		
+		//Trimming the array if the cipher overestimated the output size
+		if(saltLen + ivLen + dataLen != allByteArray.length) {
+			return Arrays.copyOf(allByteArray, saltLen + ivLen + dataLen);
+		} else {
+			return allByteArray;
+		}
 	}
 	
 	@Override
 	public byte[] decrypt(byte[] inData) throws GeneralSecurityException {
-		//Reading the data
-		byte[] salt = Arrays.copyOfRange(inData, 0, saltLen);
-		byte[] iv = Arrays.copyOfRange(inData, saltLen, saltLen + ivLen);
-		byte[] data = Arrays.copyOfRange(inData, saltLen + ivLen, inData.length);
+		//Initializing the cipher
+		Cipher cipher = initDecryptCipher(inData, 0, inData.length);
+		
+		//Deciphering the data
+		return cipher.doFinal(inData, saltLen + ivLen, inData.length - (saltLen + ivLen));
+	}
+	
+	@Override
+	public int decrypt(byte[] data, int offset, int length) throws GeneralSecurityException {
+		//Initializing the cipher
+		Cipher cipher = initDecryptCipher(data, offset, length);
+		
+		//Deciphering the data over itself (the cipher is copy-safe, and the output is always smaller than the input)
+		return cipher.doFinal(data, offset + saltLen + ivLen, length - (saltLen + ivLen), data, offset);
+	}
+	
+	/**
+	 * Reads the salt and IV from the head of an encrypted packet, and returns a cipher ready to decrypt the rest of it
+	 */
+	private Cipher initDecryptCipher(byte[] data, int offset, int length) throws GeneralSecurityException {
+		//Checking the data length
+		if(length < saltLen + ivLen) {
+			throw new GeneralSecurityException("Encrypted data is too short (" + length + " bytes)");
+		}
+		
+		//Reading the salt
+		byte[] salt = Arrays.copyOfRange(data, offset, offset + saltLen);
 		
 		//Creating the key
-		SecretKeyFactory secretKeyFactory = SecretKeyFactory.getInstance(keyFactoryAlgorithm);
-		KeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, keyIterationCount, keyLength);
-		SecretKey secretKey = secretKeyFactory.generateSecret(keySpec);
-		SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getEncoded(), keyAlgorithm);
+		SecretKeySpec secretKeySpec = getCachedKey(salt);
 		
 		//Creating the IV
-		GCMParameterSpec gcmSpec = new GCMParameterSpec(keyLength, iv);
+		GCMParameterSpec gcmSpec = new GCMParameterSpec(keyLength, data, offset + saltLen, ivLen);
 		
 		//Creating the cipher
-		Cipher cipher = Cipher.getInstance(cipherTransformation);
+		Cipher cipher = getCipher();
 		cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, gcmSpec);
+		return cipher;
+	}
+	
+	/**
+	 * Gets the key for a salt from the cache, or derives and caches it if it isn't available
+	 */
+	private SecretKeySpec getCachedKey(byte[] salt) throws GeneralSecurityException {
+		SaltKey saltKey = new SaltKey(salt);
 		
-		//Deciphering the data
-		return cipher.doFinal(data);
+		//Checking the cache
+		synchronized(keyCache) {
+			SecretKeySpec cachedKey = keyCache.get(saltKey);
+			if(cachedKey != null) return cachedKey;
+		}
+		
+		//Deriving the key outside of the lock, since this is slow
+		SecretKeySpec key = deriveKey(salt);
+		synchronized(keyCache) {
+			keyCache.put(saltKey, key);
+		}
+		
+		return key;
+	}
+	
+	/**
+	 * Derives a new AES key from this instance's password and the provided salt
+	 */
+	private SecretKeySpec deriveKey(byte[] salt) throws GeneralSecurityException {
+		KeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, keyIterationCount, keyLength);
+		SecretKey secretKey = getKeyFactory().generateSecret(keySpec);
+		return new SecretKeySpec(secretKey.getEncoded(), keyAlgorithm);
+	}
+	
+	/**
+	 * Gets this thread's key factory instance
+	 */
+	private static SecretKeyFactory getKeyFactory() throws GeneralSecurityException {
+		SecretKeyFactory keyFactory = threadKeyFactory.get();
+		if(keyFactory == null) {
+			keyFactory = SecretKeyFactory.getInstance(keyFactoryAlgorithm);
+			threadKeyFactory.set(keyFactory);
+		}
+		return keyFactory;
+	}
+	
+	/**
+	 * Gets this thread's cipher instance
+	 * The returned cipher must be re-initialized before use
+	 */
+	private static Cipher getCipher() throws GeneralSecurityException {
+		Cipher cipher = threadCipher.get();
+		if(cipher == null) {
+			cipher = Cipher.getInstance(cipherTransformation);
+			threadCipher.set(cipher);
+		}
+		return cipher;
+	}
+	
+	/**
+	 * A salt wrapper suitable for use as a map key
+	 */
+	private static final class SaltKey {
+		private final byte[] salt;
+		private final int hashCode;
+		
+		SaltKey(byte[] salt) {
+			this.salt = salt;
+			this.hashCode = Arrays.hashCode(salt);
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(!(o instanceof SaltKey)) return false;
+			return Arrays.equals(salt, ((SaltKey) o).salt);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -11,6 +11,16 @@ public interface EncryptionManager {
 	 */
 	byte[] encrypt(byte[] inData) throws GeneralSecurityException;
 	
+	/**
+	 * Encrypts a region of an array to be sent over the network
+	 * @param inData The array containing the data to encrypt
+	 * @param offset The offset of the data in the array
+	 * @param length The length of the data
+	 * @return The encrypted data
+	 * @throws GeneralSecurityException If there was an error during the encryption process
+	 */
+	byte[] encrypt(byte[] inData, int offset, int length) throws GeneralSecurityException;
+	
 	/**
 	 * Decrypts the provided data received from the network
 	 * @param inData The data to decrypt
@@ -18,4 +28,15 @@ public interface EncryptionManager {
 	 * @throws GeneralSecurityException If there was an error during the encryption process
 	 */
 	byte[] decrypt(byte[] inData) throws GeneralSecurityException;
+	
+	/**
+	 * Decrypts a region of an array in place
+	 * The decrypted data is written back to the array starting at the same offset
+	 * @param data The array containing the data to decrypt
+	 * @param offset The offset of the encrypted data in the array
+	 * @param length The length of the encrypted data
+	 * @return The length of the decrypted data
+	 * @throws GeneralSecurityException If there was an error during the encryption process
+	 */
+	int decrypt(byte[] data, int offset, int length) throws GeneralSecurityException;
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import me.tagavari.airmessage.enums.AttachmentReqErrorCode;
 import me.tagavari.airmessage.enums.ConnectionErrorCode;
 import me.tagavari.airmessage.enums.FaceTimeInitiateCode;
 import me.tagavari.airmessage.util.CompoundErrorDetails;
+import me.tagavari.airmessage.util.DataChunk;
 import me.tagavari.airmessage.util.ServerUpdateData;
 
 import java.io.OutputStream;
@@ -28,14 +29,14 @@ public interface CommunicationsManagerListener {
 	void onMassRetrievalComplete(short requestID);
 	void onMassRetrievalFail(short requestID);
 	void onMassRetrievalFileStart(short requestID, String fileGUID, String fileName, @Nullable String downloadFileName, @Nullable String downloadFileType, @Nullable Function<OutputStream, OutputStream> streamWrapper);
-	void onMassRetrievalFileProgress(short requestID, int responseIndex, String fileGUID, byte[] fileData);
+	void onMassRetrievalFileProgress(short requestID, int responseIndex, String fileGUID, DataChunk fileData);
 	void onMassRetrievalFileComplete(short requestID, String fileGUID);
 
 	void onConversationUpdate(Collection<Blocks.ConversationInfo> data);
 	void onModifierUpdate(Collection<Blocks.ModifierInfo> data);
 
 	void onFileRequestStart(short requestID, @Nullable String downloadFileName, @Nullable String downloadFileType, long fileLength, @Nullable Function<OutputStream, OutputStream> streamWrapper);
-	void onFileRequestData(short requestID, int responseIndex, byte[] data);
+	void onFileRequestData(short requestID, int responseIndex, DataChunk data);
 	void onFileRequestComplete(short requestID);
 	void onFileRequestFail(short requestID, @AttachmentReqErrorCode int errorCode);
 
@@ -10,6 +10,7 @@ import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.schedulers.Schedulers;
 import me.tagavari.airmessage.data.DatabaseManager;
 import me.tagavari.airmessage.helper.AttachmentStorageHelper;
+import me.tagavari.airmessage.util.DataChunk;
 
 import java.io.*;
 import java.util.concurrent.Executors;
@@ -56,22 +57,30 @@ public class FileFetchRequest {
 	}
 	
 	/**
-	 * Writes a chunk of data to disk for this request
+	 * Writes a chunk of data to disk for this request, and releases it once it has been written
 	 * @return A single that completes with the total amount of bytes written
 	 */
-	public Single<Long> writeChunk(int responseIndex, byte[] data) {
+	public Single<Long> writeChunk(int responseIndex, DataChunk data) {
 		//Validating the request index
 		if(responseIndex != expectedResponseIndex) {
+			data.release();
 			return Single.error(new IllegalStateException("Request out of order: expected #" + expectedResponseIndex + ", received #" + responseIndex));
 		}
 		expectedResponseIndex++;
 		
 		//Writing the data
-		return Completable.fromAction(() -> outputStream.write(data))
+		int dataLength = data.getLength();
+		return Completable.fromAction(() -> {
+					try {
+						data.writeTo(outputStream);
+					} finally {
+						data.release();
+					}
+				})
 				.subscribeOn(requestScheduler)
 				.observeOn(AndroidSchedulers.mainThread())
 				//Incrementing the bytes written
-				.doOnComplete(() -> bytesWritten += data.length)
+				.doOnComplete(() -> bytesWritten += dataLength)
 				//Return the total bytes written
 				.andThen(Single.fromCallable(() -> bytesWritten));
 	}
@@ -80,10 +89,11 @@ public class FileFetchRequest {
 	 * Completes this request and updates the attachment's state on disk
 	 */
 	public Single<File> complete(Context context) {
-		return Completable.fromAction(() -> {
-			close();
-			DatabaseManager.getInstance().updateAttachmentFile(attachmentID, context, targetFile, downloadFileName, downloadFileType);
-		}).subscribeOn(requestScheduler).observeOn(AndroidSchedulers.mainThread()).andThen(Single.just(targetFile));
+		return Completable.fromAction(this::close).subscribeOn(requestScheduler)
+				//Updating the attachment on the database's write thread, once all data has been written
+				.andThen(Completable.fromAction(() -> DatabaseManager.getInstance().updateAttachmentFile(attachmentID, context, targetFile, downloadFileName, downloadFileType))
+						.subscribeOn(DatabaseManager.getInstance().getWriteScheduler()))
+				.observeOn(AndroidSchedulers.mainThread()).andThen(Single.just(targetFile));
 	}
 	
 	/**
@@ -14,11 +14,14 @@ import me.tagavari.airmessage.data.DatabaseManager;
 import me.tagavari.airmessage.helper.AttachmentStorageHelper;
 import me.tagavari.airmessage.messaging.ConversationInfo;
 import me.tagavari.airmessage.messaging.ConversationItem;
+import me.tagavari.airmessage.util.DataChunk;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 
 public class MassRetrievalRequest {
@@ -30,7 +33,7 @@ public class MassRetrievalRequest {
 	
 	//Conversations state
 	private boolean initialInfoReceived = false;
-	private volatile List<ConversationInfo> conversationList;
+	private volatile Map<String, ConversationInfo> conversationMap; //Conversations by GUID
 	
 	//Messages state
 	private int totalMessageCount;
@@ -68,16 +71,19 @@ public class MassRetrievalRequest {
 		this.totalMessageCount = totalMessageCount;
 		
 		//Writing the data
-		return Single.fromCallable(() -> {
+		return Single.fromCallable(() -> DatabaseManager.getInstance().runWrite(() -> {
 			//Writing the conversations to disk
 			List<ConversationInfo> conversationInfoList = new ArrayList<>();
+			Map<String, ConversationInfo> conversationInfoMap = new HashMap<>();
 			for(Blocks.ConversationInfo structConversation : conversationList) {
 				ConversationInfo item = DatabaseManager.getInstance().addReadyConversationInfoAMBridge(structConversation);
-				if(item != null) conversationInfoList.add(item);
+				if(item == null) continue;
+				conversationInfoList.add(item);
+				conversationInfoMap.put(item.getGUID(), item);
 			}
-			this.conversationList = conversationInfoList;
+			this.conversationMap = conversationInfoMap;
 			return conversationInfoList;
-		}).subscribeOn(requestScheduler).observeOn(AndroidSchedulers.mainThread());
+		})).subscribeOn(requestScheduler).observeOn(AndroidSchedulers.mainThread());
 	}
 	
 	/**
@@ -98,24 +104,15 @@ public class MassRetrievalRequest {
 		expectedResponseIndex++;
 		
 		return Single.fromCallable(() -> {
-			List<ConversationItem> addedItemList = new ArrayList<>();
-			
-			//Adding the messages
+			//Logging items that reference an unknown conversation (these are skipped)
 			for(Blocks.ConversationItem structItem : itemList) {
-				//Finding the parent conversation
-				ConversationInfo parentConversation = conversationList.stream().filter(conversation -> structItem.chatGuid.equals(conversation.getGUID())).findAny().orElse(null);
-				if(parentConversation == null) {
+				if(!conversationMap.containsKey(structItem.chatGuid)) {
 					Log.w(TAG, "Mass retrieval referenced conversation not found: " + structItem.chatGuid);
-					continue;
 				}
-				
-				//Writing the item
-				ConversationItem conversationItem = DatabaseManager.getInstance().addConversationStruct(context, parentConversation.getLocalID(), structItem, true);
-				if(conversationItem == null) continue;
-				addedItemList.add(conversationItem);
 			}
 			
-			return addedItemList;
+			//Adding the messages in a single transaction on the write thread
+			return DatabaseManager.getInstance().runWrite(() -> DatabaseManager.getInstance().addConversationStructs(context, conversationMap, itemList, true));
 		}).subscribeOn(requestScheduler).observeOn(AndroidSchedulers.mainThread()).doOnSuccess(addedItems -> {
 			//Updating the total
 			messagesReceived += itemList.size();
@@ -150,27 +147,35 @@ public class MassRetrievalRequest {
 	 * Writes a chunk of data to disk for this request
 	 * @param guid The GUID of the attachment
 	 * @param responseIndex The index of this response data
-	 * @param data The attachment's data
+	 * @param data The attachment's data, which is released once it has been written
 	 * @return A completable to represent this task
 	 */
-	public Completable writeChunkAttachment(String guid, int responseIndex, byte[] data) {
+	public Completable writeChunkAttachment(String guid, int responseIndex, DataChunk data) {
 		return Completable.fromAction(() -> {
-			//Validating and increasing the index
-			if(responseIndex != attachmentExpectedRequestIndex) {
-				throw new IllegalStateException("Request out of order: expected #" + attachmentExpectedRequestIndex + ", received #" + responseIndex);
-			}
-			attachmentExpectedRequestIndex++;
-			
-			//Validating the attachment GUID
-			if(!guid.equals(attachmentGUID)) {
-				throw new IllegalStateException("Mass retrieval file data mismatch: expected " + attachmentTargetFile + ", received" + guid);
+			try {
+				writeChunkAttachmentSync(guid, responseIndex, data);
+			} finally {
+				data.release();
 			}
-			
-			//Writing the data
-			attachmentOutputStream.write(data);
 		}).subscribeOn(requestScheduler).observeOn(AndroidSchedulers.mainThread());
 	}
 	
+	private void writeChunkAttachmentSync(String guid, int responseIndex, DataChunk data) throws IOException {
+		//Validating and increasing the index
+		if(responseIndex != attachmentExpectedRequestIndex) {
+			throw new IllegalStateException("Request out of order: expected #" + attachmentExpectedRequestIndex + ", received #" + responseIndex);
+		}
+		attachmentExpectedRequestIndex++;
+		
+		//Validating the attachment GUID
+		if(!guid.equals(attachmentGUID)) {
+			throw new IllegalStateException("Mass retrieval file data mismatch: expected " + attachmentTargetFile + ", received" + guid);
+		}
+		
+		//Writing the data
+		data.writeTo(attachmentOutputStream);
+	}
+	
 	/**
 	 * Completes the download of an attachment by cleaning up and writing the new state to disk
 	 * @param context The context to use
@@ -186,7 +191,10 @@ public class MassRetrievalRequest {
 			}
 			
 			//Updating the attachment file location
-			DatabaseManager.getInstance().updateAttachmentFile(attachmentGUID, context, attachmentTargetFile, attachmentDownloadName, attachmentDownloadType);
+			DatabaseManager.getInstance().runWrite(() -> {
+				DatabaseManager.getInstance().updateAttachmentFile(attachmentGUID, context, attachmentTargetFile, attachmentDownloadName, attachmentDownloadType);
+				return null;
+			});
 			
 			//Cleaning up
 			closeAttachment();
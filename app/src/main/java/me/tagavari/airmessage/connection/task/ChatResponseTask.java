@@ -4,7 +4,6 @@ import android.content.Context;
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
 import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.core.SingleEmitter;
-import io.reactivex.rxjava3.schedulers.Schedulers;
 import me.tagavari.airmessage.data.DatabaseManager;
 import me.tagavari.airmessage.messaging.ConversationInfo;
 import me.tagavari.airmessage.messaging.ConversationItem;
@@ -66,7 +65,7 @@ public class ChatResponseTask {
 			}
 			
 			emitter.onSuccess(new Response(availableConversationItems, transferredConversations));
-		}).subscribeOn(Schedulers.single()).observeOn(AndroidSchedulers.mainThread());
+		}).subscribeOn(DatabaseManager.getInstance().getWriteScheduler()).observeOn(AndroidSchedulers.mainThread());
 	}
 	
 	public static class Response {
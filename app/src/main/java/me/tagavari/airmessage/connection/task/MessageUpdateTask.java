@@ -5,7 +5,6 @@ import androidx.annotation.Nullable;
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
 import io.reactivex.rxjava3.annotations.CheckReturnValue;
 import io.reactivex.rxjava3.core.Single;
-import io.reactivex.rxjava3.schedulers.Schedulers;
 import kotlin.Pair;
 import me.tagavari.airmessage.common.Blocks;
 import me.tagavari.airmessage.data.DatabaseManager;
@@ -35,7 +34,8 @@ public class MessageUpdateTask {
 	 */
 	@CheckReturnValue
 	public static Single<Response> create(Context context, Collection<Long> foregroundConversationIDs, Collection<Blocks.ConversationItem> conversationItems, boolean collectAttachments) {
-		return Single.fromCallable(() -> {
+		//Writing all items in a single transaction
+		return Single.fromCallable(() -> DatabaseManager.getInstance().runInTransaction(() -> {
 			//Creating the collector lists
 			List<ReduxEventMessaging> events = new ArrayList<>();
 			List<Pair<ConversationInfo, List<ReplaceInsertResult>>> updatedCompleteConversations = new ArrayList<>();
@@ -120,7 +120,7 @@ public class MessageUpdateTask {
 			
 			//Finishing
 			return new Response(events, incompleteServerConversations, collectedAttachments);
-		}).subscribeOn(Schedulers.single()).observeOn(AndroidSchedulers.mainThread());
+		})).subscribeOn(DatabaseManager.getInstance().getWriteScheduler()).observeOn(AndroidSchedulers.mainThread());
 	}
 	
 	public static class Response {
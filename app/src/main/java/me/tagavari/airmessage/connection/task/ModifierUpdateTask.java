@@ -4,8 +4,6 @@ import android.content.Context;
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
 import io.reactivex.rxjava3.annotations.CheckReturnValue;
 import io.reactivex.rxjava3.core.Single;
-import io.reactivex.rxjava3.core.SingleEmitter;
-import io.reactivex.rxjava3.schedulers.Schedulers;
 import kotlin.Pair;
 import me.tagavari.airmessage.common.Blocks;
 import me.tagavari.airmessage.data.DatabaseManager;
@@ -16,28 +14,33 @@ import me.tagavari.airmessage.util.ActivityStatusUpdate;
 import me.tagavari.airmessage.util.ModifierMetadata;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
 
 public class ModifierUpdateTask {
 	/**
 	 * Asynchronously processes a modifier update
+	 * All modifiers are written in a single transaction, and modifiers that are replaced by a later modifier in the same batch are skipped
 	 * @param context The context to use
 	 * @param structModifiers A list of modifiers to process
 	 * @return A completable representing this task
 	 */
 	@CheckReturnValue
 	public static Single<Response> create(Context context, Collection<Blocks.ModifierInfo> structModifiers) {
-		return Single.create((SingleEmitter<Response> emitter) -> {
+		return Single.fromCallable(() -> DatabaseManager.getInstance().runInTransaction(() -> {
 			//Creating the result lists
-			
 			List<ActivityStatusUpdate> activityStatusUpdates = new ArrayList<>();
 			List<Pair<StickerInfo, ModifierMetadata>> stickerModifiers = new ArrayList<>();
 			List<Pair<TapbackInfo, ModifierMetadata>> tapbackModifiers = new ArrayList<>();
 			List<Pair<TapbackInfo, ModifierMetadata>> tapbackRemovals = new ArrayList<>();
 			
 			//Iterating over the modifiers
-			for(Blocks.ModifierInfo modifierInfo : structModifiers) {
+			for(Blocks.ModifierInfo modifierInfo : coalesceModifiers(structModifiers)) {
 				//Checking if the modifier is an activity status modifier
 				if(modifierInfo instanceof Blocks.ActivityStatusModifierInfo) {
 					//Casting to the activity status modifier
@@ -82,8 +85,43 @@ public class ModifierUpdateTask {
 				}
 			}
 			
-			emitter.onSuccess(new Response(activityStatusUpdates, stickerModifiers, tapbackModifiers, tapbackRemovals));
-		}).subscribeOn(Schedulers.single()).observeOn(AndroidSchedulers.mainThread());
+			return new Response(activityStatusUpdates, stickerModifiers, tapbackModifiers, tapbackRemovals);
+		})).subscribeOn(DatabaseManager.getInstance().getWriteScheduler()).observeOn(AndroidSchedulers.mainThread());
+	}
+	
+	/**
+	 * Removes modifiers that are replaced by a later modifier for the same target
+	 * Only the latest activity status of a message, and the latest tapback of a sender on a message component, are kept
+	 * @param modifiers The modifiers to coalesce, in the order they were received
+	 * @return The remaining modifiers, in their original order
+	 */
+	private static List<Blocks.ModifierInfo> coalesceModifiers(Collection<Blocks.ModifierInfo> modifiers) {
+		List<Blocks.ModifierInfo> modifierList = new ArrayList<>(modifiers);
+		Set<List<Object>> targetKeys = new HashSet<>();
+		
+		//Walking backwards, so that the latest modifier for each target is the one that's kept
+		List<Blocks.ModifierInfo> coalescedList = new ArrayList<>(modifierList.size());
+		for(ListIterator<Blocks.ModifierInfo> iterator = modifierList.listIterator(modifierList.size()); iterator.hasPrevious();) {
+			Blocks.ModifierInfo modifierInfo = iterator.previous();
+			
+			List<Object> targetKey;
+			if(modifierInfo instanceof Blocks.ActivityStatusModifierInfo) {
+				targetKey = Arrays.asList(Blocks.ActivityStatusModifierInfo.class, modifierInfo.message);
+			} else if(modifierInfo instanceof Blocks.TapbackModifierInfo) {
+				Blocks.TapbackModifierInfo tapbackModifierInfo = (Blocks.TapbackModifierInfo) modifierInfo;
+				targetKey = Arrays.asList(Blocks.TapbackModifierInfo.class, modifierInfo.message, tapbackModifierInfo.messageIndex, tapbackModifierInfo.sender);
+			} else {
+				targetKey = null;
+			}
+			
+			//Skipping modifiers that have already been replaced
+			if(targetKey != null && !targetKeys.add(targetKey)) continue;
+			
+			coalescedList.add(modifierInfo);
+		}
+		Collections.reverse(coalescedList);
+		
+		return coalescedList;
 	}
 	
 	public static class Response {
@@ -0,0 +1,139 @@
+package me.tagavari.airmessage.data
+
+import android.content.Context
+import android.provider.ContactsContract
+import io.reactivex.rxjava3.core.Single
+import io.reactivex.rxjava3.schedulers.Schedulers
+import io.reactivex.rxjava3.subjects.SingleSubject
+import me.tagavari.airmessage.flavor.CrashlyticsBridge
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Looks up users in Android's contacts database in batches
+ *
+ * Addresses requested within a short window of each other are looked up together in a single query,
+ * and a request for an address that is already being looked up shares the pending result.
+ * @param fetchUsers Looks up a batch of addresses, returning the user found for each address that matched a contact
+ * @param resultListener A listener called with the result of each lookup, before it is delivered to subscribers
+ */
+internal class ContactBatchResolver(
+	private val fetchUsers: (context: Context, addresses: List<String>) -> Map<String, UserCacheHelper.UserInfo> = ::fetchUserInfo,
+	private val resultListener: (address: String, userInfo: UserCacheHelper.UserInfo?) -> Unit
+) {
+	private val lock = Any()
+	private val pendingLookups = mutableMapOf<String, SingleSubject<Optional<UserCacheHelper.UserInfo>>>()
+	private val queuedAddresses = mutableListOf<String>()
+	private var flushScheduled = false
+	
+	/**
+	 * Requests the user information for an address
+	 * @param context The context to use
+	 * @param address The normalized address of the user
+	 * @return A single for the user's information, which is empty if the user wasn't found
+	 */
+	fun resolve(context: Context, address: String): Single<Optional<UserCacheHelper.UserInfo>> {
+		synchronized(lock) {
+			//Sharing the lookup if this address is already pending
+			pendingLookups[address]?.let { return it }
+			
+			//Queuing the address for the next batch
+			val subject = SingleSubject.create<Optional<UserCacheHelper.UserInfo>>()
+			pendingLookups[address] = subject
+			queuedAddresses.add(address)
+			
+			//Scheduling the batch
+			if(!flushScheduled) {
+				flushScheduled = true
+				val applicationContext = context.applicationContext
+				Schedulers.io().scheduleDirect({ flush(applicationContext) }, batchDelayMillis, TimeUnit.MILLISECONDS)
+			}
+			
+			return subject
+		}
+	}
+	
+	/**
+	 * Looks up all queued addresses, and delivers their results
+	 */
+	private fun flush(context: Context) {
+		//Taking the queued addresses
+		val addresses: List<String>
+		synchronized(lock) {
+			addresses = queuedAddresses.toList()
+			queuedAddresses.clear()
+			flushScheduled = false
+		}
+		
+		for(batch in addresses.chunked(maxBatchSize)) {
+			val results = try {
+				fetchUsers(context, batch)
+			} catch(exception: Exception) {
+				CrashlyticsBridge.recordException(exception)
+				for(address in batch) takeLookup(address)?.onError(exception)
+				continue
+			}
+			
+			for(address in batch) {
+				val userInfo = results[address]
+				resultListener(address, userInfo)
+				takeLookup(address)?.onSuccess(Optional.ofNullable(userInfo))
+			}
+		}
+	}
+	
+	/**
+	 * Removes a lookup from the pending lookups, so that later requests for its address start a new lookup
+	 */
+	private fun takeLookup(address: String): SingleSubject<Optional<UserCacheHelper.UserInfo>>? {
+		return synchronized(lock) { pendingLookups.remove(address) }
+	}
+	
+	companion object {
+		private const val batchDelayMillis = 10L //The amount of time to wait for more addresses before running a query
+		const val maxBatchSize = 200 //Each address is bound twice, which keeps queries under SQLite's limit of 999 arguments
+		
+		/**
+		 * Fetches user information directly from Android's contacts database
+		 * @param context The context to use
+		 * @param addresses The normalized addresses of the users
+		 * @return A map of addresses to the user found for them, with no entries for addresses that weren't found
+		 */
+		private fun fetchUserInfo(context: Context, addresses: List<String>): Map<String, UserCacheHelper.UserInfo> {
+			val placeholders = addresses.joinToString(", ") { "?" }
+			val addressSet = addresses.toHashSet()
+			val results = mutableMapOf<String, UserCacheHelper.UserInfo>()
+			
+			//Querying the database
+			(context.contentResolver.query(
+				ContactsContract.Data.CONTENT_URI,
+				arrayOf(ContactsContract.Data.CONTACT_ID, ContactsContract.Contacts.LOOKUP_KEY, ContactsContract.Contacts.DISPLAY_NAME, ContactsContract.Data.CONTACT_LAST_UPDATED_TIMESTAMP, ContactsContract.CommonDataKinds.Email.ADDRESS, ContactsContract.CommonDataKinds.Phone.NORMALIZED_NUMBER),
+				ContactsContract.CommonDataKinds.Email.ADDRESS + " IN ($placeholders) OR " + ContactsContract.CommonDataKinds.Phone.NORMALIZED_NUMBER + " IN ($placeholders)",
+				(addresses + addresses).toTypedArray(),
+				null
+			) ?: return results).use { cursor ->
+				val iContactID = cursor.getColumnIndexOrThrow(ContactsContract.Data.CONTACT_ID)
+				val iLookupKey = cursor.getColumnIndexOrThrow(ContactsContract.Contacts.LOOKUP_KEY)
+				val iDisplayName = cursor.getColumnIndexOrThrow(ContactsContract.Contacts.DISPLAY_NAME)
+				val iLastUpdated = cursor.getColumnIndexOrThrow(ContactsContract.Data.CONTACT_LAST_UPDATED_TIMESTAMP)
+				val iEmailAddress = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Email.ADDRESS)
+				val iNormalizedNumber = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.NORMALIZED_NUMBER)
+				
+				while(cursor.moveToNext()) {
+					//Matching the row to the address it was found for, keeping the first match for each address
+					val address = listOf(cursor.getString(iEmailAddress), cursor.getString(iNormalizedNumber))
+						.firstOrNull { it != null && addressSet.contains(it) && !results.containsKey(it) } ?: continue
+					
+					results[address] = UserCacheHelper.UserInfo(
+						contactID = cursor.getLong(iContactID),
+						lookupKey = cursor.getString(iLookupKey),
+						contactName = cursor.getString(iDisplayName),
+						lastUpdated = cursor.getLong(iLastUpdated)
+					)
+				}
+			}
+			
+			return results
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package me.tagavari.airmessage.data
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.util.Log
+import android.util.LruCache
+import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers
+import io.reactivex.rxjava3.core.Single
+import io.reactivex.rxjava3.schedulers.Schedulers
+import me.tagavari.airmessage.helper.BitmapHelper
+import me.tagavari.airmessage.helper.ContactHelper.getContactImageURI
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+
+/**
+ * Caches rendered contact photos and conversation icons, in memory and on disk
+ *
+ * Keys include the time each contact was last updated, so a contact's icons are rendered again after its photo changes.
+ * Outdated entries are never requested again, and are dropped as the caches fill up.
+ * Cached bitmaps are shared between callers, and must not be modified or recycled.
+ */
+class ContactIconCache(context: Context) {
+	private val directory = File(context.cacheDir, directoryName)
+	private val diskLock = Any()
+	
+	private val memoryCache = object : LruCache<String, Bitmap>((Runtime.getRuntime().maxMemory() / 16).toInt()) {
+		override fun sizeOf(key: String, bitmap: Bitmap): Int {
+			return bitmap.allocationByteCount
+		}
+	}
+	
+	//Keys of icons that couldn't be rendered, such as for contacts without a photo
+	private val failedCache = LruCache<String, Boolean>(failedCacheSize)
+	
+	/**
+	 * Gets a contact's photo, cropped to a circle
+	 * @param context The context to use
+	 * @param userInfo The contact to get the photo of
+	 * @param size The diameter of the icon, in pixels
+	 * @return A single for the icon, or an error if the contact has no photo
+	 */
+	fun getContactIcon(context: Context, userInfo: UserCacheHelper.UserInfo, size: Int): Single<Bitmap> {
+		return getOrRender("contact_${userInfo.contactID}_${userInfo.lastUpdated}_$size") {
+			Rendering(BitmapHelper.renderCircularBitmap(BitmapHelper.decodeSampledBitmap(context, getContactImageURI(userInfo.contactID), size), size))
+		}
+	}
+	
+	/**
+	 * Gets a bitmap from the cache, rendering it if it isn't available
+	 * @param key A key made up of everything the bitmap is rendered from, consisting only of characters that are valid in a file name
+	 * @param renderer A function that renders the bitmap, called on a background thread
+	 * @return A single for the bitmap, or an error if the bitmap couldn't be rendered
+	 */
+	fun getOrRender(key: String, renderer: () -> Rendering): Single<Bitmap> {
+		//Returning immediately from memory
+		memoryCache[key]?.let { return Single.just(it) }
+		if(failedCache[key] != null) return Single.error(IOException("Failed to render $key"))
+		
+		return Single.fromCallable {
+			memoryCache[key]?.let { return@fromCallable it }
+			
+			//Reading the bitmap from disk, or rendering it
+			val bitmap = readDisk(key) ?: try {
+				val rendering = renderer()
+				if(rendering.persistent) writeDisk(key, rendering.bitmap)
+				rendering.bitmap
+			} catch(exception: Exception) {
+				failedCache.put(key, true)
+				throw exception
+			}
+			
+			memoryCache.put(key, bitmap)
+			bitmap
+		}.subscribeOn(Schedulers.io()).observeOn(AndroidSchedulers.mainThread())
+	}
+	
+	/**
+	 * Clears the in-memory cache
+	 */
+	fun clearMemory() {
+		memoryCache.evictAll()
+		failedCache.evictAll()
+	}
+	
+	/**
+	 * Reads a bitmap from the disk cache
+	 */
+	private fun readDisk(key: String): Bitmap? {
+		synchronized(diskLock) {
+			val file = File(directory, "$key.png")
+			if(!file.exists()) return null
+			
+			//Marking the file as recently used
+			file.setLastModified(System.currentTimeMillis())
+			
+			return BitmapFactory.decodeFile(file.path)
+		}
+	}
+	
+	/**
+	 * Writes a bitmap to the disk cache, and removes the least recently used files if the cache is full
+	 */
+	private fun writeDisk(key: String, bitmap: Bitmap) {
+		synchronized(diskLock) {
+			try {
+				if(!directory.exists() && !directory.mkdirs()) throw IOException("Failed to create icon cache directory")
+				
+				//Writing to a temporary file first, so that a partially written file is never read
+				val tempFile = File(directory, "$key.tmp")
+				FileOutputStream(tempFile).use { bitmap.compress(Bitmap.CompressFormat.PNG, 100, it) }
+				if(!tempFile.renameTo(File(directory, "$key.png"))) throw IOException("Failed to move icon to cache")
+			} catch(exception: IOException) {
+				Log.w(TAG, "Failed to save icon $key", exception)
+				return
+			}
+			
+			//Removing the least recently used files until the cache fits
+			val files = directory.listFiles() ?: return
+			var totalSize = files.sumOf { it.length() }
+			if(totalSize <= maxDiskSize) return
+			for(file in files.sortedBy { it.lastModified() }) {
+				totalSize -= file.length()
+				file.delete()
+				if(totalSize <= maxDiskSize) break
+			}
+		}
+	}
+	
+	/**
+	 * A bitmap rendered for the cache
+	 * @param bitmap The rendered bitmap
+	 * @param persistent Whether the bitmap can be saved to disk, or was rendered with a fallback and should be rendered again after the app restarts
+	 */
+	class Rendering(val bitmap: Bitmap, val persistent: Boolean = true)
+	
+	companion object {
+		private val TAG = ContactIconCache::class.java.simpleName
+		private const val directoryName = "contact_icons"
+		private const val maxDiskSize = 10L * 1024 * 1024 //10 MB
+		private const val failedCacheSize = 500
+	}
+}
@@ -0,0 +1,394 @@
+package me.tagavari.airmessage.data
+
+import android.content.Context
+import android.database.Cursor
+import android.net.Uri
+import android.provider.ContactsContract
+import android.util.AtomicFile
+import android.util.Log
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.core.Scheduler
+import io.reactivex.rxjava3.core.Single
+import io.reactivex.rxjava3.schedulers.Schedulers
+import io.reactivex.rxjava3.subjects.PublishSubject
+import me.tagavari.airmessage.MainApplication
+import me.tagavari.airmessage.flavor.CrashlyticsBridge
+import me.tagavari.airmessage.helper.StringHelper
+import java.io.*
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Keeps a copy of the addresses in the user's contacts, indexed by address
+ *
+ * The index is saved to disk, so that contacts are available immediately after the app starts.
+ * After it is loaded, only contacts that have changed since the last sync are read from Android's contacts database.
+ * All reading and syncing happens on a single background thread, and readers are given immutable snapshots.
+ */
+class ContactIndex(context: Context) {
+	private val context = context.applicationContext
+	private val snapshotFile = AtomicFile(File(context.filesDir, snapshotFileName))
+	private val scheduler: Scheduler = Schedulers.from(Executors.newSingleThreadExecutor())
+	
+	@Volatile private var currentSnapshot: Snapshot? = null
+	private var savedSyncTime = 0L //The sync time of the snapshot on disk, only accessed on the index's thread
+	private val syncPending = AtomicBoolean(false)
+	private val updateSubject = PublishSubject.create<Snapshot>()
+	
+	/**
+	 * The latest snapshot of the index, or NULL if the index hasn't been loaded yet
+	 */
+	val snapshot: Snapshot?
+		get() = currentSnapshot
+	
+	/**
+	 * An observable that emits a new snapshot whenever a sync changes the index
+	 */
+	val updates: Observable<Snapshot>
+		get() = updateSubject
+	
+	/**
+	 * Gets the latest snapshot of the index, loading it first if needed
+	 */
+	fun getSnapshot(): Single<Snapshot> {
+		currentSnapshot?.let { return Single.just(it) }
+		return Single.fromCallable { loadSnapshot() }.subscribeOn(scheduler)
+	}
+	
+	/**
+	 * Schedules a sync with Android's contacts database
+	 * Requests made while a sync is already waiting to run are covered by that sync
+	 */
+	fun requestSync() {
+		if(!syncPending.compareAndSet(false, true)) return
+		
+		scheduler.scheduleDirect {
+			syncPending.set(false)
+			
+			try {
+				sync()
+			} catch(exception: Exception) {
+				Log.w(TAG, "Failed to sync contact index", exception)
+				CrashlyticsBridge.recordException(exception)
+			}
+		}
+	}
+	
+	/**
+	 * Gets the current snapshot, reading it from disk or building it from Android's contacts database if it hasn't been loaded yet
+	 * Only to be called on the index's thread
+	 */
+	private fun loadSnapshot(): Snapshot {
+		currentSnapshot?.let { return it }
+		
+		//Reading the snapshot from disk
+		val savedSnapshot = try {
+			if(snapshotFile.baseFile.exists()) DataInputStream(BufferedInputStream(snapshotFile.openRead())).use { Snapshot.read(it) } else null
+		} catch(exception: IOException) {
+			Log.w(TAG, "Failed to read contact index", exception)
+			null
+		}
+		
+		//Otherwise building a new snapshot
+		val snapshot = savedSnapshot?.also { savedSyncTime = it.syncTime } ?: scanAll().also { writeSnapshotFile(it) }
+		
+		currentSnapshot = snapshot
+		return snapshot
+	}
+	
+	/**
+	 * Applies changes from Android's contacts database to the index
+	 * Only to be called on the index's thread
+	 */
+	private fun sync() {
+		if(!MainApplication.canUseContacts(context)) return
+		
+		val previousSnapshot = loadSnapshot()
+		
+		//Rebuilding the index if it's too old to see every deleted contact
+		val updatedSnapshot = if(System.currentTimeMillis() - previousSnapshot.syncTime > ContactsContract.DeletedContacts.DAYS_KEPT_MILLISECONDS) {
+			scanAll()
+		} else {
+			scanChanges(previousSnapshot)
+		}
+		
+		//Keeping the updated snapshot, even if it hasn't changed, so the same changes aren't read again
+		currentSnapshot = updatedSnapshot
+		
+		when(getSyncAction(previousSnapshot, updatedSnapshot, savedSyncTime)) {
+			syncActionNotify -> {
+				writeSnapshotFile(updatedSnapshot)
+				
+				//Notifying listeners of the change (including listeners that were given the outdated snapshot read from disk)
+				updateSubject.onNext(updatedSnapshot)
+			}
+			syncActionSave -> writeSnapshotFile(updatedSnapshot)
+		}
+	}
+	
+	/**
+	 * Builds a snapshot from all contacts in Android's contacts database
+	 */
+	private fun scanAll(): Snapshot {
+		val syncTime = System.currentTimeMillis()
+		return Snapshot(syncTime, sortEntries(queryEntries(null, null)))
+	}
+	
+	/**
+	 * Builds a snapshot by applying the contacts that have changed since a previous snapshot
+	 */
+	private fun scanChanges(snapshot: Snapshot): Snapshot {
+		val syncTime = System.currentTimeMillis()
+		val sinceArgs = arrayOf(snapshot.syncTime.toString())
+		
+		//Finding contacts that have been updated or deleted since the last sync
+		val updatedContactIDs = queryContactIDs(ContactsContract.Contacts.CONTENT_URI, ContactsContract.Contacts._ID,
+			ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " >= ?", sinceArgs)
+		val deletedContactIDs = queryContactIDs(ContactsContract.DeletedContacts.CONTENT_URI, ContactsContract.DeletedContacts.CONTACT_ID,
+			ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP + " >= ?", sinceArgs)
+		if(updatedContactIDs.isEmpty() && deletedContactIDs.isEmpty()) return Snapshot(syncTime, snapshot.entries)
+		
+		//Reading the current addresses of updated contacts
+		val updatedEntries = updatedContactIDs.chunked(maxQueryArguments).flatMap { contactIDs ->
+			queryEntries(ContactsContract.Data.CONTACT_ID + " IN (" + contactIDs.joinToString(", ") { "?" } + ")", contactIDs.map { it.toString() })
+		}
+		
+		return snapshot.applyChanges(syncTime, updatedContactIDs, deletedContactIDs, updatedEntries)
+	}
+	
+	/**
+	 * Queries email and phone number entries from Android's contacts database
+	 */
+	private fun queryEntries(selection: String?, selectionArgs: List<String>?): List<Entry> {
+		val entries = mutableListOf<Entry>()
+		
+		(context.contentResolver.query(
+			ContactsContract.Data.CONTENT_URI,
+			arrayOf(ContactsContract.Data.CONTACT_ID, ContactsContract.Data.LOOKUP_KEY, ContactsContract.Data.MIMETYPE, ContactsContract.Data.DISPLAY_NAME, ContactsContract.Data.CONTACT_LAST_UPDATED_TIMESTAMP, ContactsContract.Data.DATA1, ContactsContract.Data.DATA2, ContactsContract.Data.DATA3, ContactsContract.CommonDataKinds.Phone.NORMALIZED_NUMBER),
+			"(" + ContactsContract.Data.MIMETYPE + " = ? OR (" + ContactsContract.Data.HAS_PHONE_NUMBER + " != 0 AND " + ContactsContract.Data.MIMETYPE + " = ?))" + (if(selection != null) " AND ($selection)" else ""),
+			arrayOf(ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE, ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE) + (selectionArgs ?: listOf()),
+			null
+		) ?: throw IllegalStateException("Received NULL cursor from content resolver")).use { cursor ->
+			val indexContactID = cursor.getColumnIndexOrThrow(ContactsContract.Data.CONTACT_ID)
+			val indexLookupKey = cursor.getColumnIndexOrThrow(ContactsContract.Data.LOOKUP_KEY)
+			val indexMimeType = cursor.getColumnIndexOrThrow(ContactsContract.Data.MIMETYPE)
+			val indexDisplayName = cursor.getColumnIndexOrThrow(ContactsContract.Data.DISPLAY_NAME)
+			val indexLastUpdated = cursor.getColumnIndexOrThrow(ContactsContract.Data.CONTACT_LAST_UPDATED_TIMESTAMP)
+			val indexAddress = cursor.getColumnIndexOrThrow(ContactsContract.Data.DATA1) //The address itself (email or phone number)
+			val indexAddressType = cursor.getColumnIndexOrThrow(ContactsContract.Data.DATA2) //The label ID for this address
+			val indexAddressLabel = cursor.getColumnIndexOrThrow(ContactsContract.Data.DATA3) //The custom user-assigned label for this address
+			val indexNormalizedNumber = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.NORMALIZED_NUMBER)
+			
+			while(cursor.moveToNext()) {
+				//Skipping entries without an address
+				val address = cursor.getString(indexAddress)
+				if(address.isNullOrEmpty()) continue
+				
+				entries.add(Entry(
+					contactID = cursor.getLong(indexContactID),
+					lookupKey = cursor.getString(indexLookupKey),
+					contactName = StringHelper.nullifyEmptyString(cursor.getString(indexDisplayName)),
+					lastUpdated = cursor.getLong(indexLastUpdated),
+					mimeType = cursor.getString(indexMimeType),
+					address = address,
+					normalizedNumber = if(cursor.getString(indexMimeType) == ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE) cursor.getString(indexNormalizedNumber) else null,
+					addressType = cursor.getIntOrNull(indexAddressType),
+					addressLabel = cursor.getString(indexAddressLabel)
+				))
+			}
+		}
+		
+		return entries
+	}
+	
+	/**
+	 * Queries a list of contact IDs from Android's contacts database
+	 */
+	private fun queryContactIDs(uri: Uri, idColumn: String, selection: String, selectionArgs: Array<String>): List<Long> {
+		return (context.contentResolver.query(uri, arrayOf(idColumn), selection, selectionArgs, null) ?: return listOf()).use { cursor ->
+			val contactIDs = mutableListOf<Long>()
+			while(cursor.moveToNext()) contactIDs.add(cursor.getLong(0))
+			contactIDs
+		}
+	}
+	
+	/**
+	 * Saves a snapshot to disk
+	 */
+	private fun writeSnapshotFile(snapshot: Snapshot) {
+		val outputStream = try {
+			snapshotFile.startWrite()
+		} catch(exception: IOException) {
+			Log.w(TAG, "Failed to save contact index", exception)
+			return
+		}
+		
+		try {
+			val dataOutputStream = DataOutputStream(BufferedOutputStream(outputStream))
+			snapshot.write(dataOutputStream)
+			dataOutputStream.flush()
+			snapshotFile.finishWrite(outputStream)
+			savedSyncTime = snapshot.syncTime
+		} catch(exception: IOException) {
+			Log.w(TAG, "Failed to save contact index", exception)
+			snapshotFile.failWrite(outputStream)
+		}
+	}
+	
+	/**
+	 * An email address or phone number of a contact
+	 * @param contactID The ID of the contact
+	 * @param lookupKey The lookup key of the contact
+	 * @param contactName The display name of the contact
+	 * @param lastUpdated The time the contact was last updated
+	 * @param mimeType The type of this entry (email or phone number)
+	 * @param address The address, as entered by the user
+	 * @param normalizedNumber The E164 representation of this address if it is a phone number, or NULL if unavailable
+	 * @param addressType The label ID for this address
+	 * @param addressLabel The custom user-assigned label for this address
+	 */
+	data class Entry(
+		val contactID: Long,
+		val lookupKey: String,
+		val contactName: String?,
+		val lastUpdated: Long,
+		val mimeType: String,
+		val address: String,
+		val normalizedNumber: String?,
+		val addressType: Int?,
+		val addressLabel: String?
+	)
+	
+	/**
+	 * An immutable copy of the index
+	 * @param syncTime The time this snapshot was last synced with Android's contacts database
+	 * @param entries All indexed entries, grouped by contact and ordered by contact name
+	 */
+	class Snapshot(val syncTime: Long, val entries: List<Entry>) {
+		private val addressMap = HashMap<String, Entry>(entries.size * 2).apply {
+			for(entry in entries) {
+				putIfAbsent(entry.address, entry)
+				entry.normalizedNumber?.let { putIfAbsent(it, entry) }
+			}
+		}
+		
+		/**
+		 * Finds the entry for a normalized address
+		 * @param address The normalized address to find
+		 * @return The matching entry, or NULL if no contact has this address
+		 */
+		fun findAddress(address: String): Entry? = addressMap[address]
+		
+		/**
+		 * Creates a new snapshot with the entries of changed contacts replaced
+		 * @param syncTime The time of the sync that found the changes
+		 * @param updatedContactIDs The IDs of contacts that were added or updated
+		 * @param deletedContactIDs The IDs of contacts that were deleted
+		 * @param updatedEntries The current entries of the updated contacts
+		 */
+		fun applyChanges(syncTime: Long, updatedContactIDs: Collection<Long>, deletedContactIDs: Collection<Long>, updatedEntries: List<Entry>): Snapshot {
+			val changedContactIDs = updatedContactIDs.toHashSet().apply { addAll(deletedContactIDs) }
+			val entries = entries.filter { !changedContactIDs.contains(it.contactID) } + updatedEntries
+			
+			return Snapshot(syncTime, sortEntries(entries))
+		}
+		
+		/**
+		 * Writes this snapshot to a stream
+		 */
+		@Throws(IOException::class)
+		fun write(outputStream: DataOutputStream) {
+			outputStream.writeInt(snapshotVersion)
+			outputStream.writeLong(syncTime)
+			outputStream.writeInt(entries.size)
+			for(entry in entries) {
+				outputStream.writeLong(entry.contactID)
+				outputStream.writeUTF(entry.lookupKey)
+				outputStream.writeNullableUTF(entry.contactName)
+				outputStream.writeLong(entry.lastUpdated)
+				outputStream.writeUTF(entry.mimeType)
+				outputStream.writeUTF(entry.address)
+				outputStream.writeNullableUTF(entry.normalizedNumber)
+				outputStream.writeBoolean(entry.addressType != null)
+				if(entry.addressType != null) outputStream.writeInt(entry.addressType)
+				outputStream.writeNullableUTF(entry.addressLabel)
+			}
+		}
+		
+		companion object {
+			/**
+			 * Reads a snapshot from a stream
+			 * @return The snapshot, or NULL if the snapshot was saved in an older format
+			 */
+			@JvmStatic
+			@Throws(IOException::class)
+			fun read(inputStream: DataInputStream): Snapshot? {
+				if(inputStream.readInt() != snapshotVersion) return null
+				
+				val syncTime = inputStream.readLong()
+				val entryCount = inputStream.readInt()
+				val entries = ArrayList<Entry>(entryCount)
+				for(i in 0 until entryCount) {
+					entries.add(Entry(
+						contactID = inputStream.readLong(),
+						lookupKey = inputStream.readUTF(),
+						contactName = inputStream.readNullableUTF(),
+						lastUpdated = inputStream.readLong(),
+						mimeType = inputStream.readUTF(),
+						address = inputStream.readUTF(),
+						normalizedNumber = inputStream.readNullableUTF(),
+						addressType = if(inputStream.readBoolean()) inputStream.readInt() else null,
+						addressLabel = inputStream.readNullableUTF()
+					))
+				}
+				
+				return Snapshot(syncTime, entries)
+			}
+		}
+	}
+	
+	companion object {
+		private val TAG = ContactIndex::class.java.simpleName
+		private const val snapshotFileName = "contact_index"
+		private const val snapshotVersion = 2
+		private const val maxQueryArguments = 500
+		const val syncTimeSaveInterval = 24L * 60 * 60 * 1000 //How often to save the sync time of a snapshot that hasn't changed
+		
+		//What to do with the result of a sync
+		const val syncActionNone = 0 //Nothing has changed
+		const val syncActionSave = 1 //Only the sync time has changed, and it hasn't been saved in a while
+		const val syncActionNotify = 2 //The entries have changed, so the snapshot should be saved and listeners notified
+		
+		/**
+		 * Decides what to do with the result of a sync
+		 * Unchanged snapshots are only occasionally saved to disk, as reading a few changes again after a restart is cheaper than rewriting the file on every sync
+		 * @param previousSnapshot The snapshot before the sync, which may have been read from disk
+		 * @param updatedSnapshot The snapshot produced by the sync
+		 * @param savedSyncTime The sync time of the snapshot on disk
+		 */
+		@JvmStatic
+		fun getSyncAction(previousSnapshot: Snapshot, updatedSnapshot: Snapshot, savedSyncTime: Long): Int {
+			return when {
+				updatedSnapshot.entries != previousSnapshot.entries -> syncActionNotify
+				updatedSnapshot.syncTime - savedSyncTime >= syncTimeSaveInterval -> syncActionSave
+				else -> syncActionNone
+			}
+		}
+		
+		/**
+		 * Sorts entries by contact name, keeping the entries of each contact together
+		 */
+		private fun sortEntries(entries: List<Entry>): List<Entry> {
+			return entries.sortedWith(compareBy<Entry, String?>(nullsFirst(String.CASE_INSENSITIVE_ORDER)) { it.contactName }.thenBy { it.contactID })
+		}
+		
+		private fun Cursor.getIntOrNull(columnIndex: Int): Int? = if(isNull(columnIndex)) null else getInt(columnIndex)
+		
+		private fun DataOutputStream.writeNullableUTF(value: String?) {
+			writeBoolean(value != null)
+			if(value != null) writeUTF(value)
+		}
+		
+		private fun DataInputStream.readNullableUTF(): String? = if(readBoolean()) readUTF() else null
+	}
+}
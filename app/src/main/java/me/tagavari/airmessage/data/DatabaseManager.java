@@ -7,11 +7,14 @@ import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
 import android.util.Base64;
 import android.util.LongSparseArray;
 import android.webkit.MimeTypeMap;
 import androidx.annotation.Nullable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import kotlin.Pair;
 import me.tagavari.airmessage.MainApplication;
 import me.tagavari.airmessage.activity.Messaging;
@@ -26,6 +29,7 @@ import me.tagavari.airmessage.util.ReplaceInsertResult;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -35,7 +39,7 @@ import java.util.zip.Inflater;
 public class DatabaseManager extends SQLiteOpenHelper {
 	//If you change the database schema, you must increment the database version
 	private static final String DATABASE_NAME = "messages.db";
-	private static final int DATABASE_VERSION = 15;
+	private static final int DATABASE_VERSION = 20;
 	
 	//Creating the fetch statements
 	/* private static final String SQL_FETCH_CONVERSATIONS = "SELECT * FROM (" +
@@ -79,6 +83,63 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	private static final String messageSortOrderDesc = Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + " DESC, " + Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET + " DESC";
 	private static final String messageSortOrderAsc = Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + " ASC, " + Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET + " ASC";
 	private static final String messageSortOrderDescSimple = Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_DATE + " DESC";
+	private static final int itemLoadBatchSize = 500; //The maximum number of messages to load attachments, stickers and tapbacks for at once
+	private static final int searchSnippetTokens = 12; //The approximate number of words to show around each search match
+	
+	//Creating the bulk insert statements
+	private static final String SQL_INSERT_MESSAGE_STRUCT = "INSERT INTO " + Contract.MessageEntry.TABLE_NAME + " (" +
+			Contract.MessageEntry.COLUMN_NAME_SERVERID + ", " +
+			Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + ", " +
+			Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET + ", " +
+			Contract.MessageEntry.COLUMN_NAME_GUID + ", " +
+			Contract.MessageEntry.COLUMN_NAME_DATE + ", " +
+			Contract.MessageEntry.COLUMN_NAME_CHAT + ", " +
+			Contract.MessageEntry.COLUMN_NAME_SENDER + ", " +
+			Contract.MessageEntry.COLUMN_NAME_ITEMTYPE + ", " +
+			Contract.MessageEntry.COLUMN_NAME_ITEMSUBTYPE + ", " +
+			Contract.MessageEntry.COLUMN_NAME_OTHER + ", " +
+			Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT + ", " +
+			Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT + ", " +
+			Contract.MessageEntry.COLUMN_NAME_STATE + ", " +
+			Contract.MessageEntry.COLUMN_NAME_ERROR + ", " +
+			Contract.MessageEntry.COLUMN_NAME_DATEREAD + ", " +
+			Contract.MessageEntry.COLUMN_NAME_SENDSTYLE + ", " +
+			Contract.MessageEntry.COLUMN_NAME_SENDSTYLEVIEWED +
+			") VALUES (?, ?, 0, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+	private static final String SQL_INSERT_ATTACHMENT_STRUCT = "INSERT INTO " + Contract.AttachmentEntry.TABLE_NAME + " (" +
+			Contract.AttachmentEntry.COLUMN_NAME_GUID + ", " +
+			Contract.AttachmentEntry.COLUMN_NAME_MESSAGE + ", " +
+			Contract.AttachmentEntry.COLUMN_NAME_FILENAME + ", " +
+			Contract.AttachmentEntry.COLUMN_NAME_FILETYPE + ", " +
+			Contract.AttachmentEntry.COLUMN_NAME_FILESIZE + ", " +
+			Contract.AttachmentEntry.COLUMN_NAME_FILECHECKSUM + ", " +
+			Contract.AttachmentEntry.COLUMN_NAME_SORT + ", " +
+			Contract.AttachmentEntry.COLUMN_NAME_SHOULDAUTODOWNLOAD +
+			") VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+	
+	//Creating the cached statements for frequent writes
+	private static final String SQL_INSERT_MEMBER = "INSERT INTO " + Contract.MemberEntry.TABLE_NAME + " (" +
+			Contract.MemberEntry.COLUMN_NAME_MEMBER + ", " +
+			Contract.MemberEntry.COLUMN_NAME_CHAT + ", " +
+			Contract.MemberEntry.COLUMN_NAME_COLOR +
+			") VALUES (?, ?, ?);";
+	private static final String SQL_INSERT_TAPBACK = "INSERT INTO " + Contract.TapbackEntry.TABLE_NAME + " (" +
+			Contract.TapbackEntry.COLUMN_NAME_MESSAGE + ", " +
+			Contract.TapbackEntry.COLUMN_NAME_MESSAGEINDEX + ", " +
+			Contract.TapbackEntry.COLUMN_NAME_SENDER + ", " +
+			Contract.TapbackEntry.COLUMN_NAME_CODE +
+			") VALUES (?, ?, ?, ?);";
+	private static final String SQL_UPDATE_TAPBACK_CODE = "UPDATE " + Contract.TapbackEntry.TABLE_NAME + " SET " + Contract.TapbackEntry.COLUMN_NAME_CODE + " = ? WHERE " + Contract.TapbackEntry._ID + " = ?;";
+	private static final String SQL_UPDATE_MESSAGE_STATE = "UPDATE " + Contract.MessageEntry.TABLE_NAME + " SET " + Contract.MessageEntry.COLUMN_NAME_STATE + " = ? WHERE " + Contract.MessageEntry._ID + " = ?;";
+	private static final String SQL_UPDATE_MESSAGE_STATE_DATEREAD = "UPDATE " + Contract.MessageEntry.TABLE_NAME + " SET " + Contract.MessageEntry.COLUMN_NAME_STATE + " = ?, " + Contract.MessageEntry.COLUMN_NAME_DATEREAD + " = ? WHERE " + Contract.MessageEntry._ID + " = ?;";
+	private static final String SQL_UPDATE_ATTACHMENT_FILE = "UPDATE " + Contract.AttachmentEntry.TABLE_NAME + " SET " +
+			Contract.AttachmentEntry.COLUMN_NAME_FILEPATH + " = ?, " +
+			Contract.AttachmentEntry.COLUMN_NAME_FILEPRESENT + " = 1, " +
+			Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILENAME + " = ?, " +
+			Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILETYPE + " = ?";
+	private static final String SQL_UPDATE_ATTACHMENT_FILE_BY_ID = SQL_UPDATE_ATTACHMENT_FILE + " WHERE " + Contract.AttachmentEntry._ID + " = ?;";
+	private static final String SQL_UPDATE_ATTACHMENT_FILE_BY_GUID = SQL_UPDATE_ATTACHMENT_FILE + " WHERE " + Contract.AttachmentEntry.COLUMN_NAME_GUID + " = ?;";
+	private static final String SQL_INCREMENT_UNREAD_COUNT = "UPDATE " + Contract.ConversationEntry.TABLE_NAME + " SET " + Contract.ConversationEntry.COLUMN_NAME_UNREADMESSAGECOUNT + " = " + Contract.ConversationEntry.COLUMN_NAME_UNREADMESSAGECOUNT + " + ? WHERE " + Contract.ConversationEntry._ID + " = ?;";
 	
 	//private static final String SQL_FETCH_CONVERSATION_MESSAGES = "SELECT * FROM " + Contract.MessageEntry.TABLE_NAME + " WHERE " + Contract.MessageEntry.COLUMN_NAME_CHAT + " = ? ORDER BY " + Contract.MessageEntry.COLUMN_NAME_DATE + " ASC;";
 	
@@ -148,7 +209,8 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILETYPE + " TEXT," +
 			Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILENAME + " TEXT," +
 			Contract.AttachmentEntry.COLUMN_NAME_SORT + " INTEGER, " +
-			Contract.AttachmentEntry.COLUMN_NAME_SHOULDAUTODOWNLOAD + " INTEGER NOT NULL DEFAULT 0" +
+			Contract.AttachmentEntry.COLUMN_NAME_SHOULDAUTODOWNLOAD + " INTEGER NOT NULL DEFAULT 0, " +
+			Contract.AttachmentEntry.COLUMN_NAME_FILEPRESENT + " INTEGER NOT NULL DEFAULT 0" +
 			");";
 	private static final String SQL_CREATE_TABLE_MESSAGEPREVIEW = "CREATE TABLE " + Contract.MessagePreviewEntry.TABLE_NAME + " (" +
 			Contract.MessagePreviewEntry._ID + " INTEGER PRIMARY KEY UNIQUE," +
@@ -175,6 +237,112 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			Contract.TapbackEntry.COLUMN_NAME_SENDER + " TEXT," +
 			Contract.TapbackEntry.COLUMN_NAME_CODE + " INTEGER NOT NULL" +
 			");";
+	
+	//Creating the index creation statements
+	static final String[] SQL_CREATE_INDICES = {
+			//Loading a conversation's items in order
+			"CREATE INDEX IF NOT EXISTS index_messages_chat_sort ON " + Contract.MessageEntry.TABLE_NAME + " (" + Contract.MessageEntry.COLUMN_NAME_CHAT + ", " + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + ", " + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET + ");",
+			//Finding the latest sort ID when inserting an item
+			"CREATE INDEX IF NOT EXISTS index_messages_sort ON " + Contract.MessageEntry.TABLE_NAME + " (" + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + ", " + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET + ");",
+			//Loading a conversation's items by date (for conversations not handled by AirMessage bridge)
+			"CREATE INDEX IF NOT EXISTS index_messages_chat_date ON " + Contract.MessageEntry.TABLE_NAME + " (" + Contract.MessageEntry.COLUMN_NAME_CHAT + ", " + Contract.MessageEntry.COLUMN_NAME_DATE + ");",
+			"CREATE INDEX IF NOT EXISTS index_messages_guid ON " + Contract.MessageEntry.TABLE_NAME + " (" + Contract.MessageEntry.COLUMN_NAME_GUID + ");",
+			"CREATE INDEX IF NOT EXISTS index_attachments_message ON " + Contract.AttachmentEntry.TABLE_NAME + " (" + Contract.AttachmentEntry.COLUMN_NAME_MESSAGE + ", " + Contract.AttachmentEntry.COLUMN_NAME_SORT + ");",
+			"CREATE INDEX IF NOT EXISTS index_attachments_guid ON " + Contract.AttachmentEntry.TABLE_NAME + " (" + Contract.AttachmentEntry.COLUMN_NAME_GUID + ");",
+			"CREATE INDEX IF NOT EXISTS index_sticker_message ON " + Contract.StickerEntry.TABLE_NAME + " (" + Contract.StickerEntry.COLUMN_NAME_MESSAGE + ");",
+			"CREATE INDEX IF NOT EXISTS index_tapback_message ON " + Contract.TapbackEntry.TABLE_NAME + " (" + Contract.TapbackEntry.COLUMN_NAME_MESSAGE + ", " + Contract.TapbackEntry.COLUMN_NAME_MESSAGEINDEX + ");",
+			"CREATE INDEX IF NOT EXISTS index_members_chat ON " + Contract.MemberEntry.TABLE_NAME + " (" + Contract.MemberEntry.COLUMN_NAME_CHAT + ");",
+			"CREATE INDEX IF NOT EXISTS index_draft_files_chat ON " + Contract.DraftFileEntry.TABLE_NAME + " (" + Contract.DraftFileEntry.COLUMN_NAME_CHAT + ");"
+	};
+	private static final String SQL_CREATE_TABLE_CONVERSATIONPREVIEW = "CREATE TABLE IF NOT EXISTS " + Contract.ConversationPreviewEntry.TABLE_NAME + " (" +
+			Contract.ConversationPreviewEntry.COLUMN_NAME_CHAT + " INTEGER PRIMARY KEY, " +
+			Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGE + " INTEGER NOT NULL, " +
+			Contract.ConversationPreviewEntry.COLUMN_NAME_ITEMTYPE + " INTEGER NOT NULL, " +
+			Contract.ConversationPreviewEntry.COLUMN_NAME_DATE + " INTEGER NOT NULL, " +
+			Contract.ConversationPreviewEntry.COLUMN_NAME_SENDER + " TEXT, " +
+			Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGETEXT + " TEXT, " +
+			Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGESUBJECT + " TEXT, " +
+			Contract.ConversationPreviewEntry.COLUMN_NAME_SENDSTYLE + " TEXT, " +
+			Contract.ConversationPreviewEntry.COLUMN_NAME_ERROR + " INTEGER, " +
+			Contract.ConversationPreviewEntry.COLUMN_NAME_ATTACHMENTCOUNT + " INTEGER NOT NULL DEFAULT 0" +
+			");";
+	
+	/*
+	 * Triggers that keep the conversation preview table in sync with the messages it summarizes.
+	 * They run inside the transaction of the statement that fires them, so every write path (including ghost message merges and SMS imports) is covered.
+	 */
+	static final String[] SQL_CREATE_CONVERSATIONPREVIEW_TRIGGERS = {
+			"CREATE INDEX IF NOT EXISTS index_conversation_preview_message ON " + Contract.ConversationPreviewEntry.TABLE_NAME + " (" + Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGE + ");",
+			//Refreshing a conversation's preview when an item is added to it
+			"CREATE TRIGGER IF NOT EXISTS trigger_conversation_preview_message_insert AFTER INSERT ON " + Contract.MessageEntry.TABLE_NAME +
+					" WHEN NEW." + Contract.MessageEntry.COLUMN_NAME_ITEMTYPE + " IN (" + ConversationItemType.message + ", " + ConversationItemType.chatCreate + ")" +
+					" BEGIN " + String.join(" ", getSQLRefreshConversationPreview("NEW." + Contract.MessageEntry.COLUMN_NAME_CHAT)) + " END;",
+			//Refreshing a conversation's preview when an item changes in a way that could affect it
+			"CREATE TRIGGER IF NOT EXISTS trigger_conversation_preview_message_update AFTER UPDATE OF " +
+					Contract.MessageEntry.COLUMN_NAME_CHAT + ", " +
+					Contract.MessageEntry.COLUMN_NAME_ITEMTYPE + ", " +
+					Contract.MessageEntry.COLUMN_NAME_DATE + ", " +
+					Contract.MessageEntry.COLUMN_NAME_SENDER + ", " +
+					Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT + ", " +
+					Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT + ", " +
+					Contract.MessageEntry.COLUMN_NAME_SENDSTYLE + ", " +
+					Contract.MessageEntry.COLUMN_NAME_ERROR + ", " +
+					Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + ", " +
+					Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET +
+					" ON " + Contract.MessageEntry.TABLE_NAME +
+					" BEGIN " + String.join(" ", getSQLRefreshConversationPreview("NEW." + Contract.MessageEntry.COLUMN_NAME_CHAT)) + " END;",
+			//Refreshing the preview of the conversation an item was moved out of
+			"CREATE TRIGGER IF NOT EXISTS trigger_conversation_preview_message_move AFTER UPDATE OF " + Contract.MessageEntry.COLUMN_NAME_CHAT + " ON " + Contract.MessageEntry.TABLE_NAME +
+					" WHEN OLD." + Contract.MessageEntry.COLUMN_NAME_CHAT + " != NEW." + Contract.MessageEntry.COLUMN_NAME_CHAT +
+					" BEGIN " + String.join(" ", getSQLRefreshConversationPreview("OLD." + Contract.MessageEntry.COLUMN_NAME_CHAT)) + " END;",
+			//Refreshing a conversation's preview when the item it shows is deleted
+			"CREATE TRIGGER IF NOT EXISTS trigger_conversation_preview_message_delete AFTER DELETE ON " + Contract.MessageEntry.TABLE_NAME +
+					" WHEN OLD." + Contract.MessageEntry._ID + " IN (SELECT " + Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGE + " FROM " + Contract.ConversationPreviewEntry.TABLE_NAME + " WHERE " + Contract.ConversationPreviewEntry.COLUMN_NAME_CHAT + " = OLD." + Contract.MessageEntry.COLUMN_NAME_CHAT + ")" +
+					" BEGIN " + String.join(" ", getSQLRefreshConversationPreview("OLD." + Contract.MessageEntry.COLUMN_NAME_CHAT)) + " END;",
+			//Keeping the attachment count of previewed messages up to date
+			"CREATE TRIGGER IF NOT EXISTS trigger_conversation_preview_attachment_insert AFTER INSERT ON " + Contract.AttachmentEntry.TABLE_NAME +
+					" BEGIN " + getSQLUpdateConversationPreviewAttachments("NEW." + Contract.AttachmentEntry.COLUMN_NAME_MESSAGE) + " END;",
+			"CREATE TRIGGER IF NOT EXISTS trigger_conversation_preview_attachment_update AFTER UPDATE OF " + Contract.AttachmentEntry.COLUMN_NAME_MESSAGE + " ON " + Contract.AttachmentEntry.TABLE_NAME +
+					" BEGIN " + getSQLUpdateConversationPreviewAttachments("OLD." + Contract.AttachmentEntry.COLUMN_NAME_MESSAGE) + " " + getSQLUpdateConversationPreviewAttachments("NEW." + Contract.AttachmentEntry.COLUMN_NAME_MESSAGE) + " END;",
+			"CREATE TRIGGER IF NOT EXISTS trigger_conversation_preview_attachment_delete AFTER DELETE ON " + Contract.AttachmentEntry.TABLE_NAME +
+					" BEGIN " + getSQLUpdateConversationPreviewAttachments("OLD." + Contract.AttachmentEntry.COLUMN_NAME_MESSAGE) + " END;",
+			//Following conversations being created, deleted or changing their sort order
+			"CREATE TRIGGER IF NOT EXISTS trigger_conversation_preview_conversation_insert AFTER INSERT ON " + Contract.ConversationEntry.TABLE_NAME +
+					" BEGIN " + String.join(" ", getSQLRefreshConversationPreview("NEW." + Contract.ConversationEntry._ID)) + " END;",
+			"CREATE TRIGGER IF NOT EXISTS trigger_conversation_preview_conversation_update AFTER UPDATE OF " + Contract.ConversationEntry.COLUMN_NAME_SERVICEHANDLER + " ON " + Contract.ConversationEntry.TABLE_NAME +
+					" BEGIN " + String.join(" ", getSQLRefreshConversationPreview("NEW." + Contract.ConversationEntry._ID)) + " END;",
+			"CREATE TRIGGER IF NOT EXISTS trigger_conversation_preview_conversation_delete AFTER DELETE ON " + Contract.ConversationEntry.TABLE_NAME +
+					" BEGIN DELETE FROM " + Contract.ConversationPreviewEntry.TABLE_NAME + " WHERE " + Contract.ConversationPreviewEntry.COLUMN_NAME_CHAT + " = OLD." + Contract.ConversationEntry._ID + "; END;"
+	};
+	
+	//Full-text index over message text, keyed by message ID (as the document ID)
+	private static final String SQL_CREATE_TABLE_MESSAGESEARCH = "CREATE VIRTUAL TABLE IF NOT EXISTS " + Contract.MessageSearchEntry.TABLE_NAME + " USING fts4(" +
+			Contract.MessageSearchEntry.COLUMN_NAME_MESSAGETEXT + ", " +
+			Contract.MessageSearchEntry.COLUMN_NAME_MESSAGESUBJECT + ", " +
+			"tokenize=unicode61" +
+			");";
+	private static final String SQL_CREATE_TABLE_MESSAGESEARCHBACKFILL = "CREATE TABLE IF NOT EXISTS " + Contract.MessageSearchBackfillEntry.TABLE_NAME + " (" +
+			Contract.MessageSearchBackfillEntry.COLUMN_NAME_LASTID + " INTEGER NOT NULL" +
+			");";
+	
+	/*
+	 * Triggers that keep the message search index in sync with the text of the messages table.
+	 * Messages that were added before the index existed are indexed separately by backfillMessageSearchIndex().
+	 */
+	static final String[] SQL_CREATE_MESSAGESEARCH_TRIGGERS = {
+			"CREATE TRIGGER IF NOT EXISTS trigger_message_search_insert AFTER INSERT ON " + Contract.MessageEntry.TABLE_NAME +
+					" WHEN NEW." + Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT + " IS NOT NULL OR NEW." + Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT + " IS NOT NULL" +
+					" BEGIN INSERT INTO " + Contract.MessageSearchEntry.TABLE_NAME + " (" + Contract.MessageSearchEntry.COLUMN_NAME_DOCID + ", " + Contract.MessageSearchEntry.COLUMN_NAME_MESSAGETEXT + ", " + Contract.MessageSearchEntry.COLUMN_NAME_MESSAGESUBJECT + ")" +
+					" VALUES (NEW." + Contract.MessageEntry._ID + ", NEW." + Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT + ", NEW." + Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT + "); END;",
+			"CREATE TRIGGER IF NOT EXISTS trigger_message_search_update AFTER UPDATE OF " + Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT + ", " + Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT + " ON " + Contract.MessageEntry.TABLE_NAME +
+					" BEGIN DELETE FROM " + Contract.MessageSearchEntry.TABLE_NAME + " WHERE " + Contract.MessageSearchEntry.COLUMN_NAME_DOCID + " = OLD." + Contract.MessageEntry._ID + ";" +
+					" INSERT INTO " + Contract.MessageSearchEntry.TABLE_NAME + " (" + Contract.MessageSearchEntry.COLUMN_NAME_DOCID + ", " + Contract.MessageSearchEntry.COLUMN_NAME_MESSAGETEXT + ", " + Contract.MessageSearchEntry.COLUMN_NAME_MESSAGESUBJECT + ")" +
+					" SELECT NEW." + Contract.MessageEntry._ID + ", NEW." + Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT + ", NEW." + Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT +
+					" WHERE NEW." + Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT + " IS NOT NULL OR NEW." + Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT + " IS NOT NULL; END;",
+			"CREATE TRIGGER IF NOT EXISTS trigger_message_search_delete AFTER DELETE ON " + Contract.MessageEntry.TABLE_NAME +
+					" BEGIN DELETE FROM " + Contract.MessageSearchEntry.TABLE_NAME + " WHERE " + Contract.MessageSearchEntry.COLUMN_NAME_DOCID + " = OLD." + Contract.MessageEntry._ID + "; END;"
+	};
+	
 	/* private static final String SQL_CREATE_TABLE_BLOCKED = "CREATE TABLE " + Contract.BlockedEntry.TABLE_NAME + " (" +
 			Contract.BlockedEntry.COLUMN_NAME_ADDRESS + " TEXT NOT NULL," +
 			Contract.BlockedEntry.COLUMN_NAME_BLOCKCOUNT + " INTEGER NOT NULL DEFAULT 0" +
@@ -183,8 +351,21 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	//Creating the database instance variable
 	private static DatabaseManager instance = null;
 	
+	//Creating the write executor
+	private final DatabaseWriteExecutor writeExecutor = new DatabaseWriteExecutor();
+	private final Scheduler writeScheduler = Schedulers.from(writeExecutor);
+	
+	//Creating the allocator for the sort IDs of items without a server ID
+	private final MessageSortIDAllocator sortIDAllocator = new MessageSortIDAllocator();
+	
+	//Creating the cache for frequently run statements
+	private final DatabaseStatementCache statementCache = new DatabaseStatementCache();
+	
 	private DatabaseManager(Context context) {
 		super(context, DATABASE_NAME, null, DATABASE_VERSION);
+		
+		//Using write-ahead logging, so reads can run on the connection pool while a write is in progress
+		setWriteAheadLoggingEnabled(true);
 	}
 	
 	@Override
@@ -199,6 +380,18 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		database.execSQL(SQL_CREATE_TABLE_STICKER);
 		database.execSQL(SQL_CREATE_TABLE_TAPBACK);
 		//database.execSQL(SQL_CREATE_TABLE_BLOCKED);
+		
+		//Creating the indices
+		for(String statement : SQL_CREATE_INDICES) database.execSQL(statement);
+		
+		//Creating the conversation preview table
+		database.execSQL(SQL_CREATE_TABLE_CONVERSATIONPREVIEW);
+		for(String statement : SQL_CREATE_CONVERSATIONPREVIEW_TRIGGERS) database.execSQL(statement);
+		
+		//Creating the message search index
+		database.execSQL(SQL_CREATE_TABLE_MESSAGESEARCH);
+		database.execSQL(SQL_CREATE_TABLE_MESSAGESEARCHBACKFILL);
+		for(String statement : SQL_CREATE_MESSAGESEARCH_TRIGGERS) database.execSQL(statement);
 	}
 	
 	@Override
@@ -555,6 +748,35 @@ public class DatabaseManager extends SQLiteOpenHelper {
 						"sort INTEGER, " +
 						"should_auto_download INTEGER NOT NULL DEFAULT 0" +
 						");", false);
+			case 15:
+				//Adding indices for frequently filtered columns
+				database.execSQL("CREATE INDEX IF NOT EXISTS index_messages_chat_sort ON messages (chat, sort_id_linked, sort_id_linked_offset);");
+				database.execSQL("CREATE INDEX IF NOT EXISTS index_messages_sort ON messages (sort_id_linked, sort_id_linked_offset);");
+				database.execSQL("CREATE INDEX IF NOT EXISTS index_messages_guid ON messages (guid);");
+				database.execSQL("CREATE INDEX IF NOT EXISTS index_attachments_message ON attachments (message, sort);");
+				database.execSQL("CREATE INDEX IF NOT EXISTS index_attachments_guid ON attachments (guid);");
+				database.execSQL("CREATE INDEX IF NOT EXISTS index_sticker_message ON sticker (message);");
+				database.execSQL("CREATE INDEX IF NOT EXISTS index_tapback_message ON tapback (message, message_index);");
+				database.execSQL("CREATE INDEX IF NOT EXISTS index_members_chat ON users (chat);");
+				database.execSQL("CREATE INDEX IF NOT EXISTS index_draft_files_chat ON draft_files (chat);");
+			case 16:
+				//Adding the conversation preview table, and filling it from the existing messages
+				database.execSQL(SQL_CREATE_TABLE_CONVERSATIONPREVIEW);
+				for(String statement : SQL_CREATE_CONVERSATIONPREVIEW_TRIGGERS) database.execSQL(statement);
+				rebuildConversationPreviews(database);
+			case 17:
+				//Adding the index for paging through conversations by date
+				database.execSQL("CREATE INDEX IF NOT EXISTS index_messages_chat_date ON messages (chat, date);");
+			case 18:
+				//Adding the message search index, and scheduling existing messages to be indexed in the background
+				database.execSQL(SQL_CREATE_TABLE_MESSAGESEARCH);
+				database.execSQL(SQL_CREATE_TABLE_MESSAGESEARCHBACKFILL);
+				for(String statement : SQL_CREATE_MESSAGESEARCH_TRIGGERS) database.execSQL(statement);
+				database.execSQL("INSERT INTO " + Contract.MessageSearchBackfillEntry.TABLE_NAME + " (" + Contract.MessageSearchBackfillEntry.COLUMN_NAME_LASTID + ") VALUES (0);");
+			case 19:
+				//Adding the file presence flag to attachments (attachments with a file are assumed to be present until verified)
+				database.execSQL("ALTER TABLE " + Contract.AttachmentEntry.TABLE_NAME + " ADD " + Contract.AttachmentEntry.COLUMN_NAME_FILEPRESENT + " INTEGER NOT NULL DEFAULT 0;");
+				database.execSQL("UPDATE " + Contract.AttachmentEntry.TABLE_NAME + " SET " + Contract.AttachmentEntry.COLUMN_NAME_FILEPRESENT + " = 1 WHERE " + Contract.AttachmentEntry.COLUMN_NAME_FILEPATH + " IS NOT NULL;");
 		}
 	}
 	
@@ -646,6 +868,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			static final String COLUMN_NAME_DOWNLOADFILENAME = "download_name"; //The name type of the downloaded file (NULL if the same as attachment file)
 			static final String COLUMN_NAME_SORT = "sort";
 			static final String COLUMN_NAME_SHOULDAUTODOWNLOAD = "should_auto_download"; //Whether this file should be downloaded automatically when it is loaded
+			static final String COLUMN_NAME_FILEPRESENT = "file_present"; //Whether the file at the path is known to exist, so it doesn't have to be checked when loading
 		}
 		
 		static class MessagePreviewEntry implements BaseColumns {
@@ -676,6 +899,33 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			static final String COLUMN_NAME_CODE = "code";
 		}
 		
+		static class ConversationPreviewEntry {
+			static final String TABLE_NAME = "conversation_preview";
+			static final String COLUMN_NAME_CHAT = "chat";
+			static final String COLUMN_NAME_MESSAGE = "message"; //The ID of the item shown in the preview
+			static final String COLUMN_NAME_ITEMTYPE = "item_type";
+			static final String COLUMN_NAME_DATE = "date";
+			static final String COLUMN_NAME_SENDER = "sender";
+			static final String COLUMN_NAME_MESSAGETEXT = "message_text";
+			static final String COLUMN_NAME_MESSAGESUBJECT = "message_subject";
+			static final String COLUMN_NAME_SENDSTYLE = "send_style";
+			static final String COLUMN_NAME_ERROR = "error";
+			static final String COLUMN_NAME_ATTACHMENTCOUNT = "attachment_count";
+		}
+		
+		static class MessageSearchEntry {
+			static final String TABLE_NAME = "message_search";
+			static final String COLUMN_NAME_DOCID = "docid"; //The ID of the indexed message
+			static final String COLUMN_NAME_MESSAGETEXT = "message_text";
+			static final String COLUMN_NAME_MESSAGESUBJECT = "message_subject";
+		}
+		
+		//Holds a single row while messages from before the search index existed are still being indexed
+		static class MessageSearchBackfillEntry {
+			static final String TABLE_NAME = "message_search_backfill";
+			static final String COLUMN_NAME_LASTID = "last_id"; //The ID of the last message that has been indexed
+		}
+		
 		/* static class BlockedEntry implements BaseColumns {
 			static final String TABLE_NAME = "blocked";
 			static final String COLUMN_NAME_ADDRESS = "address";
@@ -683,6 +933,74 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		} */
 	}
 	
+	/**
+	 * Builds the statements that recompute the preview of a conversation
+	 * @param conversationID An SQL expression for the ID of the conversation, or NULL to recompute the previews of all conversations
+	 */
+	private static String[] getSQLRefreshConversationPreview(@Nullable String conversationID) {
+		return new String[]{
+				"DELETE FROM " + Contract.ConversationPreviewEntry.TABLE_NAME + (conversationID == null ? "" : " WHERE " + Contract.ConversationPreviewEntry.COLUMN_NAME_CHAT + " = " + conversationID) + ";",
+				getSQLInsertConversationPreview(conversationID, true),
+				getSQLInsertConversationPreview(conversationID, false)
+		};
+	}
+	
+	/**
+	 * Builds a statement that writes the previews of conversations, selecting each conversation's last message or chat creation item
+	 * @param conversationID An SQL expression for the ID of the conversation, or NULL to select all conversations
+	 * @param appleBridge Whether to select conversations handled by AirMessage bridge, or all other conversations (as they are sorted differently)
+	 */
+	private static String getSQLInsertConversationPreview(@Nullable String conversationID, boolean appleBridge) {
+		return "INSERT INTO " + Contract.ConversationPreviewEntry.TABLE_NAME + " (" +
+				Contract.ConversationPreviewEntry.COLUMN_NAME_CHAT + ", " +
+				Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGE + ", " +
+				Contract.ConversationPreviewEntry.COLUMN_NAME_ITEMTYPE + ", " +
+				Contract.ConversationPreviewEntry.COLUMN_NAME_DATE + ", " +
+				Contract.ConversationPreviewEntry.COLUMN_NAME_SENDER + ", " +
+				Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGETEXT + ", " +
+				Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGESUBJECT + ", " +
+				Contract.ConversationPreviewEntry.COLUMN_NAME_SENDSTYLE + ", " +
+				Contract.ConversationPreviewEntry.COLUMN_NAME_ERROR + ", " +
+				Contract.ConversationPreviewEntry.COLUMN_NAME_ATTACHMENTCOUNT +
+				") SELECT " +
+				"c." + Contract.ConversationEntry._ID + ", " +
+				"m." + Contract.MessageEntry._ID + ", " +
+				"m." + Contract.MessageEntry.COLUMN_NAME_ITEMTYPE + ", " +
+				"m." + Contract.MessageEntry.COLUMN_NAME_DATE + ", " +
+				"m." + Contract.MessageEntry.COLUMN_NAME_SENDER + ", " +
+				"m." + Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT + ", " +
+				"m." + Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT + ", " +
+				"m." + Contract.MessageEntry.COLUMN_NAME_SENDSTYLE + ", " +
+				"m." + Contract.MessageEntry.COLUMN_NAME_ERROR + ", " +
+				"(SELECT COUNT(*) FROM " + Contract.AttachmentEntry.TABLE_NAME + " WHERE " + Contract.AttachmentEntry.TABLE_NAME + '.' + Contract.AttachmentEntry.COLUMN_NAME_MESSAGE + " = m." + Contract.MessageEntry._ID + ")" +
+				" FROM " + Contract.ConversationEntry.TABLE_NAME + " c" +
+				" JOIN " + Contract.MessageEntry.TABLE_NAME + " m ON m." + Contract.MessageEntry._ID + " = (" +
+					"SELECT " + Contract.MessageEntry.TABLE_NAME + '.' + Contract.MessageEntry._ID + " FROM " + Contract.MessageEntry.TABLE_NAME +
+					" WHERE " + Contract.MessageEntry.TABLE_NAME + '.' + Contract.MessageEntry.COLUMN_NAME_CHAT + " = c." + Contract.ConversationEntry._ID +
+					" AND " + Contract.MessageEntry.TABLE_NAME + '.' + Contract.MessageEntry.COLUMN_NAME_ITEMTYPE + " IN (" + ConversationItemType.message + ", " + ConversationItemType.chatCreate + ")" +
+					" ORDER BY " + (appleBridge ? messageSortOrderDesc : messageSortOrderDescSimple) + " LIMIT 1" +
+				")" +
+				" WHERE c." + Contract.ConversationEntry.COLUMN_NAME_SERVICEHANDLER + (appleBridge ? " = " : " != ") + ServiceHandler.appleBridge +
+				(conversationID == null ? "" : " AND c." + Contract.ConversationEntry._ID + " = " + conversationID) + ";";
+	}
+	
+	/**
+	 * Builds a statement that recounts the attachments of a message, if it is shown in a conversation preview
+	 * @param messageID An SQL expression for the ID of the message
+	 */
+	private static String getSQLUpdateConversationPreviewAttachments(String messageID) {
+		return "UPDATE " + Contract.ConversationPreviewEntry.TABLE_NAME +
+				" SET " + Contract.ConversationPreviewEntry.COLUMN_NAME_ATTACHMENTCOUNT + " = (SELECT COUNT(*) FROM " + Contract.AttachmentEntry.TABLE_NAME + " WHERE " + Contract.AttachmentEntry.COLUMN_NAME_MESSAGE + " = " + messageID + ")" +
+				" WHERE " + Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGE + " = " + messageID + ";";
+	}
+	
+	/**
+	 * Discards and recomputes the previews of all conversations
+	 */
+	private static void rebuildConversationPreviews(SQLiteDatabase database) {
+		for(String statement : getSQLRefreshConversationPreview(null)) database.execSQL(statement);
+	}
+	
 	public static void createInstance(Context context) {
 		instance = new DatabaseManager(context);
 	}
@@ -695,6 +1013,69 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		instance.close();
 	}
 	
+	@Override
+	public synchronized void close() {
+		statementCache.clear();
+		super.close();
+	}
+	
+	/**
+	 * Gets a compiled statement for the writable database, which must be passed to {@link #releaseStatement(SQLiteStatement)} once it has been executed
+	 * On the write thread, the statement is taken from the statement cache. Other threads compile their own statement,
+	 * so that a statement is never bound by two threads at once.
+	 */
+	private SQLiteStatement acquireStatement(String sql) {
+		if(writeExecutor.isWriteThread()) return statementCache.get(getWritableDatabase(), sql);
+		else return getWritableDatabase().compileStatement(sql);
+	}
+	
+	/**
+	 * Releases a statement acquired with {@link #acquireStatement(String)}
+	 */
+	private void releaseStatement(SQLiteStatement statement) {
+		if(writeExecutor.isWriteThread()) statement.clearBindings();
+		else statement.close();
+	}
+	
+	/**
+	 * Runs a task inside a single database transaction, so that all of its writes are committed at once
+	 * If the task throws an exception, the transaction is rolled back and the exception is rethrown
+	 * @param task The task to run
+	 * @return The result of the task
+	 */
+	public <T> T runInTransaction(Callable<T> task) throws Exception {
+		SQLiteDatabase database = getWritableDatabase();
+		
+		long lockStartTime = System.nanoTime();
+		database.beginTransaction();
+		writeExecutor.recordLockWait(System.nanoTime() - lockStartTime);
+		
+		try {
+			T result = task.call();
+			database.setTransactionSuccessful();
+			return result;
+		} finally {
+			database.endTransaction();
+		}
+	}
+	
+	/**
+	 * Runs a task inside a single database transaction on the write thread, and waits for it to complete
+	 * @param task The task to run
+	 * @return The result of the task
+	 */
+	public <T> T runWrite(Callable<T> task) throws Exception {
+		return writeExecutor.submitAndWait(() -> runInTransaction(task));
+	}
+	
+	/**
+	 * Gets the scheduler for tasks that write to the database
+	 * Writes are run one at a time, in the order they are scheduled
+	 */
+	public Scheduler getWriteScheduler() {
+		return writeScheduler;
+	}
+	
 	/* private void dropColumn(SQLiteDatabase writableDatabase, String tableName, String creationCommand, String targetColumn, boolean useTransaction) {
 		String columnSelection; //A comma-delimited list of the column names (no type or flag information)
 		{
@@ -903,16 +1284,11 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			boolean chatArchived = cursor.getInt(indexChatArchived) != 0;
 			boolean chatMuted = cursor.getInt(indexChatMuted) != 0;
 			int chatColor = cursor.getInt(indexChatColor);
-			ConversationPreview preview = getConversationPreview(chatID, serviceHandler);
 			String draftMessage = cursor.getString(indexDraftMessage);
 			long draftUpdateTime = cursor.getLong(indexDraftUpdateTime);
 			
-			//Getting the members and drafts
-			ArrayList<MemberInfo> conversationMembers = loadConversationMembers(database, chatID);
-			ArrayList<FileDraft> draftFiles = loadDraftFiles(database, chatID, context);
-			
-			//Creating the conversation
-			ConversationInfo conversationInfo = new ConversationInfo(chatID, chatGUID, externalID, conversationState, serviceHandler, service, chatColor, conversationMembers, chatTitle, chatUnreadMessages, chatArchived, chatMuted, preview, draftMessage, draftFiles, draftUpdateTime);
+			//Creating the conversation (members, drafts and the preview are loaded afterwards for all conversations at once)
+			ConversationInfo conversationInfo = new ConversationInfo(chatID, chatGUID, externalID, conversationState, serviceHandler, service, chatColor, new ArrayList<>(), chatTitle, chatUnreadMessages, chatArchived, chatMuted, null, draftMessage, new ArrayList<>(), draftUpdateTime);
 			
 			//Adding the conversation to the list
 			conversationList.add(conversationInfo);
@@ -921,6 +1297,9 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		//Closing the cursor
 		cursor.close();
 		
+		//Loading the members, drafts and previews
+		loadConversationSummaries(database, context, conversationList);
+		
 		//Returning the conversation list
 		return conversationList;
 	}
@@ -987,16 +1366,9 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			int chatColor = cursor.getInt(indexChatColor);
 			String draftMessage = cursor.getString(indexDraftMessage);
 			long draftUpdateTime = cursor.getLong(indexDraftUpdateTime);
-
-			//Getting the members and drafts
-			ArrayList<MemberInfo> conversationMembers = loadConversationMembers(database, chatID);
-			ArrayList<FileDraft> draftFiles = loadDraftFiles(database, chatID, context);
-			
-			//Getting the preview
-			ConversationPreview conversationPreview = getConversationPreview(chatID, serviceHandler);
 			
-			//Creating the conversation
-			ConversationInfo conversationInfo = new ConversationInfo(chatID, chatGUID, externalID, conversationState, serviceHandler, service, chatColor, conversationMembers, chatName, chatUnreadMessages, chatArchived, chatMuted, conversationPreview, draftMessage, draftFiles, draftUpdateTime);
+			//Creating the conversation (members, drafts and the preview are loaded afterwards for all conversations at once)
+			ConversationInfo conversationInfo = new ConversationInfo(chatID, chatGUID, externalID, conversationState, serviceHandler, service, chatColor, new ArrayList<>(), chatName, chatUnreadMessages, chatArchived, chatMuted, null, draftMessage, new ArrayList<>(), draftUpdateTime);
 			
 			//Adding the conversation to the list
 			conversationList.add(conversationInfo);
@@ -1005,6 +1377,9 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		//Closing the cursor
 		cursor.close();
 		
+		//Loading the members, drafts and previews
+		loadConversationSummaries(database, context, conversationList);
+		
 		//Sorting and returning the conversation list
 		Collections.sort(conversationList, ConversationHelper.conversationComparator);
 		return conversationList;
@@ -1077,15 +1452,16 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	}
 	
 	private static class AttachmentInfoIndices {
-		final int iLocalID, iGuid, iFileName, iFileType, iFileSize, iFilePath, iChecksum, iSort, iDownloadFileName, iDownloadFileType, iShouldAutoDownload;
+		final int iLocalID, iGuid, iFileName, iFileType, iFileSize, iFilePath, iFilePresent, iChecksum, iSort, iDownloadFileName, iDownloadFileType, iShouldAutoDownload;
 		
-		public AttachmentInfoIndices(int iLocalID, int iGuid, int iFileName, int iFileType, int iFileSize, int iFilePath, int iChecksum, int iDownloadFileName, int iDownloadFileType, int iSort, int iShouldAutoDownload) {
+		public AttachmentInfoIndices(int iLocalID, int iGuid, int iFileName, int iFileType, int iFileSize, int iFilePath, int iFilePresent, int iChecksum, int iDownloadFileName, int iDownloadFileType, int iSort, int iShouldAutoDownload) {
 			this.iLocalID = iLocalID;
 			this.iGuid = iGuid;
 			this.iFileName = iFileName;
 			this.iFileType = iFileType;
 			this.iFileSize = iFileSize;
 			this.iFilePath = iFilePath;
+			this.iFilePresent = iFilePresent;
 			this.iChecksum = iChecksum;
 			this.iDownloadFileName = iDownloadFileName;
 			this.iDownloadFileType = iDownloadFileType;
@@ -1100,20 +1476,49 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			int iFileType = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_FILETYPE);
 			int iFileSize = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_FILESIZE);
 			int iFilePath = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_FILEPATH);
+			int iFilePresent = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_FILEPRESENT);
 			int iChecksum = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_FILECHECKSUM);
 			int iDownloadFileName = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILENAME);
 			int iDownloadFileType = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILETYPE);
 			int iSort = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_SORT);
 			int iShouldAutoDownload = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_SHOULDAUTODOWNLOAD);
 			
-			return new AttachmentInfoIndices(iLocalID, iGuid, iFileName, iFileType, iFileSize, iFilePath, iChecksum, iDownloadFileName, iDownloadFileType, iSort, iShouldAutoDownload);
+			return new AttachmentInfoIndices(iLocalID, iGuid, iFileName, iFileType, iFileSize, iFilePath, iFilePresent, iChecksum, iDownloadFileName, iDownloadFileType, iSort, iShouldAutoDownload);
 		}
 	}
 	
 	/**
-	 * Loads a conversation item from a cursor; for internal use only
+	 * Loads a conversation item from a cursor, along with its attachments, stickers and tapbacks; for internal use only
 	 */
 	private ConversationItem loadConversationItem(Context context, ConversationItemIndices indices, Cursor cursor, SQLiteDatabase database) {
+		ConversationItem conversationItem = readConversationItem(indices, cursor);
+		if(conversationItem instanceof MessageInfo) loadApplyMessageDetails(context, database, Collections.singletonList((MessageInfo) conversationItem));
+		return conversationItem;
+	}
+	
+	/**
+	 * Loads up to a certain number of conversation items from a cursor, loading the attachments, stickers and tapbacks of all messages at once; for internal use only
+	 */
+	private List<ConversationItem> loadConversationItemChunk(Context context, ConversationItemIndices indices, Cursor cursor, SQLiteDatabase database, int count) {
+		List<ConversationItem> conversationItems = new ArrayList<>(count);
+		List<MessageInfo> messages = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			if(!cursor.moveToNext()) break;
+			
+			ConversationItem conversationItem = readConversationItem(indices, cursor);
+			conversationItems.add(conversationItem);
+			if(conversationItem instanceof MessageInfo) messages.add((MessageInfo) conversationItem);
+		}
+		
+		loadApplyMessageDetails(context, database, messages);
+		
+		return conversationItems;
+	}
+	
+	/**
+	 * Reads a conversation item from a cursor, without loading any of its attachments, stickers or tapbacks; for internal use only
+	 */
+	private static ConversationItem readConversationItem(ConversationItemIndices indices, Cursor cursor) {
 		//Getting the general message info
 		long localID = cursor.getLong(indices.iLocalID);
 		long serverID = cursor.isNull(indices.iServerID) ? -1 : cursor.getLong(indices.iServerID);
@@ -1135,23 +1540,8 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			String messageSubject = MMSSMSHelper.cleanMMSSubject(cursor.getString(indices.iMessageSubject));
 			int previewState = cursor.getInt(indices.iPreviewState);
 			
-			//Querying the database for attachments
-			ArrayList<AttachmentInfo> attachments;
-			try(Cursor attachmentCursor = database.query(Contract.AttachmentEntry.TABLE_NAME, null, Contract.AttachmentEntry.COLUMN_NAME_MESSAGE + " = ?", new String[]{Long.toString(localID)}, null, null, Contract.AttachmentEntry.COLUMN_NAME_SORT + " ASC")) {
-				//Creating the attachments list
-				attachments = new ArrayList<>(attachmentCursor.getCount());
-				
-				//Loading the attachments
-				AttachmentInfoIndices attachmentIndices = AttachmentInfoIndices.fromCursor(attachmentCursor);
-				while(attachmentCursor.moveToNext()) {
-					attachments.add(loadAttachmentInfo(context, attachmentIndices, attachmentCursor));
-				}
-			}
-			
-			//Creating the conversation item
-			MessageInfo messageInfo = new MessageInfo(localID, serverID, guid, date, sender, messageText, messageSubject, attachments, sendStyle, sendStyleViewed, dateRead, stateCode, errorCode, errorDetailsAvailable, null);
-			loadApplyStickers(context, messageInfo);
-			loadApplyTapbacks(messageInfo);
+			//Creating the conversation item (attachments are filled in afterwards)
+			MessageInfo messageInfo = new MessageInfo(localID, serverID, guid, date, sender, messageText, messageSubject, new ArrayList<>(), sendStyle, sendStyleViewed, dateRead, stateCode, errorCode, errorDetailsAvailable, null);
 			
 			//Setting the message preview state
 			MessageComponentText messageTextInfo = messageInfo.getMessageTextComponent();
@@ -1192,12 +1582,46 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		throw new RuntimeException("Unknown item type: " + itemType);
 	}
 	
+	/**
+	 * Loads the attachments, stickers and tapbacks of a set of messages, and applies them to the messages
+	 * Each table is queried once for all messages
+	 * @param context The context to use
+	 * @param database The database to use for these queries
+	 * @param messages The messages to load details for, without any attachments
+	 */
+	private static void loadApplyMessageDetails(Context context, SQLiteDatabase database, List<MessageInfo> messages) {
+		if(messages.isEmpty()) return;
+		
+		//Indexing the messages by ID
+		LongSparseArray<MessageInfo> messageMap = new LongSparseArray<>(messages.size());
+		for(MessageInfo messageInfo : messages) messageMap.put(messageInfo.getLocalID(), messageInfo);
+		String messageIDList = messages.stream().map(messageInfo -> Long.toString(messageInfo.getLocalID())).collect(Collectors.joining(","));
+		
+		//Loading the attachments (before the stickers and tapbacks, as they are applied to attachment components)
+		try(Cursor attachmentCursor = database.query(Contract.AttachmentEntry.TABLE_NAME, null, Contract.AttachmentEntry.COLUMN_NAME_MESSAGE + " IN (" + messageIDList + ")", null, null, null, Contract.AttachmentEntry.COLUMN_NAME_SORT + " ASC")) {
+			int indexMessage = attachmentCursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_MESSAGE);
+			AttachmentInfoIndices attachmentIndices = AttachmentInfoIndices.fromCursor(attachmentCursor);
+			File attachmentDirectory = AttachmentStorageHelper.getAttachmentDirectoryUnchecked(context);
+			while(attachmentCursor.moveToNext()) {
+				MessageInfo messageInfo = messageMap.get(attachmentCursor.getLong(indexMessage));
+				if(messageInfo == null) continue;
+				messageInfo.getAttachments().add(loadAttachmentInfo(attachmentDirectory, attachmentIndices, attachmentCursor));
+			}
+		}
+		
+		applyStickers(context, database, messageMap, messageIDList);
+		applyTapbacks(database, messageMap, messageIDList);
+	}
+	
 	/**
 	 * Loads an attachment item from a cursor; for internal use only
+	 * This doesn't touch the file system, so that many attachments can be loaded quickly
+	 * @param attachmentDirectory The attachment directory, from {@link AttachmentStorageHelper#getAttachmentDirectoryUnchecked(Context)}
 	 */
-	private static AttachmentInfo loadAttachmentInfo(Context context, AttachmentInfoIndices indices, Cursor cursor) {
+	private static AttachmentInfo loadAttachmentInfo(File attachmentDirectory, AttachmentInfoIndices indices, Cursor cursor) {
 		//Getting the attachment data
-		File file = cursor.isNull(indices.iFilePath) ? null : AttachmentStorageHelper.getAbsolutePath(context, cursor.getString(indices.iFilePath));
+		boolean filePresent = cursor.getInt(indices.iFilePresent) == 1;
+		File file = !filePresent || cursor.isNull(indices.iFilePath) ? null : AttachmentStorageHelper.getAbsolutePath(attachmentDirectory, cursor.getString(indices.iFilePath));
 		String fileName = cursor.getString(indices.iFileName);
 		String fileType = cursor.getString(indices.iFileType);
 		long fileSize = cursor.isNull(indices.iFileSize) ? -1 : cursor.getLong(indices.iFileSize);
@@ -1213,7 +1637,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		String fileGuid = cursor.getString(indices.iGuid);
 		
 		//Checking if the attachment has data
-		if(file != null && file.exists() && file.isFile()) {
+		if(file != null) {
 			//Adding the as a file
 			return new AttachmentInfo(fileID, fileGuid, fileName, fileType, fileSize, sort, file, null, downloadedFileName, downloadedFileType, shouldAutoDownload);
 		} else {
@@ -1240,7 +1664,8 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		ConversationItemIndices indices = ConversationItemIndices.fromCursor(cursor);
 		
 		//Getting the items
-		while(cursor.moveToNext()) conversationItems.add(loadConversationItem(context, indices, cursor, database));
+		List<ConversationItem> chunk;
+		while(!(chunk = loadConversationItemChunk(context, indices, cursor, database, itemLoadBatchSize)).isEmpty()) conversationItems.addAll(chunk);
 		
 		//Closing the cursor
 		cursor.close();
@@ -1253,19 +1678,43 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	 * Loads stickers for a particular message and applies it to the message
 	 */
 	public void loadApplyStickers(Context context, MessageInfo messageInfo) {
+		LongSparseArray<MessageInfo> messageMap = new LongSparseArray<>(1);
+		messageMap.put(messageInfo.getLocalID(), messageInfo);
+		applyStickers(context, getReadableDatabase(), messageMap, Long.toString(messageInfo.getLocalID()));
+	}
+	
+	/**
+	 * Loads tapbacks for a particular message and applies it to the message
+	 */
+	public void loadApplyTapbacks(MessageInfo messageInfo) {
+		LongSparseArray<MessageInfo> messageMap = new LongSparseArray<>(1);
+		messageMap.put(messageInfo.getLocalID(), messageInfo);
+		applyTapbacks(getReadableDatabase(), messageMap, Long.toString(messageInfo.getLocalID()));
+	}
+	
+	/**
+	 * Loads stickers for a set of messages and applies them to the messages
+	 * @param messageMap The messages to apply stickers to, keyed by ID
+	 * @param messageIDList A comma-separated list of the messages' IDs
+	 */
+	private static void applyStickers(Context context, SQLiteDatabase database, LongSparseArray<MessageInfo> messageMap, String messageIDList) {
 		//Querying the database for stickers
-		try(Cursor stickerCursor = getReadableDatabase().query(Contract.StickerEntry.TABLE_NAME, null,
-				Contract.StickerEntry.COLUMN_NAME_MESSAGE + " = ?", new String[]{Long.toString(messageInfo.getLocalID())}, null, null, null)) {
+		try(Cursor stickerCursor = database.query(Contract.StickerEntry.TABLE_NAME, null,
+				Contract.StickerEntry.COLUMN_NAME_MESSAGE + " IN (" + messageIDList + ")", null, null, null, null)) {
 			//Getting the indexes
 			int sIdentifierIndex = stickerCursor.getColumnIndexOrThrow(Contract.StickerEntry._ID);
+			int sIdentifierMessage = stickerCursor.getColumnIndexOrThrow(Contract.StickerEntry.COLUMN_NAME_MESSAGE);
 			int sIdentifierMessageIndex = stickerCursor.getColumnIndexOrThrow(Contract.StickerEntry.COLUMN_NAME_MESSAGEINDEX);
 			int sIdentifierGuid = stickerCursor.getColumnIndexOrThrow(Contract.StickerEntry.COLUMN_NAME_GUID);
 			int sIdentifierSender = stickerCursor.getColumnIndexOrThrow(Contract.StickerEntry.COLUMN_NAME_SENDER);
 			int sIdentifierDate = stickerCursor.getColumnIndexOrThrow(Contract.StickerEntry.COLUMN_NAME_DATE);
 			int sIdentifierPath = stickerCursor.getColumnIndexOrThrow(Contract.StickerEntry.COLUMN_NAME_FILEPATH);
 			
-			//Adding the results to the message
+			//Adding the results to the messages
 			while(stickerCursor.moveToNext()) {
+				MessageInfo messageInfo = messageMap.get(stickerCursor.getLong(sIdentifierMessage));
+				if(messageInfo == null) continue;
+				
 				long stickerID = stickerCursor.getLong(sIdentifierIndex);
 				String stickerGUID = stickerCursor.getString(sIdentifierGuid);
 				int stickerComponentIndex = stickerCursor.getInt(sIdentifierMessageIndex);
@@ -1280,20 +1729,26 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	}
 	
 	/**
-	 * Loads tapbacks for a particular message and applies it to the message
+	 * Loads tapbacks for a set of messages and applies them to the messages
+	 * @param messageMap The messages to apply tapbacks to, keyed by ID
+	 * @param messageIDList A comma-separated list of the messages' IDs
 	 */
-	public void loadApplyTapbacks(MessageInfo messageInfo) {
+	private static void applyTapbacks(SQLiteDatabase database, LongSparseArray<MessageInfo> messageMap, String messageIDList) {
 		//Querying the database for tapbacks
-		try(Cursor tapbackCursor = getReadableDatabase().query(Contract.TapbackEntry.TABLE_NAME, new String[]{Contract.TapbackEntry._ID, Contract.TapbackEntry.COLUMN_NAME_MESSAGEINDEX, Contract.TapbackEntry.COLUMN_NAME_SENDER, Contract.TapbackEntry.COLUMN_NAME_CODE},
-				Contract.TapbackEntry.COLUMN_NAME_MESSAGE + " = ?", new String[]{Long.toString(messageInfo.getLocalID())}, null, null, null)) {
+		try(Cursor tapbackCursor = database.query(Contract.TapbackEntry.TABLE_NAME, new String[]{Contract.TapbackEntry._ID, Contract.TapbackEntry.COLUMN_NAME_MESSAGE, Contract.TapbackEntry.COLUMN_NAME_MESSAGEINDEX, Contract.TapbackEntry.COLUMN_NAME_SENDER, Contract.TapbackEntry.COLUMN_NAME_CODE},
+				Contract.TapbackEntry.COLUMN_NAME_MESSAGE + " IN (" + messageIDList + ")", null, null, null, null)) {
 			//Getting the indexes
 			int tIdentifierIndex = tapbackCursor.getColumnIndexOrThrow(Contract.TapbackEntry._ID);
+			int tIdentifierMessage = tapbackCursor.getColumnIndexOrThrow(Contract.TapbackEntry.COLUMN_NAME_MESSAGE);
 			int tIdentifierMessageIndex = tapbackCursor.getColumnIndexOrThrow(Contract.TapbackEntry.COLUMN_NAME_MESSAGEINDEX);
 			int tIdentifierSender = tapbackCursor.getColumnIndexOrThrow(Contract.TapbackEntry.COLUMN_NAME_SENDER);
 			int tIdentifierCode = tapbackCursor.getColumnIndexOrThrow(Contract.TapbackEntry.COLUMN_NAME_CODE);
 			
-			//Adding the results to the message
+			//Adding the results to the messages
 			while(tapbackCursor.moveToNext()) {
+				MessageInfo messageInfo = messageMap.get(tapbackCursor.getLong(tIdentifierMessage));
+				if(messageInfo == null) continue;
+				
 				long tapbackID = tapbackCursor.getLong(tIdentifierIndex);
 				int tapbackComponentIndex = tapbackCursor.getInt(tIdentifierMessageIndex);
 				String tapbackSender = tapbackCursor.getString(tIdentifierSender);
@@ -1394,12 +1849,15 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		while(cursor.moveToNext()) {
 			//Filtering out non-message items
 			if(cursor.getInt(indices.iItemType) != ConversationItemType.message) continue;
-			messageList.add((MessageInfo) loadConversationItem(context, indices, cursor, database));
+			messageList.add((MessageInfo) readConversationItem(indices, cursor));
 		}
 		
 		//Closing the cursor
 		cursor.close();
 		
+		//Loading the messages' attachments, stickers and tapbacks
+		loadApplyMessageDetails(context, database, messageList);
+		
 		//Returning the conversation items
 		return messageList;
 	}
@@ -1408,6 +1866,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		//Creating the content values
 		ContentValues contentValues = new ContentValues();
 		contentValues.putNull(Contract.AttachmentEntry.COLUMN_NAME_FILEPATH);
+		contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILEPRESENT, false);
 		contentValues.putNull(Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILENAME);
 		contentValues.putNull(Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILETYPE);
 		
@@ -1450,25 +1909,91 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	}
 	
 	public void updateAttachmentFile(long localID, Context context, File file, @Nullable String downloadedFileName, @Nullable String downloadedFileType) {
-		//Creating the content values variable
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILEPATH, AttachmentStorageHelper.getRelativePath(context, file));
-		contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILENAME, downloadedFileName);
-		contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILETYPE, downloadedFileType);
-		
-		//Updating the data
-		getWritableDatabase().update(Contract.AttachmentEntry.TABLE_NAME, contentValues, Contract.AttachmentEntry._ID + " = ?", new String[]{Long.toString(localID)});
+		SQLiteStatement statement = acquireStatement(SQL_UPDATE_ATTACHMENT_FILE_BY_ID);
+		try {
+			statement.bindString(1, AttachmentStorageHelper.getRelativePath(context, file));
+			bindNullableString(statement, 2, downloadedFileName);
+			bindNullableString(statement, 3, downloadedFileType);
+			statement.bindLong(4, localID);
+			statement.executeUpdateDelete();
+		} finally {
+			releaseStatement(statement);
+		}
 	}
 	
 	public void updateAttachmentFile(String guid, Context context, File file, @Nullable String downloadedFileName, @Nullable String downloadedFileType) {
-		//Creating the content values variable
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILEPATH, AttachmentStorageHelper.getRelativePath(context, file));
-		contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILENAME, downloadedFileName);
-		contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILETYPE, downloadedFileType);
+		SQLiteStatement statement = acquireStatement(SQL_UPDATE_ATTACHMENT_FILE_BY_GUID);
+		try {
+			statement.bindString(1, AttachmentStorageHelper.getRelativePath(context, file));
+			bindNullableString(statement, 2, downloadedFileName);
+			bindNullableString(statement, 3, downloadedFileType);
+			statement.bindString(4, guid);
+			statement.executeUpdateDelete();
+		} finally {
+			releaseStatement(statement);
+		}
+	}
+	
+	/**
+	 * Checks a batch of attachments marked as present against the file system, and invalidates any whose file has gone missing
+	 * @param context The context to use
+	 * @param afterID The ID of the last attachment checked by the previous batch, or -1 to start from the beginning
+	 * @param batchSize The maximum number of attachments to check
+	 * @param missingAttachments A list to add the message ID and attachment ID of each invalidated attachment to
+	 * @return The ID of the last attachment checked, or -1 if there are no more attachments to check
+	 */
+	public long verifyAttachmentFiles(Context context, long afterID, int batchSize, List<Pair<Long, Long>> missingAttachments) throws Exception {
+		File attachmentDirectory = AttachmentStorageHelper.getAttachmentDirectoryUnchecked(context);
+		
+		//Finding attachments whose files are missing
+		long lastID = -1;
+		List<Pair<Long, Long>> missingIDs = new ArrayList<>();
+		List<String> missingPaths = new ArrayList<>();
+		try(Cursor cursor = getReadableDatabase().query(Contract.AttachmentEntry.TABLE_NAME, new String[]{Contract.AttachmentEntry._ID, Contract.AttachmentEntry.COLUMN_NAME_MESSAGE, Contract.AttachmentEntry.COLUMN_NAME_FILEPATH},
+				Contract.AttachmentEntry.COLUMN_NAME_FILEPRESENT + " = 1 AND " + Contract.AttachmentEntry._ID + " > ?", new String[]{Long.toString(afterID)},
+				null, null, Contract.AttachmentEntry._ID + " ASC", Integer.toString(batchSize))) {
+			while(cursor.moveToNext()) {
+				lastID = cursor.getLong(0);
+				String path = cursor.getString(2);
+				if(path != null && AttachmentStorageHelper.getAbsolutePath(attachmentDirectory, path).isFile()) continue;
+				
+				missingIDs.add(new Pair<>(cursor.getLong(1), lastID));
+				missingPaths.add(path);
+			}
+		}
 		
-		//Updating the data
-		getWritableDatabase().update(Contract.AttachmentEntry.TABLE_NAME, contentValues, Contract.AttachmentEntry.COLUMN_NAME_GUID + " = ?", new String[]{guid});
+		//Invalidating the missing attachments
+		if(!missingIDs.isEmpty()) invalidateAttachmentFiles(missingIDs, missingPaths, missingAttachments);
+		
+		return lastID;
+	}
+	
+	/**
+	 * Invalidates attachments whose files were found to be missing
+	 * Attachments that have been given a new file since they were checked are left alone
+	 * @param missingIDs The message ID and attachment ID of each attachment to invalidate
+	 * @param checkedPaths The file path of each attachment when it was checked, in the same order as missingIDs
+	 * @param missingAttachments A list to add the message ID and attachment ID of each invalidated attachment to
+	 */
+	public void invalidateAttachmentFiles(List<Pair<Long, Long>> missingIDs, List<String> checkedPaths, List<Pair<Long, Long>> missingAttachments) throws Exception {
+		runWrite(() -> {
+			SQLiteDatabase database = getWritableDatabase();
+			ContentValues contentValues = new ContentValues();
+			contentValues.putNull(Contract.AttachmentEntry.COLUMN_NAME_FILEPATH);
+			contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILEPRESENT, false);
+			contentValues.putNull(Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILENAME);
+			contentValues.putNull(Contract.AttachmentEntry.COLUMN_NAME_DOWNLOADFILETYPE);
+			
+			for(int i = 0; i < missingIDs.size(); i++) {
+				//Skipping attachments that have been given a new file since they were checked
+				String path = checkedPaths.get(i);
+				int updated = database.update(Contract.AttachmentEntry.TABLE_NAME, contentValues,
+						Contract.AttachmentEntry._ID + " = ? AND " + (path == null ? Contract.AttachmentEntry.COLUMN_NAME_FILEPATH + " IS NULL" : Contract.AttachmentEntry.COLUMN_NAME_FILEPATH + " = ?"),
+						path == null ? new String[]{Long.toString(missingIDs.get(i).getSecond())} : new String[]{Long.toString(missingIDs.get(i).getSecond()), path});
+				if(updated > 0) missingAttachments.add(missingIDs.get(i));
+			}
+			return null;
+		});
 	}
 	
 	public void updateAttachmentChecksum(long localID, byte[] checksum) {
@@ -1593,87 +2118,275 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	/**
 	 * Gets the conversation preview information for a specified conversation
 	 * @param conversationID The ID of the conversation
-	 * @param serviceHandler The service handler of the conversation
 	 * @return The conversation preview data for the conversation, or NULL if unavailable
 	 */
 	@Nullable
-	private ConversationPreview getConversationPreview(long conversationID, @ServiceHandler int serviceHandler) {
-		//Getting the database
-		SQLiteDatabase database = getReadableDatabase();
+	private ConversationPreview getConversationPreview(long conversationID) {
+		return readConversationPreviews(getReadableDatabase(), Long.toString(conversationID)).get(conversationID);
+	}
+	
+	/**
+	 * Loads the members, draft files and previews of a list of conversations, using a fixed number of queries regardless of the number of conversations
+	 * @param database The database to use for these queries
+	 * @param context The context to use
+	 * @param conversations The conversations to load data into
+	 */
+	private void loadConversationSummaries(SQLiteDatabase database, Context context, List<ConversationInfo> conversations) {
+		if(conversations.isEmpty()) return;
 		
-		//Getting the last item
-		long date;
-		long lastItemID;
-		int itemType;
-		try(Cursor cursor = database.query(Contract.MessageEntry.TABLE_NAME,
-				new String[]{Contract.MessageEntry._ID, Contract.MessageEntry.COLUMN_NAME_ITEMTYPE, Contract.MessageEntry.COLUMN_NAME_DATE},
-				Contract.MessageEntry.COLUMN_NAME_CHAT + " = ? AND " + Contract.MessageEntry.COLUMN_NAME_ITEMTYPE + " IN (?, ?)", new String[]{Long.toString(conversationID), Integer.toString(ConversationItemType.message), Integer.toString(ConversationItemType.chatCreate)},
-				null, null,
-				getConversationBySortDesc(serviceHandler),
-				"1")) {
-			//Returning null if there are no results
-			if(!cursor.moveToNext()) return null;
+		//Indexing the conversations by ID
+		LongSparseArray<ConversationInfo> conversationMap = new LongSparseArray<>(conversations.size());
+		for(ConversationInfo conversation : conversations) conversationMap.put(conversation.getLocalID(), conversation);
+		String conversationIDList = conversations.stream().map(conversation -> Long.toString(conversation.getLocalID())).collect(Collectors.joining(","));
+		
+		//Loading the members
+		try(Cursor cursor = database.query(Contract.MemberEntry.TABLE_NAME, new String[]{Contract.MemberEntry.COLUMN_NAME_CHAT, Contract.MemberEntry.COLUMN_NAME_MEMBER, Contract.MemberEntry.COLUMN_NAME_COLOR}, Contract.MemberEntry.COLUMN_NAME_CHAT + " IN (" + conversationIDList + ")", null, null, null, null)) {
+			int indexChat = cursor.getColumnIndexOrThrow(Contract.MemberEntry.COLUMN_NAME_CHAT);
+			int indexMember = cursor.getColumnIndexOrThrow(Contract.MemberEntry.COLUMN_NAME_MEMBER);
+			int indexColor = cursor.getColumnIndexOrThrow(Contract.MemberEntry.COLUMN_NAME_COLOR);
+			while(cursor.moveToNext()) {
+				ConversationInfo conversation = conversationMap.get(cursor.getLong(indexChat));
+				if(conversation == null) continue;
+				conversation.getMembers().add(new MemberInfo(cursor.getString(indexMember), cursor.getInt(indexColor)));
+			}
+		}
+		
+		//Loading the draft files
+		try(Cursor cursor = database.query(Contract.DraftFileEntry.TABLE_NAME, new String[]{Contract.DraftFileEntry.COLUMN_NAME_CHAT, Contract.DraftFileEntry._ID, Contract.DraftFileEntry.COLUMN_NAME_FILE, Contract.DraftFileEntry.COLUMN_NAME_FILENAME, Contract.DraftFileEntry.COLUMN_NAME_FILESIZE, Contract.DraftFileEntry.COLUMN_NAME_FILETYPE, Contract.DraftFileEntry.COLUMN_NAME_MEDIASTOREID, Contract.DraftFileEntry.COLUMN_NAME_MODIFICATIONDATE}, Contract.DraftFileEntry.COLUMN_NAME_CHAT + " IN (" + conversationIDList + ")", null, null, null, null)) {
+			int indexChat = cursor.getColumnIndexOrThrow(Contract.DraftFileEntry.COLUMN_NAME_CHAT);
+			int indexIdentifier = cursor.getColumnIndexOrThrow(Contract.DraftFileEntry._ID);
+			int indexFile = cursor.getColumnIndexOrThrow(Contract.DraftFileEntry.COLUMN_NAME_FILE);
+			int indexFileName = cursor.getColumnIndexOrThrow(Contract.DraftFileEntry.COLUMN_NAME_FILENAME);
+			int indexFileSize = cursor.getColumnIndexOrThrow(Contract.DraftFileEntry.COLUMN_NAME_FILESIZE);
+			int indexFileType = cursor.getColumnIndexOrThrow(Contract.DraftFileEntry.COLUMN_NAME_FILETYPE);
+			int indexMediaStoreID = cursor.getColumnIndexOrThrow(Contract.DraftFileEntry.COLUMN_NAME_MEDIASTOREID);
+			int indexModificationDate = cursor.getColumnIndexOrThrow(Contract.DraftFileEntry.COLUMN_NAME_MODIFICATIONDATE);
+			while(cursor.moveToNext()) {
+				ConversationInfo conversation = conversationMap.get(cursor.getLong(indexChat));
+				if(conversation == null) continue;
+				conversation.getDraftFiles().add(new FileDraft(
+						cursor.getLong(indexIdentifier),
+						AttachmentStorageHelper.getAbsolutePath(context, cursor.getString(indexFile)),
+						cursor.getString(indexFileName),
+						cursor.getLong(indexFileSize),
+						cursor.getString(indexFileType),
+						cursor.isNull(indexMediaStoreID) ? -1 : cursor.getLong(indexMediaStoreID),
+						cursor.isNull(indexModificationDate) ? -1 : cursor.getLong(indexModificationDate)
+				));
+			}
+		}
+		
+		//Loading the previews
+		LongSparseArray<ConversationPreview> previews = readConversationPreviews(database, conversationIDList);
+		for(int i = 0; i < previews.size(); i++) {
+			ConversationInfo conversation = conversationMap.get(previews.keyAt(i));
+			if(conversation != null) conversation.setMessagePreview(previews.valueAt(i));
+		}
+	}
+	
+	/**
+	 * Reads the previews of a set of conversations from the conversation preview table
+	 * @param database The database to use for these queries
+	 * @param conversationIDList A comma-separated list of conversation IDs
+	 * @return The previews, keyed by conversation ID (conversations without a preview are omitted)
+	 */
+	private LongSparseArray<ConversationPreview> readConversationPreviews(SQLiteDatabase database, String conversationIDList) {
+		LongSparseArray<ConversationPreview> previews = new LongSparseArray<>();
+		LongSparseArray<List<AttachmentPreview>> pendingAttachmentPreviews = new LongSparseArray<>();
+		
+		try(Cursor cursor = database.query(Contract.ConversationPreviewEntry.TABLE_NAME, null, Contract.ConversationPreviewEntry.COLUMN_NAME_CHAT + " IN (" + conversationIDList + ")", null, null, null, null)) {
+			int indexChat = cursor.getColumnIndexOrThrow(Contract.ConversationPreviewEntry.COLUMN_NAME_CHAT);
+			int indexMessage = cursor.getColumnIndexOrThrow(Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGE);
+			int indexItemType = cursor.getColumnIndexOrThrow(Contract.ConversationPreviewEntry.COLUMN_NAME_ITEMTYPE);
+			int indexDate = cursor.getColumnIndexOrThrow(Contract.ConversationPreviewEntry.COLUMN_NAME_DATE);
+			int indexSender = cursor.getColumnIndexOrThrow(Contract.ConversationPreviewEntry.COLUMN_NAME_SENDER);
+			int indexMessageText = cursor.getColumnIndexOrThrow(Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGETEXT);
+			int indexMessageSubject = cursor.getColumnIndexOrThrow(Contract.ConversationPreviewEntry.COLUMN_NAME_MESSAGESUBJECT);
+			int indexSendStyle = cursor.getColumnIndexOrThrow(Contract.ConversationPreviewEntry.COLUMN_NAME_SENDSTYLE);
+			int indexError = cursor.getColumnIndexOrThrow(Contract.ConversationPreviewEntry.COLUMN_NAME_ERROR);
+			int indexAttachmentCount = cursor.getColumnIndexOrThrow(Contract.ConversationPreviewEntry.COLUMN_NAME_ATTACHMENTCOUNT);
 			
-			//Getting the data
-			date = cursor.getLong(cursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_DATE));
-			lastItemID = cursor.getLong(cursor.getColumnIndexOrThrow(Contract.MessageEntry._ID));
-			itemType = cursor.getInt(cursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_ITEMTYPE));
+			while(cursor.moveToNext()) {
+				long chatID = cursor.getLong(indexChat);
+				long date = cursor.getLong(indexDate);
+				int itemType = cursor.getInt(indexItemType);
+				if(itemType == ConversationItemType.message) {
+					String sender = cursor.isNull(indexSender) ? null : cursor.getString(indexSender);
+					String message = cursor.isNull(indexMessageText) ? null : cursor.getString(indexMessageText);
+					String subject = cursor.isNull(indexMessageSubject) ? null : MMSSMSHelper.cleanMMSSubject(cursor.getString(indexMessageSubject));
+					String sendStyle = cursor.isNull(indexSendStyle) ? null : cursor.getString(indexSendStyle);
+					boolean hasError = cursor.getInt(indexError) != MessageSendErrorCode.none;
+					
+					List<AttachmentPreview> attachments = new ArrayList<>();
+					previews.put(chatID, new ConversationPreview.Message(date, sender == null, message, subject, attachments, sendStyle, hasError));
+					
+					//Messages without text show their attachments instead
+					if(message == null && cursor.getInt(indexAttachmentCount) > 0) pendingAttachmentPreviews.put(cursor.getLong(indexMessage), attachments);
+				} else if(itemType == ConversationItemType.chatCreate) {
+					previews.put(chatID, new ConversationPreview.ChatCreation(date));
+				}
+			}
 		}
 		
-		if(itemType == ConversationItemType.message) { //Message
-			//Retrieving the message data
-			try(Cursor messageCursor = database.query(Contract.MessageEntry.TABLE_NAME,
-					new String[]{Contract.MessageEntry.COLUMN_NAME_SENDER, Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT, Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT, Contract.MessageEntry.COLUMN_NAME_SENDSTYLE, Contract.MessageEntry.COLUMN_NAME_ERROR},
-					Contract.MessageEntry._ID + " = ?", new String[]{Long.toString(lastItemID)},
+		//Loading the attachments of previews without text
+		if(pendingAttachmentPreviews.size() > 0) {
+			StringBuilder messageIDList = new StringBuilder();
+			for(int i = 0; i < pendingAttachmentPreviews.size(); i++) {
+				if(i > 0) messageIDList.append(',');
+				messageIDList.append(pendingAttachmentPreviews.keyAt(i));
+			}
+			
+			try(Cursor cursor = database.query(Contract.AttachmentEntry.TABLE_NAME,
+					new String[]{Contract.AttachmentEntry.COLUMN_NAME_MESSAGE, Contract.AttachmentEntry.COLUMN_NAME_FILETYPE, Contract.AttachmentEntry.COLUMN_NAME_FILENAME},
+					Contract.AttachmentEntry.COLUMN_NAME_MESSAGE + " IN (" + messageIDList + ")", null,
 					null, null, null)) {
-				//Returning null if there are no results
-				if(!messageCursor.moveToNext()) return null;
-				
-				int currentIndex = messageCursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_SENDER);
-				String sender = messageCursor.isNull(currentIndex) ? null : messageCursor.getString(currentIndex);
-				
-				currentIndex = messageCursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT);
-				String message = messageCursor.isNull(currentIndex) ? null : messageCursor.getString(currentIndex);
-				
-				currentIndex = messageCursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT);
-				String subject = messageCursor.isNull(currentIndex) ? null : MMSSMSHelper.cleanMMSSubject(messageCursor.getString(currentIndex));
-				
-				currentIndex = messageCursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_SENDSTYLE);
-				String sendStyle = messageCursor.isNull(currentIndex) ? null : messageCursor.getString(currentIndex);
-				
-				boolean hasError = messageCursor.getInt(messageCursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_ERROR)) != MessageSendErrorCode.none;
-				
-				//Closing the cursor
-				messageCursor.close();
-				
-				//Checking if the message is valid
-				if(message != null) {
-					//Returning the conversation message preview (without the attachments)
-					return new ConversationPreview.Message(date, sender == null, message, subject, new ArrayList<>(), sendStyle, hasError);
-				}
-				
-				//Retrieving the attachments
-				try(Cursor attachmentCursor = database.query(Contract.AttachmentEntry.TABLE_NAME,
-						new String[]{Contract.AttachmentEntry.COLUMN_NAME_FILETYPE, Contract.AttachmentEntry.COLUMN_NAME_FILENAME},
-						Contract.AttachmentEntry.COLUMN_NAME_MESSAGE + " = ?", new String[]{Long.toString(lastItemID)},
-						null, null, null)) {
-					//Getting the attachments
-					List<AttachmentPreview> attachments = new ArrayList<>(attachmentCursor.getCount());
-					int indexType = attachmentCursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_FILETYPE);
-					int indexName = attachmentCursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_FILENAME);
-					for(int i = 0; attachmentCursor.moveToNext(); i++) {
-						attachments.add(new AttachmentPreview(attachmentCursor.getString(indexName), attachmentCursor.getString(indexType)));
-					}
-					
-					//Returning the conversation message preview
-					return new ConversationPreview.Message(date, sender == null, null, subject, attachments, sendStyle, hasError);
+				int indexMessage = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_MESSAGE);
+				int indexType = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_FILETYPE);
+				int indexName = cursor.getColumnIndexOrThrow(Contract.AttachmentEntry.COLUMN_NAME_FILENAME);
+				while(cursor.moveToNext()) {
+					List<AttachmentPreview> attachments = pendingAttachmentPreviews.get(cursor.getLong(indexMessage));
+					if(attachments == null) continue;
+					attachments.add(new AttachmentPreview(cursor.getString(indexName), cursor.getString(indexType)));
 				}
 			}
-		} else if(itemType == ConversationItemType.chatCreate) { //Chat creation
-			return new ConversationPreview.ChatCreation(date);
-		} else { //No compatible type
-			return null;
 		}
+		
+		return previews;
+	}
+	
+	/**
+	 * Searches the text of all messages, newest first
+	 * @param query The text to search for, as entered by the user
+	 * @param after The last result of the previous page, or NULL to load the first page
+	 * @param limit The maximum number of results to load
+	 * @return A list of matching messages
+	 */
+	public List<MessageSearchResult> searchMessages(String query, @Nullable MessageSearchResult after, int limit) {
+		//Building the match expression
+		String matchQuery = getMessageSearchMatchQuery(query);
+		if(matchQuery == null) return Collections.emptyList();
+		
+		String selection = Contract.MessageSearchEntry.TABLE_NAME + " MATCH ?";
+		String[] selectionArgs;
+		if(after == null) {
+			selectionArgs = new String[]{matchQuery};
+		} else {
+			//Continuing from the last result of the previous page
+			selection += " AND " + Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_DATE + " <= ?" +
+					" AND (" + Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_DATE + " < ? OR " + Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry._ID + " < ?)";
+			selectionArgs = new String[]{matchQuery, Long.toString(after.getDate()), Long.toString(after.getDate()), Long.toString(after.getMessageID())};
+		}
+		
+		String sql = "SELECT " +
+				Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry._ID + ", " +
+				Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_CHAT + ", " +
+				Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_DATE + ", " +
+				Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_SENDER + ", " +
+				"snippet(" + Contract.MessageSearchEntry.TABLE_NAME + ", '', '', '\u2026', -1, " + searchSnippetTokens + ")" +
+				" FROM " + Contract.MessageSearchEntry.TABLE_NAME +
+				" JOIN " + Contract.MessageEntry.TABLE_NAME + " ON " + Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry._ID + " = " + Contract.MessageSearchEntry.TABLE_NAME + "." + Contract.MessageSearchEntry.COLUMN_NAME_DOCID +
+				" WHERE " + selection +
+				" ORDER BY " + Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry.COLUMN_NAME_DATE + " DESC, " + Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry._ID + " DESC" +
+				" LIMIT " + limit;
+		
+		List<MessageSearchResult> results = new ArrayList<>();
+		try(Cursor cursor = getReadableDatabase().rawQuery(sql, selectionArgs)) {
+			while(cursor.moveToNext()) {
+				results.add(new MessageSearchResult(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2), cursor.getString(3), cursor.getString(4)));
+			}
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Converts search text entered by the user into an FTS match expression
+	 * The expression matches messages that contain every word, treating the last word as a prefix, so results can update as the user types
+	 * @param query The search text
+	 * @return The match expression, or NULL if the search text contains no words
+	 */
+	@Nullable
+	public static String getMessageSearchMatchQuery(String query) {
+		StringBuilder builder = new StringBuilder();
+		for(String word : query.split("[\\s\"]+")) {
+			//Ignoring words that wouldn't produce any tokens
+			if(word.codePoints().noneMatch(Character::isLetterOrDigit)) continue;
+			
+			if(builder.length() > 0) builder.append("\" ");
+			builder.append('"').append(word);
+		}
+		if(builder.length() == 0) return null;
+		
+		return builder.append("*\"").toString();
+	}
+	
+	/**
+	 * Gets whether there are messages from before the search index was created that have not yet been indexed
+	 */
+	public boolean isMessageSearchBackfillPending() {
+		try(Cursor cursor = getReadableDatabase().query(Contract.MessageSearchBackfillEntry.TABLE_NAME, new String[]{Contract.MessageSearchBackfillEntry.COLUMN_NAME_LASTID}, null, null, null, null, null, "1")) {
+			return cursor.moveToNext();
+		}
+	}
+	
+	/**
+	 * Gets the number of messages that have yet to be checked by the search index backfill
+	 */
+	public long getMessageSearchBackfillRemaining() {
+		try(Cursor cursor = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + Contract.MessageEntry.TABLE_NAME +
+				" WHERE " + Contract.MessageEntry._ID + " > (SELECT " + Contract.MessageSearchBackfillEntry.COLUMN_NAME_LASTID + " FROM " + Contract.MessageSearchBackfillEntry.TABLE_NAME + ")", null)) {
+			return cursor.moveToNext() ? cursor.getLong(0) : 0;
+		}
+	}
+	
+	/**
+	 * Adds the next batch of messages from before the search index was created to the index
+	 * Progress is saved along with each batch, so this should be run in a transaction (such as with {@link #runWrite(Callable)}), and can be resumed after the app is restarted
+	 * @param batchSize The maximum number of messages to check
+	 * @return The number of messages checked, or 0 if the backfill is complete
+	 */
+	public int backfillMessageSearchIndex(int batchSize) {
+		SQLiteDatabase database = getWritableDatabase();
+		
+		//Getting the position of the backfill
+		long lastID;
+		try(Cursor cursor = database.query(Contract.MessageSearchBackfillEntry.TABLE_NAME, new String[]{Contract.MessageSearchBackfillEntry.COLUMN_NAME_LASTID}, null, null, null, null, null, "1")) {
+			if(!cursor.moveToNext()) return 0;
+			lastID = cursor.getLong(0);
+		}
+		
+		//Finding the end of this batch
+		long batchEndID;
+		int batchCount;
+		try(Cursor cursor = database.rawQuery("SELECT MAX(" + Contract.MessageEntry._ID + "), COUNT(*) FROM (" +
+				"SELECT " + Contract.MessageEntry._ID + " FROM " + Contract.MessageEntry.TABLE_NAME +
+				" WHERE " + Contract.MessageEntry._ID + " > ? ORDER BY " + Contract.MessageEntry._ID + " LIMIT " + batchSize + ")", new String[]{Long.toString(lastID)})) {
+			cursor.moveToNext();
+			batchEndID = cursor.getLong(0);
+			batchCount = cursor.getInt(1);
+		}
+		
+		//Finishing the backfill if there are no more messages
+		if(batchCount == 0) {
+			database.delete(Contract.MessageSearchBackfillEntry.TABLE_NAME, null, null);
+			return 0;
+		}
+		
+		//Indexing the messages, skipping any that have already been indexed by a trigger
+		database.execSQL("INSERT INTO " + Contract.MessageSearchEntry.TABLE_NAME + " (" + Contract.MessageSearchEntry.COLUMN_NAME_DOCID + ", " + Contract.MessageSearchEntry.COLUMN_NAME_MESSAGETEXT + ", " + Contract.MessageSearchEntry.COLUMN_NAME_MESSAGESUBJECT + ")" +
+				" SELECT " + Contract.MessageEntry._ID + ", " + Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT + ", " + Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT +
+				" FROM " + Contract.MessageEntry.TABLE_NAME +
+				" WHERE " + Contract.MessageEntry._ID + " > ? AND " + Contract.MessageEntry._ID + " <= ?" +
+				" AND (" + Contract.MessageEntry.COLUMN_NAME_MESSAGETEXT + " IS NOT NULL OR " + Contract.MessageEntry.COLUMN_NAME_MESSAGESUBJECT + " IS NOT NULL)" +
+				" AND NOT EXISTS (SELECT 1 FROM " + Contract.MessageSearchEntry.TABLE_NAME + " WHERE " + Contract.MessageSearchEntry.COLUMN_NAME_DOCID + " = " + Contract.MessageEntry.TABLE_NAME + "." + Contract.MessageEntry._ID + ")",
+				new Object[]{lastID, batchEndID});
+		
+		//Saving the position of the backfill
+		ContentValues contentValues = new ContentValues();
+		contentValues.put(Contract.MessageSearchBackfillEntry.COLUMN_NAME_LASTID, batchEndID);
+		database.update(Contract.MessageSearchBackfillEntry.TABLE_NAME, contentValues, null, null);
+		
+		return batchCount;
 	}
 	
 	/**
@@ -1717,12 +2430,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		
 		//Adding the conversation members
 		for(MemberInfo member : coloredMembers) {
-			contentValues = new ContentValues();
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_CHAT, localID);
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_MEMBER, member.getAddress());
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_COLOR, member.getColor());
-			
-			database.insert(Contract.MemberEntry.TABLE_NAME, null, contentValues);
+			insertMember(localID, member.getAddress(), member.getColor());
 		}
 		
 		//Adding the conversation created message
@@ -1823,14 +2531,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		
 		//Adding the conversation members
 		for(MemberInfo member : coloredMembers) {
-			//Setting the content values
-			ContentValues contentValues = new ContentValues();
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_CHAT, localID);
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_MEMBER, member.getAddress());
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_COLOR, member.getColor());
-			
-			//Inserting the data
-			database.insert(Contract.MemberEntry.TABLE_NAME, null, contentValues);
+			insertMember(localID, member.getAddress(), member.getColor());
 		}
 		
 		//Adding the conversation created message
@@ -1891,12 +2592,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		//Adding the members
 		if(existingLocalID != -1) database.delete(Contract.MemberEntry.TABLE_NAME, Contract.MemberEntry.COLUMN_NAME_CHAT + " = ?", new String[]{Long.toString(existingLocalID)}); //Deleting the existing members
 		for(MemberInfo member : coloredMembers) {
-			ContentValues contentValues = new ContentValues();
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_MEMBER, member.getAddress());
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_COLOR, member.getColor());
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_CHAT, localID);
-			
-			database.insert(Contract.MemberEntry.TABLE_NAME, null, contentValues);
+			insertMember(localID, member.getAddress(), member.getColor());
 		}
 		
 		//Creating and returning the conversation
@@ -1939,14 +2635,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		
 		//Adding the conversation members
 		for(MemberInfo member : conversationInfo.getMembers()) {
-			//Setting the content values
-			contentValues = new ContentValues();
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_CHAT, localID);
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_MEMBER, member.getAddress());
-			contentValues.put(Contract.MemberEntry.COLUMN_NAME_COLOR, member.getColor());
-			
-			//Inserting the data
-			database.insert(Contract.MemberEntry.TABLE_NAME, null, contentValues);
+			insertMember(localID, member.getAddress(), member.getColor());
 		}
 		
 		//Returning true
@@ -1975,6 +2664,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		contentValues.put(Contract.MessageEntry.COLUMN_NAME_CHAT, conversationID);
 		contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, -1);
 		contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, 0);
+		sortIDAllocator.recordLinked(-1);
 		
 		long createdMessageLocalID = database.insert(Contract.MessageEntry.TABLE_NAME, null, contentValues);
 		
@@ -2086,7 +2776,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		boolean chatArchived = cursor.getInt(cursor.getColumnIndexOrThrow(Contract.ConversationEntry.COLUMN_NAME_ARCHIVED)) != 0;
 		boolean chatMuted = cursor.getInt(cursor.getColumnIndexOrThrow(Contract.ConversationEntry.COLUMN_NAME_MUTED)) != 0;
 		int chatColor = cursor.getInt(cursor.getColumnIndexOrThrow(Contract.ConversationEntry.COLUMN_NAME_COLOR));
-		ConversationPreview preview = getConversationPreview(localID, serviceHandler);
+		ConversationPreview preview = getConversationPreview(localID);
 		String draftMessage = cursor.getString(cursor.getColumnIndexOrThrow(Contract.ConversationEntry.COLUMN_NAME_DRAFTMESSAGE));
 		long draftUpdateTime = cursor.getLong(cursor.getColumnIndexOrThrow(Contract.ConversationEntry.COLUMN_NAME_DRAFTUPDATETIME));
 		
@@ -2292,6 +2982,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 						messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_SERVERID, messageStruct.serverID);
 						messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, messageStruct.serverID);
 						messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, 0);
+						sortIDAllocator.recordLinked(messageStruct.serverID);
 					}
 					messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_DATE, messageStruct.date);
 					messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_GUID, messageStruct.guid);
@@ -2313,14 +3004,14 @@ public class DatabaseManager extends SQLiteOpenHelper {
 						ContentValues attachmentContentValues = new ContentValues();
 						attachmentContentValues.put(Contract.AttachmentEntry.COLUMN_NAME_GUID, pair.getSecond().guid);
 						if(pair.getSecond().sort != -1) attachmentContentValues.put(Contract.AttachmentEntry.COLUMN_NAME_SORT, pair.getSecond().sort);
-
+						
 						try {
 							database.update(Contract.AttachmentEntry.TABLE_NAME, attachmentContentValues, Contract.AttachmentEntry._ID + " = ?", new String[]{Long.toString(pair.getFirst())});
 							
 							//Adding the attachment to the list
 							try(Cursor attachmentCursor = database.query(Contract.AttachmentEntry.TABLE_NAME, null, Contract.AttachmentEntry._ID + " = ?", new String[]{Long.toString(pair.getFirst())}, null, null, null, "1")) {
 								if(attachmentCursor.moveToNext()) {
-									AttachmentInfo attachmentInfo = loadAttachmentInfo(context, AttachmentInfoIndices.fromCursor(attachmentCursor), attachmentCursor);
+									AttachmentInfo attachmentInfo = loadAttachmentInfo(AttachmentStorageHelper.getAttachmentDirectoryUnchecked(context), AttachmentInfoIndices.fromCursor(attachmentCursor), attachmentCursor);
 									messageAttachments.add(attachmentInfo);
 								}
 							}
@@ -2345,7 +3036,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 						
 						try(Cursor attachmentCursor = database.query(Contract.AttachmentEntry.TABLE_NAME, null, Contract.AttachmentEntry._ID + " = ?", new String[]{Long.toString(pair.getFirst())}, null, null, null, "1")) {
 							if(attachmentCursor.moveToNext()) {
-								AttachmentInfo attachmentInfo = loadAttachmentInfo(context, AttachmentInfoIndices.fromCursor(attachmentCursor), attachmentCursor);
+								AttachmentInfo attachmentInfo = loadAttachmentInfo(AttachmentStorageHelper.getAttachmentDirectoryUnchecked(context), AttachmentInfoIndices.fromCursor(attachmentCursor), attachmentCursor);
 								messageAttachments.add(attachmentInfo);
 							}
 						}
@@ -2430,20 +3121,12 @@ public class DatabaseManager extends SQLiteOpenHelper {
 					ContentValues messageContentValues = new ContentValues();
 					if(conversationItem.getServerID() == -1) {
 						messageContentValues.putNull(Contract.MessageEntry.COLUMN_NAME_SERVERID);
-						try(Cursor cursor = database.query(Contract.MessageEntry.TABLE_NAME, new String[]{Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET}, Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + " = (SELECT MAX(" + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + ") FROM " + Contract.MessageEntry.TABLE_NAME + ")", null, null, null, Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET + " DESC", "1")) {
-							if(cursor.moveToNext()) {
-								//Same message, +1 offset
-								messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, cursor.getLong(cursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED)));
-								messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, cursor.getInt(cursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET)) + 1);
-							} else {
-								messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, -1);
-								messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, 0);
-							}
-						}
+						sortIDAllocator.allocate(database, messageContentValues);
 					} else {
 						messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_SERVERID, messageItem.getServerID());
 						messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, messageItem.getServerID());
 						messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, 0);
+						sortIDAllocator.recordLinked(messageItem.getServerID());
 					}
 					messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_DATE, messageItem.getDate());
 					messageContentValues.put(Contract.MessageEntry.COLUMN_NAME_GUID, messageItem.getGuid());
@@ -2471,7 +3154,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 						//Adding the attachment to the list
 						try(Cursor attachmentCursor = database.query(Contract.AttachmentEntry.TABLE_NAME, null, Contract.AttachmentEntry._ID + " = ?", new String[]{Long.toString(pair.getFirst())}, null, null, null, "1")) {
 							if(attachmentCursor.moveToNext()) {
-								AttachmentInfo attachmentInfo = loadAttachmentInfo(context, AttachmentInfoIndices.fromCursor(attachmentCursor), attachmentCursor);
+								AttachmentInfo attachmentInfo = loadAttachmentInfo(AttachmentStorageHelper.getAttachmentDirectoryUnchecked(context), AttachmentInfoIndices.fromCursor(attachmentCursor), attachmentCursor);
 								messageAttachments.add(attachmentInfo);
 							}
 						}
@@ -2488,7 +3171,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 						
 						try(Cursor attachmentCursor = database.query(Contract.AttachmentEntry.TABLE_NAME, null, Contract.AttachmentEntry._ID + " = ?", new String[]{Long.toString(pair.getFirst())}, null, null, null, "1")) {
 							if(attachmentCursor.moveToNext()) {
-								AttachmentInfo attachmentInfo = loadAttachmentInfo(context, AttachmentInfoIndices.fromCursor(attachmentCursor), attachmentCursor);
+								AttachmentInfo attachmentInfo = loadAttachmentInfo(AttachmentStorageHelper.getAttachmentDirectoryUnchecked(context), AttachmentInfoIndices.fromCursor(attachmentCursor), attachmentCursor);
 								messageAttachments.add(attachmentInfo);
 							}
 						}
@@ -2605,20 +3288,12 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		ContentValues contentValues = new ContentValues();
 		if(conversationItem.serverID == -1) {
 			contentValues.putNull(Contract.MessageEntry.COLUMN_NAME_SERVERID);
-			try(Cursor cursor = database.query(Contract.MessageEntry.TABLE_NAME, new String[]{Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET}, Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + " = (SELECT MAX(" + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + ") FROM " + Contract.MessageEntry.TABLE_NAME + ")", null, null, null, Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET + " DESC", "1")) {
-				if(cursor.moveToNext()) {
-					//Same message, +1 offset
-					contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, cursor.getLong(cursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED)));
-					contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, cursor.getInt(cursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET)) + 1);
-				} else {
-					contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, -1);
-					contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, 0);
-				}
-			}
+			sortIDAllocator.allocate(database, contentValues);
 		} else {
 			contentValues.put(Contract.MessageEntry.COLUMN_NAME_SERVERID, conversationItem.serverID);
 			contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, conversationItem.serverID);
 			contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, 0);
+			sortIDAllocator.recordLinked(conversationItem.serverID);
 		}
 		contentValues.put(Contract.MessageEntry.COLUMN_NAME_GUID, conversationItem.guid);
 		contentValues.put(Contract.MessageEntry.COLUMN_NAME_DATE, conversationItem.date);
@@ -2658,23 +3333,8 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			//Adding the attachments
 			ArrayList<AttachmentInfo> attachments = new ArrayList<>(messageInfoStruct.attachments.stream().map(attachment -> addMessageAttachment(context, messageLocalID, attachment, isHistory)).filter(Objects::nonNull).collect(Collectors.toList()));
 			
-			//Adding the modifiers
-			List<Pair<StickerInfo, ModifierMetadata>> stickers = addMessageStickers(context, messageLocalID, messageInfoStruct.stickers);
-			List<Pair<TapbackInfo, ModifierMetadata>> tapbacks = addMessageTapbacks(messageLocalID, messageInfoStruct.tapbacks);
-			
-			//Creating the message info
-			MessageInfo messageInfo = new MessageInfo(messageLocalID, messageInfoStruct.serverID, messageInfoStruct.guid, messageInfoStruct.date, messageInfoStruct.sender, messageInfoStruct.text, messageInfoStruct.subject, attachments, messageInfoStruct.sendEffect, false, messageInfoStruct.dateRead, messageInfoStruct.stateCode, messageInfoStruct.errorCode, false, null);
-			for(Pair<StickerInfo, ModifierMetadata> pair : stickers) {
-				if(pair.getSecond().getComponentIndex() >= messageInfo.getComponentCount()) continue;
-				messageInfo.getComponentAt(pair.getSecond().getComponentIndex()).getStickers().add(pair.getFirst());
-			}
-			for(Pair<TapbackInfo, ModifierMetadata> pair : tapbacks) {
-				if(pair.getSecond().getComponentIndex() >= messageInfo.getComponentCount()) continue;
-				messageInfo.getComponentAt(pair.getSecond().getComponentIndex()).getTapbacks().add(pair.getFirst());
-			}
-			
-			//Returning the message info
-			return messageInfo;
+			//Adding the modifiers and returning the message info
+			return completeMessageStruct(context, messageLocalID, messageInfoStruct, attachments);
 		}
 		//Otherwise checking if the item is a group action
 		else if(conversationItem instanceof Blocks.GroupActionInfo) {
@@ -2732,6 +3392,202 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		return null;
 	}
 	
+	/**
+	 * Writes the modifiers of a newly inserted message struct to the database, and creates its message info
+	 * @param context The context to use
+	 * @param messageLocalID The local ID of the inserted message
+	 * @param messageInfoStruct The message struct
+	 * @param attachments The message's inserted attachments
+	 * @return The completed message info
+	 */
+	private MessageInfo completeMessageStruct(Context context, long messageLocalID, Blocks.MessageInfo messageInfoStruct, ArrayList<AttachmentInfo> attachments) {
+		//Adding the modifiers
+		List<Pair<StickerInfo, ModifierMetadata>> stickers = addMessageStickers(context, messageLocalID, messageInfoStruct.stickers);
+		List<Pair<TapbackInfo, ModifierMetadata>> tapbacks = addMessageTapbacks(messageLocalID, messageInfoStruct.tapbacks);
+		
+		//Creating the message info
+		MessageInfo messageInfo = new MessageInfo(messageLocalID, messageInfoStruct.serverID, messageInfoStruct.guid, messageInfoStruct.date, messageInfoStruct.sender, messageInfoStruct.text, messageInfoStruct.subject, attachments, messageInfoStruct.sendEffect, false, messageInfoStruct.dateRead, messageInfoStruct.stateCode, messageInfoStruct.errorCode, false, null);
+		for(Pair<StickerInfo, ModifierMetadata> pair : stickers) {
+			if(pair.getSecond().getComponentIndex() >= messageInfo.getComponentCount()) continue;
+			messageInfo.getComponentAt(pair.getSecond().getComponentIndex()).getStickers().add(pair.getFirst());
+		}
+		for(Pair<TapbackInfo, ModifierMetadata> pair : tapbacks) {
+			if(pair.getSecond().getComponentIndex() >= messageInfo.getComponentCount()) continue;
+			messageInfo.getComponentAt(pair.getSecond().getComponentIndex()).getTapbacks().add(pair.getFirst());
+		}
+		
+		return messageInfo;
+	}
+	
+	/**
+	 * Writes a batch of conversation structs to the database in a single transaction, reusing the same compiled statements for every row
+	 * This is intended for large imports, such as a mass retrieval
+	 * @param context The context to use
+	 * @param conversationMap A map of conversation GUIDs to conversations, used to find each item's parent conversation (items without one are skipped)
+	 * @param conversationItems The conversation items to add
+	 * @param isHistory Whether the added messages should be treated as history, ie. should not receive treatment as newly received messages
+	 * @return A list of completed conversation items
+	 */
+	public List<ConversationItem> addConversationStructs(Context context, Map<String, ConversationInfo> conversationMap, Collection<Blocks.ConversationItem> conversationItems, boolean isHistory) {
+		//Getting the database
+		SQLiteDatabase database = getWritableDatabase();
+		
+		boolean shouldAutoDownload = !isHistory && Preferences.getPreferenceAutoDownloadAttachments(context); //Don't auto-download historical attachments
+		List<ConversationItem> addedItems = new ArrayList<>(conversationItems.size());
+		
+		database.beginTransaction();
+		try(SQLiteStatement messageStatement = database.compileStatement(SQL_INSERT_MESSAGE_STRUCT);
+			SQLiteStatement attachmentStatement = database.compileStatement(SQL_INSERT_ATTACHMENT_STRUCT)) {
+			for(Blocks.ConversationItem structItem : conversationItems) {
+				//Finding the parent conversation
+				ConversationInfo parentConversation = conversationMap.get(structItem.chatGuid);
+				if(parentConversation == null) continue;
+				
+				//Writing the item (items without a server ID need their sort ID looked up, so they take the regular path)
+				ConversationItem conversationItem;
+				if(structItem.serverID == -1) {
+					conversationItem = addConversationStruct(context, parentConversation.getLocalID(), structItem, isHistory);
+				} else {
+					conversationItem = insertConversationStruct(context, messageStatement, attachmentStatement, parentConversation.getLocalID(), structItem, isHistory, shouldAutoDownload);
+				}
+				if(conversationItem != null) addedItems.add(conversationItem);
+			}
+			
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
+		}
+		
+		return addedItems;
+	}
+	
+	/**
+	 * Writes a conversation struct with a server ID to the database using compiled statements
+	 * @return A completed conversation item, or NULL if the item couldn't be written
+	 */
+	@Nullable
+	private ConversationItem insertConversationStruct(Context context, SQLiteStatement messageStatement, SQLiteStatement attachmentStatement, long conversationID, Blocks.ConversationItem conversationItem, boolean isHistory, boolean shouldAutoDownload) {
+		//Binding the common data
+		messageStatement.clearBindings();
+		messageStatement.bindLong(1, conversationItem.serverID);
+		messageStatement.bindLong(2, conversationItem.serverID);
+		sortIDAllocator.recordLinked(conversationItem.serverID);
+		bindNullableString(messageStatement, 3, conversationItem.guid);
+		messageStatement.bindLong(4, conversationItem.date);
+		messageStatement.bindLong(5, conversationID);
+		messageStatement.bindLong(16, 0);
+		
+		if(conversationItem instanceof Blocks.MessageInfo) {
+			Blocks.MessageInfo messageInfoStruct = (Blocks.MessageInfo) conversationItem;
+			
+			//Binding the message data
+			bindNullableString(messageStatement, 6, messageInfoStruct.sender);
+			messageStatement.bindLong(7, ConversationItemType.message);
+			bindNullableString(messageStatement, 10, messageInfoStruct.text);
+			bindNullableString(messageStatement, 11, messageInfoStruct.subject);
+			messageStatement.bindLong(12, messageInfoStruct.stateCode);
+			messageStatement.bindLong(13, messageInfoStruct.errorCode);
+			messageStatement.bindLong(14, messageInfoStruct.dateRead);
+			if(messageInfoStruct.sendEffect != null) {
+				messageStatement.bindString(15, messageInfoStruct.sendEffect);
+				//If this is a history item, don't display a send style when the user loads the conversation
+				messageStatement.bindLong(16, isHistory ? 1 : 0);
+			}
+			
+			//Inserting the message
+			long messageLocalID = executeInsert(messageStatement);
+			if(messageLocalID == -1) return null;
+			
+			//Inserting the attachments
+			ArrayList<AttachmentInfo> attachments = new ArrayList<>(messageInfoStruct.attachments.size());
+			for(Blocks.AttachmentInfo attachmentStruct : messageInfoStruct.attachments) {
+				attachmentStatement.clearBindings();
+				bindNullableString(attachmentStatement, 1, attachmentStruct.guid);
+				attachmentStatement.bindLong(2, messageLocalID);
+				bindNullableString(attachmentStatement, 3, attachmentStruct.name);
+				bindNullableString(attachmentStatement, 4, attachmentStruct.type);
+				if(attachmentStruct.size != -1) attachmentStatement.bindLong(5, attachmentStruct.size);
+				if(attachmentStruct.checksum != null) attachmentStatement.bindString(6, Base64.encodeToString(attachmentStruct.checksum, Base64.NO_WRAP));
+				if(attachmentStruct.sort != -1) attachmentStatement.bindLong(7, attachmentStruct.sort);
+				attachmentStatement.bindLong(8, shouldAutoDownload ? 1 : 0);
+				
+				long attachmentLocalID = executeInsert(attachmentStatement);
+				if(attachmentLocalID == -1) continue;
+				
+				attachments.add(new AttachmentInfo(attachmentLocalID, attachmentStruct.guid, attachmentStruct.name, attachmentStruct.type, attachmentStruct.size, attachmentStruct.sort, null, attachmentStruct.checksum, null, null, shouldAutoDownload));
+			}
+			
+			//Adding the modifiers and returning the message info
+			return completeMessageStruct(context, messageLocalID, messageInfoStruct, attachments);
+		} else if(conversationItem instanceof Blocks.GroupActionInfo) {
+			Blocks.GroupActionInfo groupActionInfoStruct = (Blocks.GroupActionInfo) conversationItem;
+			
+			//Binding the group action data
+			bindNullableString(messageStatement, 6, groupActionInfoStruct.agent);
+			messageStatement.bindLong(7, ConversationItemType.member);
+			messageStatement.bindLong(8, groupActionInfoStruct.groupActionType);
+			bindNullableString(messageStatement, 9, groupActionInfoStruct.other);
+			
+			//Inserting the action
+			long localID = executeInsert(messageStatement);
+			if(localID == -1) return null;
+			
+			return new ChatMemberAction(localID, groupActionInfoStruct.serverID, groupActionInfoStruct.guid, groupActionInfoStruct.date, groupActionInfoStruct.groupActionType, groupActionInfoStruct.agent, groupActionInfoStruct.other);
+		} else if(conversationItem instanceof Blocks.ChatRenameActionInfo) {
+			Blocks.ChatRenameActionInfo chatRenameInfoStruct = (Blocks.ChatRenameActionInfo) conversationItem;
+			
+			//Binding the chat rename data
+			bindNullableString(messageStatement, 6, chatRenameInfoStruct.agent);
+			messageStatement.bindLong(7, ConversationItemType.chatRename);
+			bindNullableString(messageStatement, 9, chatRenameInfoStruct.newChatName);
+			
+			//Inserting the action
+			long localID = executeInsert(messageStatement);
+			if(localID == -1) return null;
+			
+			return new ChatRenameAction(localID, chatRenameInfoStruct.serverID, chatRenameInfoStruct.guid, chatRenameInfoStruct.date, chatRenameInfoStruct.agent, chatRenameInfoStruct.newChatName);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Executes an insert statement, returning -1 if a constraint fails
+	 */
+	private static long executeInsert(SQLiteStatement statement) {
+		try {
+			return statement.executeInsert();
+		} catch(SQLiteConstraintException exception) {
+			//Printing the stack trace
+			exception.printStackTrace();
+			
+			return -1;
+		}
+	}
+	
+	private static void bindNullableString(SQLiteStatement statement, int index, @Nullable String value) {
+		if(value == null) statement.bindNull(index);
+		else statement.bindString(index, value);
+	}
+	
+	/**
+	 * Adds a member to a conversation
+	 * @param conversationID The ID of the conversation
+	 * @param address The address of the member
+	 * @param color The color of the member
+	 */
+	private void insertMember(long conversationID, String address, int color) {
+		SQLiteStatement statement = acquireStatement(SQL_INSERT_MEMBER);
+		try {
+			bindNullableString(statement, 1, address);
+			statement.bindLong(2, conversationID);
+			statement.bindLong(3, color);
+			executeInsert(statement);
+		} finally {
+			releaseStatement(statement);
+		}
+	}
+	
 	/**
 	 * Adds a new conversation item to a conversation
 	 * @param conversationID The ID of the conversation
@@ -2748,22 +3604,12 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		if(offsetRequired) {
 			if(conversationItem.getServerID() == -1) {
 				contentValues.putNull(Contract.MessageEntry.COLUMN_NAME_SERVERID);
-				try(Cursor cursor = database.query(Contract.MessageEntry.TABLE_NAME, new String[]{Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET},
-						Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + " = (SELECT MAX(" + Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + ") FROM " + Contract.MessageEntry.TABLE_NAME + ")", null,
-						null, null, Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET + " DESC", "1")) {
-					if(cursor.moveToNext()) {
-						//Same message, +1 offset
-						contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, cursor.getLong(cursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED)));
-						contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, cursor.getInt(cursor.getColumnIndexOrThrow(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET)) + 1);
-					} else {
-						contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, -1);
-						contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, 0);
-					}
-				}
+				sortIDAllocator.allocate(database, contentValues);
 			} else {
 				contentValues.put(Contract.MessageEntry.COLUMN_NAME_SERVERID, conversationItem.getServerID());
 				contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, conversationItem.getServerID());
 				contentValues.put(Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, 0);
+				sortIDAllocator.recordLinked(conversationItem.getServerID());
 			}
 		}
 		contentValues.put(Contract.MessageEntry.COLUMN_NAME_GUID, conversationItem.getGuid());
@@ -2808,7 +3654,10 @@ public class DatabaseManager extends SQLiteOpenHelper {
 				contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILENAME, attachment.getFileName());
 				contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILETYPE, attachment.getContentType());
 				if(attachment.getFileSize() != -1) contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILESIZE, attachment.getFileSize());
-				if(attachment.getFile() != null) contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILEPATH, AttachmentStorageHelper.getRelativePath(MainApplication.getInstance(), attachment.getFile()));
+				if(attachment.getFile() != null) {
+					contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILEPATH, AttachmentStorageHelper.getRelativePath(MainApplication.getInstance(), attachment.getFile()));
+					contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILEPRESENT, true);
+				}
 				contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILECHECKSUM, attachment.getFileChecksum());
 				if(attachment.getSort() != -1) contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_SORT, attachment.getSort());
 				
@@ -2927,7 +3776,10 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILENAME, attachment.getFileName());
 		contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILETYPE, attachment.getContentType());
 		if(attachment.getFileSize() != -1) contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILESIZE, attachment.getFileSize());
-		if(attachment.getFile() != null) contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILEPATH, AttachmentStorageHelper.getRelativePath(context, attachment.getFile()));
+		if(attachment.getFile() != null) {
+			contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILEPATH, AttachmentStorageHelper.getRelativePath(context, attachment.getFile()));
+			contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILEPRESENT, true);
+		}
 		contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_FILECHECKSUM, attachment.getFileChecksum());
 		if(attachment.getSort() != -1) contentValues.put(Contract.AttachmentEntry.COLUMN_NAME_SORT, attachment.getSort());
 		
@@ -2981,8 +3833,20 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		getWritableDatabase().update(Contract.ConversationEntry.TABLE_NAME, contentValues, null, null);
 	}
 	
-	public void incrementUnreadMessageCount(long conversationID) {
-		getWritableDatabase().execSQL("UPDATE " + Contract.ConversationEntry.TABLE_NAME + " SET " + Contract.ConversationEntry.COLUMN_NAME_UNREADMESSAGECOUNT + " = " + Contract.ConversationEntry.COLUMN_NAME_UNREADMESSAGECOUNT + " + 1 WHERE " + Contract.ConversationEntry._ID + " = ?", new String[]{Long.toString(conversationID)});
+	/**
+	 * Adds to the unread message count of a conversation
+	 * @param conversationID The ID of the conversation
+	 * @param count The number of new unread messages
+	 */
+	public void incrementUnreadMessageCount(long conversationID, int count) {
+		SQLiteStatement statement = acquireStatement(SQL_INCREMENT_UNREAD_COUNT);
+		try {
+			statement.bindLong(1, count);
+			statement.bindLong(2, conversationID);
+			statement.executeUpdateDelete();
+		} finally {
+			releaseStatement(statement);
+		}
 	}
 	
 	/**
@@ -3106,21 +3970,28 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			}
 		}
 		
-		//Creating the content values with the code
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(Contract.TapbackEntry.COLUMN_NAME_CODE, tapback.tapbackType);
-		
 		if(tapbackID != -1) {
 			//Updating the matching entry
-			database.update(Contract.TapbackEntry.TABLE_NAME, contentValues, Contract.TapbackEntry._ID + " = ?", new String[]{Long.toString(tapbackID)});
+			SQLiteStatement statement = acquireStatement(SQL_UPDATE_TAPBACK_CODE);
+			try {
+				statement.bindLong(1, tapback.tapbackType);
+				statement.bindLong(2, tapbackID);
+				statement.executeUpdateDelete();
+			} finally {
+				releaseStatement(statement);
+			}
 		} else {
-			//Completing the content values
-			contentValues.put(Contract.TapbackEntry.COLUMN_NAME_MESSAGE, messageID);
-			contentValues.put(Contract.TapbackEntry.COLUMN_NAME_MESSAGEINDEX, tapback.messageIndex);
-			contentValues.put(Contract.TapbackEntry.COLUMN_NAME_SENDER, tapback.sender);
-			
 			//Inserting the entry
-			tapbackID = database.insert(Contract.TapbackEntry.TABLE_NAME, null, contentValues);
+			SQLiteStatement statement = acquireStatement(SQL_INSERT_TAPBACK);
+			try {
+				statement.bindLong(1, messageID);
+				statement.bindLong(2, tapback.messageIndex);
+				bindNullableString(statement, 3, tapback.sender);
+				statement.bindLong(4, tapback.tapbackType);
+				tapbackID = executeInsert(statement);
+			} finally {
+				releaseStatement(statement);
+			}
 		}
 		
 		//Returning the tapback
@@ -3186,14 +4057,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		if(updateMembers) {
 			//Looping through all members
 			for(MemberInfo member : conversationInfo.getMembers()) {
-				//Putting the data
-				contentValues = new ContentValues();
-				contentValues.put(Contract.MemberEntry.COLUMN_NAME_MEMBER, member.getAddress());
-				contentValues.put(Contract.MemberEntry.COLUMN_NAME_CHAT, conversationInfo.getLocalID());
-				contentValues.put(Contract.MemberEntry.COLUMN_NAME_COLOR, member.getColor());
-				
-				//Inserting the values into the conversation / users join table
-				database.insert(Contract.MemberEntry.TABLE_NAME, null, contentValues);
+				insertMember(conversationInfo.getLocalID(), member.getAddress(), member.getColor());
 			}
 		}
 	}
@@ -3218,14 +4082,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		if(updateMembers) {
 			//Looping through all members
 			for(MemberInfo member : sourceConversation.getMembers()) {
-				//Putting the data
-				contentValues = new ContentValues();
-				contentValues.put(Contract.MemberEntry.COLUMN_NAME_MEMBER, member.getAddress());
-				contentValues.put(Contract.MemberEntry.COLUMN_NAME_CHAT, targetConversation.getLocalID());
-				contentValues.put(Contract.MemberEntry.COLUMN_NAME_COLOR, member.getColor());
-				
-				//Inserting the values into the conversation / users join table
-				database.insert(Contract.MemberEntry.TABLE_NAME, null, contentValues);
+				insertMember(targetConversation.getLocalID(), member.getAddress(), member.getColor());
 			}
 		}
 	}
@@ -3296,14 +4153,7 @@ public class DatabaseManager extends SQLiteOpenHelper {
 			if(cursor.getCount() > 0) return;
 		}
 		
-		//Creating the content values
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(Contract.MemberEntry.COLUMN_NAME_MEMBER, memberName);
-		contentValues.put(Contract.MemberEntry.COLUMN_NAME_CHAT, chatID);
-		contentValues.put(Contract.MemberEntry.COLUMN_NAME_COLOR, memberColor);
-		
-		//Inserting the member
-		database.insert(Contract.MemberEntry.TABLE_NAME, null, contentValues);
+		insertMember(chatID, memberName, memberColor);
 	}
 	
 	public void removeConversationMember(long chatID, String member) {
@@ -3319,18 +4169,27 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	public void deleteConversation(Context context, long conversationID) {
 		//Getting the database
 		SQLiteDatabase database = getWritableDatabase();
-		
-		//Deleting the conversation
-		database.delete(Contract.ConversationEntry.TABLE_NAME, Contract.ConversationEntry._ID + " = ?", new String[]{Long.toString(conversationID)});
-		
-		//Deleting all related messages
-		try(Cursor cursor = database.query(Contract.MessageEntry.TABLE_NAME, new String[]{Contract.MessageEntry._ID}, Contract.MessageEntry.COLUMN_NAME_CHAT + " = ?", new String[]{Long.toString(conversationID)}, null, null, null)) {
-			int columnIndexID = cursor.getColumnIndexOrThrow(Contract.MessageEntry._ID);
-			while(cursor.moveToNext()) deleteMessage(context, cursor.getLong(columnIndexID));
+		database.beginTransaction();
+		try {
+			//Deleting the conversation
+			database.delete(Contract.ConversationEntry.TABLE_NAME, Contract.ConversationEntry._ID + " = ?", new String[]{Long.toString(conversationID)});
+			
+			//Deleting all related messages
+			try(Cursor cursor = database.query(Contract.MessageEntry.TABLE_NAME, new String[]{Contract.MessageEntry._ID}, Contract.MessageEntry.COLUMN_NAME_CHAT + " = ?", new String[]{Long.toString(conversationID)}, null, null, null)) {
+				int columnIndexID = cursor.getColumnIndexOrThrow(Contract.MessageEntry._ID);
+				while(cursor.moveToNext()) deleteMessage(context, cursor.getLong(columnIndexID));
+			}
+			
+			//Deleting all related members
+			database.delete(Contract.MemberEntry.TABLE_NAME, Contract.MemberEntry.COLUMN_NAME_CHAT + " = ?", new String[]{Long.toString(conversationID)});
+			
+			//Reloading the latest sort ID, in case it belonged to a deleted message
+			sortIDAllocator.reset();
+			
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
 		}
-		
-		//Deleting all related members
-		database.delete(Contract.MemberEntry.TABLE_NAME, Contract.MemberEntry.COLUMN_NAME_CHAT + " = ?", new String[]{Long.toString(conversationID)});
 	}
 	
 	/**
@@ -3341,8 +4200,9 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	 */
 	public long[] deleteConversationsByServiceHandler(Context context, @ServiceHandler int serviceHandler) {
 		//Deleting all conversations meeting the selection
-		SQLiteDatabase database = getReadableDatabase();
+		SQLiteDatabase database = getWritableDatabase();
 		long[] deletedConversations;
+		database.beginTransaction();
 		try(Cursor cursor = database.query(Contract.ConversationEntry.TABLE_NAME, new String[]{Contract.ConversationEntry._ID},
 				Contract.ConversationEntry.COLUMN_NAME_SERVICEHANDLER + " = ?", new String[]{Integer.toString(serviceHandler)},
 				null, null, null)) {
@@ -3356,6 +4216,13 @@ public class DatabaseManager extends SQLiteOpenHelper {
 				deletedConversations[i++] = conversationID;
 				deleteConversation(context, conversationID);
 			}
+			
+			//Reloading the latest sort ID, in case it belonged to a deleted message
+			sortIDAllocator.reset();
+			
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
 		}
 		
 		return deletedConversations;
@@ -3483,12 +4350,14 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	 * @param state The state code of the message
 	 */
 	public void updateMessageState(long localID, int state) {
-		//Creating the content values
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(Contract.MessageEntry.COLUMN_NAME_STATE, state);
-		
-		//Updating the entry
-		getWritableDatabase().update(Contract.MessageEntry.TABLE_NAME, contentValues, Contract.MessageEntry._ID + " = ?", new String[]{Long.toString(localID)});
+		SQLiteStatement statement = acquireStatement(SQL_UPDATE_MESSAGE_STATE);
+		try {
+			statement.bindLong(1, state);
+			statement.bindLong(2, localID);
+			statement.executeUpdateDelete();
+		} finally {
+			releaseStatement(statement);
+		}
 	}
 	
 	/**
@@ -3498,13 +4367,15 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	 * @param dateRead The date the message was read by its recipient
 	 */
 	public void updateMessageState(long localID, int state, long dateRead) {
-		//Creating the content values
-		ContentValues contentValues = new ContentValues();
-		contentValues.put(Contract.MessageEntry.COLUMN_NAME_STATE, state);
-		contentValues.put(Contract.MessageEntry.COLUMN_NAME_DATEREAD, dateRead);
-		
-		//Updating the entry
-		getWritableDatabase().update(Contract.MessageEntry.TABLE_NAME, contentValues, Contract.MessageEntry._ID + " = ?", new String[]{Long.toString(localID)});
+		SQLiteStatement statement = acquireStatement(SQL_UPDATE_MESSAGE_STATE_DATEREAD);
+		try {
+			statement.bindLong(1, state);
+			statement.bindLong(2, dateRead);
+			statement.bindLong(3, localID);
+			statement.executeUpdateDelete();
+		} finally {
+			releaseStatement(statement);
+		}
 	}
 	
 	/**
@@ -3605,10 +4476,6 @@ public class DatabaseManager extends SQLiteOpenHelper {
 		}
 	}
 	
-	private static String getConversationSortByDesc(ConversationInfo conversationInfo) {
-		return getConversationBySortDesc(conversationInfo.getServiceHandler());
-	}
-	
 	private static String getConversationBySortDesc(@ServiceHandler int serviceHandler) {
 		//When using AM bridge, a more advanced ordering system must be used to ensure messages are properly displayed. Otherwise, they can simply be sorted by date.
 		return serviceHandler == ServiceHandler.appleBridge ? messageSortOrderDesc : messageSortOrderDescSimple;
@@ -3636,57 +4503,171 @@ public class DatabaseManager extends SQLiteOpenHelper {
 	} */
 	
 	public static abstract class LazyLoader<T> {
-		SQLiteDatabase database;
-		Cursor cursor;
-		
-		public void initialize(SQLiteDatabase database, Cursor cursor) {
-			this.database = database;
-			this.cursor = cursor;
-		}
-		
-		public void setCursorPosition(int cursorPosition) {
-			cursor.moveToPosition(cursorPosition);
-		}
-		
 		public abstract List<T> loadNextChunk(Context context);
 	}
 	
+	/**
+	 * Loads a conversation's items page by page, keyed on their sort order
+	 *
+	 * Each page is fetched with a short-lived query that continues from the sort key of the last item loaded,
+	 * so no cursor is held between pages and memory use doesn't depend on the length of the conversation.
+	 */
 	public static class ConversationLazyLoader extends LazyLoader<ConversationItem> {
 		private final DatabaseManager databaseManager;
-		private final ConversationItemIndices conversationItemIndices;
+		private final SQLiteDatabase database;
+		private final long conversationID;
+		private final String[] keyColumns; //The columns that make up an item's sort key, from most to least significant
+		
+		//The sort keys of the oldest and newest items loaded so far, or NULL if nothing has been loaded yet
+		@Nullable private long[] oldestKey = null;
+		@Nullable private long[] newestKey = null;
 		
 		public ConversationLazyLoader(DatabaseManager databaseManager, ConversationInfo conversationInfo) {
+			this(databaseManager, databaseManager.getReadableDatabase(), conversationInfo.getLocalID(), conversationInfo.getServiceHandler());
+		}
+		
+		/**
+		 * Creates a lazy loader that reads from a specific database
+		 * @param databaseManager The database manager to load items with
+		 * @param database The database to read from
+		 * @param conversationID The ID of the conversation to load items from
+		 * @param serviceHandler The service handler of the conversation
+		 */
+		public ConversationLazyLoader(DatabaseManager databaseManager, SQLiteDatabase database, long conversationID, @ServiceHandler int serviceHandler) {
 			this.databaseManager = databaseManager;
+			this.database = database;
+			this.conversationID = conversationID;
 			
-			//Building the query
-			SQLiteDatabase database = databaseManager.getReadableDatabase();
-			Cursor cursor = database.query(Contract.MessageEntry.TABLE_NAME, null,
-					Contract.MessageEntry.COLUMN_NAME_CHAT + " = ?", new String[]{Long.toString(conversationInfo.getLocalID())},
-					null, null, getConversationSortByDesc(conversationInfo), null);
-			
-			//Getting the indices
-			conversationItemIndices = ConversationItemIndices.fromCursor(cursor);
-			
-			//Initializing the loader
-			super.initialize(database, cursor);
+			//Matching the sort order used by the rest of the app, with the local ID as a tiebreaker
+			if(serviceHandler == ServiceHandler.appleBridge) {
+				keyColumns = new String[]{Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, Contract.MessageEntry._ID};
+			} else {
+				keyColumns = new String[]{Contract.MessageEntry.COLUMN_NAME_DATE, Contract.MessageEntry._ID};
+			}
 		}
 		
+		/**
+		 * Loads the next page of items older than the ones already loaded
+		 * @return The loaded items, in ascending order
+		 */
 		@Override
 		public List<ConversationItem> loadNextChunk(Context context) {
-			//Creating the message list
-			List<ConversationItem> conversationItems = new ArrayList<>();
+			return loadChunk(context, oldestKey, true, Messaging.messageChunkSize);
+		}
+		
+		/**
+		 * Loads the next page of items newer than the ones already loaded, for when loading was started from an anchor
+		 * @return The loaded items, in ascending order
+		 */
+		public List<ConversationItem> loadNewerChunk(Context context) {
+			if(newestKey == null) return Collections.emptyList();
+			return loadChunk(context, newestKey, false, Messaging.messageChunkSize);
+		}
+		
+		/**
+		 * Discards the current position, and loads a page of items around a specific item (such as a search result or reply target)
+		 * Subsequent calls to {@link #loadNextChunk(Context)} and {@link #loadNewerChunk(Context)} continue from this page
+		 * @param messageID The local ID of the item to load around
+		 * @return The loaded items in ascending order, or an empty list if the item couldn't be found in this conversation
+		 */
+		public List<ConversationItem> loadChunkAround(Context context, long messageID) {
+			//Getting the sort key of the anchor item
+			long[] anchorKey;
+			try(Cursor cursor = database.query(Contract.MessageEntry.TABLE_NAME, keyColumns,
+					Contract.MessageEntry._ID + " = ? AND " + Contract.MessageEntry.COLUMN_NAME_CHAT + " = ?", new String[]{Long.toString(messageID), Long.toString(conversationID)},
+					null, null, null)) {
+				if(!cursor.moveToNext()) return Collections.emptyList();
+				anchorKey = readKey(cursor);
+			}
 			
-			//Loading the messages
-			for(int i = 0; i < Messaging.messageChunkSize; i++) {
-				if(!super.cursor.moveToNext()) break;
-				conversationItems.add(databaseManager.loadConversationItem(context, conversationItemIndices, super.cursor, super.database));
+			//Loading the anchor and the items before it, then the items after it
+			oldestKey = null;
+			newestKey = null;
+			List<ConversationItem> olderItems = loadChunk(context, anchorKey, true, Messaging.messageChunkSize, true);
+			List<ConversationItem> newerItems = loadChunk(context, anchorKey, false, Messaging.messageChunkSize / 2);
+			
+			List<ConversationItem> conversationItems = new ArrayList<>(olderItems.size() + newerItems.size());
+			conversationItems.addAll(olderItems);
+			conversationItems.addAll(newerItems);
+			return conversationItems;
+		}
+		
+		private List<ConversationItem> loadChunk(Context context, @Nullable long[] boundaryKey, boolean older, int limit) {
+			return loadChunk(context, boundaryKey, older, limit, false);
+		}
+		
+		/**
+		 * Loads a page of items on one side of a sort key, and updates the loaded range
+		 * @param boundaryKey The key to start from, or NULL to start from the newest item
+		 * @param older Whether to load items older than the key, or newer than the key
+		 * @param limit The maximum number of items to load
+		 * @param inclusive Whether to include the item with the boundary key
+		 * @return The loaded items, in ascending order
+		 */
+		private List<ConversationItem> loadChunk(Context context, @Nullable long[] boundaryKey, boolean older, int limit, boolean inclusive) {
+			//Building the query
+			StringBuilder selection = new StringBuilder(Contract.MessageEntry.COLUMN_NAME_CHAT + " = ?");
+			List<String> selectionArgs = new ArrayList<>();
+			selectionArgs.add(Long.toString(conversationID));
+			if(boundaryKey != null) {
+				String operator = older ? "<" : ">";
+				
+				//Limiting the range on the most significant column, so the query can seek directly to the boundary
+				selection.append(" AND ").append(keyColumns[0]).append(' ').append(operator).append("= ?");
+				selectionArgs.add(Long.toString(boundaryKey[0]));
+				
+				//Comparing the full key: (a < ?) OR (a = ? AND ((b < ?) OR (b = ? AND ...)))
+				selection.append(" AND (");
+				for(int i = 0; i < keyColumns.length; i++) {
+					boolean last = i == keyColumns.length - 1;
+					selection.append(keyColumns[i]).append(' ').append(operator).append(last && inclusive ? "=" : "").append(" ?");
+					selectionArgs.add(Long.toString(boundaryKey[i]));
+					if(!last) {
+						selection.append(" OR (").append(keyColumns[i]).append(" = ? AND (");
+						selectionArgs.add(Long.toString(boundaryKey[i]));
+					}
+				}
+				for(int i = 0; i < keyColumns.length - 1; i++) selection.append("))");
+				selection.append(')');
 			}
 			
-			//Reversing the list
-			Collections.reverse(conversationItems);
+			String direction = older ? " DESC" : " ASC";
+			String orderBy = Arrays.stream(keyColumns).map(column -> column + direction).collect(Collectors.joining(", "));
+			
+			List<ConversationItem> conversationItems;
+			try(Cursor cursor = database.query(Contract.MessageEntry.TABLE_NAME, null,
+					selection.toString(), selectionArgs.toArray(new String[0]),
+					null, null, orderBy, Integer.toString(limit))) {
+				//Loading the items
+				conversationItems = databaseManager.loadConversationItemChunk(context, ConversationItemIndices.fromCursor(cursor), cursor, database, limit);
+				
+				//Updating the loaded range
+				if(cursor.moveToFirst()) {
+					long[] firstKey = readKey(cursor);
+					cursor.moveToLast();
+					long[] lastKey = readKey(cursor);
+					if(older) {
+						if(newestKey == null) newestKey = firstKey;
+						oldestKey = lastKey;
+					} else {
+						if(oldestKey == null) oldestKey = firstKey;
+						newestKey = lastKey;
+					}
+				}
+			}
 			
-			//Returning the list
+			//Returning the items in ascending order
+			if(older) Collections.reverse(conversationItems);
 			return conversationItems;
 		}
+		
+		/**
+		 * Reads the sort key of the item at the cursor's current position
+		 */
+		private long[] readKey(Cursor cursor) {
+			long[] key = new long[keyColumns.length];
+			for(int i = 0; i < keyColumns.length; i++) key[i] = cursor.getLong(cursor.getColumnIndexOrThrow(keyColumns[i]));
+			return key;
+		}
 	}
-}
\ No newline at end of file
+}
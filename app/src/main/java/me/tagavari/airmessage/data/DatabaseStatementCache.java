@@ -0,0 +1,47 @@
+package me.tagavari.airmessage.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps compiled statements for frequently run SQL, so that they don't have to be built again on every call
+ *
+ * A statement holds its own bindings, so the cache should only be used from the database's write thread.
+ */
+class DatabaseStatementCache {
+	private SQLiteDatabase database = null;
+	private final Map<String, SQLiteStatement> statements = new HashMap<>();
+	
+	/**
+	 * Gets the compiled statement for a piece of SQL, compiling it if it hasn't been used yet
+	 * @param database The database to compile the statement against
+	 * @param sql The SQL of the statement
+	 * @return The compiled statement
+	 */
+	synchronized SQLiteStatement get(SQLiteDatabase database, String sql) {
+		//Discarding statements compiled against a database that has since been closed
+		if(this.database != database) {
+			clear();
+			this.database = database;
+		}
+		
+		SQLiteStatement statement = statements.get(sql);
+		if(statement == null) {
+			statement = database.compileStatement(sql);
+			statements.put(sql, statement);
+		}
+		return statement;
+	}
+	
+	/**
+	 * Closes all cached statements
+	 */
+	synchronized void clear() {
+		for(SQLiteStatement statement : statements.values()) statement.close();
+		statements.clear();
+		database = null;
+	}
+}
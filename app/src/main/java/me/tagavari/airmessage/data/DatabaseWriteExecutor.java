@@ -0,0 +1,153 @@
+package me.tagavari.airmessage.data;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs database writes one at a time on a dedicated thread, and records how long they wait
+ *
+ * Writes funneled through this thread don't contend with each other for SQLite's write lock,
+ * while reads continue in parallel on the connection pool.
+ *
+ * Not every writer is routed through this thread yet. Actions in Messaging, MessageActionTask, DraftActionTask,
+ * MessageNotificationActionReceiver, the text message sent and delivered receivers, MessageSendHelper's checksum update
+ * and the auto-download reset in Preferences still write from Schedulers.single(),
+ * and may wait on SQLite's write lock while a write on this thread is open.
+ */
+public class DatabaseWriteExecutor implements Executor {
+	private static final String TAG = DatabaseWriteExecutor.class.getSimpleName();
+	private static final long slowWaitMillis = 500; //Writes that wait longer than this are logged
+	private static final int summaryInterval = 1000; //How many writes to run between metric summaries
+	
+	private final ExecutorService executor;
+	private volatile Thread writeThread;
+	
+	//Metrics
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicInteger maxQueueDepth = new AtomicInteger();
+	private final AtomicLong taskCount = new AtomicLong();
+	private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+	private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+	private final AtomicLong transactionCount = new AtomicLong();
+	private final AtomicLong totalLockWaitNanos = new AtomicLong();
+	private final AtomicLong maxLockWaitNanos = new AtomicLong();
+	
+	DatabaseWriteExecutor() {
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "DatabaseWrite");
+			writeThread = thread;
+			return thread;
+		});
+	}
+	
+	@Override
+	public void execute(@NonNull Runnable command) {
+		executor.execute(wrap(command));
+	}
+	
+	/**
+	 * Runs a task on the write thread and waits for its result
+	 * If called from the write thread, the task is run immediately
+	 * @param task The task to run
+	 * @return The result of the task
+	 * @throws Exception If the task throws an exception
+	 */
+	public <T> T submitAndWait(Callable<T> task) throws Exception {
+		if(isWriteThread()) return task.call();
+		
+		long queueTime = System.nanoTime();
+		recordQueued();
+		Future<T> future = executor.submit(() -> {
+			recordStarted(queueTime);
+			return task.call();
+		});
+		
+		try {
+			return future.get();
+		} catch(ExecutionException exception) {
+			//Rethrowing the task's own exception
+			Throwable cause = exception.getCause();
+			if(cause instanceof Exception) throw (Exception) cause;
+			throw exception;
+		}
+	}
+	
+	/**
+	 * Gets whether the current thread is the write thread
+	 */
+	public boolean isWriteThread() {
+		return Thread.currentThread() == writeThread;
+	}
+	
+	/**
+	 * Wraps a task to record how long it waited in the queue
+	 */
+	private Runnable wrap(Runnable command) {
+		long queueTime = System.nanoTime();
+		recordQueued();
+		return () -> {
+			recordStarted(queueTime);
+			command.run();
+		};
+	}
+	
+	private void recordQueued() {
+		int depth = queueDepth.incrementAndGet();
+		maxQueueDepth.accumulateAndGet(depth, Math::max);
+	}
+	
+	private void recordStarted(long queueTime) {
+		queueDepth.decrementAndGet();
+		
+		long waitNanos = System.nanoTime() - queueTime;
+		long count = taskCount.incrementAndGet();
+		totalQueueWaitNanos.addAndGet(waitNanos);
+		maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+		
+		if(waitNanos >= TimeUnit.MILLISECONDS.toNanos(slowWaitMillis)) {
+			Log.w(TAG, "Database write waited " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms in queue (" + queueDepth.get() + " pending)");
+		}
+		
+		//Periodically logging a summary of the metrics
+		if(count % summaryInterval == 0) logSummary();
+	}
+	
+	/**
+	 * Records the time taken to acquire the database for a transaction
+	 */
+	void recordLockWait(long waitNanos) {
+		transactionCount.incrementAndGet();
+		totalLockWaitNanos.addAndGet(waitNanos);
+		maxLockWaitNanos.accumulateAndGet(waitNanos, Math::max);
+		
+		if(waitNanos >= TimeUnit.MILLISECONDS.toNanos(slowWaitMillis)) {
+			Log.w(TAG, "Database transaction waited " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms for the write lock");
+		}
+	}
+	
+	/**
+	 * Logs a summary of how long writes and transactions have waited
+	 */
+	private void logSummary() {
+		long tasks = taskCount.get();
+		long transactions = transactionCount.get();
+		double averageQueueWait = tasks == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(totalQueueWaitNanos.get()) / tasks / 1000;
+		double averageLockWait = transactions == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(totalLockWaitNanos.get()) / transactions / 1000;
+		
+		Log.i(TAG, String.format(Locale.ROOT, "%d writes: queue wait avg %.1f ms, max %d ms, max depth %d; %d transactions: lock wait avg %.1f ms, max %d ms",
+				tasks, averageQueueWait, TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos.get()), maxQueueDepth.get(),
+				transactions, averageLockWait, TimeUnit.NANOSECONDS.toMillis(maxLockWaitNanos.get())));
+	}
+}
@@ -0,0 +1,71 @@
+package me.tagavari.airmessage.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Hands out sort IDs for items that aren't linked to a server message, without querying the messages table on every insert
+ *
+ * An unlinked item is sorted directly after the latest item in the database, by sharing its linked sort ID and taking the next offset.
+ * The latest sort ID is loaded from the database the first time it is needed, and then kept up to date as items are written.
+ * Sort IDs handed out in a transaction that is later rolled back are not reused, which leaves a gap in the offsets but keeps items in order.
+ */
+class MessageSortIDAllocator {
+	private boolean loaded = false;
+	private long latestLinked;
+	private int latestOffset;
+	
+	/**
+	 * Allocates the sort ID for a new unlinked item
+	 * @param database The database to load the latest sort ID from, if it hasn't been loaded yet
+	 * @param contentValues The content values of the item to write the sort ID to
+	 */
+	synchronized void allocate(SQLiteDatabase database, ContentValues contentValues) {
+		if(!loaded) load(database);
+		
+		//Placing the item after the latest item
+		latestOffset++;
+		contentValues.put(DatabaseManager.Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, latestLinked);
+		contentValues.put(DatabaseManager.Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET, latestOffset);
+	}
+	
+	/**
+	 * Records that an item linked to a server message has been written
+	 * @param sortIDLinked The linked sort ID of the item (its server ID)
+	 */
+	synchronized void recordLinked(long sortIDLinked) {
+		//The database will be checked when the sort ID is first needed
+		if(!loaded) return;
+		
+		if(sortIDLinked > latestLinked) {
+			latestLinked = sortIDLinked;
+			latestOffset = 0;
+		}
+	}
+	
+	/**
+	 * Discards the latest sort ID, so that it is loaded from the database again when it is next needed
+	 * Should be called when items are deleted, as the latest item may have been among them
+	 */
+	synchronized void reset() {
+		loaded = false;
+	}
+	
+	private void load(SQLiteDatabase database) {
+		try(Cursor cursor = database.query(DatabaseManager.Contract.MessageEntry.TABLE_NAME, new String[]{DatabaseManager.Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED, DatabaseManager.Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET},
+				DatabaseManager.Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + " = (SELECT MAX(" + DatabaseManager.Contract.MessageEntry.COLUMN_NAME_SORTID_LINKED + ") FROM " + DatabaseManager.Contract.MessageEntry.TABLE_NAME + ")", null,
+				null, null, DatabaseManager.Contract.MessageEntry.COLUMN_NAME_SORTID_LINKEDOFFSET + " DESC", "1")) {
+			if(cursor.moveToNext()) {
+				latestLinked = cursor.getLong(0);
+				latestOffset = cursor.getInt(1);
+			} else {
+				//Starting from the beginning, so the first item is assigned -1, 0
+				latestLinked = -1;
+				latestOffset = -1;
+			}
+		}
+		
+		loaded = true;
+	}
+}
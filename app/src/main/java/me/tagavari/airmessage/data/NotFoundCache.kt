@@ -0,0 +1,42 @@
+package me.tagavari.airmessage.data
+
+import android.os.SystemClock
+import android.util.LruCache
+
+/**
+ * Remembers addresses that were looked up and not found, for a limited time
+ * @param maxSize The maximum number of addresses to remember
+ * @param ttlMillis How long to remember each address for
+ * @param clock The time source to measure expiry with
+ */
+internal class NotFoundCache(maxSize: Int, private val ttlMillis: Long, private val clock: () -> Long = SystemClock::elapsedRealtime) {
+	//Addresses mapped to the time their entry expires
+	private val entries = LruCache<String, Long>(maxSize)
+	
+	/**
+	 * Records that an address wasn't found
+	 */
+	fun put(address: String) {
+		entries.put(address, clock() + ttlMillis)
+	}
+	
+	/**
+	 * Checks if an address was recently looked up and not found
+	 */
+	fun contains(address: String): Boolean {
+		val expiry = entries[address] ?: return false
+		if(clock() >= expiry) {
+			entries.remove(address)
+			return false
+		}
+		
+		return true
+	}
+	
+	/**
+	 * Forgets all addresses
+	 */
+	fun clear() {
+		entries.evictAll()
+	}
+}
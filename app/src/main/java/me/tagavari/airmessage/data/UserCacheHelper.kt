@@ -6,14 +6,14 @@ import android.provider.ContactsContract
 import android.util.LruCache
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers
 import io.reactivex.rxjava3.core.Single
-import io.reactivex.rxjava3.core.SingleEmitter
-import io.reactivex.rxjava3.schedulers.Schedulers
 import me.tagavari.airmessage.MainApplication
-import me.tagavari.airmessage.flavor.CrashlyticsBridge
 import me.tagavari.airmessage.helper.AddressHelper.normalizeAddress
-import java.util.*
 
-class UserCacheHelper {
+/**
+ * Looks up and caches the contacts for user addresses
+ * @param contactIndex The index to read contacts from once it has been loaded
+ */
+class UserCacheHelper(private val contactIndex: ContactIndex) {
 	//Creating the values
 	private val cache = object : LruCache<String, UserInfo>((Runtime.getRuntime().maxMemory() / 1024 / 8 / 2).toInt()) {
 		override fun sizeOf(key: String, userInfo: UserInfo): Int {
@@ -26,7 +26,15 @@ class UserCacheHelper {
 			return size
 		}
 	}
-	private val failedCache = Collections.synchronizedList(mutableListOf<String>())
+	
+	//Addresses that weren't found
+	private val notFoundCache = NotFoundCache(notFoundCacheSize, notFoundCacheTTLMillis)
+	
+	private val resolver = ContactBatchResolver { address, userInfo ->
+		//Caching the result
+		if(userInfo != null) cache.put(address, userInfo)
+		else notFoundCache.put(address)
+	}
 	
 	/**
 	 * Asynchronously fetches a user's information
@@ -43,33 +51,21 @@ class UserCacheHelper {
 		//Normalizing the address
 		val normalizedAddress = normalizeAddress(address)
 		
+		//Reading from the contact index if it's available
+		val indexSnapshot = contactIndex.snapshot
+		if(indexSnapshot != null) {
+			val entry = indexSnapshot.findAddress(normalizedAddress) ?: return Single.error(Throwable("User $address not found"))
+			return Single.just(UserInfo(entry.contactID, entry.lookupKey, entry.contactName, entry.lastUpdated))
+		}
+		
 		//Checking if there is an entry in the cache
 		val cachedUserInfo = cache[normalizedAddress]
 		return if(cachedUserInfo != null) {
 			Single.just(cachedUserInfo)
-		} else if(!failedCache.contains(normalizedAddress)) {
-			Single.create { emitter: SingleEmitter<UserInfo> ->
-				try {
-					val userInfo = fetchUserInfo(context, normalizedAddress)
-					if(userInfo != null) {
-						emitter.onSuccess(userInfo)
-					} else {
-						emitter.tryOnError(RuntimeException("User $address not found"))
-					}
-				} catch(exception: Exception) {
-					CrashlyticsBridge.recordException(exception)
-					emitter.tryOnError(exception)
-				}
-			}
-				.subscribeOn(Schedulers.io())
+		} else if(!notFoundCache.contains(normalizedAddress)) {
+			resolver.resolve(context, normalizedAddress)
+				.map { userInfo -> userInfo.orElseThrow { RuntimeException("User $address not found") } }
 				.observeOn(AndroidSchedulers.mainThread())
-				.doOnSuccess { userInfo: UserInfo ->
-					//Caching the user info
-					cache.put(normalizedAddress, userInfo)
-				}.doOnError {
-					//Marking the user as failed
-					failedCache.add(normalizedAddress)
-				}
 		} else {
 			Single.error(Throwable("User $address not found"))
 		}
@@ -77,8 +73,9 @@ class UserCacheHelper {
 	
 	/**
 	 * Holds a user's name and lookup key
+	 * @param lastUpdated The time the contact was last updated, which changes when its photo changes
 	 */
-	data class UserInfo(val contactID: Long, val lookupKey: String, val contactName: String?) {
+	data class UserInfo(val contactID: Long, val lookupKey: String, val contactName: String?, val lastUpdated: Long) {
 		val contactLookupUri: Uri
 			get() = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, lookupKey)
 	}
@@ -88,39 +85,11 @@ class UserCacheHelper {
 	 */
 	fun clearCache() {
 		cache.evictAll()
-		failedCache.clear()
+		notFoundCache.clear()
 	}
 	
 	companion object {
-		/**
-		 * Fetches user information directly from Android's contacts database
-		 * Only to be called from this helper
-		 * @param context The context to use
-		 * @param address The address of the user
-		 * @return A UserInfo object representing this user, or NULL if not found
-		 */
-		private fun fetchUserInfo(context: Context, address: String): UserInfo? {
-			//Getting the content resolver
-			val contentResolver = context.contentResolver
-			
-			//Querying the database
-			(contentResolver.query(
-				ContactsContract.Data.CONTENT_URI,
-				arrayOf(ContactsContract.Data.CONTACT_ID, ContactsContract.Contacts.LOOKUP_KEY, ContactsContract.Contacts.DISPLAY_NAME),
-				ContactsContract.CommonDataKinds.Email.ADDRESS + " = ? OR " + ContactsContract.CommonDataKinds.Phone.NORMALIZED_NUMBER + " = ?",
-				arrayOf(address, address),
-				null
-			) ?: return null).use { cursor ->
-				//Returning null if there are no results
-				if(!cursor.moveToFirst()) return null
-				
-				//Returning the user info
-				return UserInfo(
-					contactID = cursor.getLong(cursor.getColumnIndexOrThrow(ContactsContract.Data.CONTACT_ID)),
-					lookupKey = cursor.getString(cursor.getColumnIndexOrThrow(ContactsContract.Contacts.LOOKUP_KEY)),
-					contactName = cursor.getString(cursor.getColumnIndexOrThrow(ContactsContract.Contacts.DISPLAY_NAME))
-				)
-			}
-		}
+		private const val notFoundCacheSize = 1000 //The maximum number of addresses to remember as not found
+		private const val notFoundCacheTTLMillis = 5 * 60 * 1000L //5 minutes
 	}
 }
\ No newline at end of file
@@ -92,6 +92,30 @@ object AttachmentStorageHelper {
 		}
 	}
 	
+	/**
+	 * Gets the absolute path of an attachment file, without touching the file system
+	 * @param attachmentDirectory The attachment directory, from [getAttachmentDirectoryUnchecked]
+	 * @param path The relative path of the file
+	 * @return The file
+	 */
+	@JvmStatic
+	fun getAbsolutePath(attachmentDirectory: File, path: String): File {
+		return if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+			attachmentDirectory.toPath().resolve(path).toFile()
+		} else {
+			File(attachmentDirectory, path)
+		}
+	}
+	
+	/**
+	 * Gets the directory that attachment paths are relative to, without checking that it exists
+	 * Use this to resolve many paths at once with [getAbsolutePath]
+	 * @param context The context to use
+	 * @return The attachment directory
+	 */
+	@JvmStatic
+	fun getAttachmentDirectoryUnchecked(context: Context) = File(context.filesDir, "attachments")
+	
 	/**
 	 * Gets if this is a valid directory ID
 	 * @param directory The directory ID to check
@@ -119,7 +143,7 @@ object AttachmentStorageHelper {
 	
 	private fun getAttachmentDirectory(context: Context): File {
 		//Getting the media directory
-		val file = File(context.filesDir, "attachments")
+		val file = getAttachmentDirectoryUnchecked(context)
 		
 		//Preparing the media directory
 		prepareDirectory(file)
@@ -2,83 +2,65 @@ package me.tagavari.airmessage.helper
 
 import android.content.Context
 import android.graphics.*
-import android.graphics.ImageDecoder.ImageInfo
 import android.net.Uri
-import android.os.Build
-import android.provider.MediaStore
-import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers
-import io.reactivex.rxjava3.core.Single
-import io.reactivex.rxjava3.schedulers.Schedulers
+import java.io.FileNotFoundException
+import java.io.IOException
+import kotlin.math.min
 
 object BitmapHelper {
 	/**
-	 * Loads a bitmap from a URI
+	 * Decodes a bitmap from a URI, skipping pixels that aren't needed to display it at the target size
+	 * The decoded bitmap is at least as large as the target size, unless the source image is smaller
+	 * @param context The context to use
+	 * @param uri The URI of the image to decode
+	 * @param targetSize The width and height the bitmap will be displayed at, in pixels
+	 * @return The decoded bitmap
+	 * @throws FileNotFoundException If there is no image at the URI
+	 * @throws IOException If the image couldn't be read or decoded
 	 */
 	@JvmStatic
-	fun loadBitmap(context: Context, uri: Uri, useMemory: Boolean): Single<Bitmap> {
-		return Single.fromCallable {
-			if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-				//Bitmaps loaded with ImageDecoder are by default hardware-accelerated, and can't be used on software canvases
-				val bitmap = ImageDecoder.decodeBitmap(ImageDecoder.createSource(context.contentResolver, uri))
-				if(useMemory) return@fromCallable bitmap.copy(Bitmap.Config.ARGB_8888, true) else return@fromCallable bitmap
-			} else {
-				return@fromCallable MediaStore.Images.Media.getBitmap(context.contentResolver, uri)
-			}
-		}.subscribeOn(Schedulers.io()).observeOn(AndroidSchedulers.mainThread())
+	@Throws(IOException::class)
+	fun decodeSampledBitmap(context: Context, uri: Uri, targetSize: Int): Bitmap {
+		//Reading the image's dimensions
+		val options = BitmapFactory.Options()
+		options.inJustDecodeBounds = true
+		(context.contentResolver.openInputStream(uri) ?: throw IOException("Failed to open $uri")).use { BitmapFactory.decodeStream(it, null, options) }
+		if(options.outWidth <= 0 || options.outHeight <= 0) throw IOException("Failed to read image bounds of $uri")
+		
+		//Halving the resolution for as long as the image stays larger than the target size
+		var sampleSize = 1
+		while(min(options.outWidth, options.outHeight) / (sampleSize * 2) >= targetSize) sampleSize *= 2
+		
+		//Decoding the image
+		options.inJustDecodeBounds = false
+		options.inSampleSize = sampleSize
+		return (context.contentResolver.openInputStream(uri) ?: throw IOException("Failed to open $uri")).use { BitmapFactory.decodeStream(it, null, options) }
+			?: throw IOException("Failed to decode image $uri")
 	}
 	
 	/**
-	 * Loads a circular bitmap from a URI
+	 * Scales a bitmap to fill a circle, cropping it to the center
+	 * @param bitmap The bitmap to draw
+	 * @param size The diameter of the circle, in pixels
+	 * @return A new square bitmap with the circular image
 	 */
 	@JvmStatic
-	fun loadBitmapCircular(context: Context, uri: Uri): Single<Bitmap> {
-		return Single.fromCallable {
-			if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-				return@fromCallable ImageDecoder.decodeBitmap(ImageDecoder.createSource(context.contentResolver, uri)) { decoder: ImageDecoder, _: ImageInfo?, _: ImageDecoder.Source? ->
-					decoder.postProcessor = PostProcessor { canvas: Canvas ->
-						//Mask circle
-						val width = canvas.width
-						val height = canvas.height
-						
-						val path = Path()
-						path.fillType = Path.FillType.INVERSE_EVEN_ODD
-						path.addRoundRect(0f, 0f, width.toFloat(), height.toFloat(), (width / 2).toFloat(), (height / 2).toFloat(), Path.Direction.CW)
-						
-						val paint = Paint()
-						paint.isAntiAlias = true
-						paint.color = Color.TRANSPARENT
-						paint.xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC)
-						
-						canvas.drawPath(path, paint)
-						
-						return@PostProcessor PixelFormat.TRANSLUCENT
-					}
-				}
-			} else {
-				return@fromCallable maskCircularBitmap(MediaStore.Images.Media.getBitmap(context.contentResolver, uri))
-			}
-		}.subscribeOn(Schedulers.io()).observeOn(AndroidSchedulers.mainThread())
-	}
-	
-	/**
-	 * Masks a square bitmap to be a circle
-	 */
-	private fun maskCircularBitmap(bitmap: Bitmap): Bitmap {
-		val output = Bitmap.createBitmap(bitmap.width, bitmap.height, Bitmap.Config.ARGB_8888)
-		
+	fun renderCircularBitmap(bitmap: Bitmap, size: Int): Bitmap {
+		val output = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888)
 		val canvas = Canvas(output)
 		
-		val paint = Paint()
-		paint.isAntiAlias = true
-		paint.color = 0xFF424242.toInt()
-		
-		val rect = Rect(0, 0, bitmap.width, bitmap.height)
-		
-		canvas.drawARGB(0, 0, 0, 0)
-		canvas.drawCircle((bitmap.width / 2).toFloat(), (bitmap.height / 2).toFloat(), (bitmap.width / 2).toFloat(), paint)
+		//Cropping the source to a centered square
+		val sourceSize = min(bitmap.width, bitmap.height)
+		val sourceLeft = (bitmap.width - sourceSize) / 2
+		val sourceTop = (bitmap.height - sourceSize) / 2
+		val sourceRect = Rect(sourceLeft, sourceTop, sourceLeft + sourceSize, sourceTop + sourceSize)
 		
+		//Drawing the circle, and filling it with the image
+		val paint = Paint(Paint.ANTI_ALIAS_FLAG or Paint.FILTER_BITMAP_FLAG)
+		canvas.drawCircle(size / 2F, size / 2F, size / 2F, paint)
 		paint.xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC_IN)
-		canvas.drawBitmap(bitmap, rect, rect, paint)
+		canvas.drawBitmap(bitmap, sourceRect, Rect(0, 0, size, size), paint)
+		
 		return output
 	}
 }
\ No newline at end of file
@@ -14,12 +14,14 @@ import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.schedulers.Schedulers
 import me.tagavari.airmessage.MainApplication
 import me.tagavari.airmessage.R
+import me.tagavari.airmessage.data.ContactIconCache
 import me.tagavari.airmessage.data.UserCacheHelper
-import me.tagavari.airmessage.helper.BitmapHelper.loadBitmap
+import me.tagavari.airmessage.helper.BitmapHelper.decodeSampledBitmap
 import me.tagavari.airmessage.helper.ContactHelper.getContactImageURI
 import me.tagavari.airmessage.messaging.ConversationInfo
 import me.tagavari.airmessage.messaging.MemberInfo
 import me.tagavari.airmessage.util.Union
+import java.io.FileNotFoundException
 
 object ConversationBuildHelper {
 	/**
@@ -84,101 +86,134 @@ object ConversationBuildHelper {
 	@JvmStatic
 	@CheckReturnValue
 	fun generateShortcutIcon(context: Context, conversationInfo: ConversationInfo): Single<Bitmap> {
-		//Rendering and returning the view
-		val memberInfos = conversationInfo.members.toList()
-		return (if(memberInfos.isEmpty()) Single.just(emptyList()) else Observable.fromIterable(memberInfos)
-				//Limit to a maximum of 4 members
-				.take(4)
-				//Map each user to their color or their bitmap
-				.flatMapSingle { member: MemberInfo ->
+		//Limit to a maximum of 4 members
+		val memberInfos = conversationInfo.members.take(4)
+		
+		return Observable.fromIterable(memberInfos)
+				//Map each member to their contact, in order
+				.concatMapSingle { member: MemberInfo ->
 					MainApplication.getInstance().userCacheHelper.getUserInfo(context, member.address)
-							.flatMap { userInfo ->
-								loadBitmap(context, getContactImageURI(userInfo.contactID), true)
-										.map<Union<Int, Bitmap>> { Union.ofB(it) }
-							}
-							.onErrorReturnItem(Union.ofA(member.color))
+							.map { userInfo -> Pair<MemberInfo, UserCacheHelper.UserInfo?>(member, userInfo) }
+							.onErrorReturnItem(Pair(member, null))
 				}
-				.toList(memberInfos.size))
-				.map { contactDataList: List<Union<Int, Bitmap>> ->
-					//Calculating layer sizes
-					val layerSizeOuter = ResourceHelper.dpToPx(108F)
-					
-					//Creating the canvas
-					val output = Bitmap.createBitmap(layerSizeOuter, layerSizeOuter, Bitmap.Config.ARGB_8888)
-					val canvas = Canvas(output)
-					canvas.drawColor(0xFFF5F5F5.toInt())
-					
-					//Creating the paint
-					val backgroundPaint = Paint()
-					backgroundPaint.isAntiAlias = true
-					backgroundPaint.color = 0xFF424242.toInt()
-					
-					val userPaint = Paint()
-					userPaint.isAntiAlias = true
-					
-					val bitmapPaint = Paint()
-					bitmapPaint.isAntiAlias = true
-					bitmapPaint.xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC_IN)
-					
-					//If we have just one member, fill the canvas with their image
-					when(contactDataList.size) {
-						1 -> {
-							val layerSizeInner = ResourceHelper.dpToPx((72 + 1).toFloat())
-							val layerSizeInnerPadding = (layerSizeOuter - layerSizeInner) / 2
-							
-							val contactData = contactDataList[0]
-							
-							val drawRect = Rect(layerSizeInnerPadding, layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner, layerSizeInnerPadding + layerSizeInner)
-							drawContact(context, canvas, drawRect, backgroundPaint, userPaint, bitmapPaint, contactData)
-						}
-						2 -> {
-							val layerSizeInner = ResourceHelper.dpToPx(54f)
-							val layerSizeInnerPadding = (layerSizeOuter - layerSizeInner) / 2
-							val userSize = ResourceHelper.dpToPx(30f)
-							
-							val drawRectLeft = Rect(layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + userSize, layerSizeInnerPadding + layerSizeInner)
-							drawContact(context, canvas, drawRectLeft, backgroundPaint, userPaint, bitmapPaint, contactDataList[0])
-							
-							val drawRectRight = Rect(layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner, layerSizeInnerPadding + userSize)
-							drawContact(context, canvas, drawRectRight, backgroundPaint, userPaint, bitmapPaint, contactDataList[1])
-						}
-						3 -> {
-							val layerSizeInner = ResourceHelper.dpToPx(48f)
-							val layerSizeInnerPadding = (layerSizeOuter - layerSizeInner) / 2
-							val userSize = ResourceHelper.dpToPx(23f)
-							
-							val drawRectTop = Rect(layerSizeInnerPadding + (layerSizeInner - userSize) / 2, layerSizeInnerPadding, layerSizeInnerPadding + (layerSizeInner + userSize) / 2, layerSizeInnerPadding + userSize)
-							drawContact(context, canvas, drawRectTop, backgroundPaint, userPaint, bitmapPaint, contactDataList[0])
-							
-							val drawRectLeft = Rect(layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + userSize, layerSizeInnerPadding + layerSizeInner)
-							drawContact(context, canvas, drawRectLeft, backgroundPaint, userPaint, bitmapPaint, contactDataList[1])
-							
-							val drawRectRight = Rect(layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + layerSizeInner, layerSizeInnerPadding + layerSizeInner)
-							drawContact(context, canvas, drawRectRight, backgroundPaint, userPaint, bitmapPaint, contactDataList[2])
-						}
-						4 -> {
-							val layerSizeInner = ResourceHelper.dpToPx(48f)
-							val layerSizeInnerPadding = (layerSizeOuter - layerSizeInner) / 2
-							val userSize = ResourceHelper.dpToPx(23f)
-							
-							val drawRectTopLeft = Rect(layerSizeInnerPadding, layerSizeInnerPadding, layerSizeInnerPadding + userSize, layerSizeInnerPadding + userSize)
-							drawContact(context, canvas, drawRectTopLeft, backgroundPaint, userPaint, bitmapPaint, contactDataList[0])
-							
-							val drawRectTopRight = Rect(layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner, layerSizeInnerPadding + userSize)
-							drawContact(context, canvas, drawRectTopRight, backgroundPaint, userPaint, bitmapPaint, contactDataList[1])
-							
-							val drawRectBottomLeft = Rect(layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + userSize, layerSizeInnerPadding + layerSizeInner)
-							drawContact(context, canvas, drawRectBottomLeft, backgroundPaint, userPaint, bitmapPaint, contactDataList[2])
-							
-							val drawRectBottomRight = Rect(layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + layerSizeInner, layerSizeInnerPadding + layerSizeInner)
-							drawContact(context, canvas, drawRectBottomRight, backgroundPaint, userPaint, bitmapPaint, contactDataList[3])
-						}
+				.toList()
+				.flatMap { members: List<Pair<MemberInfo, UserCacheHelper.UserInfo?>> ->
+					//Identifying the icon by each member's color and contact
+					val key = "conversation_" + ResourceHelper.dpToPx(108F) + members.joinToString("") { (member, userInfo) ->
+						"_" + Integer.toHexString(member.color) + (if(userInfo != null) "-" + userInfo.contactID + "-" + userInfo.lastUpdated else "")
 					}
 					
-					return@map output
+					MainApplication.getInstance().contactIconCache.getOrRender(key) { renderShortcutIcon(context, members) }
 				}
 	}
 	
+	/**
+	 * Renders a shortcut icon from a conversation's members and their contacts
+	 * Members without a contact photo are drawn with their color
+	 * If a member's photo exists but can't be loaded, they are also drawn with their color, but the icon isn't saved to disk
+	 */
+	private fun renderShortcutIcon(context: Context, members: List<Pair<MemberInfo, UserCacheHelper.UserInfo?>>): ContactIconCache.Rendering {
+		//Calculating the size of each member
+		val memberSize = when(members.size) {
+			1 -> ResourceHelper.dpToPx((72 + 1).toFloat())
+			2 -> ResourceHelper.dpToPx(30f)
+			else -> ResourceHelper.dpToPx(23f)
+		}
+		
+		//Map each user to their color or their bitmap
+		var photoFailed = false
+		val contactDataList: List<Union<Int, Bitmap>> = members.map { (member, userInfo) ->
+			if(userInfo == null) return@map Union.ofA<Int, Bitmap>(member.color)
+			
+			try {
+				Union.ofB<Int, Bitmap>(decodeSampledBitmap(context, getContactImageURI(userInfo.contactID), memberSize))
+			} catch(exception: FileNotFoundException) {
+				//The contact has no photo
+				Union.ofA<Int, Bitmap>(member.color)
+			} catch(exception: Exception) {
+				photoFailed = true
+				Union.ofA<Int, Bitmap>(member.color)
+			}
+		}
+		
+		//Calculating layer sizes
+		val layerSizeOuter = ResourceHelper.dpToPx(108F)
+		
+		//Creating the canvas
+		val output = Bitmap.createBitmap(layerSizeOuter, layerSizeOuter, Bitmap.Config.ARGB_8888)
+		val canvas = Canvas(output)
+		canvas.drawColor(0xFFF5F5F5.toInt())
+		
+		//Creating the paint
+		val backgroundPaint = Paint()
+		backgroundPaint.isAntiAlias = true
+		backgroundPaint.color = 0xFF424242.toInt()
+		
+		val userPaint = Paint()
+		userPaint.isAntiAlias = true
+		
+		val bitmapPaint = Paint()
+		bitmapPaint.isAntiAlias = true
+		bitmapPaint.xfermode = PorterDuffXfermode(PorterDuff.Mode.SRC_IN)
+		
+		//If we have just one member, fill the canvas with their image
+		when(contactDataList.size) {
+			1 -> {
+				val layerSizeInner = ResourceHelper.dpToPx((72 + 1).toFloat())
+				val layerSizeInnerPadding = (layerSizeOuter - layerSizeInner) / 2
+				
+				val contactData = contactDataList[0]
+				
+				val drawRect = Rect(layerSizeInnerPadding, layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner, layerSizeInnerPadding + layerSizeInner)
+				drawContact(context, canvas, drawRect, backgroundPaint, userPaint, bitmapPaint, contactData)
+			}
+			2 -> {
+				val layerSizeInner = ResourceHelper.dpToPx(54f)
+				val layerSizeInnerPadding = (layerSizeOuter - layerSizeInner) / 2
+				val userSize = ResourceHelper.dpToPx(30f)
+				
+				val drawRectLeft = Rect(layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + userSize, layerSizeInnerPadding + layerSizeInner)
+				drawContact(context, canvas, drawRectLeft, backgroundPaint, userPaint, bitmapPaint, contactDataList[0])
+				
+				val drawRectRight = Rect(layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner, layerSizeInnerPadding + userSize)
+				drawContact(context, canvas, drawRectRight, backgroundPaint, userPaint, bitmapPaint, contactDataList[1])
+			}
+			3 -> {
+				val layerSizeInner = ResourceHelper.dpToPx(48f)
+				val layerSizeInnerPadding = (layerSizeOuter - layerSizeInner) / 2
+				val userSize = ResourceHelper.dpToPx(23f)
+				
+				val drawRectTop = Rect(layerSizeInnerPadding + (layerSizeInner - userSize) / 2, layerSizeInnerPadding, layerSizeInnerPadding + (layerSizeInner + userSize) / 2, layerSizeInnerPadding + userSize)
+				drawContact(context, canvas, drawRectTop, backgroundPaint, userPaint, bitmapPaint, contactDataList[0])
+				
+				val drawRectLeft = Rect(layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + userSize, layerSizeInnerPadding + layerSizeInner)
+				drawContact(context, canvas, drawRectLeft, backgroundPaint, userPaint, bitmapPaint, contactDataList[1])
+				
+				val drawRectRight = Rect(layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + layerSizeInner, layerSizeInnerPadding + layerSizeInner)
+				drawContact(context, canvas, drawRectRight, backgroundPaint, userPaint, bitmapPaint, contactDataList[2])
+			}
+			4 -> {
+				val layerSizeInner = ResourceHelper.dpToPx(48f)
+				val layerSizeInnerPadding = (layerSizeOuter - layerSizeInner) / 2
+				val userSize = ResourceHelper.dpToPx(23f)
+				
+				val drawRectTopLeft = Rect(layerSizeInnerPadding, layerSizeInnerPadding, layerSizeInnerPadding + userSize, layerSizeInnerPadding + userSize)
+				drawContact(context, canvas, drawRectTopLeft, backgroundPaint, userPaint, bitmapPaint, contactDataList[0])
+				
+				val drawRectTopRight = Rect(layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner, layerSizeInnerPadding + userSize)
+				drawContact(context, canvas, drawRectTopRight, backgroundPaint, userPaint, bitmapPaint, contactDataList[1])
+				
+				val drawRectBottomLeft = Rect(layerSizeInnerPadding, layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + userSize, layerSizeInnerPadding + layerSizeInner)
+				drawContact(context, canvas, drawRectBottomLeft, backgroundPaint, userPaint, bitmapPaint, contactDataList[2])
+				
+				val drawRectBottomRight = Rect(layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + layerSizeInner - userSize, layerSizeInnerPadding + layerSizeInner, layerSizeInnerPadding + layerSizeInner)
+				drawContact(context, canvas, drawRectBottomRight, backgroundPaint, userPaint, bitmapPaint, contactDataList[3])
+			}
+		}
+		
+		return ContactIconCache.Rendering(output, !photoFailed)
+	}
+	
 	/**
 	 * Draws a contact bitmap to the canvas
 	 * @param context The context to use
@@ -112,7 +112,7 @@ object ConversationHelper {
 		//Incrementing the unread count if the conversation is not part of a conversation that is currently in the foreground, and we have been requested to do so
 		val updateUnread = incomingMessageCount > 0 && !foregroundConversationIDs.contains(conversationInfo.localID)
 		if(updateUnread) {
-			DatabaseManager.getInstance().incrementUnreadMessageCount(conversationInfo.localID)
+			DatabaseManager.getInstance().incrementUnreadMessageCount(conversationInfo.localID, incomingMessageCount)
 		}
 		
 		return ConversationValueUpdateResult(conversationInfo.isArchived, if(updateUnread) incomingMessageCount else 0)
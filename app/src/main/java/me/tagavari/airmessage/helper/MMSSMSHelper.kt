@@ -15,7 +15,6 @@ import com.klinker.android.send_message.Settings
 import com.klinker.android.send_message.Transaction
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers
 import io.reactivex.rxjava3.core.Single
-import io.reactivex.rxjava3.schedulers.Schedulers
 import me.tagavari.airmessage.R
 import me.tagavari.airmessage.activity.Messaging
 import me.tagavari.airmessage.activity.Preferences
@@ -169,7 +168,7 @@ object MMSSMSHelper {
 	fun updateTextConversationMessage(context: Context, participants: List<String>, newMessage: MessageInfo): Single<Pair<ConversationInfo, MessageInfo>> {
 		return Single.fromCallable {
 			getOrCreateTextConversation(context, participants) ?: throw RuntimeException("Failed to create conversation")
-		}.subscribeOn(Schedulers.single()).flatMap { (conversation, isNew) ->
+		}.subscribeOn(DatabaseManager.getInstance().writeScheduler).flatMap { (conversation, isNew) ->
 			updateTextConversationMessage(conversation, isNew, newMessage).map { message ->
 				Pair(conversation, message)
 			}
@@ -187,7 +186,7 @@ object MMSSMSHelper {
 	fun updateTextConversationMessage(context: Context, threadID: Long, newMessage: MessageInfo): Single<Pair<ConversationInfo, MessageInfo>> {
 		return Single.fromCallable {
 			getOrCreateTextConversation(context, threadID) ?: throw RuntimeException("Failed to create conversation")
-		}.subscribeOn(Schedulers.single()).flatMap { (conversation, isNew) ->
+		}.subscribeOn(DatabaseManager.getInstance().writeScheduler).flatMap { (conversation, isNew) ->
 			updateTextConversationMessage(conversation, isNew, newMessage).map { message ->
 				Pair(conversation, message)
 			}
@@ -211,7 +210,7 @@ object MMSSMSHelper {
 			val localMessage = newMessage.clone()
 			localMessage.localID = messageID
 			localMessage
-		}.subscribeOn(Schedulers.single()).observeOn(AndroidSchedulers.mainThread()).flatMap { messageInfo ->
+		}.subscribeOn(DatabaseManager.getInstance().writeScheduler).observeOn(AndroidSchedulers.mainThread()).flatMap { messageInfo ->
 			//Getting the values
 			if(conversationIsNew) {
 				//If we just created a new conversation, emit a conversation update
@@ -224,7 +223,7 @@ object MMSSMSHelper {
 			//Updating the conversation values in response to the added message
 			val foregroundConversations = Messaging.getForegroundConversations()
 			return@flatMap Single.fromCallable { updateConversationValues(foregroundConversations, conversationInfo, if(messageInfo.isOutgoing) 0 else 1) }
-					.subscribeOn(Schedulers.single())
+					.subscribeOn(DatabaseManager.getInstance().writeScheduler)
 					.observeOn(AndroidSchedulers.mainThread())
 					.doOnSuccess { it.emitUpdate(conversationInfo) }
 					.ignoreElement().andThen(Single.just(messageInfo))
@@ -38,8 +38,6 @@ import me.tagavari.airmessage.data.UserCacheHelper
 import me.tagavari.airmessage.flavor.MLKitBridge
 import me.tagavari.airmessage.helper.AddressHelper.formatAddress
 import me.tagavari.airmessage.helper.AddressHelper.normalizeAddress
-import me.tagavari.airmessage.helper.BitmapHelper.loadBitmapCircular
-import me.tagavari.airmessage.helper.ContactHelper.getContactImageURI
 import me.tagavari.airmessage.helper.ConversationBuildHelper.buildConversationTitle
 import me.tagavari.airmessage.helper.ConversationBuildHelper.generateShortcutIcon
 import me.tagavari.airmessage.helper.LanguageHelper.createLocalizedList
@@ -232,7 +230,7 @@ object NotificationHelper {
 			return@flatMap if(!user.isPresent) {
 				Single.just(Optional.empty<Bitmap>())
 			} else {
-				loadBitmapCircular(context, getContactImageURI(user.get().contactID))
+				MainApplication.getInstance().contactIconCache.getContactIcon(context, user.get(), context.resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width))
 						.map { Optional.of(it) }
 						.doOnError { error -> Log.w(TAG, "Failed to load user icon", error) }
 						.onErrorReturnItem(Optional.empty())
@@ -0,0 +1,17 @@
+package me.tagavari.airmessage.messaging
+
+/**
+ * Represents a message that matched a search query
+ * @param messageID The local ID of the matching message, to open the conversation at
+ * @param conversationID The local ID of the conversation the message belongs to
+ * @param date The date the message was sent
+ * @param sender The sender of the message, or NULL if the message was sent by the user
+ * @param snippet An excerpt of the message text surrounding the match
+ */
+data class MessageSearchResult(
+	val messageID: Long,
+	val conversationID: Long,
+	val date: Long,
+	val sender: String?,
+	val snippet: String
+)
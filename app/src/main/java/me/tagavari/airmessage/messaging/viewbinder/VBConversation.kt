@@ -14,6 +14,7 @@ import com.bumptech.glide.load.DataSource
 import com.bumptech.glide.load.engine.GlideException
 import com.bumptech.glide.request.RequestListener
 import com.bumptech.glide.request.target.Target
+import com.bumptech.glide.signature.ObjectKey
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Observable
 import me.tagavari.airmessage.MainApplication
@@ -130,6 +131,8 @@ object VBConversation {
 					//Loading the user's picture
 					Glide.with(context)
 						.load(getContactImageURI(data.item.second!!.contactID))
+						//Loading the photo again once the contact has been updated
+						.signature(ObjectKey(data.item.second!!.lastUpdated))
 						.listener(object : RequestListener<Drawable?> {
 							override fun onLoadFailed(e: GlideException?, model: Any, target: Target<Drawable?>, isFirstResource: Boolean): Boolean {
 								return false
@@ -205,19 +208,27 @@ object VBConversation {
 	 */
 	@JvmStatic
 	fun bindPreview(context: Context, labelMessage: TextView, labelStatus: TextView, preview: ConversationPreview?) {
+		//Setting the message preview
+		if(preview == null) labelMessage.setText(R.string.part_unknown)
+		else labelMessage.text = preview.buildString(context)
+		
+		//Setting the status
+		bindPreviewStatus(context, labelStatus, preview)
+	}
+	
+	/**
+	 * Binds a conversation's status, without rebuilding its preview message
+	 * @param context The context to use
+	 * @param labelStatus The TextView of the conversation's status
+	 * @param preview The preview item to display
+	 */
+	@JvmStatic
+	fun bindPreviewStatus(context: Context, labelStatus: TextView, preview: ConversationPreview?) {
 		if(preview == null) {
-			//Set everything to "unknown"
-			labelMessage.setText(R.string.part_unknown)
+			//Set the status to "unknown"
 			labelStatus.setText(R.string.part_unknown)
 			labelStatus.setTextColor(resolveColorAttr(context, android.R.attr.textColorSecondary))
-			
-			return
-		}
-		
-		//Setting the message preview
-		labelMessage.text = preview.buildString(context)
-		
-		if(preview is ConversationPreview.Message && preview.isError) {
+		} else if(preview is ConversationPreview.Message && preview.isError) {
 			//Setting the status to "not sent"
 			labelStatus.setText(R.string.message_senderror)
 			labelStatus.setTextColor(context.resources.getColor(R.color.colorError, null))
@@ -45,6 +45,7 @@ public class SystemMessageImportService extends Service {
 	public static final String selfIntentActionImport = "import";
 	
 	private static final long notificationProgressMinUpdateInterval = 1000;
+	private static final int importBatchSize = 500; //The number of messages to write in each transaction
 	
 	private static final int notificationID = NotificationHelper.notificationIDMessageImport;
 	
@@ -153,7 +154,7 @@ public class SystemMessageImportService extends Service {
 					}
 					
 					//Writing the conversation to disk
-					boolean result = DatabaseManager.getInstance().addConversationInfo(conversationInfo);
+					boolean result = DatabaseManager.getInstance().runWrite(() -> DatabaseManager.getInstance().addConversationInfo(conversationInfo));
 					if(!result) continue;
 					
 					//Adding the conversation to the list
@@ -166,6 +167,7 @@ public class SystemMessageImportService extends Service {
 					//Getting the messages columns
 					int mMMSMessageBox = cursorMessage.getColumnIndexOrThrow(Telephony.Mms.MESSAGE_BOX);
 					
+					List<MessageInfo> messageBatch = new ArrayList<>(importBatchSize);
 					MessageInfo lastMessage = null;
 					while(cursorMessage.moveToNext()) {
 						MessageInfo messageInfo;
@@ -178,13 +180,16 @@ public class SystemMessageImportService extends Service {
 						}
 						if(messageInfo == null) continue;
 						
-						//Writing the message to disk
-						long messageID = DatabaseManager.getInstance().addConversationItem(conversationInfo.getLocalID(), messageInfo, false);
-						messageInfo.setLocalID(messageID);
+						//Writing the messages to disk in batches
+						messageBatch.add(messageInfo);
+						if(messageBatch.size() >= importBatchSize) {
+							writeMessageBatch(conversationInfo.getLocalID(), messageBatch);
+						}
 						
 						//Setting the last item
 						lastMessage = messageInfo;
 					}
+					writeMessageBatch(conversationInfo.getLocalID(), messageBatch);
 					
 					//Setting the conversation's preview
 					if(lastMessage != null) conversationInfo.setMessagePreview(ConversationPreview.Message.fromMessage(lastMessage));
@@ -215,6 +220,24 @@ public class SystemMessageImportService extends Service {
 		});
 	}
 	
+	/**
+	 * Writes a batch of messages to disk in a single transaction, and clears the batch
+	 * @param conversationID The ID of the conversation to add the messages to
+	 * @param messageBatch The messages to write
+	 */
+	private static void writeMessageBatch(long conversationID, List<MessageInfo> messageBatch) throws Exception {
+		if(messageBatch.isEmpty()) return;
+		
+		DatabaseManager.getInstance().runWrite(() -> {
+			for(MessageInfo messageInfo : messageBatch) {
+				long messageID = DatabaseManager.getInstance().addConversationItem(conversationID, messageInfo, false);
+				messageInfo.setLocalID(messageID);
+			}
+			return null;
+		});
+		messageBatch.clear();
+	}
+	
 	private static void postNotification(Context context, Notification notification) {
 		NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
 		notificationManager.notify(notificationID, notification);
@@ -1,8 +1,6 @@
 package me.tagavari.airmessage.task;
 
-import android.content.ContentResolver;
 import android.content.Context;
-import android.database.Cursor;
 import android.provider.ContactsContract;
 import android.text.TextUtils;
 import androidx.annotation.Nullable;
@@ -10,11 +8,11 @@ import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
 import io.reactivex.rxjava3.annotations.CheckReturnValue;
 import io.reactivex.rxjava3.annotations.NonNull;
 import io.reactivex.rxjava3.core.Observable;
-import io.reactivex.rxjava3.core.ObservableEmitter;
 import io.reactivex.rxjava3.schedulers.Schedulers;
+import me.tagavari.airmessage.MainApplication;
+import me.tagavari.airmessage.data.ContactIndex;
 import me.tagavari.airmessage.helper.AddressHelper;
 import me.tagavari.airmessage.helper.MMSSMSHelper;
-import me.tagavari.airmessage.helper.StringHelper;
 import me.tagavari.airmessage.util.AddressInfo;
 import me.tagavari.airmessage.util.ContactInfo;
 
@@ -26,57 +24,26 @@ public class ContactsTask {
 	private static final Predicate<AddressInfo> predicateAddressPhoneNumber = address -> AddressHelper.validatePhoneNumber(address.getNormalizedAddress());
 	
 	/**
-	 * Loads the user's contacts from Android's database
+	 * Loads the user's contacts from the contact index
+	 * The addresses of each contact are emitted one after another, ordered by contact name
 	 */
 	@CheckReturnValue
 	public static Observable<ContactAddressPart> loadContacts(Context context) {
-		return Observable.create((ObservableEmitter<ContactAddressPart> emitter) -> {
-			//Getting the content resolver
-			ContentResolver contentResolver = context.getContentResolver();
-			
-			//Querying the database
-			Cursor cursor = contentResolver.query(
-					ContactsContract.Data.CONTENT_URI,
-					new String[]{ContactsContract.Data.CONTACT_ID, ContactsContract.Data.MIMETYPE, ContactsContract.Data.DISPLAY_NAME, ContactsContract.Data.DATA1, ContactsContract.Data.DATA2, ContactsContract.Data.DATA3},
-					ContactsContract.Data.MIMETYPE + " = ? OR (" + ContactsContract.Data.HAS_PHONE_NUMBER + "!= 0 AND " + ContactsContract.Data.MIMETYPE + " = ?)",
-					new String[]{ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE, ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE},
-					ContactsContract.Data.DISPLAY_NAME + " ASC");
-			
-			//Failing if the cursor is invalid
-			if(cursor == null) {
-				throw new IllegalStateException("Received NULL cursor from content resolver");
-			}
-			
-			//Reading the data
-			int indexContactID = cursor.getColumnIndexOrThrow(ContactsContract.Data.CONTACT_ID);
-			int indexMimeType = cursor.getColumnIndexOrThrow(ContactsContract.Data.MIMETYPE);
-			int indexDisplayName = cursor.getColumnIndexOrThrow(ContactsContract.Data.DISPLAY_NAME);
-			int indexAddress = cursor.getColumnIndexOrThrow(ContactsContract.Data.DATA1); //The address itself (email or phone number)
-			int indexAddressType = cursor.getColumnIndexOrThrow(ContactsContract.Data.DATA2); //The label ID for this address
-			int indexAddressLabel = cursor.getColumnIndexOrThrow(ContactsContract.Data.DATA3); //The custom user-assigned label for this address
-			
-			while(cursor.moveToNext()) {
-				//Retrieving and validating the entry's label
-				String address = cursor.getString(indexAddress);
-				if(address == null || address.isEmpty()) continue;
-				
-				//Getting the general info
-				long contactID = cursor.getLong(indexContactID);
-				String contactName = StringHelper.nullifyEmptyString(cursor.getString(indexDisplayName));
-				String addressLabel = null;
-				if(!cursor.isNull(indexAddressType)) {
-					int addressType = cursor.getInt(indexAddressType);
-					if(addressType == ContactsContract.CommonDataKinds.BaseTypes.TYPE_CUSTOM) addressLabel = cursor.getString(indexAddressLabel);
-					else addressLabel = MMSSMSHelper.getAddressLabel(context.getResources(), cursor.getString(indexMimeType), addressType);
-				}
-				AddressInfo addressInfo = new AddressInfo(address, addressLabel);
-				
-				emitter.onNext(new ContactAddressPart(contactID, contactName, addressInfo));
-			}
-			
-			//Closing the cursor
-			cursor.close();
-		}).subscribeOn(Schedulers.io()).observeOn(AndroidSchedulers.mainThread());
+		return MainApplication.getInstance().getContactIndex().getSnapshot()
+				.observeOn(Schedulers.computation())
+				.flattenAsObservable(ContactIndex.Snapshot::getEntries)
+				.map(entry -> {
+					//Getting the address label
+					String addressLabel = null;
+					if(entry.getAddressType() != null) {
+						int addressType = entry.getAddressType();
+						if(addressType == ContactsContract.CommonDataKinds.BaseTypes.TYPE_CUSTOM) addressLabel = entry.getAddressLabel();
+						else addressLabel = MMSSMSHelper.getAddressLabel(context.getResources(), entry.getMimeType(), addressType);
+					}
+					AddressInfo addressInfo = new AddressInfo(entry.getAddress(), addressLabel);
+					
+					return new ContactAddressPart(entry.getContactID(), entry.getContactName(), addressInfo);
+				}).observeOn(AndroidSchedulers.mainThread());
 	}
 	
 	/**
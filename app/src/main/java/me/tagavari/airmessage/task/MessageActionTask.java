@@ -56,7 +56,7 @@ public class MessageActionTask {
 			DatabaseManager.getInstance().updateMessageState(message.getLocalID(), state);
 			
 			emitter.onComplete();
-		}).observeOn(AndroidSchedulers.mainThread()).doOnComplete(() -> {
+		}).subscribeOn(DatabaseManager.getInstance().getWriteScheduler()).observeOn(AndroidSchedulers.mainThread()).doOnComplete(() -> {
 			//Notify the emitter
 			ReduxEmitterNetwork.getMessageUpdateSubject().onNext(new ReduxEventMessaging.MessageState(message.getLocalID(), state));
 		});
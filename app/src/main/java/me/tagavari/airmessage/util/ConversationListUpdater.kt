@@ -0,0 +1,93 @@
+package me.tagavari.airmessage.util
+
+import androidx.recyclerview.widget.RecyclerView
+import me.tagavari.airmessage.helper.ConversationHelper
+import me.tagavari.airmessage.helper.ConversationPreviewHelper
+import me.tagavari.airmessage.messaging.ConversationInfo
+import me.tagavari.airmessage.messaging.ConversationItem
+
+/**
+ * Applies updates to the conversation list, notifying its adapter of only the rows that change
+ * @param conversations The list of conversations shown by the adapter, sorted from newest to oldest
+ * @param adapter The adapter to notify
+ */
+class ConversationListUpdater(
+	private val conversations: MutableList<ConversationInfo>,
+	private val adapter: RecyclerView.Adapter<*>
+) {
+	/**
+	 * Moves a conversation whose preview has changed to its sorted position in the list, notifying the adapter of the move
+	 * @param conversation The conversation to move
+	 * @param conversationIndex The conversation's current index in the list
+	 * @return The conversation's new index in the list
+	 */
+	fun resortConversation(conversation: ConversationInfo, conversationIndex: Int): Int {
+		val insertionIndex = ConversationHelper.findReinsertionIndex(conversation, conversations)
+		if(conversationIndex != insertionIndex) {
+			conversations.removeAt(conversationIndex)
+			conversations.add(insertionIndex, conversation)
+			adapter.notifyItemMoved(conversationIndex, insertionIndex)
+		}
+		
+		return insertionIndex
+	}
+	
+	/**
+	 * Updates a conversation's preview with new items, moving it to its new position if the preview changed
+	 * @param conversation The conversation to update
+	 * @param newItems The items added to the conversation
+	 */
+	fun updateConversationPreview(conversation: ConversationInfo, newItems: Collection<ConversationItem>) {
+		//Getting the conversation preview
+		val conversationPreview = ConversationPreviewHelper.latestItemToPreview(newItems) ?: return
+		
+		//Checking if this new preview can replace the old one
+		val currentPreview = conversation.messagePreview
+		if(currentPreview == null || currentPreview.date < conversationPreview.date) {
+			//Updating the message preview
+			conversation.messagePreview = conversationPreview
+			
+			//Re-sorting the conversation
+			val insertionIndex = resortConversation(conversation, conversations.indexOf(conversation))
+			
+			//Updating the conversation preview
+			adapter.notifyItemChanged(insertionIndex, payloadPreview)
+		}
+	}
+	
+	/**
+	 * Updates the previews of conversations that have received new items
+	 * @param conversationItems The conversations and their new items, as emitted by [me.tagavari.airmessage.redux.ReduxEventMessaging.Message]
+	 */
+	fun applyMessageUpdate(conversationItems: List<Pair<ConversationInfo, List<ReplaceInsertResult>>>) {
+		//Mapping the conversations by their IDs, so a large batch of messages doesn't search the list for every conversation
+		val conversationMap = HashMap<Long, ConversationInfo>(conversations.size)
+		for(conversation in conversations) conversationMap[conversation.localID] = conversation
+		
+		for((conversationInfo, results) in conversationItems) {
+			//Finding the existing conversation
+			val conversation = conversationMap[conversationInfo.localID] ?: continue
+			
+			//Updating the conversation's preview
+			updateConversationPreview(conversation, results.map { it.targetItem })
+		}
+	}
+	
+	/**
+	 * Notifies the adapter that the relative times shown for each conversation should be updated
+	 */
+	fun notifyTimeChanged() {
+		adapter.notifyItemRangeChanged(0, conversations.size, payloadTime)
+	}
+	
+	companion object {
+		//Payloads for partial updates to conversation rows
+		const val payloadPreview = 0
+		const val payloadTitle = 1
+		const val payloadMember = 2
+		const val payloadMuted = 3
+		const val payloadUnread = 4
+		const val payloadSelection = 5
+		const val payloadTime = 6
+	}
+}
@@ -0,0 +1,134 @@
+package me.tagavari.airmessage.util
+
+import me.tagavari.airmessage.data.ContactIndex
+import me.tagavari.airmessage.helper.AddressHelper
+import me.tagavari.airmessage.messaging.ConversationInfo
+import java.text.Normalizer
+import java.util.*
+
+/**
+ * Searches conversations by their title, their members' addresses and their members' contact names
+ *
+ * The normalized search text of each conversation is kept between searches,
+ * and is only built again when the conversation's title or members change, or when the user's contacts change.
+ * Searches run on a background thread, and only read from [Source] objects captured from the conversations beforehand.
+ */
+class ConversationSearchIndex {
+	private val entries = mutableMapOf<Long, Entry>()
+	
+	/**
+	 * Searches a list of conversations
+	 * @param sources The conversations to search, captured with [capture]
+	 * @param query The text to search for
+	 * @param contacts The user's contacts, or NULL if they aren't available
+	 * @return The indices of the matching conversations in the source list, ordered from the best match to the worst
+	 */
+	@Synchronized
+	fun search(sources: List<Source>, query: String, contacts: ContactIndex.Snapshot?): List<Int> {
+		val normalizedQuery = normalize(query.trim())
+		if(normalizedQuery.isEmpty()) return listOf()
+		
+		//Updating the index, and removing conversations that no longer exist
+		val sourceIDs = sources.mapTo(HashSet(sources.size)) { it.localID }
+		entries.keys.retainAll(sourceIDs)
+		
+		val results = mutableListOf<Pair<Int, Int>>()
+		for((index, source) in sources.withIndex()) {
+			//Reusing the entry if nothing has changed
+			var entry = entries[source.localID]
+			if(entry == null || entry.source != source || entry.contacts !== contacts) {
+				entry = Entry.build(source, contacts)
+				entries[source.localID] = entry
+			}
+			
+			//Ranking the conversation by its best match
+			val rank = entry.rank(normalizedQuery) ?: continue
+			results.add(Pair(rank, index))
+		}
+		
+		//Sorting by rank, keeping the conversations' order for matches of the same rank
+		return results.sortedBy { it.first }.map { it.second }
+	}
+	
+	/**
+	 * The fields of a conversation that are searched
+	 */
+	data class Source(val localID: Long, val title: String?, val memberAddresses: List<String>)
+	
+	/**
+	 * The normalized search text of a conversation
+	 */
+	private class Entry(
+		val source: Source,
+		val contacts: ContactIndex.Snapshot?,
+		val title: String?,
+		val names: List<String>,
+		val addresses: List<String>
+	) {
+		/**
+		 * Gets how well this conversation matches a query, where a lower rank is a better match
+		 * @return The rank of the best match, or NULL if the conversation doesn't match
+		 */
+		fun rank(query: String): Int? {
+			title?.let { matchRank(it, query) }?.let { return rankTitle + it }
+			names.mapNotNull { matchRank(it, query) }.minOrNull()?.let { return rankName + it }
+			addresses.mapNotNull { matchRank(it, query) }.minOrNull()?.let { return rankAddress + it }
+			return null
+		}
+		
+		companion object {
+			fun build(source: Source, contacts: ContactIndex.Snapshot?): Entry {
+				val normalizedAddresses = source.memberAddresses.map { AddressHelper.normalizeAddress(it) }
+				return Entry(
+					source = source,
+					contacts = contacts,
+					title = source.title?.let { normalize(it) },
+					names = if(contacts == null) listOf() else normalizedAddresses.mapNotNull { contacts.findAddress(it)?.contactName?.let { name -> normalize(name) } },
+					addresses = normalizedAddresses.map { normalize(it) }
+				)
+			}
+		}
+	}
+	
+	companion object {
+		//Ranks of each field, with the rank of the match added on
+		private const val rankTitle = 0
+		private const val rankName = 2
+		private const val rankAddress = 4
+		
+		private val combiningMarksRegex = Regex("\\p{Mn}+")
+		
+		/**
+		 * Captures the searchable fields of a list of conversations
+		 * Should be called on the thread that owns the conversations
+		 */
+		@JvmStatic
+		fun capture(conversations: List<ConversationInfo>): List<Source> {
+			return conversations.map { conversation -> Source(conversation.localID, conversation.title, conversation.members.map { it.address }) }
+		}
+		
+		/**
+		 * Normalizes text for case and accent-insensitive matching
+		 */
+		private fun normalize(text: String): String {
+			return Normalizer.normalize(text, Normalizer.Form.NFD).replace(combiningMarksRegex, "").lowercase(Locale.getDefault())
+		}
+		
+		/**
+		 * Gets how well a piece of text matches a query
+		 * @return 0 if a word in the text starts with the query, 1 if the text contains the query elsewhere, or NULL if the text doesn't contain the query
+		 */
+		private fun matchRank(text: String, query: String): Int? {
+			var index = text.indexOf(query)
+			if(index == -1) return null
+			
+			//Looking for a match at the start of a word
+			while(index != -1) {
+				if(index == 0 || !text[index - 1].isLetterOrDigit()) return 0
+				index = text.indexOf(query, index + 1)
+			}
+			
+			return 1
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package me.tagavari.airmessage.util
+
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * A view of a chunk of data received from the network, which may be backed by a shared read buffer.
+ * Holders should call [release] once they are done with the data, so that the buffer can be reused.
+ * A chunk that is never released is simply garbage collected.
+ * @param data The chunk's data
+ * @param releaseCallback A callback to invoke once this chunk is released
+ */
+class DataChunk @JvmOverloads constructor(data: ByteBuffer, private val releaseCallback: Runnable? = null) {
+	private val data: ByteBuffer = data.slice()
+	private val released = AtomicBoolean(false)
+	
+	/**
+	 * The length of this chunk's data
+	 */
+	val length: Int
+		get() = data.remaining()
+	
+	/**
+	 * Gets a view of this chunk's data
+	 */
+	fun getData(): ByteBuffer = data.duplicate()
+	
+	/**
+	 * Writes this chunk's data to an output stream, without copying it to an intermediate array
+	 */
+	@Throws(IOException::class)
+	fun writeTo(outputStream: OutputStream) {
+		if(data.hasArray()) {
+			outputStream.write(data.array(), data.arrayOffset() + data.position(), data.remaining())
+		} else {
+			val array = ByteArray(data.remaining())
+			data.duplicate().get(array)
+			outputStream.write(array)
+		}
+	}
+	
+	/**
+	 * Releases this chunk's data once it is no longer needed
+	 * The chunk's data must not be accessed after this call
+	 */
+	fun release() {
+		if(released.compareAndSet(false, true)) releaseCallback?.run()
+	}
+	
+	companion object {
+		/**
+		 * Creates a chunk that wraps an array
+		 */
+		@JvmStatic
+		fun wrap(data: ByteArray) = DataChunk(ByteBuffer.wrap(data))
+	}
+}
@@ -0,0 +1,48 @@
+package me.tagavari.airmessage.worker
+
+import android.content.Context
+import android.util.Log
+import androidx.work.WorkerParameters
+import androidx.work.rxjava3.RxWorker
+import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers
+import io.reactivex.rxjava3.core.Single
+import me.tagavari.airmessage.data.DatabaseManager
+import me.tagavari.airmessage.redux.ReduxEmitterNetwork
+import me.tagavari.airmessage.redux.ReduxEventMessaging
+
+/**
+ * Checks that attachment files marked as present still exist on disk, and invalidates the attachments whose files are missing
+ * Attachments are loaded without checking their files, so this catches files removed outside of the app (such as after a backup is restored)
+ */
+class AttachmentVerifyWorker(appContext: Context, workerParams: WorkerParameters): RxWorker(appContext, workerParams) {
+    override fun createWork(): Single<Result> {
+        return Single.fromCallable {
+            val missingAttachments = mutableListOf<Pair<Long, Long>>()
+
+            var lastID = -1L
+            while(!isStopped) {
+                lastID = DatabaseManager.getInstance().verifyAttachmentFiles(applicationContext, lastID, batchSize, missingAttachments)
+                if(lastID == -1L) break
+            }
+
+            if(missingAttachments.isNotEmpty()) Log.i(TAG, "Invalidated ${missingAttachments.size} attachments with missing files")
+            missingAttachments
+        }
+            .observeOn(AndroidSchedulers.mainThread())
+            .doOnSuccess { missingAttachments ->
+                //Sending an update for each invalidated attachment
+                for((messageID, attachmentID) in missingAttachments) {
+                    ReduxEmitterNetwork.messageUpdateSubject.onNext(ReduxEventMessaging.AttachmentFile(messageID, attachmentID, null, null, null))
+                }
+            }
+            .map { Result.success() }
+    }
+
+    companion object {
+        private val TAG = AttachmentVerifyWorker::class.java.simpleName
+        const val workName = "AttachmentVerifyWorker"
+
+        //The number of attachments to check at a time
+        private const val batchSize = 500
+    }
+}
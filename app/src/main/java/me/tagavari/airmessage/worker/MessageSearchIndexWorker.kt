@@ -0,0 +1,50 @@
+package me.tagavari.airmessage.worker
+
+import android.content.Context
+import android.util.Log
+import androidx.work.WorkerParameters
+import androidx.work.rxjava3.RxWorker
+import androidx.work.workDataOf
+import io.reactivex.rxjava3.core.Single
+import me.tagavari.airmessage.data.DatabaseManager
+
+/**
+ * Adds messages from before the search index was created to the index
+ * Progress is saved after every batch, so an interrupted run picks up where it left off the next time it is enqueued
+ */
+class MessageSearchIndexWorker(appContext: Context, workerParams: WorkerParameters): RxWorker(appContext, workerParams) {
+    override fun createWork(): Single<Result> {
+        return Single.fromCallable {
+            val databaseManager = DatabaseManager.getInstance()
+            if(!databaseManager.isMessageSearchBackfillPending) return@fromCallable Result.success()
+
+            val total = databaseManager.messageSearchBackfillRemaining
+            Log.i(TAG, "Indexing $total messages for search")
+
+            var indexed = 0L
+            while(!isStopped) {
+                //Indexing the next batch, and saving the progress in the same transaction
+                val batchCount: Int = databaseManager.runWrite { databaseManager.backfillMessageSearchIndex(batchSize) }
+                if(batchCount == 0) break
+
+                //Reporting the progress
+                indexed += batchCount
+                setProgressAsync(workDataOf(progressIndexed to indexed, progressTotal to total))
+            }
+
+            Result.success()
+        }
+    }
+
+    companion object {
+        private val TAG = MessageSearchIndexWorker::class.java.simpleName
+        const val workName = "MessageSearchIndexWorker"
+
+        //The number of messages to index in each transaction
+        private const val batchSize = 1000
+
+        //Progress keys
+        const val progressIndexed = "indexed"
+        const val progressTotal = "total"
+    }
+}
@@ -0,0 +1,45 @@
+package me.tagavari.airmessage;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import me.tagavari.airmessage.connection.encryption.EncryptionAES;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class EncryptionTest {
+	private static final String password = "password";
+	
+	@Test
+	public void testRoundTrip() throws GeneralSecurityException {
+		EncryptionAES encryption = new EncryptionAES(password);
+		byte[] data = "Hello, world!".getBytes(StandardCharsets.UTF_8);
+		
+		assertThat(encryption.decrypt(encryption.encrypt(data))).isEqualTo(data);
+	}
+	
+	@Test
+	public void testSessionCompatibility() throws GeneralSecurityException {
+		EncryptionAES sessionEncryption = new EncryptionAES(password, true);
+		byte[] data = "Hello, world!".getBytes(StandardCharsets.UTF_8);
+		
+		//Packets encrypted with a session salt should be readable by any other instance
+		byte[] encrypted1 = sessionEncryption.encrypt(data);
+		byte[] encrypted2 = sessionEncryption.encrypt(data);
+		assertThat(new EncryptionAES(password).decrypt(encrypted1)).isEqualTo(data);
+		assertThat(new EncryptionAES(password).decrypt(encrypted2)).isEqualTo(data);
+		
+		//The salt should be shared, but the IV should not
+		assertThat(Arrays.copyOfRange(encrypted1, 0, 8)).isEqualTo(Arrays.copyOfRange(encrypted2, 0, 8));
+		assertThat(encrypted1).isNotEqualTo(encrypted2);
+	}
+	
+	@Test(expected = GeneralSecurityException.class)
+	public void testWrongPassword() throws GeneralSecurityException {
+		byte[] encrypted = new EncryptionAES(password, true).encrypt(new byte[]{1, 2, 3});
+		new EncryptionAES("wrong").decrypt(encrypted);
+	}
+}
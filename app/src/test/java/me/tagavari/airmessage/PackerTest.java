@@ -0,0 +1,85 @@
+package me.tagavari.airmessage;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import me.tagavari.airmessage.connection.comm5.AirPacker;
+import me.tagavari.airmessage.connection.comm5.AirUnpacker;
+import me.tagavari.airmessage.connection.comm5.EncryptedPacket;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PackerTest {
+	@Test
+	public void testPackerGrowth() {
+		byte[] payload = new byte[1024 * 1024];
+		new Random().nextBytes(payload);
+		
+		EncryptedPacket packet;
+		try(AirPacker packer = AirPacker.get()) {
+			packer.packInt(1);
+			packer.packPayload(payload);
+			packer.packString("end");
+			packet = packer.toPacket(true);
+		}
+		
+		AirUnpacker unpacker = new AirUnpacker(packet.getDataBuffer());
+		assertThat(unpacker.unpackInt()).isEqualTo(1);
+		assertThat(unpacker.unpackPayload()).isEqualTo(payload);
+		assertThat(unpacker.unpackString()).isEqualTo("end");
+		packet.release();
+	}
+	
+	@Test
+	public void testConcurrentPacking() throws Exception {
+		final int threadCount = 8;
+		final int iterationCount = 2000;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for(int t = 0; t < threadCount; t++) {
+				final int threadID = t;
+				futures.add(executor.submit((Callable<Void>) () -> {
+					Random random = new Random(threadID);
+					for(int i = 0; i < iterationCount; i++) {
+						byte[] payload = new byte[random.nextInt(64 * 1024)];
+						random.nextBytes(payload);
+						
+						EncryptedPacket packet;
+						try(AirPacker packer = AirPacker.get()) {
+							packer.packInt(threadID);
+							packer.packInt(i);
+							packer.packPayload(payload);
+							packet = packer.toPacket(false);
+						}
+						
+						//Making sure no other thread wrote to this packet's buffer
+						ByteBuffer data = packet.getDataBuffer();
+						AirUnpacker unpacker = new AirUnpacker(data);
+						assertThat(unpacker.unpackInt()).isEqualTo(threadID);
+						assertThat(unpacker.unpackInt()).isEqualTo(i);
+						assertThat(unpacker.unpackPayload()).isEqualTo(payload);
+						assertThat(data.hasRemaining()).isFalse();
+						
+						packet.release();
+					}
+					
+					return null;
+				}));
+			}
+			
+			for(Future<?> future : futures) future.get();
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
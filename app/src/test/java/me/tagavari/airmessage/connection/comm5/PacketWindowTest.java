@@ -0,0 +1,73 @@
+package me.tagavari.airmessage.connection.comm5;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PacketWindowTest {
+	@Test
+	public void testWrittenPackets() throws Exception {
+		PacketWindow window = new PacketWindow(2);
+		AtomicInteger releaseCount = new AtomicInteger();
+		AtomicInteger sentCount = new AtomicInteger();
+		
+		for(int i = 0; i < 4; i++) {
+			EncryptedPacket packet = window.acquire(createPacket(releaseCount), sentCount::incrementAndGet, () -> true);
+			assertThat(packet).isNotNull();
+			
+			//Writing and releasing the packet, as a proxy would
+			packet.notifyWritten();
+			packet.release();
+		}
+		
+		//Checking that every packet was reported as sent, and that the underlying packets were released
+		assertThat(window.awaitDrain(() -> true)).isTrue();
+		assertThat(sentCount.get()).isEqualTo(4);
+		assertThat(releaseCount.get()).isEqualTo(4);
+	}
+	
+	@Test
+	public void testDiscardedPacket() throws Exception {
+		PacketWindow window = new PacketWindow(2);
+		AtomicInteger releaseCount = new AtomicInteger();
+		AtomicInteger sentCount = new AtomicInteger();
+		
+		//Writing one packet
+		EncryptedPacket writtenPacket = window.acquire(createPacket(releaseCount), sentCount::incrementAndGet, () -> true);
+		writtenPacket.notifyWritten();
+		writtenPacket.release();
+		
+		//Releasing another packet without writing it, as a proxy does when the connection is closed
+		EncryptedPacket discardedPacket = window.acquire(createPacket(releaseCount), sentCount::incrementAndGet, () -> true);
+		discardedPacket.release();
+		
+		//Checking that the window drains, but reports the failure
+		assertThat(window.awaitDrain(() -> true)).isFalse();
+		assertThat(sentCount.get()).isEqualTo(1);
+		assertThat(releaseCount.get()).isEqualTo(2);
+	}
+	
+	@Test
+	public void testAbortWhenFull() throws Exception {
+		PacketWindow window = new PacketWindow(1);
+		AtomicInteger releaseCount = new AtomicInteger();
+		
+		//Filling the window
+		EncryptedPacket heldPacket = window.acquire(createPacket(releaseCount), null, () -> true);
+		
+		//Checking that waiting for another slot is aborted, and that the rejected packet is released
+		assertThat(window.acquire(createPacket(releaseCount), null, () -> false)).isNull();
+		assertThat(window.awaitDrain(() -> false)).isFalse();
+		assertThat(releaseCount.get()).isEqualTo(1);
+		
+		heldPacket.release();
+		assertThat(releaseCount.get()).isEqualTo(2);
+	}
+	
+	private static EncryptedPacket createPacket(AtomicInteger releaseCount) {
+		return new EncryptedPacket(ByteBuffer.wrap(new byte[]{1, 2, 3}), false, releaseCount::incrementAndGet);
+	}
+}